@@ -0,0 +1,94 @@
+package com.fraud.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare a JMH JSON result with a stored baseline.
+ *
+ * Usage: BaselineCompare baseline.json current.json [threshold-percent]
+ *
+ * Prints score and normalized allocation (gc.alloc.rate.norm) per benchmark, exits with 1 when a
+ * benchmark got slower than the threshold. Benchmarks are matched by name and params.
+ */
+public final class BaselineCompare {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private BaselineCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCompare baseline.json current.json [threshold-percent]");
+            System.exit(2);
+        }
+        for (int i = 0; i < 2; i++) {
+            if (!new File(args[i]).isFile()) {
+                System.err.println("result file " + args[i] + " not found, run the benchmarks first");
+                System.exit(2);
+            }
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> current = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s %12s %12s%n",
+                "benchmark", "baseline", "current", "change", "B/op base", "B/op now");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode now = entry.getValue();
+            JsonNode base = baseline.get(entry.getKey());
+            double score = now.path("primaryMetric").path("score").asDouble();
+            String unit = now.path("primaryMetric").path("scoreUnit").asText();
+            if (base == null) {
+                System.out.printf("%-70s %14s %14.2f %9s %12s %12s  (new, %s)%n", entry.getKey(), "-", score, "-",
+                        "-", alloc(now), unit);
+                continue;
+            }
+            double baseScore = base.path("primaryMetric").path("score").asDouble();
+            // positive change = slower, whatever the mode
+            double change = isThroughput(now) ? (baseScore - score) / baseScore * 100 : (score - baseScore) / baseScore * 100;
+            boolean regression = change > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.2f %14.2f %+8.1f%% %12s %12s  %s%s%n", entry.getKey(), baseScore, score, change,
+                    alloc(base), alloc(now), unit, regression ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) slower than the baseline by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            results.put(key(result), result);
+        }
+        return results;
+    }
+
+    private static String key(JsonNode result) {
+        String name = result.path("benchmark").asText().replace("com.fraud.bench.", "");
+        Map<String, String> params = new TreeMap<>();
+        result.path("params").fields().forEachRemaining(e -> params.put(e.getKey(), e.getValue().asText()));
+        return params.isEmpty() ? name : name + params;
+    }
+
+    private static boolean isThroughput(JsonNode result) {
+        return "thrpt".equals(result.path("mode").asText());
+    }
+
+    private static String alloc(JsonNode result) {
+        JsonNode alloc = result.path("secondaryMetrics").path(ALLOC_NORM);
+        return alloc.isMissingNode() ? "-" : String.format("%.1f", alloc.path("score").asDouble());
+    }
+}
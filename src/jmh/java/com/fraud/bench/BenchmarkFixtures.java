@@ -0,0 +1,163 @@
+package com.fraud.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.config.MapperConfig;
+import com.fraud.dedup.SharedDedupStore;
+import com.fraud.dedup.TransactionDeduplicator;
+import com.fraud.model.Transaction;
+import com.fraud.rule.AmountThresholdRule;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.FraudRule;
+import com.fraud.rule.HighRiskLocationRule;
+import com.fraud.rule.RuleEngine;
+import com.fraud.rule.SuspiciousAccountRule;
+import com.fraud.rule.VelocityRule;
+import com.fraud.score.RiskScorer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Beans and input data for the benchmarks, wired by hand with the values of application.properties
+ */
+final class BenchmarkFixtures {
+
+    static final String RISK_LOCATIONS = "HighRiskCountry1,HighRiskCountry2,SuspiciousRegion,Unknown";
+    static final String SUSPICIOUS_ACCOUNTS = "ACCT-123,ACCT-456,ACCT-789,ACCT-101,ACCT-202";
+
+    // transactions cycled through by the benchmarks, power of 2
+    static final int INPUT_SIZE = 1024;
+
+    private BenchmarkFixtures() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new MapperConfig().objectMapper();
+    }
+
+    /**
+     * @param fraud every transaction breaks the amount rule when true, none breaks any rule otherwise
+     */
+    static Transaction[] transactions(boolean fraud) {
+        Transaction[] transactions = new Transaction[INPUT_SIZE];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < INPUT_SIZE; i++) {
+            transactions[i] = new Transaction(
+                    "TX-" + i,
+                    "ACCT-" + (100_000 + i),
+                    fraud ? 15000.0 + i : 10.0 + i % 5000,
+                    i % 2 == 0 ? "Singapore" : "New York",
+                    "MCH-" + (i % 64),
+                    now);
+        }
+        return transactions;
+    }
+
+    static String[] transactionJson(boolean fraud) {
+        ObjectMapper mapper = objectMapper();
+        Transaction[] transactions = transactions(fraud);
+        String[] json = new String[transactions.length];
+        try {
+            for (int i = 0; i < transactions.length; i++) {
+                json[i] = mapper.writeValueAsString(transactions[i]);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return json;
+    }
+
+    /**
+     * Rule sets: 1 = amount only, 4 = all built-in rules, more = built-in rules plus extra amount
+     * and region rules with other limits
+     */
+    static RuleEngine ruleEngine(int ruleCount) {
+        List<FraudRule> rules = new ArrayList<>();
+        rules.add(amountRule(10000.0));
+        if (ruleCount >= 4) {
+            rules.add(suspiciousAccountRule());
+            rules.add(locationRule(RISK_LOCATIONS));
+            rules.add(velocityRule());
+        }
+        for (int i = rules.size(); i < ruleCount; i++) {
+            rules.add(i % 2 == 0
+                    ? amountRule(20000.0 + i * 1000)
+                    : locationRule("ExtraRegion" + i + ",Embargoed" + i + ",OffshoreZone" + i));
+        }
+        RuleEngine engine = new RuleEngine(rules);
+        set(engine, "mode", EvaluationMode.ALL_REASONS);
+        set(engine, "timingEnabled", true);
+        engine.compile();
+        return engine;
+    }
+
+    static AmountThresholdRule amountRule(double threshold) {
+        AmountThresholdRule rule = new AmountThresholdRule();
+        set(rule, "amountThreshold", threshold);
+        return rule;
+    }
+
+    static SuspiciousAccountRule suspiciousAccountRule() {
+        SuspiciousAccountRule rule = new SuspiciousAccountRule();
+        set(rule, "suspiciousAccountsStr", SUSPICIOUS_ACCOUNTS);
+        set(rule, "suspiciousAccountsFile", "");
+        rule.init();
+        return rule;
+    }
+
+    static HighRiskLocationRule locationRule(String locations) {
+        HighRiskLocationRule rule = new HighRiskLocationRule();
+        set(rule, "highRiskLocationsStr", locations);
+        set(rule, "enableUnusualLocationCheck", true);
+        rule.init();
+        return rule;
+    }
+
+    /**
+     * velocity limits high enough that the benchmark traffic never hits them
+     */
+    static VelocityRule velocityRule() {
+        VelocityRule rule = new VelocityRule();
+        set(rule, "enabled", true);
+        set(rule, "windowSeconds", new long[]{60, 600, 3600});
+        set(rule, "maxCounts", new long[]{0, 0, 0});
+        set(rule, "maxAmounts", new double[]{0, 0, 0});
+        set(rule, "bucketSeconds", 60L);
+        set(rule, "maxAccounts", 100_000);
+        set(rule, "stripes", 64);
+        rule.init();
+        return rule;
+    }
+
+    /**
+     * no model file, nothing is scored
+     */
+    static RiskScorer riskScorer() {
+        return new RiskScorer(objectMapper(), new SimpleMeterRegistry());
+    }
+
+    /**
+     * dedup off, the benchmark inputs repeat their transaction IDs
+     */
+    static TransactionDeduplicator deduplicator() {
+        TransactionDeduplicator deduplicator = new TransactionDeduplicator(
+                new StaticListableBeanFactory().getBeanProvider(SharedDedupStore.class), new SimpleMeterRegistry());
+        set(deduplicator, "enabled", false);
+        deduplicator.init();
+        return deduplicator;
+    }
+
+    static void set(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException("no field " + name + " on " + target.getClass());
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
@@ -0,0 +1,351 @@
+package com.fraud.bench;
+
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.ingest.ExecutionMode;
+import com.fraud.ingest.SqsAcknowledger;
+import com.fraud.ingest.SqsIngestionEngine;
+import com.fraud.journal.ResultJournal;
+import com.fraud.model.Transaction;
+import com.fraud.persist.InMemoryResultStore;
+import com.fraud.persist.ResultStore;
+import com.fraud.persist.ResultWriter;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.FraudRule;
+import com.fraud.rule.RuleEngine;
+import com.fraud.service.FraudDetectionService;
+import com.fraud.service.SnsNotificationService;
+import com.fraud.service.SqsConsumerService;
+import com.fraud.startup.StartupTimeline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Msg throughput of {@link SqsIngestionEngine} in PLATFORM (8 workers), VIRTUAL and ASYNC (2 stage threads)
+ * mode, with the same max in-flight and 2 CPUs (-XX:ActiveProcessorCount=2, like a pod limit of 2 cores).
+ *
+ * Each invocation puts 2048 msg into an in-memory queue and waits until all are deleted, through pollers,
+ * parse, detect, journal, persist, batched delete and alert. blockingMs adds a blocking call of that length
+ * to every msg (a synchronous lookup on the msg path), 0 is the CPU bound case. Run with -prof gc for the
+ * memory side: virtual thread stacks live on the heap and show up in the allocation rate.
+ *
+ * VIRTUAL needs a Java 21 JVM, on an older one its trials fail at setup:
+ *   mvn -Pjmh compile exec:exec -Djmh.args="ExecutionMode -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-XX:ActiveProcessorCount=2", "-Xmx512m", "-Dlogback.configurationFile=logback-jmh.xml"})
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private static final String QUEUE_URL = "https://sqs.local/000000000000/transactions-queue.fifo";
+    private static final int MESSAGES = 2048;
+    private static final int GROUPS = 256;
+
+    @Param({"PLATFORM", "VIRTUAL", "ASYNC"})
+    private ExecutionMode mode;
+
+    @Param({"0", "2"})
+    private long blockingMs;
+
+    private QueueSqsClient sqsClient;
+    private ExecutorService asyncIo;
+    private List<Message> messages;
+    private SqsAcknowledger sqsAcknowledger;
+    private ResultWriter resultWriter;
+    private ResultJournal resultJournal;
+    private Path journalDir;
+    private SnsNotificationService snsNotificationService;
+    private SqsIngestionEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        journalDir = Files.createTempDirectory("fraud-journal-bench");
+        String[] clean = BenchmarkFixtures.transactionJson(false);
+        String[] fraud = BenchmarkFixtures.transactionJson(true);
+        messages = new ArrayList<>(MESSAGES);
+        String sentTimestamp = Long.toString(System.currentTimeMillis());
+        for (int i = 0; i < MESSAGES; i++) {
+            int input = i % BenchmarkFixtures.INPUT_SIZE;
+            messages.add(Message.builder()
+                    .messageId("MSG-" + i)
+                    .receiptHandle("RH-" + i)
+                    .body(i % 100 < 10 ? fraud[input] : clean[input])
+                    .attributes(Map.of(MessageSystemAttributeName.MESSAGE_GROUP_ID, "group-" + (i % GROUPS),
+                            MessageSystemAttributeName.SENT_TIMESTAMP, sentTimestamp))
+                    .build());
+        }
+        sqsClient = new QueueSqsClient();
+        asyncIo = Executors.newFixedThreadPool(2);
+        SqsAsyncClient sqsAsyncClient = new QueueSqsAsyncClient(sqsClient, asyncIo);
+
+        sqsAcknowledger = new SqsAcknowledger(sqsClient, sqsAsyncClient);
+        BenchmarkFixtures.set(sqsAcknowledger, "executionMode", mode);
+        BenchmarkFixtures.set(sqsAcknowledger, "maxInFlightBatches", 8);
+        BenchmarkFixtures.set(sqsAcknowledger, "sqsQueueUrl", QUEUE_URL);
+        BenchmarkFixtures.set(sqsAcknowledger, "maxWaitMs", 5L);
+        BenchmarkFixtures.set(sqsAcknowledger, "maxAttempts", 3);
+        BenchmarkFixtures.set(sqsAcknowledger, "visibilityTimeoutSeconds", 30);
+        BenchmarkFixtures.set(sqsAcknowledger, "extensionEnabled", false);
+        sqsAcknowledger.start();
+
+        snsNotificationService = new SnsNotificationService(new MessagePathBenchmark.StubSnsAsyncClient(), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(snsNotificationService, "snsTopicArn", "arn:aws:sns:local:000000000000:fraud-alerts");
+        BenchmarkFixtures.set(snsNotificationService, "outboxCapacity", 10000);
+        BenchmarkFixtures.set(snsNotificationService, "batchSize", 10);
+        BenchmarkFixtures.set(snsNotificationService, "flushIntervalMs", 200L);
+        BenchmarkFixtures.set(snsNotificationService, "maxInFlightBatches", 4);
+        BenchmarkFixtures.set(snsNotificationService, "maxAttempts", 5);
+        BenchmarkFixtures.set(snsNotificationService, "retryBaseMs", 100L);
+        BenchmarkFixtures.set(snsNotificationService, "retryMaxMs", 10000L);
+        snsNotificationService.init();
+        snsNotificationService.start();
+
+        StaticListableBeanFactory stores = new StaticListableBeanFactory();
+        stores.addBean("resultStore", new InMemoryResultStore());
+        resultWriter = new ResultWriter(stores.getBeanProvider(ResultStore.class), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(resultWriter, "bufferCapacity", 10000);
+        BenchmarkFixtures.set(resultWriter, "flushIntervalMs", 100L);
+        BenchmarkFixtures.set(resultWriter, "offerTimeoutMs", 5000L);
+        BenchmarkFixtures.set(resultWriter, "writerCount", 2);
+        BenchmarkFixtures.set(resultWriter, "maxAttempts", 8);
+        BenchmarkFixtures.set(resultWriter, "ackAfterDurable", false);
+        resultWriter.init();
+        resultWriter.start();
+
+        resultJournal = new ResultJournal(new SimpleMeterRegistry());
+        BenchmarkFixtures.set(resultJournal, "enabled", true);
+        BenchmarkFixtures.set(resultJournal, "directory", journalDir.toString());
+        BenchmarkFixtures.set(resultJournal, "segmentBytes", 16 * 1024 * 1024);
+        BenchmarkFixtures.set(resultJournal, "flushIntervalMs", 200L);
+        BenchmarkFixtures.set(resultJournal, "retentionHours", 1L);
+        BenchmarkFixtures.set(resultJournal, "maxSegments", 4);
+        BenchmarkFixtures.set(resultJournal, "maintenanceIntervalMs", 1000L);
+        resultJournal.init();
+        resultJournal.start();
+
+        FraudDetectionService fraudDetectionService = new FraudDetectionService(ruleEngine(),
+                BenchmarkFixtures.riskScorer(), new SimpleMeterRegistry());
+        fraudDetectionService.init();
+        SqsConsumerService sqsConsumerService = new SqsConsumerService(sqsClient, sqsAsyncClient, fraudDetectionService,
+                snsNotificationService, new TransactionDecoder(BenchmarkFixtures.objectMapper()), sqsAcknowledger,
+                resultWriter, resultJournal, BenchmarkFixtures.deduplicator(), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(sqsConsumerService, "sqsQueueUrl", QUEUE_URL);
+        BenchmarkFixtures.set(sqsConsumerService, "maxMessages", 10);
+        BenchmarkFixtures.set(sqsConsumerService, "waitTimeSeconds", 20);
+        BenchmarkFixtures.set(sqsConsumerService, "visibilityTimeoutSeconds", 30);
+        sqsConsumerService.init();
+
+        engine = new SqsIngestionEngine(sqsConsumerService, sqsAcknowledger, new StartupTimeline(new SimpleMeterRegistry()));
+        BenchmarkFixtures.set(engine, "pollers", 2);
+        BenchmarkFixtures.set(engine, "workers", 8);
+        BenchmarkFixtures.set(engine, "maxInFlight", 512);
+        BenchmarkFixtures.set(engine, "errorBackoffMs", 10L);
+        BenchmarkFixtures.set(engine, "executionMode", mode);
+        BenchmarkFixtures.set(engine, "virtualMaxConcurrency", 256);
+        BenchmarkFixtures.set(engine, "asyncStageThreads", 0);
+        engine.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (engine != null) {
+            engine.stop();
+        }
+        resultJournal.stop();
+        resultWriter.stop();
+        snsNotificationService.stop();
+        sqsAcknowledger.stop();
+        asyncIo.shutdownNow();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    /**
+     * 2048 msg from queue to delete, score is msg per second
+     */
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long drainQueue() {
+        long target = sqsClient.deleted.get() + MESSAGES;
+        sqsClient.pending.addAll(messages);
+        while (sqsClient.deleted.get() < target) {
+            LockSupport.parkNanos(100_000);
+        }
+        return target;
+    }
+
+    /**
+     * built-in rules plus one that blocks blockingMs per transaction
+     */
+    private RuleEngine ruleEngine() {
+        List<FraudRule> rules = new ArrayList<>();
+        rules.add(BenchmarkFixtures.amountRule(10000.0));
+        rules.add(BenchmarkFixtures.suspiciousAccountRule());
+        rules.add(BenchmarkFixtures.locationRule(BenchmarkFixtures.RISK_LOCATIONS));
+        rules.add(BenchmarkFixtures.velocityRule());
+        if (blockingMs > 0) {
+            rules.add(new BlockingLookupRule(blockingMs));
+        }
+        RuleEngine ruleEngine = new RuleEngine(rules);
+        BenchmarkFixtures.set(ruleEngine, "mode", EvaluationMode.ALL_REASONS);
+        BenchmarkFixtures.set(ruleEngine, "timingEnabled", true);
+        ruleEngine.compile();
+        return ruleEngine;
+    }
+
+    /**
+     * Stands for a synchronous remote call on the msg path, never matches
+     */
+    static final class BlockingLookupRule implements FraudRule {
+        private final long millis;
+
+        BlockingLookupRule(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public String name() {
+            return "blocking-lookup";
+        }
+
+        @Override
+        public boolean matches(Transaction transaction) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public String describe(Transaction transaction) {
+            return "blocking lookup";
+        }
+    }
+
+    /**
+     * Async view of {@link QueueSqsClient}, receives wait on the io threads like on an event loop
+     */
+    static final class QueueSqsAsyncClient implements SqsAsyncClient {
+        private final QueueSqsClient delegate;
+        private final ExecutorService io;
+
+        QueueSqsAsyncClient(QueueSqsClient delegate, ExecutorService io) {
+            this.delegate = delegate;
+            this.io = io;
+        }
+
+        @Override
+        public CompletableFuture<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+            return CompletableFuture.supplyAsync(() -> delegate.receiveMessage(request), io);
+        }
+
+        @Override
+        public CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+            return CompletableFuture.completedFuture(delegate.deleteMessageBatch(request));
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * In-memory queue: receive takes up to 10 pending msg or waits 1 ms and returns none, delete counts
+     */
+    static final class QueueSqsClient implements SqsClient {
+        final Queue<Message> pending = new ConcurrentLinkedQueue<>();
+        final AtomicLong deleted = new AtomicLong();
+
+        @Override
+        public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+            List<Message> batch = new ArrayList<>(request.maxNumberOfMessages());
+            Message message;
+            while (batch.size() < request.maxNumberOfMessages() && (message = pending.poll()) != null) {
+                batch.add(message);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return ReceiveMessageResponse.builder().messages(batch).build();
+        }
+
+        @Override
+        public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+            deleted.addAndGet(request.entries().size());
+            return DeleteMessageBatchResponse.builder()
+                    .successful(request.entries().stream()
+                            .map(e -> DeleteMessageBatchResultEntry.builder().id(e.id()).build())
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+
+        @Override
+        public ChangeMessageVisibilityBatchResponse changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+            return ChangeMessageVisibilityBatchResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
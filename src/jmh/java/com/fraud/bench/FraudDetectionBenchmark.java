@@ -0,0 +1,56 @@
+package com.fraud.bench;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.Transaction;
+import com.fraud.service.FraudDetectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FraudDetectionService#detectFraud} with growing rule sets, for clean and fraud traffic.
+ * Fraud results render their reason text, like the SNS alert does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class FraudDetectionBenchmark {
+
+    @Param({"1", "4", "16"})
+    private int ruleCount;
+
+    @Param({"clean", "fraud"})
+    private String traffic;
+
+    private FraudDetectionService fraudDetectionService;
+    private Transaction[] transactions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fraudDetectionService = new FraudDetectionService(BenchmarkFixtures.ruleEngine(ruleCount),
+                BenchmarkFixtures.riskScorer(), new SimpleMeterRegistry());
+        fraudDetectionService.init();
+        transactions = BenchmarkFixtures.transactions("fraud".equals(traffic));
+    }
+
+    @Benchmark
+    public Object detectFraud() {
+        FraudResult result = fraudDetectionService.detectFraud(transactions[next++ & (BenchmarkFixtures.INPUT_SIZE - 1)]);
+        return result.isFraudulent() ? result.getReasons() : result;
+    }
+}
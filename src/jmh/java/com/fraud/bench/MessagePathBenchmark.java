@@ -0,0 +1,255 @@
+package com.fraud.bench;
+
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.ingest.SqsAcknowledger;
+import com.fraud.journal.ResultJournal;
+import com.fraud.persist.InMemoryResultStore;
+import com.fraud.persist.ResultStore;
+import com.fraud.persist.ResultWriter;
+import com.fraud.service.FraudDetectionService;
+import com.fraud.service.SnsNotificationService;
+import com.fraud.service.SqsConsumerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Full per-message path of {@link SqsConsumerService}: receive a batch, parse, detect, journal
+ * (memory-mapped file), persist (write-behind), acknowledge (batched delete) and queue the alert,
+ * with in-memory SQS/SNS clients and result store answering at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class MessagePathBenchmark {
+
+    private static final String QUEUE_URL = "https://sqs.local/000000000000/transactions-queue.fifo";
+    private static final int BATCH_SIZE = 10;
+
+    // share of fraud transactions, in percent
+    @Param({"0", "10"})
+    private int fraudPercent;
+
+    private SqsAcknowledger sqsAcknowledger;
+    private ResultWriter resultWriter;
+    private ResultJournal resultJournal;
+    private Path journalDir;
+    private SnsNotificationService snsNotificationService;
+    private SqsConsumerService sqsConsumerService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        journalDir = Files.createTempDirectory("fraud-journal-bench");
+        String[] clean = BenchmarkFixtures.transactionJson(false);
+        String[] fraud = BenchmarkFixtures.transactionJson(true);
+        List<Message> messages = new ArrayList<>(BenchmarkFixtures.INPUT_SIZE);
+        String sentTimestamp = Long.toString(System.currentTimeMillis());
+        for (int i = 0; i < BenchmarkFixtures.INPUT_SIZE; i++) {
+            messages.add(Message.builder()
+                    .messageId("MSG-" + i)
+                    .receiptHandle("RH-" + i)
+                    .body(i % 100 < fraudPercent ? fraud[i] : clean[i])
+                    .attributes(Map.of(MessageSystemAttributeName.MESSAGE_GROUP_ID, "group-" + (i % 16),
+                            MessageSystemAttributeName.SENT_TIMESTAMP, sentTimestamp))
+                    .build());
+        }
+        SqsClient sqsClient = new StubSqsClient(messages);
+
+        sqsAcknowledger = new SqsAcknowledger(sqsClient, null);
+        BenchmarkFixtures.set(sqsAcknowledger, "sqsQueueUrl", QUEUE_URL);
+        BenchmarkFixtures.set(sqsAcknowledger, "maxWaitMs", 50L);
+        BenchmarkFixtures.set(sqsAcknowledger, "maxAttempts", 3);
+        BenchmarkFixtures.set(sqsAcknowledger, "visibilityTimeoutSeconds", 30);
+        BenchmarkFixtures.set(sqsAcknowledger, "extensionEnabled", false);
+        sqsAcknowledger.start();
+
+        snsNotificationService = new SnsNotificationService(new StubSnsAsyncClient(), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(snsNotificationService, "snsTopicArn", "arn:aws:sns:local:000000000000:fraud-alerts");
+        BenchmarkFixtures.set(snsNotificationService, "outboxCapacity", 10000);
+        BenchmarkFixtures.set(snsNotificationService, "batchSize", 10);
+        BenchmarkFixtures.set(snsNotificationService, "flushIntervalMs", 200L);
+        BenchmarkFixtures.set(snsNotificationService, "maxInFlightBatches", 4);
+        BenchmarkFixtures.set(snsNotificationService, "maxAttempts", 5);
+        BenchmarkFixtures.set(snsNotificationService, "retryBaseMs", 100L);
+        BenchmarkFixtures.set(snsNotificationService, "retryMaxMs", 10000L);
+        snsNotificationService.init();
+        snsNotificationService.start();
+
+        StaticListableBeanFactory stores = new StaticListableBeanFactory();
+        stores.addBean("resultStore", new InMemoryResultStore());
+        resultWriter = new ResultWriter(stores.getBeanProvider(ResultStore.class), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(resultWriter, "bufferCapacity", 10000);
+        BenchmarkFixtures.set(resultWriter, "flushIntervalMs", 100L);
+        BenchmarkFixtures.set(resultWriter, "offerTimeoutMs", 5000L);
+        BenchmarkFixtures.set(resultWriter, "writerCount", 2);
+        BenchmarkFixtures.set(resultWriter, "maxAttempts", 8);
+        BenchmarkFixtures.set(resultWriter, "ackAfterDurable", false);
+        resultWriter.init();
+        resultWriter.start();
+
+        resultJournal = new ResultJournal(new SimpleMeterRegistry());
+        BenchmarkFixtures.set(resultJournal, "enabled", true);
+        BenchmarkFixtures.set(resultJournal, "directory", journalDir.toString());
+        BenchmarkFixtures.set(resultJournal, "segmentBytes", 16 * 1024 * 1024);
+        BenchmarkFixtures.set(resultJournal, "flushIntervalMs", 200L);
+        BenchmarkFixtures.set(resultJournal, "retentionHours", 1L);
+        BenchmarkFixtures.set(resultJournal, "maxSegments", 4);
+        BenchmarkFixtures.set(resultJournal, "maintenanceIntervalMs", 1000L);
+        resultJournal.init();
+        resultJournal.start();
+
+        FraudDetectionService fraudDetectionService = new FraudDetectionService(BenchmarkFixtures.ruleEngine(4),
+                BenchmarkFixtures.riskScorer(), new SimpleMeterRegistry());
+        fraudDetectionService.init();
+        sqsConsumerService = new SqsConsumerService(sqsClient, null, fraudDetectionService, snsNotificationService,
+                new TransactionDecoder(BenchmarkFixtures.objectMapper()), sqsAcknowledger, resultWriter, resultJournal,
+                BenchmarkFixtures.deduplicator(), new SimpleMeterRegistry());
+        BenchmarkFixtures.set(sqsConsumerService, "sqsQueueUrl", QUEUE_URL);
+        BenchmarkFixtures.set(sqsConsumerService, "maxMessages", BATCH_SIZE);
+        BenchmarkFixtures.set(sqsConsumerService, "waitTimeSeconds", 20);
+        BenchmarkFixtures.set(sqsConsumerService, "visibilityTimeoutSeconds", 30);
+        sqsConsumerService.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        resultJournal.stop();
+        resultWriter.stop();
+        snsNotificationService.stop();
+        sqsAcknowledger.stop();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+    }
+
+    /**
+     * one receive of 10 msg, score is per msg
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int receiveAndProcess() {
+        int done = 0;
+        for (Message message : sqsConsumerService.receiveTransactions(BATCH_SIZE)) {
+            sqsAcknowledger.track(message);
+            if (sqsConsumerService.processMessage(message)) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Returns the next prepared batch on receive, accepts every delete and visibility change
+     */
+    static final class StubSqsClient implements SqsClient {
+        private final ReceiveMessageResponse[] responses;
+        private int next;
+
+        StubSqsClient(List<Message> messages) {
+            responses = new ReceiveMessageResponse[messages.size() / BATCH_SIZE];
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = ReceiveMessageResponse.builder()
+                        .messages(messages.subList(i * BATCH_SIZE, (i + 1) * BATCH_SIZE))
+                        .build();
+            }
+        }
+
+        @Override
+        public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+            ReceiveMessageResponse response = responses[next];
+            next = (next + 1) % responses.length;
+            return response;
+        }
+
+        @Override
+        public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+            return DeleteMessageBatchResponse.builder()
+                    .successful(request.entries().stream()
+                            .map(e -> DeleteMessageBatchResultEntry.builder().id(e.id()).build())
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+
+        @Override
+        public ChangeMessageVisibilityBatchResponse changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+            return ChangeMessageVisibilityBatchResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Accepts every PublishBatch at once
+     */
+    static final class StubSnsAsyncClient implements SnsAsyncClient {
+
+        @Override
+        public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest request) {
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                    .successful(request.publishBatchRequestEntries().stream()
+                            .map(e -> PublishBatchResultEntry.builder().id(e.id()).build())
+                            .collect(Collectors.toList()))
+                    .build());
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.fraud.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.model.Transaction;
+import com.fraud.score.FeatureExtractor;
+import com.fraud.score.RiskScorer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RiskScorer#score}: feature extraction plus model evaluation of one transaction, for a linear
+ * model and gradient boosted trees of growing size (depth 6).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class ScoringBenchmark {
+
+    private static final int DEPTH = 6;
+
+    @Param({"linear", "gbt-100", "gbt-500"})
+    private String model;
+
+    private Path modelFile;
+    private RiskScorer riskScorer;
+    private Transaction[] transactions;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = BenchmarkFixtures.objectMapper();
+        modelFile = Files.createTempFile("risk-model", ".json");
+        Random random = new Random(42);
+        Map<String, Object> file = "linear".equals(model)
+                ? linearModel(random)
+                : treeModel(random, Integer.parseInt(model.substring("gbt-".length())));
+        objectMapper.writeValue(modelFile.toFile(), file);
+
+        riskScorer = new RiskScorer(objectMapper, new SimpleMeterRegistry());
+        BenchmarkFixtures.set(riskScorer, "modelFile", modelFile.toString());
+        BenchmarkFixtures.set(riskScorer, "alertThreshold", 0.0);
+        BenchmarkFixtures.set(riskScorer, "zone", "UTC");
+        riskScorer.init();
+        transactions = BenchmarkFixtures.transactions(false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(modelFile);
+    }
+
+    @Benchmark
+    public double score() {
+        return riskScorer.score(transactions[next++ & (BenchmarkFixtures.INPUT_SIZE - 1)]);
+    }
+
+    private static Map<String, Object> linearModel(Random random) {
+        double[] weights = new double[FeatureExtractor.WIDTH];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextGaussian() * 0.1;
+        }
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("type", "linear");
+        file.put("version", "bench");
+        file.put("layout", FeatureExtractor.LAYOUT);
+        file.put("intercept", -4.0);
+        file.put("weights", weights);
+        return file;
+    }
+
+    /**
+     * full trees, node i has children 2i+1 and 2i+2
+     */
+    private static Map<String, Object> treeModel(Random random, int treeCount) {
+        int nodes = (1 << (DEPTH + 1)) - 1;
+        int firstLeaf = (1 << DEPTH) - 1;
+        List<Map<String, Object>> trees = new ArrayList<>(treeCount);
+        for (int t = 0; t < treeCount; t++) {
+            int[] feature = new int[nodes];
+            double[] threshold = new double[nodes];
+            int[] left = new int[nodes];
+            int[] right = new int[nodes];
+            double[] value = new double[nodes];
+            for (int i = 0; i < nodes; i++) {
+                if (i < firstLeaf) {
+                    feature[i] = random.nextInt(FeatureExtractor.WIDTH);
+                    // log amount or a one-hot feature
+                    threshold[i] = feature[i] == 0 ? random.nextDouble() * 10 : 0.5;
+                    left[i] = 2 * i + 1;
+                    right[i] = 2 * i + 2;
+                } else {
+                    feature[i] = -1;
+                    left[i] = -1;
+                    right[i] = -1;
+                    value[i] = random.nextGaussian() * 0.05;
+                }
+            }
+            Map<String, Object> tree = new LinkedHashMap<>();
+            tree.put("feature", feature);
+            tree.put("threshold", threshold);
+            tree.put("left", left);
+            tree.put("right", right);
+            tree.put("value", value);
+            trees.add(tree);
+        }
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("type", "gbt");
+        file.put("version", "bench");
+        file.put("layout", FeatureExtractor.LAYOUT);
+        file.put("base", -3.0);
+        file.put("trees", trees);
+        return file;
+    }
+}
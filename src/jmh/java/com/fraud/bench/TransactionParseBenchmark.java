@@ -0,0 +1,55 @@
+package com.fraud.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaction JSON body -> {@link Transaction}, through the application ObjectMapper and through
+ * the streaming {@link TransactionDecoder}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class TransactionParseBenchmark {
+
+    private ObjectMapper objectMapper;
+    private TransactionDecoder transactionDecoder;
+    private String[] bodies;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        objectMapper = BenchmarkFixtures.objectMapper();
+        transactionDecoder = new TransactionDecoder(objectMapper);
+        bodies = BenchmarkFixtures.transactionJson(false);
+    }
+
+    @Benchmark
+    public Transaction parse() throws IOException {
+        String body = bodies[next++ & (BenchmarkFixtures.INPUT_SIZE - 1)];
+        return objectMapper.readValue(body, Transaction.class);
+    }
+
+    @Benchmark
+    public Transaction decode() throws IOException {
+        String body = bodies[next++ & (BenchmarkFixtures.INPUT_SIZE - 1)];
+        return transactionDecoder.decode(body);
+    }
+}
@@ -1,7 +1,9 @@
 package com.fraud;
 
+import com.fraud.batch.BatchReplayRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
@@ -11,6 +13,14 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableScheduling
 public class FraudDetectionApplication {
     public static void main(String[] args) {
-        SpringApplication.run(FraudDetectionApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(FraudDetectionApplication.class, args);
+        if (context.getBeanProvider(BatchReplayRunner.class).getIfAvailable() != null) {
+            // batch mode, the input is scored once the context is started
+            System.exit(SpringApplication.exit(context));
+        }
+        if (context.getEnvironment().getProperty("fraud.startup.exit", Boolean.class, false)) {
+            // training run of the image build, started and warmed up once to record the loaded classes (AppCDS)
+            System.exit(SpringApplication.exit(context));
+        }
     }
 }
@@ -0,0 +1,107 @@
+package com.fraud.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.model.ReasonCode;
+import com.fraud.rule.RuleEngine;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Batch mode: with fraud.batch.input set the application scores the given files once and exits,
+ * see application-batch.properties for a run without AWS.
+ *
+ * fraud.batch.input: comma separated NDJSON files (or directories, their files in name order)
+ * fraud.batch.output: result NDJSON file, fraud.batch.summary: summary JSON file
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.batch.input")
+public class BatchReplayRunner implements ApplicationRunner, ExitCodeGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(BatchReplayRunner.class);
+
+    @Autowired
+    private final BatchReplayer batchReplayer;
+    @Autowired
+    private final RuleEngine ruleEngine;
+    @Autowired
+    private final ObjectMapper objectMapper;
+
+    @Value("${fraud.batch.input}")
+    private String input;
+
+    @Value("${fraud.batch.output:}")
+    private String output;
+
+    @Value("${fraud.batch.summary:}")
+    private String summaryFile;
+
+    private int exitCode;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<Path> inputs = new ArrayList<>();
+        for (String name : input.split(",")) {
+            if (!name.isBlank()) {
+                inputs.addAll(files(Paths.get(name.trim())));
+            }
+        }
+        if (inputs.isEmpty()) {
+            logger.error("fraud.batch.input has no files: {}", input);
+            exitCode = 2;
+            return;
+        }
+        logger.info("batch replay of {} files, rules={}, mode={}", inputs.size(),
+                ruleEngine.getPlan().getRuleNames(), ruleEngine.getPlan().getMode());
+
+        BatchSummary summary = batchReplayer.replay(inputs, output.isBlank() ? null : Paths.get(output));
+
+        logger.info("batch replay done: {} transactions in {} ms ({}/s), {} fraudulent ({}%), {} parse errors, {} score errors",
+                summary.getTransactions(), summary.getElapsedMillis(), Math.round(summary.getTransactionsPerSecond()),
+                summary.getFraudulent(), percent(summary.getFraudRate()), summary.getParseErrors(), summary.getScoreErrors());
+        for (ReasonCode code : ReasonCode.values()) {
+            if (summary.getHits(code) > 0) {
+                logger.info("  {}: {} hits ({}%)", code, summary.getHits(code), percent(summary.hitRate(code)));
+            }
+        }
+        if (!summaryFile.isBlank()) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(Paths.get(summaryFile).toFile(), summary.toMap());
+        }
+        exitCode = summary.getScoreErrors() > 0 ? 1 : 0;
+    }
+
+    private static List<Path> files(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(path)) {
+            stream.filter(Files::isRegularFile).sorted().forEach(files::add);
+        }
+        return files;
+    }
+
+    private static String percent(double rate) {
+        return String.format("%.3f", rate * 100);
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
@@ -0,0 +1,302 @@
+package com.fraud.batch;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.service.FraudDetectionService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Scores NDJSON transaction files (one msg body per line, gzip when the file is) offline with the
+ * same {@link FraudDetectionService} as the SQS path.
+ *
+ * The calling thread streams and decodes the lines and hands chunks of fraud.batch.chunk.size
+ * transactions to fraud.batch.threads workers, partitioned by account: the transactions of one account
+ * are scored in file order by one worker, as a FIFO msg group would be. The batch profile sets
+ * fraud.rule.velocity.event.time=true, so velocity windows are built from the transaction times of the
+ * file as they were live, not from the replay time. Each worker queue holds fraud.batch.queue.chunks chunks and the reader waits when it is
+ * full, memory stays bounded whatever the input size.
+ *
+ * Results are written as NDJSON (gzip for *.gz), per account in input order, accounts interleaved.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.batch.input")
+public class BatchReplayer {
+    private static final Logger logger = LoggerFactory.getLogger(BatchReplayer.class);
+
+    // end of input marker of a worker queue
+    private static final List<Transaction> END = Collections.emptyList();
+    // parse errors logged with their line, the rest only counted
+    private static final int MAX_LOGGED_ERRORS = 10;
+
+    @Autowired
+    private final FraudDetectionService fraudDetectionService;
+    @Autowired
+    private final TransactionDecoder transactionDecoder;
+    @Autowired
+    private final ObjectMapper objectMapper;
+
+    // 0: one per CPU
+    @Value("${fraud.batch.threads:0}")
+    private int threads;
+
+    @Value("${fraud.batch.chunk.size:1000}")
+    private int chunkSize;
+
+    @Value("${fraud.batch.queue.chunks:4}")
+    private int queueChunks;
+
+    // only fraudulent results in the output
+    @Value("${fraud.batch.output.fraud.only:false}")
+    private boolean fraudOnly;
+
+    // render the reason text of fraudulent results
+    @Value("${fraud.batch.output.reasons:true}")
+    private boolean writeReasons;
+
+    /**
+     * Score the files in order
+     *
+     * @param output result file, null for the summary only
+     */
+    public BatchSummary replay(List<Path> inputs, Path output) throws IOException, InterruptedException {
+        int workerCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        BatchSummary summary = new BatchSummary();
+        AtomicReference<IOException> writeFailure = new AtomicReference<>();
+
+        try (OutputStream out = output != null ? open(output) : null) {
+            List<Worker> workers = new ArrayList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                Worker worker = new Worker(out, summary, writeFailure);
+                worker.thread = new Thread(worker, "batch-worker-" + i);
+                worker.thread.start();
+                workers.add(worker);
+            }
+            try {
+                for (Path input : inputs) {
+                    read(input, workers, summary);
+                }
+            } finally {
+                for (Worker worker : workers) {
+                    worker.flush();
+                    worker.queue.put(END);
+                }
+                for (Worker worker : workers) {
+                    worker.thread.join();
+                }
+            }
+        }
+        if (writeFailure.get() != null) {
+            throw writeFailure.get();
+        }
+        summary.setElapsedNanos(System.nanoTime() - start);
+        return summary;
+    }
+
+    private void read(Path input, List<Worker> workers, BatchSummary summary) throws IOException, InterruptedException {
+        long lines = 0;
+        long parseErrors = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(decompress(input), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Transaction transaction;
+                try {
+                    transaction = transactionDecoder.decode(line);
+                } catch (IOException | RuntimeException e) {
+                    if (++parseErrors <= MAX_LOGGED_ERRORS) {
+                        logger.warn("{}:{} skipped, not a transaction: {}", input, lines, e.getMessage());
+                    }
+                    continue;
+                }
+                workers.get(partition(transaction.getAccountId(), workers.size())).add(transaction);
+            }
+        } finally {
+            summary.addLines(lines, parseErrors);
+        }
+        logger.info("read {}: {} lines, {} parse errors", input, lines, parseErrors);
+    }
+
+    private static int partition(String accountId, int partitions) {
+        if (accountId == null) {
+            return 0;
+        }
+        int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions);
+    }
+
+    private static InputStream decompress(Path input) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(input), 1 << 16);
+        // gzip magic, whatever the file name
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(in, 1 << 16);
+        }
+        return in;
+    }
+
+    private static OutputStream open(Path output) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16);
+        return output.getFileName().toString().endsWith(".gz") ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+
+    /**
+     * Scores the chunks of its accounts, counts are worker local until the end
+     */
+    private final class Worker implements Runnable {
+        final BlockingQueue<List<Transaction>> queue = new ArrayBlockingQueue<>(queueChunks);
+        final OutputStream out;
+        final BatchSummary summary;
+        final AtomicReference<IOException> writeFailure;
+        Thread thread;
+
+        // filled by the reader thread only
+        List<Transaction> pending = new ArrayList<>(chunkSize);
+
+        long transactions;
+        long scoreErrors;
+        long fraudulent;
+        final long[] hits = new long[ReasonCode.values().length];
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+
+        Worker(OutputStream out, BatchSummary summary, AtomicReference<IOException> writeFailure) {
+            this.out = out;
+            this.summary = summary;
+            this.writeFailure = writeFailure;
+        }
+
+        void add(Transaction transaction) throws InterruptedException {
+            pending.add(transaction);
+            if (pending.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() throws InterruptedException {
+            if (!pending.isEmpty()) {
+                queue.put(pending);
+                pending = new ArrayList<>(chunkSize);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                List<Transaction> chunk;
+                while ((chunk = queue.take()) != END) {
+                    score(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                summary.merge(transactions, scoreErrors, fraudulent, hits);
+            }
+        }
+
+        private void score(List<Transaction> chunk) {
+            buffer.reset();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer)) {
+                // one result per line, no space between root values
+                generator.setRootValueSeparator(null);
+                for (Transaction transaction : chunk) {
+                    FraudResult result;
+                    try {
+                        result = fraudDetectionService.detectFraud(transaction);
+                    } catch (RuntimeException e) {
+                        scoreErrors++;
+                        logger.warn("scoring {} failed: {}", transaction.getTransactionId(), e.toString());
+                        continue;
+                    }
+                    transactions++;
+                    if (result.isFraudulent()) {
+                        fraudulent++;
+                        for (ReasonCode code : result.getReasonCodes()) {
+                            hits[code.ordinal()]++;
+                        }
+                    }
+                    if (out != null && (result.isFraudulent() || !fraudOnly)) {
+                        write(generator, transaction, result);
+                    }
+                }
+            } catch (IOException e) {
+                writeFailure.compareAndSet(null, e);
+                return;
+            }
+            if (out != null && buffer.size() > 0) {
+                synchronized (out) {
+                    try {
+                        buffer.writeTo(out);
+                    } catch (IOException e) {
+                        writeFailure.compareAndSet(null, e);
+                    }
+                }
+            }
+        }
+
+        private void write(JsonGenerator generator, Transaction transaction, FraudResult result) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("transactionId", transaction.getTransactionId());
+            generator.writeStringField("accountId", transaction.getAccountId());
+            generator.writeNumberField("amount", transaction.getAmount());
+            generator.writeNumberField("transactionTime", transaction.getTransactionTime());
+            generator.writeBooleanField("fraudulent", result.isFraudulent());
+            if (result.hasScore()) {
+                generator.writeNumberField("score", result.getScore());
+            }
+            if (result.isFraudulent()) {
+                generator.writeArrayFieldStart("reasonCodes");
+                for (ReasonCode code : result.getReasonCodes()) {
+                    generator.writeString(code.name());
+                }
+                generator.writeEndArray();
+                if (writeReasons) {
+                    generator.writeArrayFieldStart("reasons");
+                    for (String reason : result.getReasons()) {
+                        generator.writeString(reason);
+                    }
+                    generator.writeEndArray();
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.fraud.batch;
+
+import com.fraud.model.ReasonCode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts of one batch replay, merged from the workers
+ */
+public class BatchSummary {
+
+    private long lines;
+    private long transactions;
+    private long parseErrors;
+    private long scoreErrors;
+    private long fraudulent;
+    private final long[] hits = new long[ReasonCode.values().length];
+    private long elapsedNanos;
+
+    void addLines(long lines, long parseErrors) {
+        this.lines += lines;
+        this.parseErrors += parseErrors;
+    }
+
+    /**
+     * add the counts of one worker
+     */
+    synchronized void merge(long transactions, long scoreErrors, long fraudulent, long[] hits) {
+        this.transactions += transactions;
+        this.scoreErrors += scoreErrors;
+        this.fraudulent += fraudulent;
+        for (int i = 0; i < hits.length; i++) {
+            this.hits[i] += hits[i];
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public long getParseErrors() {
+        return parseErrors;
+    }
+
+    public long getScoreErrors() {
+        return scoreErrors;
+    }
+
+    public long getFraudulent() {
+        return fraudulent;
+    }
+
+    public long getHits(ReasonCode code) {
+        return hits[code.ordinal()];
+    }
+
+    /**
+     * @return share of the scored transactions the reason was found for
+     */
+    public double hitRate(ReasonCode code) {
+        return transactions == 0 ? 0 : (double) hits[code.ordinal()] / transactions;
+    }
+
+    public double getFraudRate() {
+        return transactions == 0 ? 0 : (double) fraudulent / transactions;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double getTransactionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : transactions * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * summary as written to fraud.batch.summary
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("lines", lines);
+        map.put("transactions", transactions);
+        map.put("parseErrors", parseErrors);
+        map.put("scoreErrors", scoreErrors);
+        map.put("fraudulent", fraudulent);
+        map.put("fraudRate", getFraudRate());
+        Map<String, Object> reasons = new LinkedHashMap<>();
+        for (ReasonCode code : ReasonCode.values()) {
+            Map<String, Object> reason = new LinkedHashMap<>();
+            reason.put("hits", getHits(code));
+            reason.put("hitRate", hitRate(code));
+            reasons.put(code.name(), reason);
+        }
+        map.put("reasons", reasons);
+        map.put("elapsedMillis", getElapsedMillis());
+        map.put("transactionsPerSecond", Math.round(getTransactionsPerSecond()));
+        return map;
+    }
+}
@@ -0,0 +1,30 @@
+package com.fraud.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Reads a timestamp into epoch millis, accepting everything the mapper accepts for a {@link Date}
+ * (epoch millis number, ISO-8601 / RFC-1123 text). null or empty gives 0.
+ */
+public class EpochMillisDeserializer extends StdDeserializer<Long> {
+
+    public EpochMillisDeserializer() {
+        super(Long.TYPE);
+    }
+
+    @Override
+    public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        Date date = ctxt.readValue(p, Date.class);
+        return date == null ? 0L : date.getTime();
+    }
+
+    @Override
+    public Long getNullValue(DeserializationContext ctxt) {
+        return 0L;
+    }
+}
@@ -0,0 +1,123 @@
+package com.fraud.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.model.Transaction;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+
+/**
+ * Streaming decoder for the transaction msg body, shared by all workers.
+ *
+ * Reads the tokens straight into a {@link Transaction}: no bean introspection, field names come from
+ * the factory's canonical symbol table (no String per field) and the time is kept as epoch millis.
+ * Anything outside the usual shape (numbers as text, nested values, bad dates, broken JSON) is handed
+ * to the application ObjectMapper, so results and errors are the same as
+ * {@code objectMapper.readValue(body, Transaction.class)}.
+ */
+@Component
+public class TransactionDecoder {
+
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+    // DateFormat is not thread safe, one clone of the mapper's format per worker
+    private final ThreadLocal<DateFormat> dateFormat;
+
+    public TransactionDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        DateFormat mapperFormat = objectMapper.getDeserializationConfig().getDateFormat();
+        this.dateFormat = ThreadLocal.withInitial(() -> (DateFormat) mapperFormat.clone());
+    }
+
+    public Transaction decode(String body) throws IOException {
+        Transaction transaction;
+        try {
+            transaction = decodeFast(body);
+        } catch (JsonProcessingException e) {
+            // let the mapper report it
+            transaction = null;
+        }
+        return transaction != null ? transaction : objectMapper.readValue(body, Transaction.class);
+    }
+
+    /**
+     * @return null when the body needs the full mapper
+     */
+    Transaction decodeFast(String body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            Transaction transaction = new Transaction();
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (name) {
+                    case "transactionId":
+                        if (!isText(token)) {
+                            return null;
+                        }
+                        transaction.setTransactionId(parser.getValueAsString());
+                        break;
+                    case "accountId":
+                        if (!isText(token)) {
+                            return null;
+                        }
+                        transaction.setAccountId(parser.getValueAsString());
+                        break;
+                    case "location":
+                        if (!isText(token)) {
+                            return null;
+                        }
+                        transaction.setLocation(parser.getValueAsString());
+                        break;
+                    case "merchantId":
+                        if (!isText(token)) {
+                            return null;
+                        }
+                        transaction.setMerchantId(parser.getValueAsString());
+                        break;
+                    case "amount":
+                        if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+                            transaction.setAmount(parser.getDoubleValue());
+                        } else if (token == JsonToken.VALUE_NULL) {
+                            transaction.setAmount(0);
+                        } else {
+                            return null;
+                        }
+                        break;
+                    case "transactionTime":
+                        if (token == JsonToken.VALUE_NUMBER_INT) {
+                            transaction.setTransactionTime(parser.getLongValue());
+                        } else if (token == JsonToken.VALUE_NULL) {
+                            transaction.setTransactionTime(0);
+                        } else if (token == JsonToken.VALUE_STRING && !parser.getText().trim().isEmpty()) {
+                            try {
+                                transaction.setTransactionTime(dateFormat.get().parse(parser.getText().trim()).getTime());
+                            } catch (ParseException e) {
+                                return null;
+                            }
+                        } else {
+                            return null;
+                        }
+                        break;
+                    default:
+                        // unknown property, ignored like @JsonIgnoreProperties(ignoreUnknown = true)
+                        parser.skipChildren();
+                }
+            }
+            return parser.currentToken() == JsonToken.END_OBJECT ? transaction : null;
+        }
+    }
+
+    private static boolean isText(JsonToken token) {
+        return token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NULL;
+    }
+}
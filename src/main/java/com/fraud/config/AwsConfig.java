@@ -1,15 +1,27 @@
 package com.fraud.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.function.Supplier;
+
 /**
  * AWS Client Bean Config
+ * With aws.client.lazy (default) the beans are {@link LazyClient} proxies, a client is built on its first call.
  */
 @Configuration
 public class AwsConfig {
@@ -17,26 +29,108 @@ public class AwsConfig {
     @Value("${aws.region}")
     private String awsRegion;
 
+    // e.g. http://localhost:8000 for DynamoDB Local
+    @Value("${aws.dynamodb.endpoint:}")
+    private String dynamoDbEndpoint;
+
+    // open connections per async client endpoint, each in-flight call holds one
+    @Value("${aws.http.async.max.concurrency:500}")
+    private int asyncMaxConcurrency;
+
+    // calls waiting for a free connection, more fail at once
+    @Value("${aws.http.async.max.pending.acquires:10000}")
+    private int asyncMaxPendingAcquires;
+
+    @Value("${aws.http.async.connection.timeout.ms:2000}")
+    private long asyncConnectionTimeoutMs;
+
+    @Value("${aws.http.async.acquire.timeout.ms:10000}")
+    private long asyncAcquireTimeoutMs;
+
+    // idle connections are kept this long for reuse
+    @Value("${aws.http.async.max.idle.ms:60000}")
+    private long asyncMaxIdleMs;
+
+    @Value("${aws.http.async.event.loop.threads:2}")
+    private int asyncEventLoopThreads;
+
+    // build the clients on first use instead of at startup
+    @Value("${aws.client.lazy:true}")
+    private boolean lazyClients;
+
     /**
      * Build SQS Client
      */
     @Bean
     public SqsClient sqsClient() {
-        return SqsClient.builder()
+        return client(SqsClient.class, () -> SqsClient.builder()
                 .region(Region.of(awsRegion))
                 .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+                .build());
+    }
+
+
+    /**
+     * Non-blocking HTTP client shared by the async SQS and SNS clients: one Netty event loop and one
+     * keep-alive connection pool, closed by Spring on shutdown (clients do not close a shared one)
+     */
+    @Bean
+    public SdkAsyncHttpClient awsAsyncHttpClient() {
+        return client(SdkAsyncHttpClient.class, () -> NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(asyncMaxConcurrency)
+                .maxPendingConnectionAcquires(asyncMaxPendingAcquires)
+                .connectionTimeout(Duration.ofMillis(asyncConnectionTimeoutMs))
+                .connectionAcquisitionTimeout(Duration.ofMillis(asyncAcquireTimeoutMs))
+                .connectionMaxIdleTime(Duration.ofMillis(asyncMaxIdleMs))
+                .useIdleConnectionReaper(true)
+                .tcpKeepAlive(true)
+                .eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(asyncEventLoopThreads))
+                .build());
     }
 
+    /**
+     * Build async SQS Client, used by aws.sqs.execution.mode=ASYNC
+     */
+    @Bean
+    public SqsAsyncClient sqsAsyncClient(SdkAsyncHttpClient awsAsyncHttpClient) {
+        return client(SqsAsyncClient.class, () -> SqsAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClient(awsAsyncHttpClient)
+                .build());
+    }
 
     /**
-     * Build SNS Client
+     * Build async SNS Client, used by the alert outbox
      */
     @Bean
-    public SnsClient snsClient() {
-        return SnsClient.builder()
+    public SnsAsyncClient snsAsyncClient(SdkAsyncHttpClient awsAsyncHttpClient) {
+        return client(SnsAsyncClient.class, () -> SnsAsyncClient.builder()
                 .region(Region.of(awsRegion))
                 .credentialsProvider(DefaultCredentialsProvider.create())
-                .build();
+                .httpClient(awsAsyncHttpClient)
+                .build());
+    }
+
+    /**
+     * Build DynamoDB Client, used to persist detection results, read risk profiles and share dedup state
+     */
+    @Bean
+    @ConditionalOnExpression("'${fraud.persistence.store:dynamodb}' == 'dynamodb' or '${fraud.profile.store:dynamodb}' == 'dynamodb'"
+            + " or '${fraud.dedup.shared.enabled:false}' == 'true'")
+    public DynamoDbClient dynamoDbClient() {
+        return client(DynamoDbClient.class, () -> {
+            DynamoDbClientBuilder builder = DynamoDbClient.builder()
+                    .region(Region.of(awsRegion))
+                    .credentialsProvider(DefaultCredentialsProvider.create());
+            if (!dynamoDbEndpoint.isBlank()) {
+                builder.endpointOverride(URI.create(dynamoDbEndpoint));
+            }
+            return builder.build();
+        });
+    }
+
+    private <T> T client(Class<T> type, Supplier<T> factory) {
+        return lazyClients ? LazyClient.of(type, factory) : factory.get();
     }
 }
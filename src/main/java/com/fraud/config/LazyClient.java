@@ -0,0 +1,79 @@
+package com.fraud.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+/**
+ * Proxy of a client interface that builds the client on its first call, used by {@link AwsConfig}.
+ *
+ * Building an AWS SDK client loads a few thousand classes and, for the async ones, starts a Netty event
+ * loop: seconds on a 500m CPU pod. Behind the proxy a client the config never calls (the sync SQS client
+ * in ASYNC mode, where receives, deletes, visibility extension and the queue depth all use the async one;
+ * DynamoDB with in-memory stores...) is never built, the others are built by their first
+ * call instead of during the context refresh. close() of a client not built yet does nothing.
+ */
+final class LazyClient<T> implements InvocationHandler {
+
+    private final Class<T> type;
+    private final Supplier<T> factory;
+    private volatile T target;
+
+    private LazyClient(Class<T> type, Supplier<T> factory) {
+        this.type = type;
+        this.factory = factory;
+    }
+
+    static <T> T of(Class<T> type, Supplier<T> factory) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new LazyClient<>(type, factory)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "toString":
+                if (method.getParameterCount() == 0) {
+                    return "lazy " + type.getSimpleName() + (target != null ? " (built)" : "");
+                }
+                break;
+            case "hashCode":
+                if (method.getParameterCount() == 0) {
+                    return System.identityHashCode(proxy);
+                }
+                break;
+            case "equals":
+                if (method.getParameterCount() == 1) {
+                    return proxy == args[0];
+                }
+                break;
+            case "close":
+                if (method.getParameterCount() == 0 && target == null) {
+                    return null;
+                }
+                break;
+            default:
+        }
+        try {
+            return method.invoke(target(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private T target() {
+        T client = target;
+        if (client == null) {
+            synchronized (this) {
+                client = target;
+                if (client == null) {
+                    client = factory.get();
+                    target = client;
+                }
+            }
+        }
+        return client;
+    }
+}
@@ -0,0 +1,13 @@
+package com.fraud.dedup;
+
+/**
+ * Outcome of claiming a transaction before it is processed
+ */
+public enum ClaimResult {
+    // first delivery, process it
+    CLAIMED,
+    // already processed, skip detection and alert
+    DUPLICATE,
+    // another delivery of it is being processed, leave this one in SQS
+    IN_PROGRESS
+}
@@ -0,0 +1,125 @@
+package com.fraud.dedup;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dedup table in DynamoDB (key: transactionId), one conditional write per claim.
+ *
+ * Item: transactionId, status (IN_PROGRESS / DONE), owner (the claiming pod), leaseUntil (epoch millis)
+ * and expiresAt (epoch seconds, the table TTL attribute). A claim creates the item, or takes over an IN_PROGRESS one whose
+ * lease ran out (the pod holding it died). The lease is the SQS visibility timeout, after it the msg is
+ * redelivered anyway.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.dedup.shared.enabled", havingValue = "true")
+public class DynamoDbDedupStore implements SharedDedupStore {
+
+    static final String IN_PROGRESS = "IN_PROGRESS";
+    static final String DONE = "DONE";
+
+    private static final String CLAIM_CONDITION =
+            "attribute_not_exists(transactionId) OR (#status = :inProgress AND leaseUntil < :now)";
+
+    // tells the leases of this pod from those another pod took over
+    private final String owner = UUID.randomUUID().toString();
+
+    @Autowired
+    private final DynamoDbClient dynamoDbClient;
+
+    @Value("${fraud.dedup.dynamodb.table:fraud-dedup}")
+    private String tableName;
+
+    // how long a processed ID is kept in the table
+    @Value("${fraud.dedup.dynamodb.ttl.hours:24}")
+    private long ttlHours;
+
+    @Value("${aws.sqs.visibility.timeout.seconds:30}")
+    private long leaseSeconds;
+
+    @Override
+    public ClaimResult claim(String transactionId) {
+        long now = System.currentTimeMillis();
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("transactionId", string(transactionId));
+        item.put("status", string(IN_PROGRESS));
+        item.put("owner", string(owner));
+        item.put("leaseUntil", number(now + TimeUnit.SECONDS.toMillis(leaseSeconds)));
+        item.put("expiresAt", number(TimeUnit.MILLISECONDS.toSeconds(now) + TimeUnit.HOURS.toSeconds(ttlHours)));
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":inProgress", string(IN_PROGRESS));
+        values.put(":now", number(now));
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression(CLAIM_CONDITION)
+                    .expressionAttributeNames(Collections.singletonMap("#status", "status"))
+                    .expressionAttributeValues(values)
+                    .returnValuesOnConditionCheckFailure(ReturnValuesOnConditionCheckFailure.ALL_OLD)
+                    .build());
+            return ClaimResult.CLAIMED;
+        } catch (ConditionalCheckFailedException e) {
+            AttributeValue status = e.hasItem() ? e.item().get("status") : null;
+            return status != null && IN_PROGRESS.equals(status.s()) ? ClaimResult.IN_PROGRESS : ClaimResult.DUPLICATE;
+        }
+    }
+
+    @Override
+    public void complete(String transactionId) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(key(transactionId))
+                .updateExpression("SET #status = :done")
+                .expressionAttributeNames(Collections.singletonMap("#status", "status"))
+                .expressionAttributeValues(Collections.singletonMap(":done", string(DONE)))
+                .build());
+    }
+
+    @Override
+    public void release(String transactionId) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":inProgress", string(IN_PROGRESS));
+        values.put(":owner", string(owner));
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(key(transactionId))
+                    .conditionExpression("#status = :inProgress AND #owner = :owner")
+                    .expressionAttributeNames(Map.of("#status", "status", "#owner", "owner"))
+                    .expressionAttributeValues(values)
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            // done already, or the lease expired and another pod has it now
+        }
+    }
+
+    private static Map<String, AttributeValue> key(String transactionId) {
+        return Collections.singletonMap("transactionId", string(transactionId));
+    }
+
+    private static AttributeValue string(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    private static AttributeValue number(long value) {
+        return AttributeValue.builder().n(Long.toString(value)).build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.fraud.dedup;
+
+/**
+ * Dedup state shared by all pods, so a msg redelivered to another pod is recognized too
+ */
+public interface SharedDedupStore {
+
+    /**
+     * Take the processing lease of the transaction
+     *
+     * @return CLAIMED when no pod holds a lease or has processed it
+     */
+    ClaimResult claim(String transactionId);
+
+    /**
+     * Mark the transaction processed, later claims get DUPLICATE
+     */
+    void complete(String transactionId);
+
+    /**
+     * Give the lease back after a failure, the next delivery processes it again
+     */
+    void release(String transactionId);
+}
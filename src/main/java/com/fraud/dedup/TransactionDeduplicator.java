@@ -0,0 +1,187 @@
+package com.fraud.dedup;
+
+import com.fraud.state.ExpiringIdSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Idempotency of the msg processing, keyed by transactionId.
+ *
+ * A msg redelivered by SQS (visibility timeout passed, failed delete) or replayed upstream is seen as
+ * DUPLICATE once its transaction was processed, and skipped before detection and alerting. Processed IDs
+ * are kept in an {@link ExpiringIdSet} for fraud.dedup.window.seconds at least, bounded by
+ * fraud.dedup.max.ids per generation. IDs being processed are IN_PROGRESS, a second delivery of them
+ * meanwhile is left in SQS: the first one may still fail.
+ *
+ * With fraud.dedup.shared.enabled a {@link SharedDedupStore} is asked too, so a redelivery on another pod
+ * is caught. Its errors never stop the processing, the msg is processed as new then.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransactionDeduplicator {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionDeduplicator.class);
+
+    @Autowired
+    private final ObjectProvider<SharedDedupStore> sharedStores;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${fraud.dedup.window.seconds:900}")
+    private long windowSeconds;
+
+    // processed IDs per generation, two generations are kept
+    @Value("${fraud.dedup.max.ids:500000}")
+    private int maxIds;
+
+    @Value("${fraud.dedup.stripes:64}")
+    private int stripes;
+
+    // current time, replaced in tests
+    LongSupplier clock = System::currentTimeMillis;
+
+    private SharedDedupStore sharedStore;
+    private ExpiringIdSet processed;
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    private Counter newCounter;
+    private Counter duplicateCounter;
+    private Counter inProgressCounter;
+    private Counter sharedErrorCounter;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("transaction dedup disabled");
+            return;
+        }
+        sharedStore = sharedStores.getIfAvailable();
+        processed = new ExpiringIdSet(windowSeconds * 1000, maxIds, stripes, clock.getAsLong());
+
+        // duplicate rate: checks{result=duplicate} / checks
+        newCounter = checks("new");
+        duplicateCounter = checks("duplicate");
+        inProgressCounter = checks("in_progress");
+        sharedErrorCounter = Counter.builder("fraud.dedup.shared.errors")
+                .description("shared dedup store calls failed, msg processed as new")
+                .register(meterRegistry);
+        Gauge.builder("fraud.dedup.ids", processed, ExpiringIdSet::size)
+                .description("processed transaction IDs remembered")
+                .register(meterRegistry);
+        Gauge.builder("fraud.dedup.in.progress", inProgress, Set::size).register(meterRegistry);
+        logger.info("transaction dedup: window={}s, max-ids={}, memory={} KB, shared={}", windowSeconds, maxIds,
+                processed.memoryBytes() / 1024, sharedStore != null ? sharedStore.getClass().getSimpleName() : "none");
+    }
+
+    private Counter checks(String result) {
+        return Counter.builder("fraud.dedup.checks")
+                .description("transactions checked before detection")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claim the transaction before detection. CLAIMED must be followed by complete() or release().
+     * A null ID is never deduplicated.
+     */
+    public ClaimResult tryClaim(String transactionId) {
+        if (processed == null || transactionId == null) {
+            return ClaimResult.CLAIMED;
+        }
+        if (processed.contains(transactionId)) {
+            duplicateCounter.increment();
+            return ClaimResult.DUPLICATE;
+        }
+        if (!inProgress.add(transactionId)) {
+            inProgressCounter.increment();
+            return ClaimResult.IN_PROGRESS;
+        }
+        // completed between the two checks
+        if (processed.contains(transactionId)) {
+            inProgress.remove(transactionId);
+            duplicateCounter.increment();
+            return ClaimResult.DUPLICATE;
+        }
+        if (sharedStore != null) {
+            ClaimResult shared = claimShared(transactionId);
+            if (shared != ClaimResult.CLAIMED) {
+                if (shared == ClaimResult.DUPLICATE) {
+                    processed.add(transactionId, clock.getAsLong());
+                }
+                inProgress.remove(transactionId);
+                (shared == ClaimResult.DUPLICATE ? duplicateCounter : inProgressCounter).increment();
+                return shared;
+            }
+        }
+        newCounter.increment();
+        return ClaimResult.CLAIMED;
+    }
+
+    private ClaimResult claimShared(String transactionId) {
+        try {
+            return sharedStore.claim(transactionId);
+        } catch (RuntimeException e) {
+            sharedErrorCounter.increment();
+            logger.warn("shared dedup claim failed for {}, processed as new: {}", transactionId, e.toString());
+            return ClaimResult.CLAIMED;
+        }
+    }
+
+    /**
+     * The transaction is processed, later deliveries are DUPLICATE
+     */
+    public void complete(String transactionId) {
+        if (processed == null || transactionId == null) {
+            return;
+        }
+        // remembered before the claim is dropped, a concurrent claim sees one of them
+        processed.add(transactionId, clock.getAsLong());
+        inProgress.remove(transactionId);
+        if (sharedStore != null) {
+            try {
+                sharedStore.complete(transactionId);
+            } catch (RuntimeException e) {
+                sharedErrorCounter.increment();
+                logger.warn("shared dedup complete failed for {}: {}", transactionId, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Processing failed, the next delivery processes the transaction again
+     */
+    public void release(String transactionId) {
+        if (processed == null || transactionId == null) {
+            return;
+        }
+        inProgress.remove(transactionId);
+        if (sharedStore != null) {
+            try {
+                sharedStore.release(transactionId);
+            } catch (RuntimeException e) {
+                // the lease runs out with the visibility timeout
+                sharedErrorCounter.increment();
+                logger.warn("shared dedup release failed for {}: {}", transactionId, e.toString());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return processed != null;
+    }
+}
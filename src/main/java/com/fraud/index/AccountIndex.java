@@ -0,0 +1,188 @@
+package com.fraud.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable, compact set of account IDs for millions of entries.
+ *
+ * IDs are stored back to back as Latin-1 bytes in one pool and found through an open-addressing
+ * table (linear probing) of entry numbers plus their hash, so there is no String or node object per
+ * entry. {@link #contains} does not allocate. IDs with chars outside Latin-1 (not expected for
+ * account IDs) go to a small regular set.
+ */
+public final class AccountIndex {
+
+    public static final AccountIndex EMPTY = new Builder(0).build();
+
+    private final byte[] pool;        // all IDs, Latin-1
+    private final int[] offsets;      // entry i is pool[offsets[i], offsets[i + 1])
+    private final int[] slots;        // open addressing: entry number + 1, 0 = empty
+    private final int[] slotHashes;   // hash of the entry in the same slot
+    private final int mask;
+    private final int size;
+    private final Set<String> others;
+
+    private AccountIndex(byte[] pool, int[] offsets, int[] slots, int[] slotHashes, int size, Set<String> others) {
+        this.pool = pool;
+        this.offsets = offsets;
+        this.slots = slots;
+        this.slotHashes = slotHashes;
+        this.mask = slots.length - 1;
+        this.size = size;
+        this.others = others;
+    }
+
+    public boolean contains(String accountId) {
+        if (accountId == null) {
+            return false;
+        }
+        int hash = spread(accountId.hashCode());
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (slotHashes[slot] == hash && equalsEntry(entry - 1, accountId)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return !others.isEmpty() && others.contains(accountId);
+    }
+
+    public int size() {
+        return size + others.size();
+    }
+
+    /**
+     * approximate heap used by this index
+     */
+    public long memoryBytes() {
+        return 16L + pool.length + 4L * offsets.length + 4L * slots.length + 4L * slotHashes.length
+                + 64L * others.size();
+    }
+
+    private boolean equalsEntry(int entry, String accountId) {
+        int start = offsets[entry];
+        int length = offsets[entry + 1] - start;
+        if (length != accountId.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((pool[start + i] & 0xff) != accountId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        // murmur3 fmix32, String.hashCode alone clusters badly for IDs sharing a prefix
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Collects IDs one by one (e.g. line by line from a file) without keeping the Strings
+     */
+    public static final class Builder {
+        private byte[] pool;
+        private int[] offsets;
+        private int[] hashes;
+        private int count;
+        private int poolSize;
+        private final Set<String> others = new HashSet<>();
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            this.pool = new byte[capacity * 12];
+            this.offsets = new int[capacity + 1];
+            this.hashes = new int[capacity];
+        }
+
+        /**
+         * add one ID, blank IDs are ignored
+         */
+        public Builder add(String accountId) {
+            if (accountId == null || accountId.isEmpty()) {
+                return this;
+            }
+            int length = accountId.length();
+            for (int i = 0; i < length; i++) {
+                if (accountId.charAt(i) > 0xff) {
+                    others.add(accountId);
+                    return this;
+                }
+            }
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2 + 1);
+            }
+            if (poolSize + length > pool.length) {
+                pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+            }
+            for (int i = 0; i < length; i++) {
+                pool[poolSize + i] = (byte) accountId.charAt(i);
+            }
+            hashes[count] = spread(accountId.hashCode());
+            offsets[count] = poolSize;
+            poolSize += length;
+            count++;
+            offsets[count] = poolSize;
+            return this;
+        }
+
+        public AccountIndex build() {
+            // load factor <= 0.5 keeps probe sequences short
+            int tableSize = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+            int mask = tableSize - 1;
+            int[] slots = new int[tableSize];
+            int[] slotHashes = new int[tableSize];
+            byte[] compactPool = new byte[poolSize];
+            int[] compactOffsets = new int[count + 1];
+            int unique = 0;
+            int compactSize = 0;
+            for (int entry = 0; entry < count; entry++) {
+                int hash = hashes[entry];
+                int slot = hash & mask;
+                boolean duplicate = false;
+                while (slots[slot] != 0) {
+                    if (slotHashes[slot] == hash && sameBytes(compactPool, compactOffsets, slots[slot] - 1, entry)) {
+                        duplicate = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (duplicate) {
+                    continue;
+                }
+                int start = offsets[entry];
+                int length = offsets[entry + 1] - start;
+                System.arraycopy(pool, start, compactPool, compactSize, length);
+                compactOffsets[unique] = compactSize;
+                compactSize += length;
+                compactOffsets[unique + 1] = compactSize;
+                slots[slot] = unique + 1;
+                slotHashes[slot] = hash;
+                unique++;
+            }
+            return new AccountIndex(Arrays.copyOf(compactPool, compactSize), Arrays.copyOf(compactOffsets, unique + 1),
+                    slots, slotHashes, unique, others.isEmpty() ? Collections.emptySet() : Set.copyOf(others));
+        }
+
+        private boolean sameBytes(byte[] compactPool, int[] compactOffsets, int kept, int entry) {
+            int keptStart = compactOffsets[kept];
+            int keptLength = compactOffsets[kept + 1] - keptStart;
+            int start = offsets[entry];
+            if (offsets[entry + 1] - start != keptLength) {
+                return false;
+            }
+            return Arrays.equals(compactPool, keptStart, keptStart + keptLength, pool, start, start + keptLength);
+        }
+    }
+}
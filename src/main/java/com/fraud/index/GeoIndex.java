@@ -0,0 +1,241 @@
+package com.fraud.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable index of location names to coordinates, for the impossible travel rule.
+ *
+ * A location is kept as a 32-bit geohash cell (16 bits latitude, 16 bits longitude, interleaved, about
+ * 300 x 600 m at the equator), the entries are sorted by cell so near locations sit next to each other.
+ * Names are found through an open-addressing table (linear probing), ignoring case and surrounding
+ * spaces. {@link #cellOf} and {@link #distanceKm} do not allocate.
+ *
+ * File format: one "name,latitude,longitude" per line (decimal degrees), '#' for comments; the last two
+ * commas split the line, so the name may hold commas ("Portland, OR").
+ */
+public final class GeoIndex {
+
+    public static final long UNKNOWN = -1L;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final int AXIS_CELLS = 1 << 16;
+
+    private final String[] names;     // lower case, in cell order
+    private final int[] cells;        // sorted, unsigned
+    private final int[] slots;        // open addressing: entry number + 1, 0 = empty
+    private final int[] slotHashes;
+    private final int mask;
+
+    private GeoIndex(String[] names, int[] cells, int[] slots, int[] slotHashes) {
+        this.names = names;
+        this.cells = cells;
+        this.slots = slots;
+        this.slotHashes = slotHashes;
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * @return geohash cell of the location (unsigned, 0..2^32-1), {@link #UNKNOWN} if not in the index
+     */
+    public long cellOf(String location) {
+        if (location == null) {
+            return UNKNOWN;
+        }
+        int start = 0;
+        int end = location.length();
+        while (start < end && location.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && location.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return UNKNOWN;
+        }
+        int hash = hash(location, start, end);
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            String name = names[entry - 1];
+            if (slotHashes[slot] == hash && name.length() == end - start
+                    && name.regionMatches(true, 0, location, start, end - start)) {
+                return Integer.toUnsignedLong(cells[entry - 1]);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return UNKNOWN;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * approximate heap used by this index
+     */
+    public long memoryBytes() {
+        long bytes = 16L + 4L * cells.length + 8L * slots.length;
+        for (String name : names) {
+            bytes += 48 + name.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Great circle (haversine) distance between the centers of two cells
+     */
+    public static double distanceKm(long cellA, long cellB) {
+        double lat1 = Math.toRadians(latitude(cellA));
+        double lat2 = Math.toRadians(latitude(cellB));
+        double halfDLat = (lat2 - lat1) / 2;
+        double halfDLon = Math.toRadians(longitude(cellB) - longitude(cellA)) / 2;
+        double sinLat = Math.sin(halfDLat);
+        double sinLon = Math.sin(halfDLon);
+        double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * @return geohash cell of the coordinates, longitude bits on the even positions as in a geohash
+     */
+    public static long cell(double latitude, double longitude) {
+        int lat = quantize(latitude, -90, 180);
+        int lon = quantize(longitude, -180, 360);
+        return Integer.toUnsignedLong(interleave(lon) << 1 | interleave(lat));
+    }
+
+    /**
+     * latitude of the cell center
+     */
+    public static double latitude(long cell) {
+        return center(compact((int) cell), -90, 180);
+    }
+
+    /**
+     * longitude of the cell center
+     */
+    public static double longitude(long cell) {
+        return center(compact((int) (cell >>> 1)), -180, 360);
+    }
+
+    private static int quantize(double degrees, double min, double range) {
+        int q = (int) Math.floor((degrees - min) / range * AXIS_CELLS);
+        return Math.max(0, Math.min(AXIS_CELLS - 1, q));
+    }
+
+    private static double center(int q, double min, double range) {
+        return min + (q + 0.5) * range / AXIS_CELLS;
+    }
+
+    // 16 bits to the even positions of 32
+    private static int interleave(int v) {
+        v &= 0xffff;
+        v = (v | (v << 8)) & 0x00ff00ff;
+        v = (v | (v << 4)) & 0x0f0f0f0f;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+    }
+
+    // even positions of 32 bits back to 16
+    private static int compact(int v) {
+        v &= 0x55555555;
+        v = (v | (v >>> 1)) & 0x33333333;
+        v = (v | (v >>> 2)) & 0x0f0f0f0f;
+        v = (v | (v >>> 4)) & 0x00ff00ff;
+        v = (v | (v >>> 8)) & 0x0000ffff;
+        return v;
+    }
+
+    /**
+     * case insensitive String hash of location[start, end), murmur3 fmix32 on top
+     */
+    private static int hash(String location, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(location.charAt(i));
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    public static GeoIndex load(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int lonComma = line.lastIndexOf(',');
+            int latComma = lonComma > 0 ? line.lastIndexOf(',', lonComma - 1) : -1;
+            if (latComma <= 0) {
+                throw new IOException("line " + lineNumber + ": expected name,latitude,longitude");
+            }
+            double latitude;
+            double longitude;
+            try {
+                latitude = Double.parseDouble(line.substring(latComma + 1, lonComma).trim());
+                longitude = Double.parseDouble(line.substring(lonComma + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("line " + lineNumber + ": " + e.getMessage());
+            }
+            if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                throw new IOException("line " + lineNumber + ": coordinates out of range");
+            }
+            builder.add(line.substring(0, latComma), latitude, longitude);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects locations, a later entry with the same name replaces the earlier one
+     */
+    public static final class Builder {
+        private final Map<String, Long> locations = new HashMap<>();
+
+        public Builder add(String name, double latitude, double longitude) {
+            String key = name.trim().toLowerCase(Locale.ROOT);
+            if (!key.isEmpty()) {
+                locations.put(key, cell(latitude, longitude));
+            }
+            return this;
+        }
+
+        public GeoIndex build() {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(locations.entrySet());
+            entries.sort(Map.Entry.<String, Long>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+            int count = entries.size();
+            String[] names = new String[count];
+            int[] cells = new int[count];
+            int tableSize = Integer.highestOneBit(Math.max(2, count) * 2 - 1) << 1;
+            int[] slots = new int[tableSize];
+            int[] slotHashes = new int[tableSize];
+            int mask = tableSize - 1;
+            for (int entry = 0; entry < count; entry++) {
+                names[entry] = entries.get(entry).getKey();
+                cells[entry] = (int) (long) entries.get(entry).getValue();
+                int hash = hash(names[entry], 0, names[entry].length());
+                int slot = hash & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry + 1;
+                slotHashes[slot] = hash;
+            }
+            return new GeoIndex(names, cells, slots, slotHashes);
+        }
+    }
+}
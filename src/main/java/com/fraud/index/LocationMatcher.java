@@ -0,0 +1,188 @@
+package com.fraud.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Multi-pattern substring matcher (Aho-Corasick automaton), built once from the high risk regions.
+ *
+ * The trie and failure links are compiled into a dense transition table over the chars that occur
+ * in the patterns, so one left-to-right pass over the location finds every region contained in it,
+ * whatever the number of patterns. {@link #firstMatch} does not allocate. Matching is case
+ * sensitive, same as String.contains.
+ */
+public final class LocationMatcher {
+
+    public static final LocationMatcher EMPTY = compile(Collections.emptyList());
+
+    private final String[] patterns;
+    private final char[] charClass;   // char -> column in the table, 0 = char not in any pattern
+    private final int alphabetSize;
+    private final int[] transitions;  // state * alphabetSize + column -> next state
+    private final int[] output;       // a pattern ending at the state (itself or a suffix), -1 none
+    private final int[] directOutput; // pattern spelled exactly by the state, -1 none
+    private final int[] nextOutput;   // next state on the suffix chain that has a direct output, -1 none
+
+    private LocationMatcher(String[] patterns, char[] charClass, int alphabetSize, int[] transitions,
+                            int[] output, int[] directOutput, int[] nextOutput) {
+        this.patterns = patterns;
+        this.charClass = charClass;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.output = output;
+        this.directOutput = directOutput;
+        this.nextOutput = nextOutput;
+    }
+
+    /**
+     * @param regions patterns, blank and duplicate entries are ignored
+     */
+    public static LocationMatcher compile(Collection<String> regions) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String region : regions) {
+            if (region != null && !region.isEmpty()) {
+                unique.add(region);
+            }
+        }
+        String[] patterns = unique.toArray(new String[0]);
+
+        // columns only for chars used by patterns
+        char maxChar = 0;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                maxChar = (char) Math.max(maxChar, pattern.charAt(i));
+            }
+        }
+        char[] charClass = new char[maxChar + 1];
+        int alphabetSize = 1;
+        for (String pattern : patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (charClass[c] == 0) {
+                    charClass[c] = (char) alphabetSize++;
+                }
+            }
+        }
+
+        // trie, -1 = no edge yet
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+        }
+        int[] transitions = new int[maxStates * alphabetSize];
+        Arrays.fill(transitions, -1);
+        int[] direct = new int[maxStates];
+        Arrays.fill(direct, -1);
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            int state = 0;
+            for (int i = 0; i < patterns[p].length(); i++) {
+                int index = state * alphabetSize + charClass[patterns[p].charAt(i)];
+                if (transitions[index] < 0) {
+                    transitions[index] = states++;
+                }
+                state = transitions[index];
+            }
+            if (direct[state] < 0) {
+                direct[state] = p;
+            }
+        }
+
+        // BFS: failure links, then fill missing edges so matching never follows links at runtime
+        int[] fail = new int[states];
+        int[] output = new int[states];
+        int[] nextOutput = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        output[0] = -1;
+        nextOutput[0] = -1;
+        for (int c = 0; c < alphabetSize; c++) {
+            int next = transitions[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int suffix = fail[state];
+            nextOutput[state] = direct[suffix] >= 0 ? suffix : nextOutput[suffix];
+            output[state] = direct[state] >= 0 ? direct[state] : output[suffix];
+            for (int c = 0; c < alphabetSize; c++) {
+                int index = state * alphabetSize + c;
+                int next = transitions[index];
+                if (next < 0) {
+                    transitions[index] = transitions[suffix * alphabetSize + c];
+                } else {
+                    fail[next] = transitions[suffix * alphabetSize + c];
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return new LocationMatcher(patterns, charClass, alphabetSize, Arrays.copyOf(transitions, states * alphabetSize),
+                output, Arrays.copyOf(direct, states), nextOutput);
+    }
+
+    /**
+     * @return index of the region ending first in the location, -1 when none matches
+     */
+    public int firstMatch(CharSequence location) {
+        if (location == null || patterns.length == 0) {
+            return -1;
+        }
+        int state = 0;
+        for (int i = 0, length = location.length(); i < length; i++) {
+            state = transitions[state * alphabetSize + classOf(location.charAt(i))];
+            int match = output[state];
+            if (match >= 0) {
+                return match;
+            }
+        }
+        return -1;
+    }
+
+    public boolean matches(CharSequence location) {
+        return firstMatch(location) >= 0;
+    }
+
+    /**
+     * every region contained in the location, in order of their end position
+     */
+    public List<String> allMatches(CharSequence location) {
+        List<String> found = new ArrayList<>();
+        if (location == null) {
+            return found;
+        }
+        int state = 0;
+        for (int i = 0, length = location.length(); i < length; i++) {
+            state = transitions[state * alphabetSize + classOf(location.charAt(i))];
+            for (int s = state; s >= 0; s = nextOutput[s]) {
+                int direct = directOutput[s];
+                if (direct >= 0 && !found.contains(patterns[direct])) {
+                    found.add(patterns[direct]);
+                }
+            }
+        }
+        return found;
+    }
+
+    public String pattern(int index) {
+        return patterns[index];
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+
+    private int classOf(char c) {
+        return c < charClass.length ? charClass[c] : 0;
+    }
+}
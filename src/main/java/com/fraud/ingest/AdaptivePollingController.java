@@ -0,0 +1,200 @@
+package com.fraud.ingest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales the active pollers and the receive batch size of {@link SqsIngestionEngine} at runtime.
+ *
+ * Every aws.sqs.adaptive.interval.ms it reads ApproximateNumberOfMessages of the queue and what the
+ * engine did since the last look:
+ * - backlog above aws.sqs.adaptive.backlog.per.poller per active poller, or receives coming back full
+ *   (fill ratio >= scale.up.fill.ratio), add pollers, jumping straight to depth / backlog.per.poller
+ * - queue empty and receives mostly empty (fill ratio < scale.down.fill.ratio), remove one poller, down
+ *   to aws.sqs.pollers.min, so an idle pod keeps a single long poll open
+ * - no pollers are added while in-flight msg are above aws.sqs.adaptive.max.inflight.ratio, the workers
+ *   are the limit then and extra pollers only wait for permits
+ * - batch size is cut when one batch, processed in order, would take more than a quarter of the
+ *   visibility timeout at the observed processing latency
+ * In aws.sqs.execution.mode=ASYNC the depth is read with the async client, the sync one is not built.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdaptivePollingController {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptivePollingController.class);
+    private static final long DEPTH_TIMEOUT_SECONDS = 10;
+
+    @Autowired
+    private final SqsIngestionEngine ingestionEngine;
+    @Autowired
+    private final SqsClient sqsClient;
+    @Autowired
+    private final SqsAsyncClient sqsAsyncClient;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aws.sqs.queue.url}")
+    private String sqsQueueUrl;
+
+    @Value("${aws.sqs.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+
+    @Value("${aws.sqs.adaptive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${aws.sqs.pollers.min:1}")
+    private int minPollers;
+
+    @Value("${aws.sqs.adaptive.backlog.per.poller:100}")
+    private long backlogPerPoller;
+
+    @Value("${aws.sqs.adaptive.scale.up.fill.ratio:0.8}")
+    private double scaleUpFillRatio;
+
+    @Value("${aws.sqs.adaptive.scale.down.fill.ratio:0.2}")
+    private double scaleDownFillRatio;
+
+    @Value("${aws.sqs.adaptive.max.inflight.ratio:0.9}")
+    private double maxInFlightRatio;
+
+    // totals of the engine at the last adjustment
+    private long lastCalls;
+    private long lastRequested;
+    private long lastReceived;
+    private long lastProcessed;
+    private long lastProcessNanos;
+
+    // state of the last adjustment, for metrics and health
+    private volatile long queueDepth = -1;
+    private volatile double fillRatio = Double.NaN;
+    private volatile double processMillis = Double.NaN;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("fraud.sqs.queue.depth", this, AdaptivePollingController::getQueueDepth)
+                .description("ApproximateNumberOfMessages at the last adjustment, -1 when unknown")
+                .register(meterRegistry);
+        Gauge.builder("fraud.sqs.receive.fill.ratio", this, AdaptivePollingController::getFillRatio)
+                .description("msg received / msg asked for since the last adjustment")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${aws.sqs.adaptive.interval.ms:5000}")
+    public void adjust() {
+        if (!enabled || !ingestionEngine.isRunning()) {
+            return;
+        }
+        long depth = readQueueDepth();
+        long calls = ingestionEngine.getReceiveCalls();
+        long requested = ingestionEngine.getRequestedMessages();
+        long received = ingestionEngine.getReceivedMessages();
+        long processed = ingestionEngine.getProcessedMessages();
+        long nanos = ingestionEngine.getProcessNanos();
+        // no receive since last time: every poller waits for permits, nothing to learn about the queue
+        double fill = calls > lastCalls && requested > lastRequested
+                ? (double) (received - lastReceived) / (requested - lastRequested)
+                : Double.NaN;
+        double millis = processed > lastProcessed
+                ? (nanos - lastProcessNanos) / 1_000_000.0 / (processed - lastProcessed)
+                : Double.NaN;
+        lastCalls = calls;
+        lastRequested = requested;
+        lastReceived = received;
+        lastProcessed = processed;
+        lastProcessNanos = nanos;
+        queueDepth = depth;
+        fillRatio = fill;
+        processMillis = millis;
+
+        int pollers = ingestionEngine.getActivePollers();
+        int targetPollers = targetPollers(pollers, depth, fill);
+        int batchSize = ingestionEngine.getReceiveBatchSize();
+        int targetBatchSize = targetBatchSize(millis);
+        if (targetPollers != pollers || targetBatchSize != batchSize) {
+            ingestionEngine.setActivePollers(targetPollers);
+            ingestionEngine.setReceiveBatchSize(targetBatchSize);
+            logger.info("adaptive polling: pollers {} -> {}, batch {} -> {}, depth={}, fill={}, process={}ms",
+                    pollers, ingestionEngine.getActivePollers(), batchSize, ingestionEngine.getReceiveBatchSize(),
+                    depth, String.format("%.2f", fill), String.format("%.2f", millis));
+        }
+    }
+
+    int targetPollers(int pollers, long depth, double fill) {
+        int max = ingestionEngine.getMaxPollers();
+        int min = Math.max(1, Math.min(minPollers, max));
+        double inFlightRatio = (double) ingestionEngine.getInFlightCount() / Math.max(1, ingestionEngine.getMaxInFlight());
+        boolean backlog = depth > (long) pollers * backlogPerPoller;
+        if (inFlightRatio < maxInFlightRatio && (backlog || fill >= scaleUpFillRatio)) {
+            long wanted = backlog ? (depth + backlogPerPoller - 1) / backlogPerPoller : pollers + 1;
+            return (int) Math.max(min, Math.min(max, Math.max(pollers + 1, wanted)));
+        }
+        // NaN (no receive) keeps the pollers
+        if (depth == 0 && fill < scaleDownFillRatio) {
+            return Math.max(min, pollers - 1);
+        }
+        return Math.max(min, Math.min(max, pollers));
+    }
+
+    int targetBatchSize(double processMillis) {
+        int max = ingestionEngine.getMaxReceiveBatchSize();
+        if (Double.isNaN(processMillis) || processMillis <= 0) {
+            return max;
+        }
+        double budgetMillis = ingestionEngine.getVisibilityTimeoutSeconds() * 1000.0 / 4;
+        return (int) Math.max(1, Math.min(max, budgetMillis / processMillis));
+    }
+
+    /**
+     * @return ApproximateNumberOfMessages, -1 when it can not be read
+     */
+    private long readQueueDepth() {
+        GetQueueAttributesRequest request = GetQueueAttributesRequest.builder()
+                .queueUrl(sqsQueueUrl)
+                .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+                .build();
+        try {
+            GetQueueAttributesResponse response = executionMode == ExecutionMode.ASYNC
+                    ? sqsAsyncClient.getQueueAttributes(request).get(DEPTH_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    : sqsClient.getQueueAttributes(request);
+            String depth = response.attributes().get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES);
+            return depth != null ? Long.parseLong(depth) : -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            logger.warn("Read SQS queue depth failed: {}", e.toString());
+            return -1;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public double getFillRatio() {
+        return fillRatio;
+    }
+
+    public double getProcessMillis() {
+        return processMillis;
+    }
+}
@@ -0,0 +1,21 @@
+package com.fraud.ingest;
+
+/**
+ * How {@link SqsIngestionEngine} runs the msg pipeline, aws.sqs.execution.mode
+ */
+public enum ExecutionMode {
+    /**
+     * fixed pool of aws.sqs.workers platform threads
+     */
+    PLATFORM,
+    /**
+     * a new virtual thread per msg (per run of one FIFO group), at most aws.sqs.virtual.max.concurrency
+     * at a time, needs Java 21
+     */
+    VIRTUAL,
+    /**
+     * no poller or worker threads: receives and deletes are async SDK calls, msg are processed on
+     * aws.sqs.async.stage.threads threads when their batch arrives
+     */
+    ASYNC
+}
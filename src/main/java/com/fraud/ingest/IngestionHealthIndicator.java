@@ -0,0 +1,42 @@
+package com.fraud.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * "ingestion" component of /actuator/health: polling state and backlog of this pod.
+ * Not part of the liveness/readiness groups, a stopped engine reports OUT_OF_SERVICE only here.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private final SqsIngestionEngine ingestionEngine;
+    @Autowired
+    private final AdaptivePollingController pollingController;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = ingestionEngine.isRunning() || !ingestionEngine.isAutoStartup()
+                ? Health.up()
+                : Health.outOfService();
+        return builder
+                .withDetail("mode", String.valueOf(ingestionEngine.getExecutionMode()))
+                .withDetail("running", ingestionEngine.isRunning())
+                .withDetail("adaptive", pollingController.isEnabled())
+                .withDetail("activePollers", ingestionEngine.getActivePollers())
+                .withDetail("maxPollers", ingestionEngine.getMaxPollers())
+                .withDetail("receiveBatchSize", ingestionEngine.getReceiveBatchSize())
+                .withDetail("queueDepth", pollingController.getQueueDepth())
+                .withDetail("fillRatio", pollingController.getFillRatio())
+                .withDetail("processMillis", pollingController.getProcessMillis())
+                .withDetail("inFlight", ingestionEngine.getInFlightCount())
+                .withDetail("maxInFlight", ingestionEngine.getMaxInFlight())
+                .withDetail("expired", ingestionEngine.getExpiredMessageCount())
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package com.fraud.ingest;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the ingestion engine and the acknowledger. They read the counters the two already keep
+ * when scraped, nothing is recorded on the msg path.
+ */
+@Component
+@RequiredArgsConstructor
+public class IngestionMetrics {
+
+    @Autowired
+    private final SqsIngestionEngine ingestionEngine;
+    @Autowired
+    private final SqsAcknowledger sqsAcknowledger;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("fraud.sqs.inflight", ingestionEngine, SqsIngestionEngine::getInFlightCount)
+                .description("msg received and not finished yet")
+                .register(meterRegistry);
+        // scaling signal: share of aws.sqs.max.inflight in use
+        Gauge.builder("fraud.sqs.inflight.ratio", ingestionEngine,
+                        engine -> (double) engine.getInFlightCount() / Math.max(1, engine.getMaxInFlight()))
+                .register(meterRegistry);
+        Gauge.builder("fraud.sqs.pollers.active", ingestionEngine, SqsIngestionEngine::getActivePollers)
+                .register(meterRegistry);
+        Gauge.builder("fraud.sqs.receive.batch.target", ingestionEngine, SqsIngestionEngine::getReceiveBatchSize)
+                .description("msg asked for by one receive")
+                .register(meterRegistry);
+        FunctionCounter.builder("fraud.sqs.expired", ingestionEngine, SqsIngestionEngine::getExpiredMessageCount)
+                .description("msg that waited longer than the visibility timeout")
+                .register(meterRegistry);
+
+        FunctionTimer.builder("fraud.sqs.delete", sqsAcknowledger,
+                        SqsAcknowledger::getDeleteCalls, SqsAcknowledger::getDeleteNanos, TimeUnit.NANOSECONDS)
+                .description("DeleteMessageBatch calls")
+                .register(meterRegistry);
+        FunctionCounter.builder("fraud.sqs.deleted", sqsAcknowledger, SqsAcknowledger::getDeletedCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("fraud.sqs.delete.failed", sqsAcknowledger, SqsAcknowledger::getDeleteFailedCount)
+                .description("msg not deleted, they are redelivered")
+                .register(meterRegistry);
+        Gauge.builder("fraud.sqs.delete.pending", sqsAcknowledger, SqsAcknowledger::getPendingDeleteCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("fraud.sqs.visibility.extended", sqsAcknowledger, SqsAcknowledger::getExtendedCount)
+                .register(meterRegistry);
+    }
+}
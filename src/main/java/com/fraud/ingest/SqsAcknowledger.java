@@ -0,0 +1,407 @@
+package com.fraud.ingest;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acknowledgement stage for SQS msg.
+ *
+ * Deletes are collected and sent with DeleteMessageBatch, a batch is flushed when it has 10 entries
+ * or the oldest entry waited aws.sqs.delete.batch.max.wait.ms. Entries failing inside a batch are
+ * retried on their own, the rest of the batch is not resent.
+ * Msg still being processed get their visibility extended with ChangeMessageVisibilityBatch so they
+ * are not redelivered while a worker holds them.
+ * In aws.sqs.execution.mode=ASYNC batches are sent with the async client, up to
+ * aws.sqs.delete.max.inflight.batches at a time, so the delete rate is not bound by one call's round trip.
+ * Visibility is extended with the async client too (waited for on the heartbeat thread), the sync client
+ * is not built in that mode.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqsAcknowledger implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(SqsAcknowledger.class);
+
+    // SQS limit of entries per batch call
+    static final int MAX_BATCH_SIZE = 10;
+
+    @Autowired
+    private final SqsClient sqsClient;
+    @Autowired
+    private final SqsAsyncClient sqsAsyncClient;
+
+    @Value("${aws.sqs.queue.url}")
+    private String sqsQueueUrl;
+
+    @Value("${aws.sqs.delete.batch.max.wait.ms:50}")
+    private long maxWaitMs;
+
+    @Value("${aws.sqs.delete.max.attempts:3}")
+    private int maxAttempts;
+
+    @Value("${aws.sqs.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+
+    @Value("${aws.sqs.delete.max.inflight.batches:8}")
+    private int maxInFlightBatches;
+
+    @Value("${aws.sqs.visibility.timeout.seconds:30}")
+    private int visibilityTimeoutSeconds;
+
+    @Value("${aws.sqs.visibility.extension.enabled:true}")
+    private boolean extensionEnabled;
+
+    // stop extending after this, a stuck msg goes back to the queue (and later to the DLQ)
+    @Value("${aws.sqs.visibility.max.hold.seconds:300}")
+    private int maxHoldSeconds;
+
+    private final BlockingQueue<PendingDelete> pendingDeletes = new LinkedBlockingQueue<>();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong deleteFailedCount = new AtomicLong();
+    private final AtomicLong extendedCount = new AtomicLong();
+    // DeleteMessageBatch calls and the time spent in them
+    private final AtomicLong deleteCalls = new AtomicLong();
+    private final AtomicLong deleteNanos = new AtomicLong();
+
+    // null unless deletes are sent with the async client
+    private Semaphore inFlightBatches;
+    private Thread flusher;
+    private ScheduledExecutorService heartbeat;
+    private volatile boolean running;
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        inFlightBatches = executionMode == ExecutionMode.ASYNC ? new Semaphore(maxInFlightBatches) : null;
+        flusher = new Thread(this::flushLoop, "sqs-ack-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        if (extensionEnabled) {
+            long period = Math.max(1, visibilityTimeoutSeconds / 3);
+            heartbeat = Executors.newSingleThreadScheduledExecutor(SqsIngestionEngine.namedThreads("sqs-visibility-"));
+            heartbeat.scheduleWithFixedDelay(this::extendVisibility, period, period, TimeUnit.SECONDS);
+        }
+        logger.info("SQS acknowledger started: batch-max-wait={}ms, visibility-extension={}", maxWaitMs, extensionEnabled);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        try {
+            // flusher drains what is left before it exits
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+            // wait for the last async batches to be answered
+            if (inFlightBatches != null && inFlightBatches.tryAcquire(maxInFlightBatches, 10, TimeUnit.SECONDS)) {
+                inFlightBatches.release(maxInFlightBatches);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("SQS acknowledger stopped, deleted={}, delete-failed={}, extended={}",
+                deletedCount.get(), deleteFailedCount.get(), extendedCount.get());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Start before and stop after the ingestion engine and the result writer, so every processed msg
+     * can still be deleted
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 2;
+    }
+
+    /**
+     * Msg received, keep its visibility extended until it is acknowledged or released
+     */
+    public void track(Message message) {
+        long now = System.currentTimeMillis();
+        leases.put(message.receiptHandle(), new Lease(now, now + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds)));
+    }
+
+    /**
+     * Msg done, delete it from SQS with the next batch
+     */
+    public void acknowledge(String receiptHandle) {
+        leases.remove(receiptHandle);
+        pendingDeletes.add(new PendingDelete(receiptHandle));
+    }
+
+    /**
+     * Msg not done, stop extending so SQS redelivers it after the visibility timeout
+     */
+    public void release(String receiptHandle) {
+        leases.remove(receiptHandle);
+    }
+
+    /**
+     * true when the msg may already be visible to other consumers again
+     */
+    public boolean isVisibilityLost(String receiptHandle, long receivedAt) {
+        Lease lease = leases.get(receiptHandle);
+        long visibleUntil = lease != null
+                ? lease.visibleUntil
+                : receivedAt + TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+        return System.currentTimeMillis() >= visibleUntil;
+    }
+
+    private void flushLoop() {
+        while (running || !pendingDeletes.isEmpty()) {
+            try {
+                PendingDelete first = pendingDeletes.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingDelete> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < MAX_BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingDelete next = remaining > 0
+                            ? pendingDeletes.poll(remaining, TimeUnit.NANOSECONDS)
+                            : pendingDeletes.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                if (inFlightBatches != null) {
+                    inFlightBatches.acquire();
+                    deleteBatchAsync(batch);
+                } else {
+                    deleteBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Flush SQS delete batch error", e);
+            }
+        }
+    }
+
+    /**
+     * Send one DeleteMessageBatch, entry id is the index in the batch
+     */
+    void deleteBatch(List<PendingDelete> batch) {
+        DeleteMessageBatchResponse response;
+        long start = System.nanoTime();
+        try {
+            response = sqsClient.deleteMessageBatch(deleteRequest(batch));
+        } catch (Exception e) {
+            onDeleteFailed(batch, e);
+            return;
+        } finally {
+            deleteCalls.incrementAndGet();
+            deleteNanos.addAndGet(System.nanoTime() - start);
+        }
+        onDeleteResponse(batch, response);
+    }
+
+    /**
+     * Send one DeleteMessageBatch with the async client. Caller holds an in-flight permit.
+     */
+    void deleteBatchAsync(List<PendingDelete> batch) {
+        long start = System.nanoTime();
+        try {
+            sqsAsyncClient.deleteMessageBatch(deleteRequest(batch)).whenComplete((response, error) -> {
+                deleteCalls.incrementAndGet();
+                deleteNanos.addAndGet(System.nanoTime() - start);
+                try {
+                    if (error != null) {
+                        onDeleteFailed(batch, error);
+                    } else {
+                        onDeleteResponse(batch, response);
+                    }
+                } finally {
+                    inFlightBatches.release();
+                }
+            });
+        } catch (Exception e) {
+            inFlightBatches.release();
+            onDeleteFailed(batch, e);
+        }
+    }
+
+    private DeleteMessageBatchRequest deleteRequest(List<PendingDelete> batch) {
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(Integer.toString(i))
+                    .receiptHandle(batch.get(i).receiptHandle)
+                    .build());
+        }
+        return DeleteMessageBatchRequest.builder()
+                .queueUrl(sqsQueueUrl)
+                .entries(entries)
+                .build();
+    }
+
+    private void onDeleteFailed(List<PendingDelete> batch, Throwable error) {
+        logger.warn("Delete batch of {} msg failed, will retry", batch.size(), error);
+        batch.forEach(this::retry);
+    }
+
+    private void onDeleteResponse(List<PendingDelete> batch, DeleteMessageBatchResponse response) {
+        deletedCount.addAndGet(response.successful().size());
+        for (BatchResultErrorEntry error : response.failed()) {
+            PendingDelete failed = batch.get(Integer.parseInt(error.id()));
+            if (Boolean.TRUE.equals(error.senderFault())) {
+                // e.g. ReceiptHandleIsInvalid, resending the same handle can not succeed
+                deleteFailedCount.incrementAndGet();
+                logger.error("Delete msg rejected, code: {}, reason: {}", error.code(), error.message());
+            } else {
+                retry(failed);
+            }
+        }
+    }
+
+    private void retry(PendingDelete delete) {
+        if (++delete.attempts < maxAttempts) {
+            pendingDeletes.add(delete);
+        } else {
+            // msg will be redelivered and processed again
+            deleteFailedCount.incrementAndGet();
+            logger.error("Delete msg failed after {} attempts, it will be redelivered", delete.attempts);
+        }
+    }
+
+    /**
+     * Heartbeat: push visibility of msg still in progress past another visibility timeout
+     */
+    void extendVisibility() {
+        try {
+            long now = System.currentTimeMillis();
+            long timeoutMillis = TimeUnit.SECONDS.toMillis(visibilityTimeoutSeconds);
+            long maxHoldMillis = TimeUnit.SECONDS.toMillis(maxHoldSeconds);
+            List<String> due = new ArrayList<>();
+            for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+                Lease lease = entry.getValue();
+                if (now - lease.receivedAt >= maxHoldMillis) {
+                    leases.remove(entry.getKey(), lease);
+                    logger.warn("Msg held longer than {}s, stop extending visibility", maxHoldSeconds);
+                } else if (lease.visibleUntil - now < timeoutMillis / 2) {
+                    due.add(entry.getKey());
+                }
+            }
+            for (int from = 0; from < due.size(); from += MAX_BATCH_SIZE) {
+                changeVisibilityBatch(due.subList(from, Math.min(from + MAX_BATCH_SIZE, due.size())), now + timeoutMillis);
+            }
+        } catch (Exception e) {
+            logger.error("Extend SQS msg visibility error", e);
+        }
+    }
+
+    private void changeVisibilityBatch(List<String> receiptHandles, long visibleUntil) {
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(receiptHandles.size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                    .id(Integer.toString(i))
+                    .receiptHandle(receiptHandles.get(i))
+                    .visibilityTimeout(visibilityTimeoutSeconds)
+                    .build());
+        }
+        ChangeMessageVisibilityBatchRequest request = ChangeMessageVisibilityBatchRequest.builder()
+                .queueUrl(sqsQueueUrl)
+                .entries(entries)
+                .build();
+        ChangeMessageVisibilityBatchResponse response = executionMode == ExecutionMode.ASYNC
+                ? sqsAsyncClient.changeMessageVisibilityBatch(request).join()
+                : sqsClient.changeMessageVisibilityBatch(request);
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            Lease lease = leases.get(receiptHandles.get(i));
+            if (lease != null) {
+                lease.visibleUntil = visibleUntil;
+            }
+        }
+        extendedCount.addAndGet(response.successful().size());
+        for (BatchResultErrorEntry error : response.failed()) {
+            // handle is stale (msg deleted or redelivered), nothing left to extend
+            leases.remove(receiptHandles.get(Integer.parseInt(error.id())));
+            logger.warn("Extend msg visibility failed, code: {}, reason: {}", error.code(), error.message());
+        }
+    }
+
+    public int getPendingDeleteCount() {
+        return pendingDeletes.size();
+    }
+
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    public long getDeleteFailedCount() {
+        return deleteFailedCount.get();
+    }
+
+    public long getExtendedCount() {
+        return extendedCount.get();
+    }
+
+    public long getDeleteCalls() {
+        return deleteCalls.get();
+    }
+
+    public long getDeleteNanos() {
+        return deleteNanos.get();
+    }
+
+    static final class PendingDelete {
+        final String receiptHandle;
+        int attempts;
+
+        PendingDelete(String receiptHandle) {
+            this.receiptHandle = receiptHandle;
+        }
+    }
+
+    private static final class Lease {
+        final long receivedAt;
+        volatile long visibleUntil;
+
+        Lease(long receivedAt, long visibleUntil) {
+            this.receivedAt = receivedAt;
+            this.visibleUntil = visibleUntil;
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package com.fraud.ingest;
+
+import com.fraud.service.SqsConsumerService;
+import com.fraud.startup.StartupTimeline;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQS ingestion engine: N long-polling threads feed a bounded worker pool.
+ *
+ * In-flight msg (received but not finished) are limited by a semaphore, a poller only asks SQS
+ * for as many msg as there are free permits, so the pod never holds more msg than it can finish
+ * inside the visibility timeout. Visibility of held msg is extended by {@link SqsAcknowledger}. Msg of the same MessageGroupId run one after another in receive
+ * order, different groups run in parallel.
+ *
+ * With aws.sqs.execution.mode=VIRTUAL (Java 21) there is no worker pool, every msg without group and
+ * every run of one group gets its own virtual thread, so a pipeline waiting on blocking IO does not hold
+ * a platform thread. At most aws.sqs.virtual.max.concurrency of them process at a time.
+ *
+ * With aws.sqs.execution.mode=ASYNC there are no poller threads either: aws.sqs.pollers async long polls
+ * are kept outstanding on the shared HTTP client, a batch is dispatched to aws.sqs.async.stage.threads
+ * threads (CPU count by default) when it arrives and the next poll is issued at once. A poller finding no
+ * free permit is parked and issued again when a msg finishes. Thousands of msg can be in flight on a
+ * few threads, as long as aws.sqs.max.inflight can be finished inside the visibility timeout. Nothing on
+ * the stage threads may block: a full result buffer would stall every group, the msg is left in SQS then.
+ *
+ * aws.sqs.pollers is the upper bound, how many pollers are active and how many msg one receive asks
+ * for can be changed while running ({@link AdaptivePollingController}); standby pollers make no calls.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqsIngestionEngine implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(SqsIngestionEngine.class);
+
+    @Autowired
+    private final SqsConsumerService sqsConsumerService;
+    @Autowired
+    private final SqsAcknowledger sqsAcknowledger;
+    @Autowired
+    private final StartupTimeline startupTimeline;
+
+    @Value("${aws.sqs.ingestion.enabled:true}")
+    private boolean enabled;
+
+    // max number of concurrent long pollers
+    @Value("${aws.sqs.pollers:2}")
+    private int pollers;
+
+    // number of worker threads processing msg
+    @Value("${aws.sqs.workers:8}")
+    private int workers;
+
+    // max msg received but not yet finished
+    @Value("${aws.sqs.max.inflight:64}")
+    private int maxInFlight;
+
+    @Value("${aws.sqs.error.backoff.ms:1000}")
+    private long errorBackoffMs;
+
+    @Value("${aws.sqs.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+
+    // max msg processed at the same time in VIRTUAL mode, aws.sqs.workers is not used there
+    @Value("${aws.sqs.virtual.max.concurrency:256}")
+    private int virtualMaxConcurrency;
+
+    // threads running the msg stages in ASYNC mode, 0 = available processors
+    @Value("${aws.sqs.async.stage.threads:0}")
+    private int asyncStageThreads;
+
+    private final Map<String, CompletableFuture<Void>> groupTails = new ConcurrentHashMap<>();
+    private final List<Thread> pollerThreads = new ArrayList<>();
+    private final AtomicInteger inFlightMessages = new AtomicInteger();
+    private final AtomicInteger expiredMessages = new AtomicInteger();
+    // ASYNC mode: receives not answered yet and pollers waiting for a free permit
+    private final Set<CompletableFuture<List<Message>>> pendingReceives = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger parkedPollers = new AtomicInteger();
+    // ASYNC mode: poll loops alive (outstanding or parked)
+    private final AtomicInteger asyncPollers = new AtomicInteger();
+    // standby poller threads wait on this
+    private final Object pollerGate = new Object();
+
+    // receive and processing totals, read by the adaptive controller
+    private final LongAdder receiveCalls = new LongAdder();
+    private final LongAdder requestedMessages = new LongAdder();
+    private final LongAdder receivedMessages = new LongAdder();
+    private final LongAdder processedMessages = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+
+    private volatile int activePollers;
+    private volatile int receiveBatchSize;
+
+    private Semaphore inFlight;
+    // null in PLATFORM mode, the pool size is the limit there
+    private Semaphore concurrency;
+    private ExecutorService workerPool;
+    private volatile boolean running;
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        ExecutionMode mode = executionMode != null ? executionMode : ExecutionMode.PLATFORM;
+        int limit;
+        String limitName;
+        switch (mode) {
+            case VIRTUAL:
+                limit = virtualMaxConcurrency;
+                limitName = "virtual-max-concurrency";
+                break;
+            case ASYNC:
+                limit = asyncStageThreads > 0 ? asyncStageThreads : Runtime.getRuntime().availableProcessors();
+                limitName = "stage-threads";
+                break;
+            default:
+                limit = workers;
+                limitName = "workers";
+        }
+        if (pollers < 1 || limit < 1 || maxInFlight < 1) {
+            throw new IllegalStateException(String.format(
+                    "invalid ingestion config: mode=%s, pollers=%d, %s=%d, max-inflight=%d",
+                    mode, pollers, limitName, limit, maxInFlight));
+        }
+        if (mode == ExecutionMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException("aws.sqs.execution.mode=VIRTUAL needs Java 21 or later, running on "
+                    + Runtime.version());
+        }
+        inFlight = new Semaphore(maxInFlight);
+        activePollers = pollers;
+        receiveBatchSize = sqsConsumerService.getMaxMessages();
+        if (mode == ExecutionMode.VIRTUAL) {
+            concurrency = new Semaphore(virtualMaxConcurrency);
+            workerPool = VirtualThreads.newThreadPerTaskExecutor("sqs-vworker-");
+        } else {
+            concurrency = null;
+            workerPool = new ThreadPoolExecutor(limit, limit, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    namedThreads(mode == ExecutionMode.ASYNC ? "sqs-stage-" : "sqs-worker-"));
+        }
+        running = true;
+        if (mode == ExecutionMode.ASYNC) {
+            asyncPollers.set(0);
+            startAsyncPollers();
+        } else {
+            for (int i = 0; i < pollers; i++) {
+                int index = i;
+                Thread poller = new Thread(() -> pollLoop(index), "sqs-poller-" + i);
+                poller.setDaemon(true);
+                pollerThreads.add(poller);
+                poller.start();
+            }
+        }
+        logger.info("SQS ingestion started: mode={}, pollers={}, {}={}, max-inflight={}, visibility-timeout={}s",
+                mode, pollers, limitName, limit, maxInFlight, sqsConsumerService.getVisibilityTimeoutSeconds());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        pollerThreads.forEach(Thread::interrupt);
+        for (Thread poller : pollerThreads) {
+            try {
+                poller.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pollerThreads.clear();
+        // the long polls themselves end with the HTTP client, msg they still return are not dispatched
+        pendingReceives.forEach(receive -> receive.cancel(false));
+        pendingReceives.clear();
+        workerPool.shutdown();
+        try {
+            // msg not finished before visibility timeout are redelivered anyway
+            if (!workerPool.awaitTermination(sqsConsumerService.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS)) {
+                workerPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workerPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        logger.info("SQS ingestion stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+
+    /**
+     * Change the number of active pollers, between 1 and aws.sqs.pollers. Pollers above it finish their
+     * current receive and stand by.
+     */
+    public void setActivePollers(int count) {
+        activePollers = Math.max(1, Math.min(pollers, count));
+        if (!running) {
+            return;
+        }
+        if (executionMode == ExecutionMode.ASYNC) {
+            startAsyncPollers();
+        } else {
+            synchronized (pollerGate) {
+                pollerGate.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Change how many msg one receive asks for, between 1 and aws.sqs.max.messages
+     */
+    public void setReceiveBatchSize(int size) {
+        receiveBatchSize = Math.max(1, Math.min(sqsConsumerService.getMaxMessages(), size));
+    }
+
+    /**
+     * One poller: wait for free permits, long poll SQS, hand msg to workers
+     */
+    private void pollLoop(int index) {
+        while (running) {
+            int permits = 0;
+            try {
+                if (index >= activePollers) {
+                    synchronized (pollerGate) {
+                        while (running && index >= activePollers) {
+                            pollerGate.wait();
+                        }
+                    }
+                    continue;
+                }
+                permits = acquirePermits(receiveBatchSize);
+                List<Message> messages = sqsConsumerService.receiveTransactions(permits);
+                countReceive(permits, messages.size());
+                inFlight.release(permits - messages.size());
+                permits = 0;
+                dispatch(messages);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                inFlight.release(permits);
+                return;
+            } catch (Exception e) {
+                inFlight.release(permits);
+                if (!running) {
+                    return;
+                }
+                logger.error("Receive SQS message error, retry in {} ms", errorBackoffMs, e);
+                sleepQuietly(errorBackoffMs);
+            }
+        }
+    }
+
+    /**
+     * ASYNC mode: take free permits and issue one async long poll, the next one is issued when its batch
+     * is dispatched. Without a free permit the poller is parked until a msg finishes.
+     */
+    private void receiveAsync() {
+        while (running) {
+            if (retireAsyncPoller()) {
+                return;
+            }
+            int permits = tryAcquirePermits(receiveBatchSize);
+            if (permits > 0) {
+                CompletableFuture<List<Message>> receive = sqsConsumerService.receiveTransactionsAsync(permits);
+                pendingReceives.add(receive);
+                // off the HTTP event loop, decode and detect are CPU work
+                receive.whenCompleteAsync((messages, error) -> {
+                    pendingReceives.remove(receive);
+                    onReceived(permits, messages, error);
+                }, workerPool);
+                return;
+            }
+            parkedPollers.incrementAndGet();
+            // a permit released before the poller was parked does not wake it up, check again
+            if (inFlight.availablePermits() == 0 || !unparkPoller()) {
+                return;
+            }
+        }
+    }
+
+    private void onReceived(int permits, List<Message> messages, Throwable error) {
+        if (error != null) {
+            releasePermits(permits);
+            if (running) {
+                logger.error("Receive SQS message error, retry in {} ms", errorBackoffMs, error);
+                CompletableFuture.delayedExecutor(errorBackoffMs, TimeUnit.MILLISECONDS, workerPool)
+                        .execute(this::receiveAsync);
+            }
+            return;
+        }
+        if (!running) {
+            // not tracked, visible again after the visibility timeout
+            releasePermits(permits);
+            return;
+        }
+        countReceive(permits, messages.size());
+        releasePermits(permits - messages.size());
+        dispatch(messages);
+        receiveAsync();
+    }
+
+    /**
+     * ASYNC mode: start poll loops up to the active count
+     */
+    private void startAsyncPollers() {
+        while (running) {
+            int live = asyncPollers.get();
+            if (live >= activePollers) {
+                return;
+            }
+            if (asyncPollers.compareAndSet(live, live + 1)) {
+                receiveAsync();
+            }
+        }
+    }
+
+    /**
+     * ASYNC mode: end the calling poll loop when more are alive than active
+     */
+    private boolean retireAsyncPoller() {
+        int live;
+        do {
+            live = asyncPollers.get();
+            if (live <= activePollers) {
+                return false;
+            }
+        } while (!asyncPollers.compareAndSet(live, live - 1));
+        return true;
+    }
+
+    private void countReceive(int requested, int received) {
+        receiveCalls.increment();
+        requestedMessages.add(requested);
+        receivedMessages.add(received);
+    }
+
+    private boolean unparkPoller() {
+        int parked;
+        do {
+            parked = parkedPollers.get();
+            if (parked == 0) {
+                return false;
+            }
+        } while (!parkedPollers.compareAndSet(parked, parked - 1));
+        return true;
+    }
+
+    /**
+     * Give permits back, in ASYNC mode a parked poller is issued again
+     */
+    private void releasePermits(int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        inFlight.release(permits);
+        if (running && unparkPoller()) {
+            receiveAsync();
+        }
+    }
+
+    /**
+     * Take as many free permits as possible up to limit, without waiting
+     */
+    private int tryAcquirePermits(int limit) {
+        int permits = 0;
+        while (permits < limit && inFlight.tryAcquire()) {
+            permits++;
+        }
+        return permits;
+    }
+
+    /**
+     * Block until at least one permit is free, then take as many as possible up to limit
+     */
+    private int acquirePermits(int limit) throws InterruptedException {
+        inFlight.acquire();
+        int permits = 1;
+        while (permits < limit && inFlight.tryAcquire()) {
+            permits++;
+        }
+        return permits;
+    }
+
+    /**
+     * Split a batch by MessageGroupId, each group is run in order behind the previous work of
+     * the same group. Msg without group (standard queue) run independently.
+     */
+    void dispatch(List<Message> messages) {
+        long receivedAt = System.currentTimeMillis();
+        inFlightMessages.addAndGet(messages.size());
+        Map<String, List<Message>> groups = new LinkedHashMap<>();
+        for (Message message : messages) {
+            sqsAcknowledger.track(message);
+            String groupId = message.attributes().get(MessageSystemAttributeName.MESSAGE_GROUP_ID);
+            if (groupId == null) {
+                submit(null, List.of(message), receivedAt);
+            } else {
+                groups.computeIfAbsent(groupId, k -> new ArrayList<>()).add(message);
+            }
+        }
+        groups.forEach((groupId, groupMessages) -> submit(groupId, groupMessages, receivedAt));
+    }
+
+    private void submit(String groupId, List<Message> messages, long receivedAt) {
+        Runnable task = () -> processInOrder(messages, receivedAt);
+        if (groupId == null) {
+            CompletableFuture.runAsync(task, workerPool);
+            return;
+        }
+        CompletableFuture<Void> tail = groupTails.compute(groupId, (k, previous) -> previous == null
+                ? CompletableFuture.runAsync(task, workerPool)
+                : previous.thenRunAsync(task, workerPool));
+        tail.whenComplete((r, e) -> groupTails.remove(groupId, tail));
+    }
+
+    /**
+     * Process msg of one group in order. Once a msg fails the rest of the group is left in SQS,
+     * FIFO redelivers them after the failed one so the order is kept.
+     */
+    private void processInOrder(List<Message> messages, long receivedAt) {
+        boolean failed = false;
+        for (Message message : messages) {
+            try {
+                if (failed) {
+                    sqsAcknowledger.release(message.receiptHandle());
+                    continue;
+                }
+                if (sqsAcknowledger.isVisibilityLost(message.receiptHandle(), receivedAt)) {
+                    // visibility timeout passed while waiting, SQS may already redeliver it to another consumer
+                    expiredMessages.incrementAndGet();
+                    logger.warn("Msg ID: {} waited longer than visibility timeout, left for redelivery", message.messageId());
+                    sqsAcknowledger.release(message.receiptHandle());
+                    failed = true;
+                    continue;
+                }
+                failed = !process(message);
+            } catch (InterruptedException e) {
+                // shut down while waiting for a concurrency permit
+                Thread.currentThread().interrupt();
+                sqsAcknowledger.release(message.receiptHandle());
+                failed = true;
+            } catch (Exception e) {
+                logger.error("Deal Msg Failed ID: {}", message.messageId(), e);
+                sqsAcknowledger.release(message.receiptHandle());
+                failed = true;
+            } finally {
+                inFlightMessages.decrementAndGet();
+                releasePermits(1);
+            }
+        }
+    }
+
+    /**
+     * Run the pipeline of one msg, in VIRTUAL mode only once a concurrency permit is free
+     */
+    private boolean process(Message message) throws InterruptedException {
+        if (concurrency == null) {
+            return timedProcess(message);
+        }
+        concurrency.acquire();
+        try {
+            return timedProcess(message);
+        } finally {
+            concurrency.release();
+        }
+    }
+
+    private boolean timedProcess(Message message) {
+        long start = System.nanoTime();
+        try {
+            return sqsConsumerService.processMessage(message);
+        } finally {
+            processNanos.add(System.nanoTime() - start);
+            processedMessages.increment();
+            startupTimeline.messageProcessed();
+        }
+    }
+
+    /**
+     * msg handed to workers and not finished yet
+     */
+    public int getInFlightCount() {
+        return inFlightMessages.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getActivePollers() {
+        return activePollers;
+    }
+
+    public int getMaxPollers() {
+        return pollers;
+    }
+
+    public int getReceiveBatchSize() {
+        return receiveBatchSize;
+    }
+
+    public int getMaxReceiveBatchSize() {
+        return sqsConsumerService.getMaxMessages();
+    }
+
+    public int getVisibilityTimeoutSeconds() {
+        return sqsConsumerService.getVisibilityTimeoutSeconds();
+    }
+
+    public long getReceiveCalls() {
+        return receiveCalls.sum();
+    }
+
+    public long getRequestedMessages() {
+        return requestedMessages.sum();
+    }
+
+    public long getReceivedMessages() {
+        return receivedMessages.sum();
+    }
+
+    public long getProcessedMessages() {
+        return processedMessages.sum();
+    }
+
+    public long getProcessNanos() {
+        return processNanos.sum();
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public int getExpiredMessageCount() {
+        return expiredMessages.get();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
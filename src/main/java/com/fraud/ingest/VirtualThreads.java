@@ -0,0 +1,54 @@
+package com.fraud.ingest;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread executor looked up by reflection, the code is compiled for Java 11 and the same jar
+ * runs on the Java 17 image and on a Java 21 one.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true when the running JVM has virtual threads (Java 21 or later)
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Executor starting a new virtual thread for each task, threads are named prefix + counter
+     * @throws IllegalStateException when the JVM has no virtual threads
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException("virtual threads need Java 21 or later, running on " + Runtime.version());
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("create virtual thread executor failed", e);
+        }
+    }
+
+    private static Method method(Class<?> type, String name) {
+        try {
+            return type.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.fraud.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Streams journaled records back in append order, for audit and reprocessing.
+ *
+ * Safe to use on the directory of a running journal: every segment is mapped read-only and read up
+ * to its end marker, a record still being written is not visible yet.
+ */
+public final class JournalReader {
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    // sealed segment with only the fraud records left
+    static final String COMPACTED_SUFFIX = ".cseg";
+
+    private final Path directory;
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Pass every record with sequence >= fromSequence to the consumer
+     * @return number of records read
+     */
+    public long read(long fromSequence, Consumer<JournalRecord> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        CRC32 crc = new CRC32();
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            // a later segment starting at or below fromSequence means this one can be skipped
+            if (i + 1 < segments.size() && baseSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            MappedByteBuffer buffer;
+            try {
+                buffer = map(segments.get(i));
+            } catch (NoSuchFileException e) {
+                // removed by retention meanwhile
+                continue;
+            }
+            JournalRecord record;
+            while ((record = RecordCodec.read(buffer, crc)) != null) {
+                if (record.getSequence() >= fromSequence) {
+                    consumer.accept(record);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Segment files ordered by base sequence, the full segment wins over a compacted copy left by a crash
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.put(baseSequence(file), file);
+                } else if (name.endsWith(COMPACTED_SUFFIX)) {
+                    segments.putIfAbsent(baseSequence(file), file);
+                }
+            });
+        }
+        return new ArrayList<>(segments.values());
+    }
+
+    static long baseSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    static String segmentName(long baseSequence, String suffix) {
+        return String.format("%020d%s", baseSequence, suffix);
+    }
+}
@@ -0,0 +1,50 @@
+package com.fraud.journal;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+
+import java.util.EnumSet;
+
+/**
+ * One journaled detection: the source transaction and its result
+ */
+public final class JournalRecord {
+    private final long sequence;
+    private final long detectTime;
+    private final long reasonCodes;
+    private final Transaction transaction;
+
+    JournalRecord(long sequence, long detectTime, long reasonCodes, Transaction transaction) {
+        this.sequence = sequence;
+        this.detectTime = detectTime;
+        this.reasonCodes = reasonCodes;
+        this.transaction = transaction;
+    }
+
+    /**
+     * position of the record in the journal, increasing in append order
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getDetectTime() {
+        return detectTime;
+    }
+
+    public long getReasonBits() {
+        return reasonCodes;
+    }
+
+    public EnumSet<ReasonCode> getReasonCodes() {
+        return ReasonCode.fromBits(reasonCodes);
+    }
+
+    public boolean isFraudulent() {
+        return reasonCodes != 0;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+}
@@ -0,0 +1,132 @@
+package com.fraud.journal;
+
+import com.fraud.model.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary record format of the journal, big endian:
+ * <pre>
+ * int    length        payload bytes, 0 marks the end of a segment
+ * int    crc32         of the payload
+ * long   sequence
+ * long   detectTime
+ * long   reasonCodes   {@link com.fraud.model.ReasonCode} bits, 0 for a clean result
+ * long   transactionTime
+ * double amount
+ * string transactionId, accountId, location, merchantId: short byte count (-1 for null) + UTF-8 bytes
+ * </pre>
+ */
+final class RecordCodec {
+
+    static final int HEADER_BYTES = 8;
+    // sequence + detectTime + reasonCodes + transactionTime + amount + 4 string lengths
+    static final int FIXED_PAYLOAD_BYTES = 5 * 8 + 4 * 2;
+    static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Write the payload at the buffer position, sequence is left 0 to be patched in by {@link #seal}
+     * @throws IllegalArgumentException when a field does not fit the format
+     * @throws java.nio.BufferOverflowException when the record does not fit the buffer
+     */
+    static void encode(ByteBuffer buffer, Transaction transaction, long reasonCodes, long detectTime) {
+        buffer.putLong(0L);
+        buffer.putLong(detectTime);
+        buffer.putLong(reasonCodes);
+        buffer.putLong(transaction.getTransactionTime());
+        buffer.putDouble(transaction.getAmount());
+        putString(buffer, transaction.getTransactionId());
+        putString(buffer, transaction.getAccountId());
+        putString(buffer, transaction.getLocation());
+        putString(buffer, transaction.getMerchantId());
+    }
+
+    /**
+     * Set the sequence of an encoded payload [0, limit) and return its checksum
+     */
+    static int seal(ByteBuffer payload, long sequence, CRC32 crc) {
+        payload.putLong(0, sequence);
+        crc.reset();
+        crc.update(payload.duplicate().position(0));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Read the record at the buffer position
+     * @return null at the end of the written data or at a torn / corrupted record, the position is then unchanged
+     */
+    static JournalRecord read(ByteBuffer buffer, CRC32 crc) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length < FIXED_PAYLOAD_BYTES || length > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + length);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+        long sequence = payload.getLong();
+        long detectTime = payload.getLong();
+        long reasonCodes = payload.getLong();
+        Transaction transaction = new Transaction();
+        transaction.setTransactionTime(payload.getLong());
+        transaction.setAmount(payload.getDouble());
+        transaction.setTransactionId(getString(payload));
+        transaction.setAccountId(getString(payload));
+        transaction.setLocation(getString(payload));
+        transaction.setMerchantId(getString(payload));
+        buffer.position(start + HEADER_BYTES + length);
+        return new JournalRecord(sequence, detectTime, reasonCodes, transaction);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        int start = buffer.position();
+        buffer.position(start + 2);
+        // IDs and locations are ASCII in practice, copy them without an intermediate array
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start + 2);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                checkLength(bytes.length);
+                buffer.put(bytes);
+                buffer.putShort(start, (short) bytes.length);
+                return;
+            }
+            buffer.put((byte) c);
+        }
+        checkLength(value.length());
+        buffer.putShort(start, (short) value.length());
+    }
+
+    private static void checkLength(int length) {
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("field of " + length + " bytes is too long for the journal");
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,417 @@
+package com.fraud.journal;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of every detection result and its transaction, for audit and replay.
+ *
+ * Records go into fixed-size memory-mapped segment files ({@link RecordCodec} format), an append is a
+ * copy into the mapping under a short lock, no syscall. The flusher thread forces written pages to disk
+ * every fraud.journal.flush.interval.ms (group commit), so a crash loses at most that interval; a torn
+ * record at the tail fails its checksum and ends the segment. Full segments are sealed and a new one
+ * is opened. Sealed segments older than fraud.journal.compact.after.minutes are rewritten with the fraud
+ * records only, and removed after fraud.journal.retention.hours or above fraud.journal.max.segments.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResultJournal implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ResultJournal.class);
+
+    private static final int SCRATCH_BYTES = 16 * 1024;
+    // encode buffers kept for reuse, not per thread: a virtual thread per msg would allocate one each time
+    private static final int SCRATCH_POOL_SIZE = 64;
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.journal.enable:false}")
+    private boolean enabled;
+
+    @Value("${fraud.journal.dir:${java.io.tmpdir}/fraud-journal}")
+    private String directory;
+
+    @Value("${fraud.journal.segment.bytes:16777216}")
+    private int segmentBytes;
+
+    @Value("${fraud.journal.flush.interval.ms:200}")
+    private long flushIntervalMs;
+
+    // 0 keeps clean records until retention
+    @Value("${fraud.journal.compact.after.minutes:60}")
+    private long compactAfterMinutes;
+
+    @Value("${fraud.journal.retention.hours:24}")
+    private long retentionHours;
+
+    @Value("${fraud.journal.max.segments:64}")
+    private int maxSegments;
+
+    @Value("${fraud.journal.maintenance.interval.ms:60000}")
+    private long maintenanceIntervalMs;
+
+    private final BlockingQueue<Scratch> scratchPool = new ArrayBlockingQueue<>(SCRATCH_POOL_SIZE);
+    private final Object appendLock = new Object();
+    // sealed segments the flusher has not forced yet
+    private final Queue<MappedByteBuffer> sealed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger segmentCount = new AtomicInteger();
+
+    private Path journalDir;
+    // guarded by appendLock
+    private MappedByteBuffer active;
+    private long activeBase;
+    private long nextSequence;
+    private volatile long appendedSequence;
+    private volatile long flushedSequence;
+
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter appendedCounter;
+    private Counter droppedCounter;
+    private Counter compactedCounter;
+
+    @PostConstruct
+    public void init() {
+        appendedCounter = Counter.builder("fraud.journal.appended").register(meterRegistry);
+        droppedCounter = Counter.builder("fraud.journal.dropped")
+                .description("results not journaled because of a bad field or an IO error")
+                .register(meterRegistry);
+        compactedCounter = Counter.builder("fraud.journal.compacted.segments").register(meterRegistry);
+        Gauge.builder("fraud.journal.segments", segmentCount, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("fraud.journal.unflushed", this, j -> j.appendedSequence - j.flushedSequence)
+                .description("records appended but not forced to disk yet")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Journal one detection, never blocks on IO
+     * @return false when the journal is not running or the record was dropped
+     */
+    public boolean append(Transaction transaction, FraudResult result) {
+        if (!running) {
+            return false;
+        }
+        Scratch local = scratchPool.poll();
+        if (local == null) {
+            local = new Scratch();
+        }
+        try {
+            return append(transaction, result, local);
+        } finally {
+            scratchPool.offer(local);
+        }
+    }
+
+    private boolean append(Transaction transaction, FraudResult result, Scratch local) {
+        ByteBuffer payload = local.buffer;
+        payload.clear();
+        try {
+            // the shared clean result has no time of its own
+            long detectTime = result.getDetectTimeMillis() != 0 ? result.getDetectTimeMillis() : System.currentTimeMillis();
+            RecordCodec.encode(payload, transaction, result.getReasonBits(), detectTime);
+        } catch (IllegalArgumentException | BufferOverflowException e) {
+            droppedCounter.increment();
+            logger.warn("Transaction {} is too large for the journal", transaction.getTransactionId());
+            return false;
+        }
+        payload.flip();
+        int length = payload.limit();
+        synchronized (appendLock) {
+            if (active == null) {
+                return false;
+            }
+            try {
+                if (active.remaining() < RecordCodec.HEADER_BYTES + length) {
+                    roll();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                droppedCounter.increment();
+                logger.error("Roll journal segment failed, Transaction ID: {}", transaction.getTransactionId(), e);
+                return false;
+            }
+            long sequence = nextSequence++;
+            int crc = RecordCodec.seal(payload, sequence, local.crc);
+            int position = active.position();
+            active.putInt(position + 4, crc);
+            active.position(position + RecordCodec.HEADER_BYTES);
+            active.put(payload);
+            // length last, a reader stops at a record that is not complete yet
+            active.putInt(position, length);
+            appendedSequence = sequence + 1;
+        }
+        appendedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Force every appended record to disk
+     */
+    public void flush() {
+        long appended;
+        MappedByteBuffer current;
+        synchronized (appendLock) {
+            appended = appendedSequence;
+            current = active;
+        }
+        // segments sealed before the snapshot are all queued already
+        MappedByteBuffer segment;
+        while ((segment = sealed.poll()) != null) {
+            segment.force();
+        }
+        if (current != null && appended != flushedSequence) {
+            current.force();
+        }
+        flushedSequence = appended;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running || !enabled) {
+            return;
+        }
+        try {
+            journalDir = Paths.get(directory);
+            Files.createDirectories(journalDir);
+            recover();
+            synchronized (appendLock) {
+                activeBase = nextSequence;
+                active = openSegment(activeBase);
+            }
+            appendedSequence = nextSequence;
+            flushedSequence = nextSequence;
+            segmentCount.set(JournalReader.segments(journalDir).size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("can not open result journal in " + directory, e);
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("result journal started: dir={}, next-sequence={}, segment={} KB, flush-interval={} ms",
+                journalDir.toAbsolutePath(), nextSequence, segmentBytes / 1024, flushIntervalMs);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (appendLock) {
+            active = null;
+        }
+        logger.info("result journal stopped at sequence {}", flushedSequence);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop after the ingestion engine, the last results are still journaled
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    /**
+     * Continue after the last valid record. The tail of the last segment is not reused, a new segment
+     * is opened on every start so nothing behind a torn record can be read as valid later.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = JournalReader.segments(journalDir);
+        nextSequence = 0;
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long base = JournalReader.baseSequence(last);
+        long[] lastSequence = {-1};
+        new JournalReader(journalDir).read(base, record -> lastSequence[0] = record.getSequence());
+        if (lastSequence[0] < 0) {
+            // empty segment, take its place
+            Files.delete(last);
+            nextSequence = base;
+        } else {
+            nextSequence = lastSequence[0] + 1;
+        }
+    }
+
+    private void roll() throws IOException {
+        MappedByteBuffer next = openSegment(nextSequence);
+        sealed.add(active);
+        active = next;
+        activeBase = nextSequence;
+        segmentCount.incrementAndGet();
+    }
+
+    private MappedByteBuffer openSegment(long baseSequence) throws IOException {
+        Path path = journalDir.resolve(JournalReader.segmentName(baseSequence, JournalReader.SEGMENT_SUFFIX));
+        // new file reads as zeros, a zero length is the end marker
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            int size = Math.max(segmentBytes, MIN_SEGMENT_BYTES);
+            file.setLength(size);
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private void flushLoop() {
+        long nextMaintenance = System.currentTimeMillis() + maintenanceIntervalMs;
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+                flush();
+                if (System.currentTimeMillis() >= nextMaintenance) {
+                    maintain();
+                    nextMaintenance = System.currentTimeMillis() + maintenanceIntervalMs;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Journal flush error", e);
+            }
+        }
+    }
+
+    /**
+     * Retention and compaction of sealed segments, runs on the flusher thread
+     */
+    void maintain() throws IOException {
+        long base;
+        synchronized (appendLock) {
+            base = activeBase;
+        }
+        long now = System.currentTimeMillis();
+        List<Path> segments = JournalReader.segments(journalDir);
+        int remaining = segments.size();
+        for (Path segment : segments) {
+            long segmentBase = JournalReader.baseSequence(segment);
+            if (segmentBase >= base) {
+                break;
+            }
+            // a full copy left by a crash in the middle of compaction
+            Path compacted = journalDir.resolve(JournalReader.segmentName(segmentBase, JournalReader.COMPACTED_SUFFIX));
+            if (segment.getFileName().toString().endsWith(JournalReader.SEGMENT_SUFFIX) && Files.exists(compacted)) {
+                Files.delete(segment);
+                segment = compacted;
+            }
+            long age = now - Files.getLastModifiedTime(segment).toMillis();
+            if (age > TimeUnit.HOURS.toMillis(retentionHours) || remaining > maxSegments) {
+                Files.deleteIfExists(segment);
+                remaining--;
+                logger.info("journal segment {} removed", segment.getFileName());
+            } else if (compactAfterMinutes > 0 && age > TimeUnit.MINUTES.toMillis(compactAfterMinutes)
+                    && segment.getFileName().toString().endsWith(JournalReader.SEGMENT_SUFFIX)) {
+                compact(segment, compacted);
+            }
+        }
+        segmentCount.set(remaining);
+    }
+
+    /**
+     * Rewrite a sealed segment with its fraud records only, the copy replaces it atomically by name
+     */
+    private void compact(Path segment, Path compacted) throws IOException {
+        MappedByteBuffer buffer = JournalReader.map(segment);
+        Path tmp = compacted.resolveSibling(compacted.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int kept = 0;
+        byte[] copy = new byte[SCRATCH_BYTES + RecordCodec.HEADER_BYTES];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+            int start = buffer.position();
+            JournalRecord record;
+            while ((record = RecordCodec.read(buffer, crc)) != null) {
+                int end = buffer.position();
+                if (record.isFraudulent()) {
+                    buffer.duplicate().position(start).get(copy, 0, end - start);
+                    out.write(copy, 0, end - start);
+                    kept++;
+                }
+                start = end;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, compacted, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segment);
+        compactedCounter.increment();
+        logger.info("journal segment {} compacted, {} fraud records kept", segment.getFileName(), kept);
+    }
+
+    public Path getDirectory() {
+        return journalDir;
+    }
+
+    /**
+     * sequence of the next record, records below it are appended
+     */
+    public long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * records below this sequence are on disk
+     */
+    public long getFlushedSequence() {
+        return flushedSequence;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount.get();
+    }
+
+    private static final class Scratch {
+        final ByteBuffer buffer = ByteBuffer.allocate(SCRATCH_BYTES);
+        final CRC32 crc = new CRC32();
+    }
+}
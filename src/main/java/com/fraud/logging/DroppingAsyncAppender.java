@@ -0,0 +1,48 @@
+package com.fraud.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Async appender that never blocks the logging thread: an event is dropped when the queue is full,
+ * or when it is INFO and below and the queue passed the discarding threshold. Dropped events are
+ * counted over all instances, so the count survives a logback reconfiguration.
+ */
+public class DroppingAsyncAppender extends AsyncAppender {
+
+    private static final LongAdder DROPPED = new LongAdder();
+
+    @Override
+    public void start() {
+        setNeverBlock(true);
+        super.start();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // a full queue drops the event inside offer(), count it here instead
+        if (isStarted() && getRemainingCapacity() == 0) {
+            DROPPED.increment();
+            return;
+        }
+        super.append(event);
+    }
+
+    /**
+     * only asked when the queue is above the discarding threshold
+     */
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        boolean discardable = super.isDiscardable(event);
+        if (discardable) {
+            DROPPED.increment();
+        }
+        return discardable;
+    }
+
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+}
@@ -0,0 +1,61 @@
+package com.fraud.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps a fixed share of the log events of one outcome.
+ *
+ * The decision is a hash of the key (transaction ID), so a sampled transaction is sampled on every
+ * pod and every retry; events without a key are sampled at random. Meters are registered once,
+ * sampling allocates nothing.
+ */
+public final class LogSampler {
+
+    private static final int SCALE = 1 << 16;
+
+    private final int threshold;
+    private final Counter sampledCounter;
+    private final Counter suppressedCounter;
+
+    /**
+     * @param rate share of events to keep, 0 to 1
+     */
+    public LogSampler(String outcome, double rate, MeterRegistry meterRegistry) {
+        this.threshold = (int) Math.round(Math.max(0, Math.min(1, rate)) * SCALE);
+        this.sampledCounter = Counter.builder("fraud.log.sampled")
+                .description("log events kept by sampling")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+        this.suppressedCounter = Counter.builder("fraud.log.suppressed")
+                .description("log events left out by sampling")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public boolean sample(String key) {
+        boolean keep;
+        if (threshold >= SCALE) {
+            keep = true;
+        } else if (threshold <= 0) {
+            keep = false;
+        } else {
+            int hash = key == null ? (int) System.nanoTime() : mix(key.hashCode());
+            keep = (hash & (SCALE - 1)) < threshold;
+        }
+        (keep ? sampledCounter : suppressedCounter).increment();
+        return keep;
+    }
+
+    /**
+     * murmur3 finalizer, spreads similar IDs over the whole range
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,27 @@
+package com.fraud.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Publishes the drop count of the async log appenders, they are created by logback before Spring
+ */
+@Component
+@RequiredArgsConstructor
+public class LoggingMetrics {
+
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("fraud.log.dropped", DroppingAsyncAppender.class, c -> DroppingAsyncAppender.getDroppedCount())
+                .description("log events dropped because the async appender queue was full")
+                .register(meterRegistry);
+    }
+}
@@ -1,21 +1,115 @@
 package com.fraud.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
 import java.time.Instant;
-import java.util.Date;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Fraud Detection Result Model
+ *
+ * Matched reasons are kept as a {@link ReasonCode} bitset, the human readable text is only rendered
+ * when {@link #getReasons()} is called (alerts, logs). Clean transactions all share {@link #CLEAN},
+ * unless a risk model scored them: the score is per transaction.
  */
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class FraudResult {
-    private String transactionId;    // Transaction-ID
-    private boolean isFraudulent;    // isFraud transaction
-    private List<String> reasons;    // reason list
-    private Date detectTime;      // detection time
+public final class FraudResult {
+
+    /**
+     * shared result of every clean transaction, carries no transaction ID
+     */
+    public static final FraudResult CLEAN = new FraudResult(null, 0L, 0L, Collections::emptyList);
+
+    private final String transactionId;    // Transaction-ID
+    private final long reasonCodes;        // ReasonCode bits
+    private final long detectTime;         // detection time, epoch millis
+    private final double score;            // risk model score in [0, 1], NaN if not scored
+    private Supplier<List<String>> reasonText;
+    private volatile List<String> reasons;  // rendered reason list
+
+    /**
+     * @param reasonText renders the reason list, called at most once
+     */
+    public FraudResult(String transactionId, long reasonCodes, long detectTime, Supplier<List<String>> reasonText) {
+        this(transactionId, reasonCodes, detectTime, reasonText, Double.NaN);
+    }
+
+    /**
+     * @param score risk model score, NaN if not scored
+     */
+    public FraudResult(String transactionId, long reasonCodes, long detectTime, Supplier<List<String>> reasonText, double score) {
+        this.transactionId = transactionId;
+        this.reasonCodes = reasonCodes;
+        this.detectTime = detectTime;
+        this.reasonText = reasonText;
+        this.score = score;
+    }
+
+    public FraudResult(String transactionId, long reasonCodes, long detectTime, List<String> reasons) {
+        this(transactionId, reasonCodes, detectTime, () -> reasons);
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public boolean isFraudulent() {
+        return reasonCodes != 0;
+    }
+
+    public long getReasonBits() {
+        return reasonCodes;
+    }
+
+    public boolean hasReason(ReasonCode code) {
+        return (reasonCodes & code.bit()) != 0;
+    }
+
+    public EnumSet<ReasonCode> getReasonCodes() {
+        return ReasonCode.fromBits(reasonCodes);
+    }
+
+    /**
+     * reason text, rendered on first call
+     */
+    public List<String> getReasons() {
+        List<String> rendered = reasons;
+        if (rendered == null) {
+            synchronized (this) {
+                rendered = reasons;
+                if (rendered == null) {
+                    rendered = Collections.unmodifiableList(reasonText.get());
+                    reasons = rendered;
+                    reasonText = null;
+                }
+            }
+        }
+        return rendered;
+    }
+
+    public boolean hasScore() {
+        return !Double.isNaN(score);
+    }
+
+    /**
+     * @return risk model score in [0, 1], NaN if no model scored the transaction
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public long getDetectTimeMillis() {
+        return detectTime;
+    }
+
+    public Instant getDetectTime() {
+        return Instant.ofEpochMilli(detectTime);
+    }
+
+    @Override
+    public String toString() {
+        return "FraudResult(transactionId=" + transactionId + ", isFraudulent=" + isFraudulent()
+                + ", reasonCodes=" + getReasonCodes() + (hasScore() ? ", score=" + score : "")
+                + ", detectTime=" + getDetectTime() + ")";
+    }
 }
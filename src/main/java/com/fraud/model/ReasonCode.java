@@ -0,0 +1,37 @@
+package com.fraud.model;
+
+import java.util.EnumSet;
+
+/**
+ * Stable code of a fraud reason, a {@link FraudResult} keeps the matched codes as a bitset
+ */
+public enum ReasonCode {
+    AMOUNT_THRESHOLD,
+    SUSPICIOUS_ACCOUNT,
+    HIGH_RISK_LOCATION,
+    VELOCITY,
+    // rules without an own code
+    OTHER,
+    // new codes go at the end, the bits are kept in the result journal
+    AMOUNT_DEVIATION,
+    HIGH_RISK_MERCHANT,
+    // risk model score at or over fraud.score.alert.threshold
+    RISK_SCORE,
+    IMPOSSIBLE_TRAVEL;
+
+    private static final ReasonCode[] VALUES = values();
+
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    public static EnumSet<ReasonCode> fromBits(long bits) {
+        EnumSet<ReasonCode> codes = EnumSet.noneOf(ReasonCode.class);
+        for (ReasonCode code : VALUES) {
+            if ((bits & code.bit()) != 0) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+}
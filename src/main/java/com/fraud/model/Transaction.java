@@ -1,13 +1,11 @@
 package com.fraud.model;
 
-import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fraud.codec.EpochMillisDeserializer;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.util.Date;
 
 /**
  * Transaction Model, simulate real Account transaction
@@ -22,5 +20,6 @@ public class Transaction {
     private double amount;           // transaction amount
     private String location;         // transaction location
     private String merchantId;       // transaction ID
-    private Date transactionTime; // transaction time
+    @JsonDeserialize(using = EpochMillisDeserializer.class)
+    private long transactionTime;    // transaction time, epoch millis, 0 if not given
 }
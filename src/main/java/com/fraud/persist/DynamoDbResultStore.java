@@ -0,0 +1,112 @@
+package com.fraud.persist;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes results into a DynamoDB table (key: transactionId) with BatchWriteItem.
+ *
+ * Item: transactionId, accountId, amount, fraudulent, reasonCodes (code names), reasons (text),
+ * score (risk model score, when scored), transactionTime and detectTime (epoch millis). A redelivered
+ * msg overwrites its previous item.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.persistence.store", havingValue = "dynamodb", matchIfMissing = true)
+public class DynamoDbResultStore implements ResultStore {
+    private static final Logger logger = LoggerFactory.getLogger(DynamoDbResultStore.class);
+
+    // DynamoDB limit of requests per BatchWriteItem
+    static final int MAX_BATCH_SIZE = 25;
+
+    @Autowired
+    private final DynamoDbClient dynamoDbClient;
+
+    @Value("${fraud.persistence.dynamodb.table:fraud-results}")
+    private String tableName;
+
+    @Override
+    public int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    @Override
+    public List<PendingResult> write(List<PendingResult> batch) {
+        // one put per key, a batch must not hold the same key twice (redelivered msg)
+        Map<String, List<PendingResult>> byKey = new LinkedHashMap<>();
+        for (PendingResult pending : batch) {
+            byKey.computeIfAbsent(pending.getTransactionId(), k -> new ArrayList<>(1)).add(pending);
+        }
+        List<WriteRequest> writes = new ArrayList<>(byKey.size());
+        for (List<PendingResult> same : byKey.values()) {
+            writes.add(WriteRequest.builder()
+                    .putRequest(PutRequest.builder().item(toItem(same.get(same.size() - 1))).build())
+                    .build());
+        }
+        BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                .requestItems(Collections.singletonMap(tableName, writes))
+                .build());
+
+        List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(tableName, Collections.emptyList());
+        if (unprocessed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("BatchWriteItem left {} of {} results unprocessed", unprocessed.size(), writes.size());
+        }
+        return unprocessed.stream()
+                .map(write -> write.putRequest().item().get("transactionId").s())
+                .flatMap(key -> byKey.getOrDefault(key, Collections.emptyList()).stream())
+                .collect(Collectors.toList());
+    }
+
+    static Map<String, AttributeValue> toItem(PendingResult pending) {
+        Transaction transaction = pending.getTransaction();
+        FraudResult result = pending.getResult();
+        Map<String, AttributeValue> item = new HashMap<>(16);
+        item.put("transactionId", AttributeValue.fromS(transaction.getTransactionId()));
+        if (transaction.getAccountId() != null) {
+            item.put("accountId", AttributeValue.fromS(transaction.getAccountId()));
+        }
+        item.put("amount", AttributeValue.fromN(Double.toString(transaction.getAmount())));
+        item.put("fraudulent", AttributeValue.fromBool(result.isFraudulent()));
+        if (result.isFraudulent()) {
+            item.put("reasonCodes", AttributeValue.fromSs(result.getReasonCodes().stream()
+                    .map(ReasonCode::name)
+                    .collect(Collectors.toList())));
+            item.put("reasons", AttributeValue.fromL(result.getReasons().stream()
+                    .map(AttributeValue::fromS)
+                    .collect(Collectors.toList())));
+        }
+        if (result.hasScore()) {
+            item.put("score", AttributeValue.fromN(Double.toString(result.getScore())));
+        }
+        item.put("detectTime", AttributeValue.fromN(Long.toString(pending.getDetectTime())));
+        if (transaction.getTransactionTime() != 0) {
+            item.put("transactionTime", AttributeValue.fromN(Long.toString(transaction.getTransactionTime())));
+        }
+        return item;
+    }
+}
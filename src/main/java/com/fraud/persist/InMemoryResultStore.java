@@ -0,0 +1,40 @@
+package com.fraud.persist;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps results in a map, stand-in for DynamoDB in tests and local runs (fraud.persistence.store=memory)
+ */
+@Component
+@ConditionalOnProperty(name = "fraud.persistence.store", havingValue = "memory")
+public class InMemoryResultStore implements ResultStore {
+
+    private final Map<String, PendingResult> results = new ConcurrentHashMap<>();
+
+    @Override
+    public int maxBatchSize() {
+        return DynamoDbResultStore.MAX_BATCH_SIZE;
+    }
+
+    @Override
+    public List<PendingResult> write(List<PendingResult> batch) {
+        for (PendingResult pending : batch) {
+            results.put(pending.getTransactionId(), pending);
+        }
+        return Collections.emptyList();
+    }
+
+    public PendingResult get(String transactionId) {
+        return results.get(transactionId);
+    }
+
+    public int size() {
+        return results.size();
+    }
+}
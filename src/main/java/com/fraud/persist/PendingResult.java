@@ -0,0 +1,50 @@
+package com.fraud.persist;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.Transaction;
+
+import java.util.function.Consumer;
+
+/**
+ * One detection result waiting in the write-behind buffer
+ */
+public final class PendingResult {
+    private final Transaction transaction;
+    private final FraudResult result;
+    private final Consumer<Boolean> onComplete;
+    private final long detectTime;
+    int attempts;
+
+    PendingResult(Transaction transaction, FraudResult result, Consumer<Boolean> onComplete) {
+        this.transaction = transaction;
+        this.result = result;
+        this.onComplete = onComplete;
+        // the shared clean result has no time of its own
+        this.detectTime = result.getDetectTimeMillis() != 0 ? result.getDetectTimeMillis() : System.currentTimeMillis();
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * detection result, {@link FraudResult#CLEAN} for a normal transaction
+     */
+    public FraudResult getResult() {
+        return result;
+    }
+
+    public long getDetectTime() {
+        return detectTime;
+    }
+
+    public String getTransactionId() {
+        return transaction.getTransactionId();
+    }
+
+    void complete(boolean durable) {
+        if (onComplete != null) {
+            onComplete.accept(durable);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.fraud.persist;
+
+import java.util.List;
+
+/**
+ * Durable store of detection results, written by {@link ResultWriter} in batches.
+ *
+ * Selected with fraud.persistence.store: dynamodb (default), memory (tests / local runs) or none.
+ */
+public interface ResultStore {
+
+    /**
+     * max results in one {@link #write} call
+     */
+    int maxBatchSize();
+
+    /**
+     * Write the batch, may partly fail.
+     *
+     * @return results not written and worth retrying, empty if all are durable
+     * @throws RuntimeException when the whole call failed, every result is retried
+     */
+    List<PendingResult> write(List<PendingResult> batch);
+}
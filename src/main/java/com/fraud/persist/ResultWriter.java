@@ -0,0 +1,297 @@
+package com.fraud.persist;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind persistence stage for detection results.
+ *
+ * Workers put results into a bounded buffer, writer threads send them to the {@link ResultStore} in
+ * batches (25 for DynamoDB) when a batch is full or the flush interval passed. Unprocessed items are
+ * carried into the next batch after a jittered exponential backoff. When the buffer is full the
+ * worker waits (backpressure on the consumer) and gives up after fraud.persistence.offer.timeout.ms,
+ * {@link #trySubmit} does not wait.
+ * Each result reports back once it is durable or given up, so the msg can be deleted only then.
+ * Workers do not wait for that, the next msg of a FIFO group may be done before a given up one comes back.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResultWriter implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(ResultWriter.class);
+
+    @Autowired
+    private final ObjectProvider<ResultStore> resultStores;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.persistence.buffer.capacity:10000}")
+    private int bufferCapacity;
+
+    @Value("${fraud.persistence.flush.interval.ms:100}")
+    private long flushIntervalMs;
+
+    // max wait of a worker on a full buffer
+    @Value("${fraud.persistence.offer.timeout.ms:5000}")
+    private long offerTimeoutMs;
+
+    @Value("${fraud.persistence.writers:2}")
+    private int writerCount;
+
+    @Value("${fraud.persistence.max.attempts:8}")
+    private int maxAttempts;
+
+    @Value("${fraud.persistence.retry.base.ms:50}")
+    private long retryBaseMs;
+
+    @Value("${fraud.persistence.retry.max.ms:5000}")
+    private long retryMaxMs;
+
+    // delete the SQS msg only after its result is durable
+    @Value("${fraud.persistence.ack.after.durable:false}")
+    private boolean ackAfterDurable;
+
+    private ResultStore resultStore;
+    private BlockingQueue<PendingResult> buffer;
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        resultStore = resultStores.getIfAvailable();
+        buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        Gauge.builder("fraud.persistence.buffer.depth", buffer, BlockingQueue::size)
+                .description("results waiting to be written")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("fraud.persistence.written").register(meterRegistry);
+        retriedCounter = Counter.builder("fraud.persistence.retried").register(meterRegistry);
+        failedCounter = Counter.builder("fraud.persistence.failed")
+                .description("results given up after the max attempts")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("fraud.persistence.rejected")
+                .description("results not accepted because the buffer stayed full")
+                .register(meterRegistry);
+        if (resultStore == null) {
+            logger.info("result persistence disabled");
+        }
+    }
+
+    public boolean isEnabled() {
+        return resultStore != null;
+    }
+
+    public boolean isAckAfterDurable() {
+        return ackAfterDurable && resultStore != null;
+    }
+
+    /**
+     * Queue the result for writing, waits while the buffer is full.
+     *
+     * @param onComplete called with true once the result is durable, false when it was given up,
+     *                   on a writer thread; may be null
+     * @throws IllegalStateException when the buffer stayed full for fraud.persistence.offer.timeout.ms
+     */
+    public void submit(Transaction transaction, FraudResult result, Consumer<Boolean> onComplete) throws InterruptedException {
+        if (skipped(transaction, onComplete)) {
+            return;
+        }
+        if (!buffer.offer(new PendingResult(transaction, result, onComplete), offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+            rejectedCounter.increment();
+            throw new IllegalStateException("result buffer is full for " + offerTimeoutMs + " ms");
+        }
+    }
+
+    /**
+     * Queue the result for writing without waiting, for threads that must not block (ASYNC stage threads)
+     *
+     * @param onComplete as {@link #submit}, not called when the result is not queued
+     * @return false when the buffer is full, the result is not queued
+     */
+    public boolean trySubmit(Transaction transaction, FraudResult result, Consumer<Boolean> onComplete) {
+        if (skipped(transaction, onComplete)) {
+            return true;
+        }
+        if (!buffer.offer(new PendingResult(transaction, result, onComplete))) {
+            rejectedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true when the result is not written at all, onComplete is called at once
+     */
+    private boolean skipped(Transaction transaction, Consumer<Boolean> onComplete) {
+        if (resultStore != null && transaction.getTransactionId() != null) {
+            return false;
+        }
+        if (resultStore != null) {
+            // no key to store it under, retrying would not help
+            logger.warn("Transaction without ID is not persisted, account: {}", transaction.getAccountId());
+        }
+        if (onComplete != null) {
+            onComplete.accept(true);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running || resultStore == null) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = new Thread(this::writeLoop, "result-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        logger.info("result writer started: store={}, writers={}, buffer={}, ack-after-durable={}",
+                resultStore.getClass().getSimpleName(), writerCount, bufferCapacity, ackAfterDurable);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            // writers drain the buffer before they exit
+            for (Thread writer : writers) {
+                writer.join(TimeUnit.SECONDS.toMillis(20));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writers.clear();
+        logger.info("result writer stopped, {} results not written", buffer.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop after the ingestion engine and before the acknowledger, durable results can still be acknowledged
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    private void writeLoop() {
+        int batchSize = resultStore.maxBatchSize();
+        List<PendingResult> carried = new ArrayList<>(batchSize);
+        int failures = 0;
+        while (running || !buffer.isEmpty() || !carried.isEmpty()) {
+            try {
+                List<PendingResult> batch = new ArrayList<>(batchSize);
+                batch.addAll(carried);
+                carried.clear();
+                fill(batch, batchSize);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                if (failures > 0) {
+                    Thread.sleep(backoff(failures));
+                }
+                List<PendingResult> unprocessed;
+                try {
+                    unprocessed = resultStore.write(batch);
+                } catch (RuntimeException e) {
+                    logger.warn("Write {} results failed", batch.size(), e);
+                    unprocessed = batch;
+                }
+                failures = unprocessed.isEmpty() ? 0 : failures + 1;
+                complete(batch, unprocessed, carried);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Result writer error", e);
+            }
+        }
+    }
+
+    /**
+     * Top the batch up from the buffer, waits up to the flush interval for a full batch
+     */
+    private void fill(List<PendingResult> batch, int batchSize) throws InterruptedException {
+        if (batch.isEmpty()) {
+            PendingResult first = buffer.poll(100, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingResult next = remaining > 0 && running ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : buffer.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void complete(List<PendingResult> batch, List<PendingResult> unprocessed, List<PendingResult> carried) {
+        for (PendingResult pending : batch) {
+            if (unprocessed.contains(pending)) {
+                continue;
+            }
+            writtenCounter.increment();
+            pending.complete(true);
+        }
+        for (PendingResult pending : unprocessed) {
+            if (++pending.attempts >= maxAttempts) {
+                failedCounter.increment();
+                logger.error("Persist result failed after {} attempts, Transaction ID: {}",
+                        pending.attempts, pending.getTransactionId());
+                pending.complete(false);
+            } else {
+                retriedCounter.increment();
+                carried.add(pending);
+            }
+        }
+    }
+
+    /**
+     * full-jitter exponential backoff
+     */
+    private long backoff(int failures) {
+        long cap = Math.min(retryMaxMs, retryBaseMs << Math.min(failures, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public int getBufferDepth() {
+        return buffer.size();
+    }
+}
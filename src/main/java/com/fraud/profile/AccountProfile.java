@@ -0,0 +1,54 @@
+package com.fraud.profile;
+
+/**
+ * Precomputed attributes of an account, built offline from its history and read through
+ * {@link RiskProfileCache}. Immutable.
+ */
+public final class AccountProfile {
+
+    /**
+     * account not in the profile store, or profile not loaded yet
+     */
+    public static final AccountProfile UNKNOWN = new AccountProfile(null, 0, 0, null);
+
+    private final String accountId;
+    private final double averageAmount;
+    private final long transactionCount;
+    private final String homeLocation;
+
+    public AccountProfile(String accountId, double averageAmount, long transactionCount, String homeLocation) {
+        this.accountId = accountId;
+        this.averageAmount = averageAmount;
+        this.transactionCount = transactionCount;
+        this.homeLocation = homeLocation;
+    }
+
+    public boolean isKnown() {
+        return this != UNKNOWN;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * average ticket size of the account
+     */
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+
+    /**
+     * transactions the average is computed from
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * location most transactions of the account come from, null if unknown
+     */
+    public String getHomeLocation() {
+        return homeLocation;
+    }
+}
@@ -0,0 +1,82 @@
+package com.fraud.profile;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads profiles from two DynamoDB tables filled by the offline profile job, eventually consistent.
+ *
+ * Account item: accountId (key), averageAmount, transactionCount, homeLocation.
+ * Merchant item: merchantId (key), riskTier (LOW / MEDIUM / HIGH), averageAmount.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "fraud.profile.store", havingValue = "dynamodb", matchIfMissing = true)
+public class DynamoDbProfileStore implements ProfileStore {
+
+    @Autowired
+    private final DynamoDbClient dynamoDbClient;
+
+    @Value("${fraud.profile.dynamodb.account.table:fraud-account-profiles}")
+    private String accountTable;
+
+    @Value("${fraud.profile.dynamodb.merchant.table:fraud-merchant-profiles}")
+    private String merchantTable;
+
+    @Override
+    public AccountProfile loadAccount(String accountId) {
+        Map<String, AttributeValue> item = get(accountTable, "accountId", accountId);
+        if (item.isEmpty()) {
+            return null;
+        }
+        return new AccountProfile(accountId,
+                number(item, "averageAmount"),
+                (long) number(item, "transactionCount"),
+                string(item, "homeLocation"));
+    }
+
+    @Override
+    public MerchantProfile loadMerchant(String merchantId) {
+        Map<String, AttributeValue> item = get(merchantTable, "merchantId", merchantId);
+        if (item.isEmpty()) {
+            return null;
+        }
+        String tier = string(item, "riskTier");
+        RiskTier riskTier;
+        try {
+            riskTier = tier == null ? RiskTier.UNKNOWN : RiskTier.valueOf(tier.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            riskTier = RiskTier.UNKNOWN;
+        }
+        return new MerchantProfile(merchantId, riskTier, number(item, "averageAmount"));
+    }
+
+    private Map<String, AttributeValue> get(String table, String keyName, String key) {
+        Map<String, AttributeValue> item = dynamoDbClient.getItem(GetItemRequest.builder()
+                        .tableName(table)
+                        .key(Collections.singletonMap(keyName, AttributeValue.builder().s(key).build()))
+                        .build())
+                .item();
+        return item != null ? item : Collections.emptyMap();
+    }
+
+    private static double number(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null && value.n() != null ? Double.parseDouble(value.n()) : 0;
+    }
+
+    private static String string(Map<String, AttributeValue> item, String name) {
+        AttributeValue value = item.get(name);
+        return value != null ? value.s() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.fraud.profile;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps profiles in maps, stand-in for DynamoDB in tests and local runs (fraud.profile.store=memory)
+ */
+@Component
+@ConditionalOnProperty(name = "fraud.profile.store", havingValue = "memory")
+public class InMemoryProfileStore implements ProfileStore {
+
+    private final Map<String, AccountProfile> accounts = new ConcurrentHashMap<>();
+    private final Map<String, MerchantProfile> merchants = new ConcurrentHashMap<>();
+
+    @Override
+    public AccountProfile loadAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public MerchantProfile loadMerchant(String merchantId) {
+        return merchants.get(merchantId);
+    }
+
+    public void put(AccountProfile profile) {
+        accounts.put(profile.getAccountId(), profile);
+    }
+
+    public void put(MerchantProfile profile) {
+        merchants.put(profile.getMerchantId(), profile);
+    }
+}
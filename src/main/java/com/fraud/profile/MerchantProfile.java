@@ -0,0 +1,41 @@
+package com.fraud.profile;
+
+/**
+ * Precomputed attributes of a merchant, read through {@link RiskProfileCache}. Immutable.
+ */
+public final class MerchantProfile {
+
+    /**
+     * merchant not in the profile store, or profile not loaded yet
+     */
+    public static final MerchantProfile UNKNOWN = new MerchantProfile(null, RiskTier.UNKNOWN, 0);
+
+    private final String merchantId;
+    private final RiskTier riskTier;
+    private final double averageAmount;
+
+    public MerchantProfile(String merchantId, RiskTier riskTier, double averageAmount) {
+        this.merchantId = merchantId;
+        this.riskTier = riskTier;
+        this.averageAmount = averageAmount;
+    }
+
+    public boolean isKnown() {
+        return this != UNKNOWN;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public RiskTier getRiskTier() {
+        return riskTier;
+    }
+
+    /**
+     * average ticket size at the merchant
+     */
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+}
@@ -0,0 +1,21 @@
+package com.fraud.profile;
+
+/**
+ * Backing store of the risk profiles, only called by the loader threads of {@link RiskProfileCache}.
+ *
+ * Selected with fraud.profile.store: dynamodb (default), memory (tests / local runs) or none.
+ */
+public interface ProfileStore {
+
+    /**
+     * @return profile of the account, null when the store has none
+     * @throws RuntimeException when the store can not be read, the lookup is tried again later
+     */
+    AccountProfile loadAccount(String accountId);
+
+    /**
+     * @return profile of the merchant, null when the store has none
+     * @throws RuntimeException when the store can not be read, the lookup is tried again later
+     */
+    MerchantProfile loadMerchant(String merchantId);
+}
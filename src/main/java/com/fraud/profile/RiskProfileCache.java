@@ -0,0 +1,188 @@
+package com.fraud.profile;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-process cache of account and merchant risk profiles in front of the {@link ProfileStore}.
+ *
+ * Caffeine (W-TinyLFU) caches, bounded by fraud.profile.cache.max.accounts / max.merchants and
+ * expired fraud.profile.cache.expire.after.seconds after loading. An entry read after
+ * fraud.profile.cache.refresh.after.seconds is reloaded in the background while the old profile is
+ * still served, so hot accounts never wait for the store.
+ *
+ * Lookups never block the consumer threads: a miss starts the load on the fraud.profile.loader.threads
+ * pool and returns UNKNOWN (or waits at most fraud.profile.load.wait.ms), the next transaction of the
+ * account finds the profile. Accounts the store does not know are cached as UNKNOWN too, a failed load
+ * is not cached and tried again by the next lookup.
+ */
+@Component
+@RequiredArgsConstructor
+public class RiskProfileCache {
+    private static final Logger logger = LoggerFactory.getLogger(RiskProfileCache.class);
+
+    @Autowired
+    private final ObjectProvider<ProfileStore> profileStores;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.profile.cache.max.accounts:100000}")
+    private long maxAccounts;
+
+    @Value("${fraud.profile.cache.max.merchants:10000}")
+    private long maxMerchants;
+
+    @Value("${fraud.profile.cache.refresh.after.seconds:300}")
+    private long refreshAfterSeconds;
+
+    @Value("${fraud.profile.cache.expire.after.seconds:1800}")
+    private long expireAfterSeconds;
+
+    @Value("${fraud.profile.loader.threads:4}")
+    private int loaderThreads;
+
+    // loads waiting for a loader thread, lookups beyond are answered UNKNOWN without loading
+    @Value("${fraud.profile.loader.queue:10000}")
+    private int loaderQueue;
+
+    // max wait of a lookup for a profile not in the cache, 0: never wait
+    @Value("${fraud.profile.load.wait.ms:0}")
+    private long loadWaitMs;
+
+    private ProfileStore profileStore;
+    private ThreadPoolExecutor loaderPool;
+    private AsyncLoadingCache<String, AccountProfile> accounts;
+    private AsyncLoadingCache<String, MerchantProfile> merchants;
+
+    @PostConstruct
+    public void init() {
+        profileStore = profileStores.getIfAvailable();
+        if (profileStore == null) {
+            logger.info("risk profiles disabled");
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        loaderPool = new ThreadPoolExecutor(loaderThreads, loaderThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loaderQueue), runnable -> {
+            Thread thread = new Thread(runnable, "profile-loader-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Timer accountLoads = loadTimer("account");
+        accounts = build(maxAccounts, accountId -> {
+            long start = System.nanoTime();
+            try {
+                AccountProfile profile = profileStore.loadAccount(accountId);
+                return profile != null ? profile : AccountProfile.UNKNOWN;
+            } finally {
+                accountLoads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        Timer merchantLoads = loadTimer("merchant");
+        merchants = build(maxMerchants, merchantId -> {
+            long start = System.nanoTime();
+            try {
+                MerchantProfile profile = profileStore.loadMerchant(merchantId);
+                return profile != null ? profile : MerchantProfile.UNKNOWN;
+            } finally {
+                merchantLoads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        // cache.gets{result=hit|miss}, cache.evictions, cache.load{result}, cache.load.duration
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, "account-profiles");
+        CaffeineCacheMetrics.monitor(meterRegistry, merchants, "merchant-profiles");
+        logger.info("risk profile cache: store={}, accounts={}, merchants={}, refresh={}s, expire={}s",
+                profileStore.getClass().getSimpleName(), maxAccounts, maxMerchants, refreshAfterSeconds, expireAfterSeconds);
+    }
+
+    private <V> AsyncLoadingCache<String, V> build(long maxSize, Function<String, V> loader) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofSeconds(refreshAfterSeconds))
+                .expireAfterWrite(Duration.ofSeconds(expireAfterSeconds))
+                .recordStats()
+                .buildAsync((key, executor) -> CompletableFuture.supplyAsync(() -> loader.apply(key), loaderPool));
+    }
+
+    private Timer loadTimer(String type) {
+        return Timer.builder("fraud.profile.load")
+                .description("profile store lookups")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (loaderPool != null) {
+            loaderPool.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return profileStore != null;
+    }
+
+    /**
+     * @return profile of the account, {@link AccountProfile#UNKNOWN} when the store has none or it is not loaded yet
+     */
+    public AccountProfile account(String accountId) {
+        if (accounts == null || accountId == null) {
+            return AccountProfile.UNKNOWN;
+        }
+        return lookup(accounts, accountId, AccountProfile.UNKNOWN);
+    }
+
+    /**
+     * @return profile of the merchant, {@link MerchantProfile#UNKNOWN} when the store has none or it is not loaded yet
+     */
+    public MerchantProfile merchant(String merchantId) {
+        if (merchants == null || merchantId == null) {
+            return MerchantProfile.UNKNOWN;
+        }
+        return lookup(merchants, merchantId, MerchantProfile.UNKNOWN);
+    }
+
+    private <V> V lookup(AsyncLoadingCache<String, V> cache, String key, V unknown) {
+        CompletableFuture<V> future;
+        try {
+            future = cache.get(key);
+        } catch (RuntimeException e) {
+            // loader queue full
+            return unknown;
+        }
+        if (!future.isDone() && loadWaitMs > 0) {
+            try {
+                return future.get(loadWaitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                return unknown;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return unknown;
+            }
+        }
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : unknown;
+    }
+}
@@ -0,0 +1,12 @@
+package com.fraud.profile;
+
+/**
+ * Risk tier of a merchant, set by the risk team in the merchant profile
+ */
+public enum RiskTier {
+    LOW,
+    MEDIUM,
+    HIGH,
+    // merchant not in the profile store
+    UNKNOWN
+}
@@ -0,0 +1,90 @@
+package com.fraud.rule;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.profile.AccountProfile;
+import com.fraud.profile.RiskProfileCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rule5: amount far above the usual ticket size of the account
+ *
+ * Hits when the amount is more than fraud.rule.amount.deviation.factor times the average amount in the
+ * account profile. Accounts with less than fraud.rule.amount.deviation.min.transactions transactions in
+ * their profile, or no profile in the cache yet, are not checked.
+ */
+@Component
+@RequiredArgsConstructor
+public class AmountDeviationRule implements FraudRule {
+
+    @Autowired
+    private final RiskProfileCache riskProfileCache;
+
+    @Value("${fraud.rule.amount.deviation.enable:true}")
+    private boolean enabled;
+
+    @Value("${fraud.rule.amount.deviation.factor:5}")
+    private double factor;
+
+    @Value("${fraud.rule.amount.deviation.min.transactions:10}")
+    private long minTransactions;
+
+    @Override
+    public String name() {
+        return "amount-deviation";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.AMOUNT_DEVIATION;
+    }
+
+    @Override
+    public int cost() {
+        return 2;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.01;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled && riskProfileCache.isEnabled();
+    }
+
+    /**
+     * left out of the warm-up, a profile lookup would load the synthetic accounts from the profile store
+     */
+    @Override
+    public FraudRule forWarmup() {
+        return null;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        AccountProfile profile = riskProfileCache.account(transaction.getAccountId());
+        return profile.getTransactionCount() >= minTransactions
+                && profile.getAverageAmount() > 0
+                && transaction.getAmount() > profile.getAverageAmount() * factor;
+    }
+
+    /**
+     * Rendered later than matches(), on the SNS flusher or a logging thread: the profile may have been
+     * refreshed or evicted since, without a usable average the reason leaves the ratio out
+     */
+    @Override
+    public String describe(Transaction transaction) {
+        AccountProfile profile = riskProfileCache.account(transaction.getAccountId());
+        if (!(profile.getAverageAmount() > 0)) {
+            return String.format("The transaction amount of %.2f is more than %.1f times the account average.",
+                    transaction.getAmount(), factor);
+        }
+        return String.format("The transaction amount of %.2f is %.1f times the account average of %.2f.",
+                transaction.getAmount(), transaction.getAmount() / profile.getAverageAmount(), profile.getAverageAmount());
+    }
+}
@@ -0,0 +1,64 @@
+package com.fraud.rule;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rule1: exceed max amount
+ */
+@Component
+public class AmountThresholdRule implements FraudRule {
+
+    // fraud max amount
+    @Value("${fraud.rule.amount.threshold}")
+    private double amountThreshold;
+
+    public AmountThresholdRule() {
+    }
+
+    AmountThresholdRule(double amountThreshold) {
+        this.amountThreshold = amountThreshold;
+    }
+
+    @Override
+    public String name() {
+        return "amount-threshold";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.AMOUNT_THRESHOLD;
+    }
+
+    @Override
+    public int cost() {
+        return 1;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.05;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return transaction.getAmount() > amountThreshold;
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return String.format("The transaction amount of %.2f exceeds the threshold of %.2f.",
+                transaction.getAmount(), amountThreshold);
+    }
+
+    @Override
+    public FraudRule configure(RuleConfig config) {
+        return new AmountThresholdRule(config.getAmountThreshold());
+    }
+
+    public double getAmountThreshold() {
+        return amountThreshold;
+    }
+}
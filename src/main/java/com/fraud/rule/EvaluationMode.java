@@ -0,0 +1,15 @@
+package com.fraud.rule;
+
+/**
+ * How far the rule plan is evaluated for one transaction
+ */
+public enum EvaluationMode {
+    /**
+     * stop at the first rule that matches, one reason per fraud
+     */
+    FIRST_HIT,
+    /**
+     * evaluate every rule and report all reasons
+     */
+    ALL_REASONS
+}
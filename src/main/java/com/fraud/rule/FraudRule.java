@@ -0,0 +1,110 @@
+package com.fraud.rule;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+
+/**
+ * Fraud rule SPI. Every Spring bean implementing this interface is picked up by {@link RuleEngine}
+ * and compiled into the evaluation plan at startup.
+ *
+ * Implementations must be thread safe, {@link #matches} is called concurrently by all workers.
+ */
+public interface FraudRule {
+
+    /**
+     * unique rule name, used in logs and rule statistics
+     */
+    String name();
+
+    /**
+     * code reported in {@link com.fraud.model.FraudResult} when this rule matches
+     */
+    default ReasonCode reasonCode() {
+        return ReasonCode.OTHER;
+    }
+
+    /**
+     * relative cost of one evaluation, cheap rules run first
+     */
+    default int cost() {
+        return 1;
+    }
+
+    /**
+     * expected share of transactions flagged by this rule (0..1), rules likely to hit run first
+     * when the plan stops at the first hit
+     */
+    default double selectivity() {
+        return 0.01;
+    }
+
+    /**
+     * disabled rules are left out of the plan
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * stateful rules are given every transaction through {@link #observe}, also when FIRST_HIT stops
+     * before reaching them
+     */
+    default boolean isStateful() {
+        return false;
+    }
+
+    /**
+     * update the rule state with the transaction, called before the plan is evaluated
+     */
+    default void observe(Transaction transaction) {
+    }
+
+    /**
+     * @return true if the transaction breaks this rule
+     */
+    boolean matches(Transaction transaction);
+
+    /**
+     * human readable reason, only called for transactions that matched, when the text is needed
+     */
+    String describe(Transaction transaction);
+
+    /**
+     * State the hit was decided on, called on the evaluating thread right after a hit. Rules over live
+     * state capture it here, the reason text is rendered later on another thread, when the state moved on.
+     *
+     * @return what {@link #describe(Transaction, Object)} needs besides the transaction, null if nothing
+     */
+    default Object capture(Transaction transaction) {
+        return null;
+    }
+
+    /**
+     * human readable reason from the state captured at the hit
+     *
+     * @param captured result of {@link #capture}, may be null
+     */
+    default String describe(Transaction transaction, Object captured) {
+        return describe(transaction);
+    }
+
+    /**
+     * Rule bound to the values of a rule config snapshot, used when a new {@link RuleConfig} is
+     * compiled into a plan. Must not change this rule, plans still running on it see the old values.
+     *
+     * @return a new rule reading the snapshot, or this when the rule does not use the rule config
+     */
+    default FraudRule configure(RuleConfig config) {
+        return this;
+    }
+
+    /**
+     * Rule for the startup warm-up, must not touch the state, stores or remote lookups of this rule.
+     *
+     * @return this when the rule has none of them, a copy over throwaway state, or null to leave the rule
+     * out of the warm-up
+     */
+    default FraudRule forWarmup() {
+        return this;
+    }
+}
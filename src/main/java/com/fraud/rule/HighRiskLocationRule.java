@@ -0,0 +1,117 @@
+package com.fraud.rule;
+
+import com.fraud.index.LocationMatcher;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Rule3: high risk region
+ * All regions are compiled into one {@link LocationMatcher}, a location is scanned once
+ * whatever the number of regions.
+ */
+@Component
+public class HighRiskLocationRule implements FraudRule {
+
+    @Value("${fraud.rule.risk.locations}")
+    private String highRiskLocationsStr;
+
+    @Value("${fraud.rule.unusual.location.enable}")
+    private boolean enableUnusualLocationCheck;
+
+    private LocationMatcher highRiskLocations;
+
+    public HighRiskLocationRule() {
+    }
+
+    HighRiskLocationRule(LocationMatcher highRiskLocations, boolean enableUnusualLocationCheck) {
+        this.highRiskLocations = highRiskLocations;
+        this.enableUnusualLocationCheck = enableUnusualLocationCheck;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.highRiskLocations = parse(highRiskLocationsStr);
+    }
+
+    /**
+     * @param locations comma separated regions
+     */
+    static LocationMatcher parse(String locations) {
+        return LocationMatcher.compile(Arrays.stream(locations.split(","))
+                .map(String::trim)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public String name() {
+        return "high-risk-location";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.HIGH_RISK_LOCATION;
+    }
+
+    @Override
+    public int cost() {
+        return 3;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.02;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enableUnusualLocationCheck;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return isHighRiskLocation(transaction.getLocation());
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return String.format("The transaction location %s belongs to a high risk area (%s).",
+                transaction.getLocation(), String.join(", ", highRiskLocations.allMatches(transaction.getLocation())));
+    }
+
+    @Override
+    public FraudRule configure(RuleConfig config) {
+        return new HighRiskLocationRule(config.getRiskLocations(), config.isLocationCheckEnabled());
+    }
+
+    /**
+     * is high risk region
+     */
+    private boolean isHighRiskLocation(String location) {
+        if (location == null || location.isBlank()) {
+            return false;
+        }
+        return highRiskLocations.matches(location);
+    }
+
+    /**
+     * @return the first high risk region contained in the location, null if none
+     */
+    public String matchedRegion(String location) {
+        int match = highRiskLocations.firstMatch(location);
+        return match < 0 ? null : highRiskLocations.pattern(match);
+    }
+
+    public int getRegionCount() {
+        return highRiskLocations.size();
+    }
+
+    LocationMatcher getHighRiskLocations() {
+        return highRiskLocations;
+    }
+}
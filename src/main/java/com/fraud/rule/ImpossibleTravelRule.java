@@ -0,0 +1,282 @@
+package com.fraud.rule;
+
+import com.fraud.index.GeoIndex;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.state.LastSeenStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.LongSupplier;
+
+/**
+ * Rule7: impossible travel, the account was somewhere too far away too shortly before
+ *
+ * The location of the transaction is resolved to coordinates by a {@link GeoIndex} loaded from
+ * fraud.rule.travel.locations.file (the bundled geo-locations.csv of major cities when not set), locations
+ * not in the index are not checked. The last two sightings of every account are kept in a
+ * {@link LastSeenStore}, the rule hits when the distance to the previous sighting is at least
+ * fraud.rule.travel.min.distance.km and covering it in the time between them needs more than
+ * fraud.rule.travel.max.speed.kmh. Sightings older than fraud.rule.travel.max.gap.hours are not compared.
+ * Evaluation does not allocate.
+ */
+@Component
+public class ImpossibleTravelRule implements FraudRule {
+    private static final Logger logger = LoggerFactory.getLogger(ImpossibleTravelRule.class);
+
+    static final String DEFAULT_LOCATIONS = "/geo-locations.csv";
+    // accounts of the throwaway store of the warm-up copy
+    private static final int WARMUP_ACCOUNTS = 4096;
+
+    @Value("${fraud.rule.travel.enable:true}")
+    private boolean enabled;
+
+    @Value("${fraud.rule.travel.locations.file:}")
+    private String locationsFile;
+
+    // airliner speed, anything faster is not the same card holder
+    @Value("${fraud.rule.travel.max.speed.kmh:900}")
+    private double maxSpeedKmh;
+
+    // closer sightings are not checked, city names resolve to one point
+    @Value("${fraud.rule.travel.min.distance.km:100}")
+    private double minDistanceKm;
+
+    @Value("${fraud.rule.travel.max.gap.hours:24}")
+    private long maxGapHours;
+
+    // accounts kept in memory, about 36 bytes each
+    @Value("${fraud.rule.travel.max.accounts:1000000}")
+    private int maxAccounts;
+
+    @Value("${fraud.rule.travel.stripes:64}")
+    private int stripes;
+
+    // current time, replaced in tests
+    LongSupplier clock = System::currentTimeMillis;
+
+    private GeoIndex geoIndex;
+    private LastSeenStore store;
+    private long maxGapMillis;
+
+    // per thread result of observe() for the matches() following it, matches() runs on many workers
+    private final ThreadLocal<Hop> scratch = ThreadLocal.withInitial(Hop::new);
+
+    @PostConstruct
+    public void init() {
+        try {
+            geoIndex = loadIndex();
+        } catch (IOException e) {
+            throw new IllegalStateException("can not load travel locations from "
+                    + (isBlank(locationsFile) ? DEFAULT_LOCATIONS : locationsFile), e);
+        }
+        store = new LastSeenStore(maxAccounts, stripes);
+        maxGapMillis = maxGapHours * 3_600_000L;
+        logger.info("impossible travel rule: locations={}, max-speed={} km/h, min-distance={} km, max-accounts={}, memory={} KB",
+                geoIndex.size(), maxSpeedKmh, minDistanceKm, maxAccounts,
+                (geoIndex.memoryBytes() + store.memoryBytes()) / 1024);
+    }
+
+    private GeoIndex loadIndex() throws IOException {
+        if (!isBlank(locationsFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(locationsFile), StandardCharsets.UTF_8)) {
+                return GeoIndex.load(reader);
+            }
+        }
+        InputStream in = ImpossibleTravelRule.class.getResourceAsStream(DEFAULT_LOCATIONS);
+        if (in == null) {
+            throw new IOException("resource not found");
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return GeoIndex.load(reader);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Same index and limits over a small store of its own, the warm-up accounts stay out of the live one
+     */
+    @Override
+    public FraudRule forWarmup() {
+        ImpossibleTravelRule copy = new ImpossibleTravelRule();
+        copy.enabled = enabled;
+        copy.locationsFile = locationsFile;
+        copy.maxSpeedKmh = maxSpeedKmh;
+        copy.minDistanceKm = minDistanceKm;
+        copy.maxGapHours = maxGapHours;
+        copy.maxAccounts = Math.min(maxAccounts, WARMUP_ACCOUNTS);
+        copy.stripes = stripes;
+        copy.clock = clock;
+        copy.geoIndex = geoIndex;
+        copy.maxGapMillis = maxGapMillis;
+        copy.store = new LastSeenStore(copy.maxAccounts, stripes);
+        return copy;
+    }
+
+    @Override
+    public String name() {
+        return "impossible-travel";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.IMPOSSIBLE_TRAVEL;
+    }
+
+    @Override
+    public int cost() {
+        return 3;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.005;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        Hop hop = scratch.get();
+        hop.transaction = transaction;
+        hop.previous = LastSeenStore.NONE;
+        // no account, nothing to compare with
+        if (transaction.getAccountId() == null) {
+            return;
+        }
+        long cell = geoIndex.cellOf(transaction.getLocation());
+        if (cell != GeoIndex.UNKNOWN) {
+            hop.sighting = LastSeenStore.sighting(cell, eventTime(transaction));
+            hop.previous = store.record(transaction.getAccountId(), hop.sighting);
+        }
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        Hop hop = scratch.get();
+        if (hop.transaction == transaction) {
+            return impossible(hop.previous, hop.sighting);
+        }
+        // not observed on this thread
+        long cell = geoIndex.cellOf(transaction.getLocation());
+        if (cell == GeoIndex.UNKNOWN || transaction.getAccountId() == null) {
+            return false;
+        }
+        long sighting = LastSeenStore.sighting(cell, eventTime(transaction));
+        return impossible(store.previous(transaction.getAccountId(), sighting), sighting);
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return describe(transaction, capture(transaction));
+    }
+
+    /**
+     * the two sightings of the matches() on this thread, allocated on a hit only
+     */
+    @Override
+    public Object capture(Transaction transaction) {
+        long sighting;
+        long previous;
+        Hop hop = scratch.get();
+        if (hop.transaction == transaction) {
+            sighting = hop.sighting;
+            previous = hop.previous;
+        } else {
+            long cell = geoIndex.cellOf(transaction.getLocation());
+            if (cell == GeoIndex.UNKNOWN || transaction.getAccountId() == null) {
+                return null;
+            }
+            sighting = LastSeenStore.sighting(cell, eventTime(transaction));
+            previous = store.previous(transaction.getAccountId(), sighting);
+        }
+        return impossible(previous, sighting) ? new Leg(previous, sighting) : null;
+    }
+
+    @Override
+    public String describe(Transaction transaction, Object captured) {
+        if (!(captured instanceof Leg)) {
+            return String.format("Account %s moved faster than possible before %s.",
+                    transaction.getAccountId(), transaction.getLocation());
+        }
+        Leg leg = (Leg) captured;
+        long seconds = Math.abs(LastSeenStore.timeMillis(leg.sighting) - LastSeenStore.timeMillis(leg.previous)) / 1000;
+        double distance = GeoIndex.distanceKm(LastSeenStore.cell(leg.previous), LastSeenStore.cell(leg.sighting));
+        return String.format("Account %s was %.0f km from %s %d minutes before, an implied speed of %.0f km/h.",
+                transaction.getAccountId(), distance, transaction.getLocation(), seconds / 60,
+                seconds == 0 ? Double.POSITIVE_INFINITY : distance * 3600 / seconds);
+    }
+
+    /**
+     * Distance between the sightings is too far to travel in the time between them
+     */
+    private boolean impossible(long previous, long sighting) {
+        if (previous == LastSeenStore.NONE) {
+            return false;
+        }
+        long millis = Math.abs(LastSeenStore.timeMillis(sighting) - LastSeenStore.timeMillis(previous));
+        if (millis > maxGapMillis) {
+            return false;
+        }
+        double distance = GeoIndex.distanceKm(LastSeenStore.cell(previous), LastSeenStore.cell(sighting));
+        return distance >= minDistanceKm && distance * 3_600_000 > maxSpeedKmh * millis;
+    }
+
+    /**
+     * Transaction time, the arrival time when not given or ahead of us. Old times are kept, sightings
+     * are compared by their own times (batch replay of past days).
+     */
+    long eventTime(Transaction transaction) {
+        long now = clock.getAsLong();
+        long eventTime = transaction.getTransactionTime();
+        return eventTime > 0 && eventTime <= now ? eventTime : now;
+    }
+
+    public int getTrackedAccountCount() {
+        return store.size();
+    }
+
+    public long getStoreMemoryBytes() {
+        return store.memoryBytes();
+    }
+
+    private static final class Hop {
+        Transaction transaction;
+        long sighting;
+        long previous;
+    }
+
+    /**
+     * sightings that decided a hit
+     */
+    private static final class Leg {
+        final long previous;
+        final long sighting;
+
+        Leg(long previous, long sighting) {
+            this.previous = previous;
+            this.sighting = sighting;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.fraud.rule;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.profile.RiskProfileCache;
+import com.fraud.profile.RiskTier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rule6: high risk merchant
+ *
+ * Hits when the merchant profile is in the HIGH risk tier and the amount is at least
+ * fraud.rule.merchant.risk.min.amount. Merchants without a profile in the cache yet are not checked.
+ */
+@Component
+@RequiredArgsConstructor
+public class MerchantRiskRule implements FraudRule {
+
+    @Autowired
+    private final RiskProfileCache riskProfileCache;
+
+    @Value("${fraud.rule.merchant.risk.enable:true}")
+    private boolean enabled;
+
+    @Value("${fraud.rule.merchant.risk.min.amount:500}")
+    private double minAmount;
+
+    @Override
+    public String name() {
+        return "high-risk-merchant";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.HIGH_RISK_MERCHANT;
+    }
+
+    @Override
+    public int cost() {
+        return 2;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.01;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled && riskProfileCache.isEnabled();
+    }
+
+    /**
+     * left out of the warm-up, a profile lookup would load the synthetic accounts from the profile store
+     */
+    @Override
+    public FraudRule forWarmup() {
+        return null;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return transaction.getAmount() >= minAmount
+                && riskProfileCache.merchant(transaction.getMerchantId()).getRiskTier() == RiskTier.HIGH;
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return String.format("Merchant %s is in the high risk tier, amount %.2f.",
+                transaction.getMerchantId(), transaction.getAmount());
+    }
+}
@@ -0,0 +1,228 @@
+package com.fraud.rule;
+
+import com.fraud.index.AccountIndex;
+import com.fraud.index.LocationMatcher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Immutable snapshot of the rule configuration, compiled before it is used: the watchlist is an
+ * {@link AccountIndex} and the risk regions a {@link LocationMatcher}. Every change builds a new
+ * snapshot with a higher version, which {@link RuleConfigManager} compiles into a new plan and
+ * publishes with one volatile write.
+ *
+ * The override document uses the keys of application.properties, keys it does not set keep their
+ * startup value.
+ */
+public final class RuleConfig {
+
+    public static final String AMOUNT_THRESHOLD = "fraud.rule.amount.threshold";
+    public static final String SUSPICIOUS_ACCOUNTS = "fraud.rule.suspicious.accounts";
+    public static final String SUSPICIOUS_ACCOUNTS_FILE = "fraud.rule.suspicious.accounts.file";
+    public static final String RISK_LOCATIONS = "fraud.rule.risk.locations";
+    public static final String LOCATION_CHECK = "fraud.rule.unusual.location.enable";
+    public static final String EVALUATION_MODE = "fraud.rule.evaluation.mode";
+
+    private final long version;
+    private final String source;
+    private final double amountThreshold;
+    private final AccountIndex suspiciousAccounts;
+    // null when the watchlist is the inline list
+    private final String suspiciousAccountsFile;
+    // modified time + size of the watchlist file when it was loaded
+    private final long watchlistModifiedTime;
+    private final long watchlistSize;
+    private final LocationMatcher riskLocations;
+    private final boolean locationCheckEnabled;
+    private final EvaluationMode mode;
+    // override document this snapshot was built from, applied again when only the watchlist file changes
+    private final Properties overrides;
+
+    private RuleConfig(long version, String source, double amountThreshold, AccountIndex suspiciousAccounts,
+                       String suspiciousAccountsFile, long watchlistModifiedTime, long watchlistSize,
+                       LocationMatcher riskLocations, boolean locationCheckEnabled, EvaluationMode mode,
+                       Properties overrides) {
+        this.version = version;
+        this.source = source;
+        this.amountThreshold = amountThreshold;
+        this.suspiciousAccounts = suspiciousAccounts;
+        this.suspiciousAccountsFile = suspiciousAccountsFile;
+        this.watchlistModifiedTime = watchlistModifiedTime;
+        this.watchlistSize = watchlistSize;
+        this.riskLocations = riskLocations;
+        this.locationCheckEnabled = locationCheckEnabled;
+        this.mode = mode;
+        this.overrides = overrides;
+    }
+
+    /**
+     * Snapshot of the values the rules were started with, version 1
+     */
+    static RuleConfig startup(double amountThreshold, AccountIndex suspiciousAccounts, String suspiciousAccountsFile,
+                              LocationMatcher riskLocations, boolean locationCheckEnabled, EvaluationMode mode) {
+        long modifiedTime = 0;
+        long size = 0;
+        if (suspiciousAccountsFile != null) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(suspiciousAccountsFile), BasicFileAttributes.class);
+                modifiedTime = attributes.lastModifiedTime().toMillis();
+                size = attributes.size();
+            } catch (IOException e) {
+                // unknown version, the next check reloads the file
+            }
+        }
+        return new RuleConfig(1, "startup", amountThreshold, suspiciousAccounts, suspiciousAccountsFile,
+                modifiedTime, size, riskLocations, locationCheckEnabled, mode, new Properties());
+    }
+
+    /**
+     * Build the next snapshot: startup values of this config overridden by the given properties.
+     * The watchlist of current is reused when the file did not change, otherwise it is loaded again.
+     *
+     * @throws IllegalArgumentException when a value is invalid
+     * @throws IOException              when the watchlist file can not be read
+     */
+    RuleConfig override(Properties overrides, RuleConfig current, long version, String source) throws IOException {
+        double threshold = amountThreshold;
+        String value = overrides.getProperty(AMOUNT_THRESHOLD);
+        if (value != null) {
+            try {
+                threshold = Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(AMOUNT_THRESHOLD + " is not a number: " + value);
+            }
+        }
+        if (!(threshold > 0) || Double.isInfinite(threshold)) {
+            throw new IllegalArgumentException(AMOUNT_THRESHOLD + " must be a positive number, got " + threshold);
+        }
+
+        boolean locationCheck = locationCheckEnabled;
+        value = overrides.getProperty(LOCATION_CHECK);
+        if (value != null) {
+            if (!"true".equalsIgnoreCase(value.trim()) && !"false".equalsIgnoreCase(value.trim())) {
+                throw new IllegalArgumentException(LOCATION_CHECK + " must be true or false, got " + value);
+            }
+            locationCheck = Boolean.parseBoolean(value.trim());
+        }
+        LocationMatcher locations = riskLocations;
+        value = overrides.getProperty(RISK_LOCATIONS);
+        if (value != null) {
+            locations = HighRiskLocationRule.parse(value);
+        }
+        if (locationCheck && locations.size() == 0) {
+            throw new IllegalArgumentException(RISK_LOCATIONS + " is empty while " + LOCATION_CHECK + " is on");
+        }
+
+        EvaluationMode evaluationMode = mode;
+        value = overrides.getProperty(EVALUATION_MODE);
+        if (value != null) {
+            try {
+                evaluationMode = EvaluationMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(EVALUATION_MODE + " is not an evaluation mode: " + value);
+            }
+        }
+
+        // the inline list is only used when no file is set, as at startup
+        String file = suspiciousAccountsFile;
+        value = overrides.getProperty(SUSPICIOUS_ACCOUNTS_FILE);
+        if (value != null) {
+            file = value.isBlank() ? null : value.trim();
+        }
+        AccountIndex accounts;
+        long modifiedTime = 0;
+        long size = 0;
+        if (file == null) {
+            value = overrides.getProperty(SUSPICIOUS_ACCOUNTS);
+            if (value != null) {
+                accounts = SuspiciousAccountRule.parse(value);
+            } else if (suspiciousAccountsFile == null) {
+                accounts = suspiciousAccounts;
+            } else {
+                // startup used a file, the override switched to an inline list that is not there
+                throw new IllegalArgumentException(SUSPICIOUS_ACCOUNTS + " must be set when " + SUSPICIOUS_ACCOUNTS_FILE + " is cleared");
+            }
+        } else {
+            Path path = Paths.get(file);
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            modifiedTime = attributes.lastModifiedTime().toMillis();
+            size = attributes.size();
+            accounts = current != null && current.isWatchlist(file, modifiedTime, size)
+                    ? current.suspiciousAccounts
+                    : SuspiciousAccountRule.load(path);
+        }
+        Properties copy = new Properties();
+        copy.putAll(overrides);
+        return new RuleConfig(version, source, threshold, accounts, file, modifiedTime, size, locations, locationCheck,
+                evaluationMode, copy);
+    }
+
+    /**
+     * @return true when the watchlist of this config was loaded from that version of the file
+     */
+    boolean isWatchlist(String file, long modifiedTime, long size) {
+        return file.equals(suspiciousAccountsFile) && modifiedTime == watchlistModifiedTime && size == watchlistSize;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * where the snapshot came from: startup, the override file or URL, or rollback
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public double getAmountThreshold() {
+        return amountThreshold;
+    }
+
+    public AccountIndex getSuspiciousAccounts() {
+        return suspiciousAccounts;
+    }
+
+    public String getSuspiciousAccountsFile() {
+        return suspiciousAccountsFile;
+    }
+
+    public LocationMatcher getRiskLocations() {
+        return riskLocations;
+    }
+
+    public boolean isLocationCheckEnabled() {
+        return locationCheckEnabled;
+    }
+
+    public EvaluationMode getMode() {
+        return mode;
+    }
+
+    Properties getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * same values with another version and source, used to publish an older snapshot again
+     */
+    RuleConfig withVersion(long version, String source) {
+        return new RuleConfig(version, source, amountThreshold, suspiciousAccounts, suspiciousAccountsFile,
+                watchlistModifiedTime, watchlistSize, riskLocations, locationCheckEnabled, mode, overrides);
+    }
+
+    @Override
+    public String toString() {
+        return "RuleConfig{version=" + version + ", source=" + source + ", amountThreshold=" + amountThreshold
+                + ", suspiciousAccounts=" + suspiciousAccounts.size()
+                + (suspiciousAccountsFile != null ? " from " + suspiciousAccountsFile : "")
+                + ", riskLocations=" + riskLocations.size() + ", locationCheck=" + locationCheckEnabled
+                + ", mode=" + mode + "}";
+    }
+}
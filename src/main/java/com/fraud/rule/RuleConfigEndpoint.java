@@ -0,0 +1,53 @@
+package com.fraud.rule;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/ruleconfig: GET shows the running rule config version and the earlier ones. Read only, the
+ * rollback is the separate {@link RuleConfigRollbackEndpoint}, not exposed by default.
+ */
+@Component
+@Endpoint(id = "ruleconfig")
+@RequiredArgsConstructor
+public class RuleConfigEndpoint {
+
+    @Autowired
+    private final RuleConfigManager ruleConfigManager;
+    @Autowired
+    private final RuleEngine ruleEngine;
+
+    @ReadOperation
+    public Map<String, Object> ruleConfig() {
+        Map<String, Object> body = describe(ruleConfigManager.getCurrent());
+        body.put("planVersion", ruleEngine.getPlan().getVersion());
+        body.put("rules", ruleEngine.getPlan().getRuleNames());
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (RuleConfig config : ruleConfigManager.getHistory()) {
+            history.add(describe(config));
+        }
+        body.put("history", history);
+        return body;
+    }
+
+    static Map<String, Object> describe(RuleConfig config) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", config.getVersion());
+        body.put("source", config.getSource());
+        body.put("amountThreshold", config.getAmountThreshold());
+        body.put("suspiciousAccounts", config.getSuspiciousAccounts().size());
+        body.put("suspiciousAccountsFile", config.getSuspiciousAccountsFile());
+        body.put("riskLocations", config.getRiskLocations().size());
+        body.put("locationCheck", config.isLocationCheckEnabled());
+        body.put("mode", String.valueOf(config.getMode()));
+        return body;
+    }
+}
@@ -0,0 +1,317 @@
+package com.fraud.rule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Keeps the rule config up to date without restart.
+ *
+ * Every fraud.rule.config.reload.interval.ms it checks the override document at fraud.rule.config.location
+ * (a local properties file, or an http(s) URL asked with If-None-Match) and the watchlist file. When one
+ * changed, the next {@link RuleConfig} is built and validated off the consumer threads:
+ * - values must parse and make sense (positive threshold, regions when the location check is on)
+ * - the watchlist must not shrink by more than fraud.rule.config.max.watchlist.shrink.ratio, a truncated
+ *   file or a half written export is refused
+ * - the rules must compile into a plan
+ * Only then the plan is published, with a new version. A refused candidate leaves the running version
+ * in place. The last fraud.rule.config.history.size versions are kept, {@link #rollback()} publishes the
+ * previous one again.
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleConfigManager {
+    private static final Logger logger = LoggerFactory.getLogger(RuleConfigManager.class);
+
+    @Autowired
+    private final RuleEngine ruleEngine;
+    @Autowired
+    private final AmountThresholdRule amountRule;
+    @Autowired
+    private final SuspiciousAccountRule accountRule;
+    @Autowired
+    private final HighRiskLocationRule locationRule;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    // local properties file or http(s) URL, empty to only watch the watchlist file
+    @Value("${fraud.rule.config.location:}")
+    private String location;
+
+    @Value("${fraud.rule.config.history.size:5}")
+    private int historySize;
+
+    @Value("${fraud.rule.config.max.watchlist.shrink.ratio:0.5}")
+    private double maxWatchlistShrinkRatio;
+
+    @Value("${fraud.rule.config.http.timeout.ms:5000}")
+    private long httpTimeoutMs;
+
+    private RuleConfig startup;
+    private volatile RuleConfig current;
+    // earlier versions, latest first
+    private final Deque<RuleConfig> history = new ArrayDeque<>();
+    private long lastVersion;
+
+    // last seen version of the override document and of the watchlist file, refused ones included
+    private String overrideStamp;
+    private String watchlistStamp;
+
+    private HttpClient httpClient;
+
+    private Counter applied;
+    private Counter rejected;
+    private Counter rolledBack;
+
+    @PostConstruct
+    public void init() {
+        startup = RuleConfig.startup(amountRule.getAmountThreshold(), accountRule.getSuspiciousAccounts(),
+                accountRule.getSuspiciousAccountsFile(), locationRule.getHighRiskLocations(), locationRule.isEnabled(),
+                ruleEngine.getMode());
+        ruleEngine.publish(ruleEngine.prepare(startup));
+        current = startup;
+        lastVersion = startup.getVersion();
+        try {
+            watchlistStamp = watchlistStamp(startup.getSuspiciousAccountsFile());
+        } catch (IOException e) {
+            watchlistStamp = null;
+        }
+
+        Gauge.builder("fraud.rule.config.version", this, m -> m.getCurrent().getVersion())
+                .description("version of the rule config the detections run on")
+                .register(meterRegistry);
+        applied = updates("applied");
+        rejected = updates("rejected");
+        rolledBack = updates("rolled_back");
+
+        if (location != null && !location.isBlank()) {
+            if (isUrl(location)) {
+                httpClient = HttpClient.newBuilder()
+                        .connectTimeout(Duration.ofMillis(httpTimeoutMs))
+                        .build();
+            }
+            // overrides apply before the consumer starts, a broken document keeps the startup values
+            reloadIfChanged();
+        }
+    }
+
+    private Counter updates(String result) {
+        return Counter.builder("fraud.rule.config.updates")
+                .description("rule config candidates by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Check the override document and the watchlist file, publish a new version when they changed and
+     * the candidate is valid
+     */
+    @Scheduled(fixedDelayString = "${fraud.rule.config.reload.interval.ms:30000}",
+            initialDelayString = "${fraud.rule.config.reload.interval.ms:30000}")
+    public synchronized void reloadIfChanged() {
+        RuleConfig running = current;
+        Properties overrides = running.getOverrides();
+        String source = null;
+        try {
+            if (location != null && !location.isBlank()) {
+                Properties fetched = isUrl(location) ? fetchUrl() : readFile();
+                if (fetched != null) {
+                    overrides = fetched;
+                    source = location;
+                }
+            }
+            String file = watchedFile(overrides);
+            String stamp = watchlistStamp(file);
+            if (stamp != null && !stamp.equals(watchlistStamp)) {
+                watchlistStamp = stamp;
+                if (source == null) {
+                    source = file;
+                }
+            }
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            // read the override document again next time, it may be fine with a readable watchlist
+            overrideStamp = null;
+            rejected.increment();
+            logger.error("read rule config failed, keep version {}: {}", running.getVersion(), e.toString());
+            return;
+        }
+        if (source != null) {
+            apply(overrides, source);
+        }
+    }
+
+    /**
+     * Validate a candidate built from the override properties and publish it
+     *
+     * @return the published config, the running one when the candidate was refused
+     */
+    synchronized RuleConfig apply(Properties overrides, String source) {
+        RuleConfig running = current;
+        try {
+            RuleConfig candidate = startup.override(overrides, running, lastVersion + 1, source);
+            int before = running.getSuspiciousAccounts().size();
+            int after = candidate.getSuspiciousAccounts().size();
+            if (before > 0 && after < before * (1 - maxWatchlistShrinkRatio)) {
+                throw new IllegalArgumentException("watchlist shrinks from " + before + " to " + after
+                        + " accounts, more than fraud.rule.config.max.watchlist.shrink.ratio=" + maxWatchlistShrinkRatio);
+            }
+            publish(candidate);
+            applied.increment();
+            logger.info("rule config version {} -> {}: {}", running.getVersion(), candidate.getVersion(), candidate);
+            return candidate;
+        } catch (IOException | RuntimeException e) {
+            rejected.increment();
+            logger.error("rule config from {} refused, keep version {}: {}", source, running.getVersion(), e.toString());
+            return running;
+        }
+    }
+
+    /**
+     * Publish the previous version again, under a new version number. It stays until the override
+     * document or the watchlist file changes again.
+     *
+     * @throws IllegalStateException when there is no previous version
+     */
+    public synchronized RuleConfig rollback() {
+        RuleConfig previous = history.peekFirst();
+        if (previous == null) {
+            throw new IllegalStateException("no earlier rule config to roll back to");
+        }
+        RuleConfig running = current;
+        RuleConfig restored = previous.withVersion(lastVersion + 1, "rollback to version " + previous.getVersion());
+        ruleEngine.publish(ruleEngine.prepare(restored));
+        history.removeFirst();
+        current = restored;
+        lastVersion = restored.getVersion();
+        rolledBack.increment();
+        logger.warn("rule config version {} rolled back: {}", running.getVersion(), restored);
+        return restored;
+    }
+
+    private void publish(RuleConfig candidate) {
+        // compile first, a failing plan leaves everything as it was
+        RulePlan plan = ruleEngine.prepare(candidate);
+        ruleEngine.publish(plan);
+        history.addFirst(current);
+        while (history.size() > historySize) {
+            history.removeLast();
+        }
+        current = candidate;
+        lastVersion = candidate.getVersion();
+    }
+
+    /**
+     * @return properties of the file, null when it did not change since the last read
+     */
+    private Properties readFile() throws IOException {
+        Path path = Paths.get(location);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String stamp = attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+        if (stamp.equals(overrideStamp)) {
+            return null;
+        }
+        overrideStamp = stamp;
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * @return properties of the response, null when the server answered 304 or the same body again
+     */
+    private Properties fetchUrl() throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(location))
+                .timeout(Duration.ofMillis(httpTimeoutMs))
+                .GET();
+        if (overrideStamp != null && overrideStamp.startsWith("etag:")) {
+            request.header("If-None-Match", overrideStamp.substring(5));
+        }
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading " + location, e);
+        }
+        if (response.statusCode() == 304) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + location + " returned " + response.statusCode());
+        }
+        String stamp = response.headers().firstValue("ETag")
+                .map(etag -> "etag:" + etag)
+                .orElse("hash:" + response.body().hashCode());
+        if (stamp.equals(overrideStamp)) {
+            return null;
+        }
+        overrideStamp = stamp;
+        Properties properties = new Properties();
+        properties.load(new StringReader(response.body()));
+        return properties;
+    }
+
+    /**
+     * watchlist file the overrides point to, the startup one when they do not set it
+     */
+    private String watchedFile(Properties overrides) {
+        String file = overrides.getProperty(RuleConfig.SUSPICIOUS_ACCOUNTS_FILE);
+        if (file == null) {
+            return startup.getSuspiciousAccountsFile();
+        }
+        return file.isBlank() ? null : file.trim();
+    }
+
+    private static String watchlistStamp(String file) throws IOException {
+        if (file == null) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(Paths.get(file), BasicFileAttributes.class);
+        return file + ":" + attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+    }
+
+    private static boolean isUrl(String location) {
+        return location.startsWith("http://") || location.startsWith("https://");
+    }
+
+    public RuleConfig getCurrent() {
+        return current;
+    }
+
+    /**
+     * earlier versions that {@link #rollback()} can go back to, latest first
+     */
+    public synchronized List<RuleConfig> getHistory() {
+        return new ArrayList<>(history);
+    }
+}
@@ -0,0 +1,30 @@
+package com.fraud.rule;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/ruleconfigrollback: POST rolls back to the previous rule config version on this pod.
+ *
+ * The app has no authentication, anyone reaching the port could change the rules of the pod: the endpoint
+ * is not in management.endpoints.web.exposure.include by default. Expose it only together with a
+ * management.server.port the Service does not route to (see application.properties).
+ */
+@Component
+@Endpoint(id = "ruleconfigrollback")
+@RequiredArgsConstructor
+public class RuleConfigRollbackEndpoint {
+
+    @Autowired
+    private final RuleConfigManager ruleConfigManager;
+
+    @WriteOperation
+    public Map<String, Object> rollback() {
+        return RuleConfigEndpoint.describe(ruleConfigManager.rollback());
+    }
+}
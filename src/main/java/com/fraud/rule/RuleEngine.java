@@ -0,0 +1,183 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rule engine: compiles all {@link FraudRule} beans into a {@link RulePlan} at startup and evaluates
+ * transactions against it.
+ *
+ * When the rule config changes a new plan is compiled from the rules bound to the new
+ * {@link RuleConfig} and published with one volatile write. An evaluation reads the plan once, so it
+ * runs entirely on the old or entirely on the new rule set, without any lock.
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleEngine {
+    private static final Logger logger = LoggerFactory.getLogger(RuleEngine.class);
+
+    @Autowired
+    private final List<FraudRule> rules;
+
+    @Value("${fraud.rule.evaluation.mode:ALL_REASONS}")
+    private EvaluationMode mode;
+
+    // per rule timing, costs two System.nanoTime() calls per rule
+    @Value("${fraud.rule.timing.enabled:true}")
+    private boolean timingEnabled;
+
+    // counters of each rule bean, same order as rules, shared by all plans
+    private List<RulePlan.Counters> counters;
+
+    private volatile RulePlan plan;
+
+    @PostConstruct
+    public void compile() {
+        counters = new ArrayList<>(rules.size());
+        for (int i = 0; i < rules.size(); i++) {
+            counters.add(new RulePlan.Counters());
+        }
+        this.plan = RulePlan.compile(rules, counters, mode, 0);
+        logger.info("compiled fraud rule plan: mode={}, rules={}", mode, plan.getRuleNames());
+    }
+
+    /**
+     * Engine over the {@link FraudRule#forWarmup()} rules, with counters of its own: the startup warm-up
+     * runs on it, the rule state and the rule meters of this engine are left alone
+     */
+    public RuleEngine forWarmup() {
+        List<FraudRule> warmupRules = new ArrayList<>(rules.size());
+        for (FraudRule rule : rules) {
+            FraudRule copy = rule.forWarmup();
+            if (copy != null) {
+                warmupRules.add(copy);
+            }
+        }
+        RuleEngine engine = new RuleEngine(warmupRules);
+        engine.mode = mode;
+        engine.timingEnabled = timingEnabled;
+        engine.counters = new ArrayList<>(warmupRules.size());
+        for (int i = 0; i < warmupRules.size(); i++) {
+            engine.counters.add(new RulePlan.Counters());
+        }
+        engine.plan = RulePlan.compile(warmupRules, engine.counters, mode, 0);
+        return engine;
+    }
+
+    /**
+     * Compile a plan of the rules bound to the config, does not publish it
+     *
+     * @throws IllegalStateException when the plan can not be compiled
+     */
+    public RulePlan prepare(RuleConfig config) {
+        List<FraudRule> configured = new ArrayList<>(rules.size());
+        for (FraudRule rule : rules) {
+            configured.add(rule.configure(config));
+        }
+        return RulePlan.compile(configured, counters, config.getMode(), config.getVersion());
+    }
+
+    /**
+     * Make the plan the one used by the following evaluations, evaluations already running finish on
+     * the plan they started with
+     */
+    public void publish(RulePlan plan) {
+        this.plan = plan;
+        logger.info("published fraud rule plan: version={}, mode={}, rules={}", plan.getVersion(), plan.getMode(), plan.getRuleNames());
+    }
+
+    /**
+     * Run the plan against the transaction, allocates nothing.
+     *
+     * @return bitmask of the matched positions in the plan (only the first one in FIRST_HIT mode), 0 if clean
+     */
+    public long match(RulePlan plan, Transaction transaction) {
+        // stateful rules count every transaction, whatever the rules before them decide
+        for (FraudRule rule : plan.statefulRules()) {
+            rule.observe(transaction);
+        }
+        long matched = 0;
+        RulePlan.CompiledRule[] compiledRules = plan.rules();
+        for (int i = 0; i < compiledRules.length; i++) {
+            if (matches(compiledRules[i], transaction)) {
+                matched |= 1L << i;
+                if (plan.getMode() == EvaluationMode.FIRST_HIT) {
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * @return reasons of all matched rules (only the first one in FIRST_HIT mode), empty if clean
+     */
+    public List<String> evaluate(Transaction transaction) {
+        RulePlan current = plan;
+        long matched = match(current, transaction);
+        return matched == 0 ? Collections.emptyList() : current.describe(matched, transaction);
+    }
+
+    private boolean matches(RulePlan.CompiledRule compiled, Transaction transaction) {
+        boolean hit;
+        if (timingEnabled) {
+            long start = System.nanoTime();
+            hit = compiled.rule.matches(transaction);
+            compiled.nanos.add(System.nanoTime() - start);
+        } else {
+            hit = compiled.rule.matches(transaction);
+        }
+        compiled.evaluations.increment();
+        if (hit) {
+            compiled.hits.increment();
+        }
+        return hit;
+    }
+
+    public RulePlan getPlan() {
+        return plan;
+    }
+
+    public EvaluationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * names of all rule beans, enabled or not
+     */
+    public List<String> getRuleNames() {
+        List<String> names = new ArrayList<>(rules.size());
+        for (FraudRule rule : rules) {
+            names.add(rule.name());
+        }
+        return names;
+    }
+
+    /**
+     * @return counters of the rule bean at that index of {@link #getRuleNames()}
+     */
+    RulePlan.Counters counters(int index) {
+        return counters.get(index);
+    }
+
+    /**
+     * per rule counters, in plan order
+     */
+    public List<RuleStats> getStats() {
+        List<RuleStats> stats = new ArrayList<>();
+        for (RulePlan.CompiledRule compiled : plan.rules()) {
+            stats.add(compiled.stats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,44 @@
+package com.fraud.rule;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per rule meters on top of the counters of the compiled plan, read when scraped so the rule
+ * engine keeps its plain LongAdders on the hot path. Hit rate is hits / evaluations count.
+ * Meters are registered for every rule bean, a rule enabled later by a config change already has them.
+ */
+@Component
+@RequiredArgsConstructor
+public class RuleMetrics {
+
+    @Autowired
+    private final RuleEngine ruleEngine;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        List<String> rules = ruleEngine.getRuleNames();
+        for (int i = 0; i < rules.size(); i++) {
+            String rule = rules.get(i);
+            RulePlan.Counters counters = ruleEngine.counters(i);
+            // time is only collected with fraud.rule.timing.enabled
+            FunctionTimer.builder("fraud.rule.evaluation", counters,
+                            c -> c.evaluations.sum(), c -> c.nanos.sum(), TimeUnit.NANOSECONDS)
+                    .tag("rule", rule)
+                    .register(meterRegistry);
+            FunctionCounter.builder("fraud.rule.hits", counters, c -> c.hits.sum())
+                    .tag("rule", rule)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed evaluation plan compiled from the configured rules, immutable after compile.
+ *
+ * In {@link EvaluationMode#FIRST_HIT} rules are ordered by expected cost to find a hit
+ * (cost / selectivity), so cheap and likely rules settle the outcome early. In
+ * {@link EvaluationMode#ALL_REASONS} every rule runs, ordered by cost only.
+ *
+ * Matched rules are reported as a bitmask of their position in the plan, so at most
+ * {@link #MAX_RULES} rules can be compiled.
+ */
+public final class RulePlan {
+
+    // avoid dividing by zero for rules that declare they never hit
+    private static final double MIN_SELECTIVITY = 1e-6;
+
+    public static final int MAX_RULES = Long.SIZE;
+
+    private final EvaluationMode mode;
+    private final long version;
+    private final CompiledRule[] rules;
+    private final FraudRule[] statefulRules;
+
+    private RulePlan(EvaluationMode mode, long version, CompiledRule[] rules, FraudRule[] statefulRules) {
+        this.mode = mode;
+        this.version = version;
+        this.rules = rules;
+        this.statefulRules = statefulRules;
+    }
+
+    public static RulePlan compile(List<? extends FraudRule> configured, EvaluationMode mode) {
+        List<Counters> counters = new ArrayList<>(configured.size());
+        for (int i = 0; i < configured.size(); i++) {
+            counters.add(new Counters());
+        }
+        return compile(configured, counters, mode, 0);
+    }
+
+    /**
+     * @param counters counters of each configured rule, same order, kept by the plans compiled from one rule set
+     * @param version  {@link RuleConfig} version the rules are bound to, 0 for the rules as injected
+     */
+    static RulePlan compile(List<? extends FraudRule> configured, List<Counters> counters, EvaluationMode mode, long version) {
+        List<FraudRule> enabled = new ArrayList<>();
+        Map<FraudRule, Counters> countersByRule = new IdentityHashMap<>();
+        for (int i = 0; i < configured.size(); i++) {
+            FraudRule rule = configured.get(i);
+            if (rule.isEnabled()) {
+                enabled.add(rule);
+                countersByRule.put(rule, counters.get(i));
+            }
+        }
+        if (enabled.size() > MAX_RULES) {
+            throw new IllegalStateException("at most " + MAX_RULES + " fraud rules can be enabled, got " + enabled.size());
+        }
+        Comparator<FraudRule> order = mode == EvaluationMode.FIRST_HIT
+                ? Comparator.comparingDouble(rule -> rule.cost() / Math.max(rule.selectivity(), MIN_SELECTIVITY))
+                : Comparator.comparingInt(FraudRule::cost);
+        // stable sort, equal rules keep bean order
+        enabled.sort(order);
+        CompiledRule[] compiled = new CompiledRule[enabled.size()];
+        List<FraudRule> stateful = new ArrayList<>();
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = new CompiledRule(enabled.get(i), countersByRule.get(enabled.get(i)));
+            if (enabled.get(i).isStateful()) {
+                stateful.add(enabled.get(i));
+            }
+        }
+        return new RulePlan(mode, version, compiled, stateful.toArray(new FraudRule[0]));
+    }
+
+    public EvaluationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return version of the {@link RuleConfig} this plan was compiled with, 0 for the rules as injected
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    CompiledRule[] rules() {
+        return rules;
+    }
+
+    FraudRule[] statefulRules() {
+        return statefulRules;
+    }
+
+    /**
+     * @param matched bitmask of matched plan positions
+     * @return {@link com.fraud.model.ReasonCode} bits of the matched rules
+     */
+    public long reasonCodes(long matched) {
+        long codes = 0;
+        for (long bits = matched; bits != 0; bits &= bits - 1) {
+            codes |= rules[Long.numberOfTrailingZeros(bits)].reasonBit;
+        }
+        return codes;
+    }
+
+    /**
+     * Capture the state of the matched rules, on the thread that matched them
+     *
+     * @param matched bitmask of matched plan positions
+     * @return {@link FraudRule#capture} of each plan position, null if no matched rule captured anything
+     */
+    public Object[] capture(long matched, Transaction transaction) {
+        Object[] captured = null;
+        for (long bits = matched; bits != 0; bits &= bits - 1) {
+            int position = Long.numberOfTrailingZeros(bits);
+            Object state = rules[position].rule.capture(transaction);
+            if (state != null) {
+                if (captured == null) {
+                    captured = new Object[rules.length];
+                }
+                captured[position] = state;
+            }
+        }
+        return captured;
+    }
+
+    /**
+     * @param matched bitmask of matched plan positions
+     * @return reason text of the matched rules, in plan order
+     */
+    public List<String> describe(long matched, Transaction transaction) {
+        return describe(matched, transaction, capture(matched, transaction));
+    }
+
+    /**
+     * @param matched  bitmask of matched plan positions
+     * @param captured result of {@link #capture} for the same match, may be null
+     * @return reason text of the matched rules, in plan order
+     */
+    public List<String> describe(long matched, Transaction transaction, Object[] captured) {
+        List<String> reasons = new ArrayList<>(Long.bitCount(matched));
+        for (long bits = matched; bits != 0; bits &= bits - 1) {
+            int position = Long.numberOfTrailingZeros(bits);
+            reasons.add(rules[position].rule.describe(transaction, captured == null ? null : captured[position]));
+        }
+        return reasons;
+    }
+
+    /**
+     * rule names in evaluation order
+     */
+    public List<String> getRuleNames() {
+        List<String> names = new ArrayList<>(rules.length);
+        for (CompiledRule rule : rules) {
+            names.add(rule.rule.name());
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Counters of one rule, shared by every plan the rule is compiled into so a config swap does
+     * not reset the statistics
+     */
+    static final class Counters {
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder hits = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+
+    /**
+     * One rule in the plan with its counters
+     */
+    static final class CompiledRule {
+        final FraudRule rule;
+        final long reasonBit;
+        final LongAdder evaluations;
+        final LongAdder hits;
+        final LongAdder nanos;
+
+        CompiledRule(FraudRule rule, Counters counters) {
+            this.rule = rule;
+            this.reasonBit = rule.reasonCode().bit();
+            this.evaluations = counters.evaluations;
+            this.hits = counters.hits;
+            this.nanos = counters.nanos;
+        }
+
+        RuleStats stats() {
+            return new RuleStats(rule.name(), evaluations.sum(), hits.sum(), nanos.sum());
+        }
+    }
+}
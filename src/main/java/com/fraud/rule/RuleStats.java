@@ -0,0 +1,24 @@
+package com.fraud.rule;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Counters of one rule since startup
+ */
+@Data
+@AllArgsConstructor
+public class RuleStats {
+    private String ruleName;      // rule name
+    private long evaluations;     // times evaluated
+    private long hits;            // times matched
+    private long totalNanos;      // time spent in matches()
+
+    public double getHitRate() {
+        return evaluations == 0 ? 0 : (double) hits / evaluations;
+    }
+
+    public double getAverageNanos() {
+        return evaluations == 0 ? 0 : (double) totalNanos / evaluations;
+    }
+}
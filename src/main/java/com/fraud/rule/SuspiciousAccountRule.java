@@ -0,0 +1,142 @@
+package com.fraud.rule;
+
+import com.fraud.index.AccountIndex;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Rule2: account in suspicious list
+ *
+ * The watchlist is read from fraud.rule.suspicious.accounts.file (one ID per line, '#' for comments)
+ * when set, otherwise from the inline fraud.rule.suspicious.accounts list. Changes of the file are
+ * picked up by {@link RuleConfigManager}, which builds a new {@link AccountIndex} off the consumer
+ * threads and swaps it in with the rest of the rule config.
+ */
+@Component
+public class SuspiciousAccountRule implements FraudRule {
+    private static final Logger logger = LoggerFactory.getLogger(SuspiciousAccountRule.class);
+
+    // fraud suspicious accounts
+    @Value("${fraud.rule.suspicious.accounts:}")
+    private String suspiciousAccountsStr;
+
+    @Value("${fraud.rule.suspicious.accounts.file:}")
+    private String suspiciousAccountsFile;
+
+    private AccountIndex suspiciousAccounts = AccountIndex.EMPTY;
+
+    public SuspiciousAccountRule() {
+    }
+
+    SuspiciousAccountRule(AccountIndex suspiciousAccounts) {
+        this.suspiciousAccounts = suspiciousAccounts;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (suspiciousAccountsFile == null || suspiciousAccountsFile.isBlank()) {
+            suspiciousAccounts = parse(suspiciousAccountsStr);
+            return;
+        }
+        Path path = Paths.get(suspiciousAccountsFile);
+        try {
+            long start = System.nanoTime();
+            suspiciousAccounts = load(path);
+            logger.info("loaded suspicious accounts from {}: accounts={}, memory={} KB, load-time={} ms",
+                    path, suspiciousAccounts.size(), suspiciousAccounts.memoryBytes() / 1024,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("can not load suspicious accounts from " + path, e);
+        }
+    }
+
+    /**
+     * @param accounts comma separated account IDs
+     */
+    static AccountIndex parse(String accounts) {
+        AccountIndex.Builder builder = new AccountIndex.Builder(16);
+        for (String account : accounts.split(",")) {
+            builder.add(account.trim());
+        }
+        return builder.build();
+    }
+
+    static AccountIndex load(Path path) throws IOException {
+        // rough size hint: ~12 bytes per line
+        AccountIndex.Builder builder = new AccountIndex.Builder((int) Math.min(Integer.MAX_VALUE / 2, Files.size(path) / 12));
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    builder.add(line);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String name() {
+        return "suspicious-account";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.SUSPICIOUS_ACCOUNT;
+    }
+
+    @Override
+    public int cost() {
+        return 2;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.01;
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return suspiciousAccounts.contains(transaction.getAccountId());
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return String.format("Account %s belongs to a known suspicious account.", transaction.getAccountId());
+    }
+
+    @Override
+    public FraudRule configure(RuleConfig config) {
+        return new SuspiciousAccountRule(config.getSuspiciousAccounts());
+    }
+
+    public int getSuspiciousAccountCount() {
+        return suspiciousAccounts.size();
+    }
+
+    public long getIndexMemoryBytes() {
+        return suspiciousAccounts.memoryBytes();
+    }
+
+    AccountIndex getSuspiciousAccounts() {
+        return suspiciousAccounts;
+    }
+
+    String getSuspiciousAccountsFile() {
+        return suspiciousAccountsFile == null || suspiciousAccountsFile.isBlank() ? null : suspiciousAccountsFile;
+    }
+}
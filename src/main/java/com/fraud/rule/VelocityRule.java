@@ -0,0 +1,268 @@
+package com.fraud.rule;
+
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.state.VelocityStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Rule4: too many transactions, or too much amount, on one account within a short window
+ *
+ * Every transaction is recorded in a {@link VelocityStore} (count and amount per account over time
+ * buckets), the rule hits when any configured window (1m/10m/1h by default) goes over its count or
+ * amount limit. A limit <= 0 disables that check for the window.
+ */
+@Component
+public class VelocityRule implements FraudRule {
+    private static final Logger logger = LoggerFactory.getLogger(VelocityRule.class);
+
+    // accounts of the throwaway store of the warm-up copy
+    private static final int WARMUP_ACCOUNTS = 4096;
+
+    @Value("${fraud.rule.velocity.enable:true}")
+    private boolean enabled;
+
+    @Value("${fraud.rule.velocity.windows.seconds:60,600,3600}")
+    private long[] windowSeconds;
+
+    @Value("${fraud.rule.velocity.max.counts:5,20,60}")
+    private long[] maxCounts;
+
+    @Value("${fraud.rule.velocity.max.amounts:20000,50000,100000}")
+    private double[] maxAmounts;
+
+    @Value("${fraud.rule.velocity.bucket.seconds:60}")
+    private long bucketSeconds;
+
+    // accounts kept in memory, least recently seen account is evicted beyond that
+    @Value("${fraud.rule.velocity.max.accounts:100000}")
+    private int maxAccounts;
+
+    @Value("${fraud.rule.velocity.stripes:64}")
+    private int stripes;
+
+    // bucket by the transaction time however old (batch replay of past days), not by the arrival time
+    @Value("${fraud.rule.velocity.event.time:false}")
+    private boolean eventTimeMode;
+
+    // current time, replaced in tests
+    LongSupplier clock = System::currentTimeMillis;
+
+    private VelocityStore store;
+    private long[] windowMillis;
+    private long maxWindowMillis;
+
+    // per thread output of the store query, matches() runs on many workers
+    private final ThreadLocal<Window> scratch = new ThreadLocal<>();
+
+    @PostConstruct
+    public void init() {
+        if (windowSeconds.length == 0 || maxCounts.length != windowSeconds.length || maxAmounts.length != windowSeconds.length) {
+            throw new IllegalStateException("fraud.rule.velocity windows, max.counts and max.amounts must have the same size");
+        }
+        windowMillis = new long[windowSeconds.length];
+        for (int i = 0; i < windowSeconds.length; i++) {
+            windowMillis[i] = windowSeconds[i] * 1000;
+        }
+        maxWindowMillis = Arrays.stream(windowMillis).max().getAsLong();
+        store = new VelocityStore(bucketSeconds * 1000, maxWindowMillis, maxAccounts, stripes);
+        logger.info("velocity rule: windows={}s, max-counts={}, max-amounts={}, max-accounts={}, memory={} KB",
+                Arrays.toString(windowSeconds), Arrays.toString(maxCounts), Arrays.toString(maxAmounts),
+                maxAccounts, store.memoryBytes() / 1024);
+    }
+
+    /**
+     * Free the accounts idle longer than the longest window. Not in event time mode, replayed accounts
+     * are all older than the clock, full stripes evict the least recently seen ones.
+     */
+    @Scheduled(fixedDelayString = "${fraud.rule.velocity.eviction.interval.ms:60000}")
+    public void evictExpired() {
+        if (store != null && !eventTimeMode) {
+            store.evictExpired(clock.getAsLong());
+        }
+    }
+
+    /**
+     * Same limits over a small store of its own, the warm-up accounts stay out of the live one
+     */
+    @Override
+    public FraudRule forWarmup() {
+        VelocityRule copy = new VelocityRule();
+        copy.enabled = enabled;
+        copy.windowSeconds = windowSeconds;
+        copy.maxCounts = maxCounts;
+        copy.maxAmounts = maxAmounts;
+        copy.bucketSeconds = bucketSeconds;
+        copy.stripes = stripes;
+        copy.eventTimeMode = eventTimeMode;
+        copy.clock = clock;
+        copy.windowMillis = windowMillis;
+        copy.maxWindowMillis = maxWindowMillis;
+        copy.maxAccounts = Math.min(maxAccounts, WARMUP_ACCOUNTS);
+        copy.store = new VelocityStore(bucketSeconds * 1000, maxWindowMillis, copy.maxAccounts, stripes);
+        return copy;
+    }
+
+    @Override
+    public String name() {
+        return "velocity";
+    }
+
+    @Override
+    public ReasonCode reasonCode() {
+        return ReasonCode.VELOCITY;
+    }
+
+    @Override
+    public int cost() {
+        return 4;
+    }
+
+    @Override
+    public double selectivity() {
+        return 0.01;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    @Override
+    public void observe(Transaction transaction) {
+        if (!hasAccount(transaction)) {
+            return;
+        }
+        store.record(transaction.getAccountId(), transaction.getAmount(), eventTime(transaction));
+    }
+
+    @Override
+    public boolean matches(Transaction transaction) {
+        return hasAccount(transaction) && breachedWindow(transaction) >= 0;
+    }
+
+    @Override
+    public String describe(Transaction transaction) {
+        return describe(transaction, capture(transaction));
+    }
+
+    /**
+     * window, count and sum of the matches() on this thread, allocated on a hit only
+     */
+    @Override
+    public Object capture(Transaction transaction) {
+        if (!hasAccount(transaction)) {
+            return null;
+        }
+        Window window = scratch.get();
+        int w = window != null && window.transaction == transaction ? window.breached : breachedWindow(transaction);
+        if (w < 0) {
+            return null;
+        }
+        window = scratch.get();
+        return new Breach(w, window.counts[w], window.sums[w]);
+    }
+
+    @Override
+    public String describe(Transaction transaction, Object captured) {
+        if (!(captured instanceof Breach)) {
+            return String.format("Account %s exceeds the transaction velocity limit.", transaction.getAccountId());
+        }
+        Breach breach = (Breach) captured;
+        return String.format("Account %s made %d transactions totalling %.2f in the last %d seconds, over the velocity limit.",
+                transaction.getAccountId(), Math.round(breach.count), breach.sum, windowSeconds[breach.window]);
+    }
+
+    /**
+     * transactions without account have no velocity state, they are neither recorded nor checked
+     */
+    private static boolean hasAccount(Transaction transaction) {
+        String accountId = transaction.getAccountId();
+        return accountId != null && !accountId.isBlank();
+    }
+
+    /**
+     * @return index of the first window over its limit, -1 if none
+     */
+    private int breachedWindow(Transaction transaction) {
+        Window window = scratch.get();
+        if (window == null) {
+            window = new Window(windowMillis.length);
+            scratch.set(window);
+        }
+        store.query(transaction.getAccountId(), eventTime(transaction), windowMillis, window.counts, window.sums);
+        window.transaction = transaction;
+        window.breached = -1;
+        for (int w = 0; w < windowMillis.length; w++) {
+            if ((maxCounts[w] > 0 && window.counts[w] > maxCounts[w])
+                    || (maxAmounts[w] > 0 && window.sums[w] > maxAmounts[w])) {
+                window.breached = w;
+                break;
+            }
+        }
+        return window.breached;
+    }
+
+    /**
+     * Transaction time when it is plausible (not ahead of us, not older than the longest window),
+     * otherwise the arrival time, so date-only or skewed timestamps do not land in a far away bucket.
+     * In event time mode any past transaction time is kept.
+     */
+    long eventTime(Transaction transaction) {
+        long now = clock.getAsLong();
+        long eventTime = transaction.getTransactionTime();
+        if (eventTimeMode) {
+            return eventTime > 0 && eventTime <= now ? eventTime : now;
+        }
+        return eventTime <= now && now - eventTime < maxWindowMillis ? eventTime : now;
+    }
+
+    public int getTrackedAccountCount() {
+        return store.size();
+    }
+
+    public long getStoreMemoryBytes() {
+        return store.memoryBytes();
+    }
+
+    private static final class Window {
+        final double[] counts;
+        final double[] sums;
+        // transaction of the last query and the window it breached, -1 if none
+        Transaction transaction;
+        int breached;
+
+        Window(int size) {
+            this.counts = new double[size];
+            this.sums = new double[size];
+        }
+    }
+
+    /**
+     * numbers of the window that decided a hit
+     */
+    private static final class Breach {
+        final int window;
+        final double count;
+        final double sum;
+
+        Breach(int window, double count, double sum) {
+            this.window = window;
+            this.count = count;
+            this.sum = sum;
+        }
+    }
+}
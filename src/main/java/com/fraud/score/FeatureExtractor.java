@@ -0,0 +1,82 @@
+package com.fraud.score;
+
+import com.fraud.model.Transaction;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Fixed-width feature vector of a transaction, written into a caller owned double[] (no allocation).
+ *
+ * Layout "v1", models are trained against it and declare it in their file:
+ * <pre>
+ *   0        log(1 + amount)
+ *   1..7     amount bucket, one-hot: &lt;10, &lt;100, &lt;500, &lt;1000, &lt;5000, &lt;10000, &gt;=10000
+ *   8..31    hour of day, one-hot
+ *   32..63   location, hashed one-hot (32 buckets, "no location" included)
+ *   64..127  merchant, hashed one-hot (64 buckets, "no merchant" included)
+ * </pre>
+ */
+public class FeatureExtractor {
+
+    public static final String LAYOUT = "v1";
+
+    static final int AMOUNT_LOG = 0;
+    static final int AMOUNT_BUCKET = 1;
+    static final double[] AMOUNT_BOUNDS = {10, 100, 500, 1000, 5000, 10000};
+    static final int HOUR = AMOUNT_BUCKET + AMOUNT_BOUNDS.length + 1;
+    static final int LOCATION = HOUR + 24;
+    static final int LOCATION_BUCKETS = 32;
+    static final int MERCHANT = LOCATION + LOCATION_BUCKETS;
+    static final int MERCHANT_BUCKETS = 64;
+    public static final int WIDTH = MERCHANT + MERCHANT_BUCKETS;
+
+    private final ZoneRules zoneRules;
+    // offset of a zone without transitions (UTC), looked up once: the Instant of the lookup allocates
+    private final long fixedOffsetMillis;
+
+    /**
+     * @param zone zone of the hour of day feature
+     */
+    public FeatureExtractor(ZoneId zone) {
+        this.zoneRules = zone.getRules();
+        this.fixedOffsetMillis = zoneRules.isFixedOffset()
+                ? zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L : Long.MIN_VALUE;
+    }
+
+    /**
+     * @param features out, at least {@link #WIDTH} long
+     * @param nowMillis time used when the transaction has none
+     */
+    public void extract(Transaction transaction, double[] features, long nowMillis) {
+        Arrays.fill(features, 0, WIDTH, 0.0);
+        double amount = Math.max(0, transaction.getAmount());
+        features[AMOUNT_LOG] = Math.log1p(amount);
+        int bucket = 0;
+        while (bucket < AMOUNT_BOUNDS.length && amount >= AMOUNT_BOUNDS[bucket]) {
+            bucket++;
+        }
+        features[AMOUNT_BUCKET + bucket] = 1;
+
+        long time = transaction.getTransactionTime() != 0 ? transaction.getTransactionTime() : nowMillis;
+        long offsetMillis = fixedOffsetMillis != Long.MIN_VALUE ? fixedOffsetMillis
+                : zoneRules.getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+        features[HOUR + (int) Math.floorMod(Math.floorDiv(time + offsetMillis, 3_600_000L), 24L)] = 1;
+
+        features[LOCATION + bucket(transaction.getLocation(), LOCATION_BUCKETS)] = 1;
+        features[MERCHANT + bucket(transaction.getMerchantId(), MERCHANT_BUCKETS)] = 1;
+    }
+
+    /**
+     * String.hashCode is cached in the string and stable across JVMs, so the training job can do the same
+     */
+    static int bucket(String value, int buckets) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        int hash = value.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), buckets);
+    }
+}
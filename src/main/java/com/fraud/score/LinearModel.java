@@ -0,0 +1,34 @@
+package com.fraud.score;
+
+/**
+ * Logistic regression: sigmoid(intercept + weights . features)
+ */
+public final class LinearModel implements ScoringModel {
+
+    private final String version;
+    private final double intercept;
+    private final double[] weights;
+
+    public LinearModel(String version, double intercept, double[] weights) {
+        if (weights.length != FeatureExtractor.WIDTH) {
+            throw new IllegalArgumentException("linear model needs " + FeatureExtractor.WIDTH + " weights, got " + weights.length);
+        }
+        this.version = version;
+        this.intercept = intercept;
+        this.weights = weights.clone();
+    }
+
+    @Override
+    public double score(double[] features) {
+        double margin = intercept;
+        for (int i = 0; i < weights.length; i++) {
+            margin += weights[i] * features[i];
+        }
+        return ScoringModel.sigmoid(margin);
+    }
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+}
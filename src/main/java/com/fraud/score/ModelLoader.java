@@ -0,0 +1,133 @@
+package com.fraud.score;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reads a model file (JSON), written by the offline training job:
+ * <pre>
+ * {"type": "linear", "version": "2024-05-01", "layout": "v1", "intercept": -4.2, "weights": [...128]}
+ * {"type": "gbt", "version": "2024-05-01", "layout": "v1", "base": -3.1,
+ *  "trees": [{"feature": [8, -1, -1], "threshold": [0.5, 0, 0], "left": [1, -1, -1], "right": [2, -1, -1],
+ *             "value": [0, -0.2, 0.7]}, ...]}
+ * </pre>
+ * Tree node indices are local to their tree, node 0 is the root.
+ */
+public final class ModelLoader {
+
+    private ModelLoader() {
+    }
+
+    /**
+     * @throws IllegalArgumentException the file is not a valid model for this feature layout
+     */
+    public static ScoringModel load(Path file, ObjectMapper objectMapper) throws IOException {
+        JsonNode root = objectMapper.readTree(file.toFile());
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("model file is not a JSON object");
+        }
+        String layout = root.path("layout").asText(FeatureExtractor.LAYOUT);
+        if (!FeatureExtractor.LAYOUT.equals(layout)) {
+            throw new IllegalArgumentException("model feature layout " + layout + " is not " + FeatureExtractor.LAYOUT);
+        }
+        String version = root.path("version").asText(file.getFileName().toString());
+        String type = root.path("type").asText();
+        switch (type) {
+            case "linear":
+                return new LinearModel(version, number(root, "intercept"), doubles(root.get("weights"), "weights"));
+            case "gbt":
+                return trees(version, root);
+            default:
+                throw new IllegalArgumentException("unknown model type: " + type);
+        }
+    }
+
+    private static TreeEnsembleModel trees(String version, JsonNode root) {
+        JsonNode trees = root.get("trees");
+        if (trees == null || !trees.isArray() || trees.size() == 0) {
+            throw new IllegalArgumentException("gbt model has no trees");
+        }
+        int nodes = 0;
+        for (JsonNode tree : trees) {
+            nodes += tree.path("feature").size();
+        }
+        int[] roots = new int[trees.size()];
+        int[] feature = new int[nodes];
+        double[] threshold = new double[nodes];
+        int[] left = new int[nodes];
+        int[] right = new int[nodes];
+        double[] value = new double[nodes];
+        int offset = 0;
+        for (int t = 0; t < trees.size(); t++) {
+            JsonNode tree = trees.get(t);
+            int size = tree.path("feature").size();
+            if (size == 0) {
+                throw new IllegalArgumentException("tree " + t + " is empty");
+            }
+            int[] treeFeature = ints(tree.get("feature"), "feature", size);
+            double[] treeThreshold = doubles(tree.get("threshold"), "threshold", size);
+            int[] treeLeft = ints(tree.get("left"), "left", size);
+            int[] treeRight = ints(tree.get("right"), "right", size);
+            double[] treeValue = doubles(tree.get("value"), "value", size);
+            roots[t] = offset;
+            for (int i = 0; i < size; i++) {
+                feature[offset + i] = treeFeature[i];
+                threshold[offset + i] = treeThreshold[i];
+                // leaves keep -1, their children are never read
+                left[offset + i] = treeFeature[i] < 0 ? -1 : offset + local(treeLeft[i], size, t);
+                right[offset + i] = treeFeature[i] < 0 ? -1 : offset + local(treeRight[i], size, t);
+                value[offset + i] = treeValue[i];
+            }
+            offset += size;
+        }
+        return new TreeEnsembleModel(version, number(root, "base"), roots, feature, threshold, left, right, value);
+    }
+
+    private static int local(int child, int size, int tree) {
+        if (child < 0 || child >= size) {
+            throw new IllegalArgumentException("tree " + tree + " has a child out of range: " + child);
+        }
+        return child;
+    }
+
+    private static double number(JsonNode root, String name) {
+        JsonNode node = root.get(name);
+        if (node == null || !node.isNumber()) {
+            throw new IllegalArgumentException("model has no number " + name);
+        }
+        return node.doubleValue();
+    }
+
+    private static double[] doubles(JsonNode array, String name) {
+        if (array == null || !array.isArray()) {
+            throw new IllegalArgumentException("model has no array " + name);
+        }
+        return doubles(array, name, array.size());
+    }
+
+    private static double[] doubles(JsonNode array, String name, int size) {
+        if (array == null || !array.isArray() || array.size() != size) {
+            throw new IllegalArgumentException(name + " must be an array of " + size + " numbers");
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            if (!array.get(i).isNumber()) {
+                throw new IllegalArgumentException(name + "[" + i + "] is not a number");
+            }
+            values[i] = array.get(i).doubleValue();
+        }
+        return values;
+    }
+
+    private static int[] ints(JsonNode array, String name, int size) {
+        double[] values = doubles(array, name, size);
+        int[] ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            ints[i] = (int) values[i];
+        }
+        return ints;
+    }
+}
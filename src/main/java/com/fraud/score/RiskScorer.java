@@ -0,0 +1,201 @@
+package com.fraud.score;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Graded risk score of a transaction next to the boolean rules.
+ *
+ * The {@link FeatureExtractor} vector of the transaction is evaluated by the model loaded from
+ * fraud.score.model.file (linear or gradient boosted trees, see {@link ModelLoader}). The file is
+ * checked every fraud.score.reload.interval.ms, a changed file is loaded and validated off the
+ * consumer threads and swapped in with one volatile write; a broken file keeps the running model.
+ * Without a model file nothing is scored.
+ *
+ * A score at or over fraud.score.alert.threshold flags the transaction (reason RISK_SCORE), 0 only
+ * reports the score, to tune the threshold against the fraud.score.buckets distribution first.
+ */
+@Component
+@RequiredArgsConstructor
+public class RiskScorer {
+    private static final Logger logger = LoggerFactory.getLogger(RiskScorer.class);
+    private static final int BUCKETS = 20;
+
+    @Autowired
+    private final ObjectMapper objectMapper;
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fraud.score.model.file:}")
+    private String modelFile;
+
+    // 0: never flags, score reported only
+    @Value("${fraud.score.alert.threshold:0}")
+    private double alertThreshold;
+
+    // zone of the hour of day feature, as in training
+    @Value("${fraud.score.zone:UTC}")
+    private String zone;
+
+    private volatile ScoringModel model;
+    private String modelStamp;
+    private FeatureExtractor featureExtractor;
+
+    // per thread feature vector, score() runs on many workers
+    private final ThreadLocal<double[]> features = ThreadLocal.withInitial(() -> new double[FeatureExtractor.WIDTH]);
+
+    // scores per 0.05 wide bucket, plain LongAdders read when scraped: a histogram summary costs more
+    // per record than the model
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private Counter applied;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        featureExtractor = new FeatureExtractor(ZoneId.of(zone));
+        registerMeters();
+        if (modelFile == null || modelFile.isBlank()) {
+            logger.info("risk scoring disabled, no fraud.score.model.file");
+            return;
+        }
+        try {
+            if (!reload()) {
+                throw new IllegalStateException("risk model file not readable: " + modelFile);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("load risk model " + modelFile + " failed", e);
+        }
+    }
+
+    private void registerMeters() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+            FunctionCounter.builder("fraud.score.buckets", buckets[i], LongAdder::sum)
+                    .description("transactions scored, by score range")
+                    .tag("range", String.format(Locale.ROOT, "%.2f-%.2f", (double) i / BUCKETS, (double) (i + 1) / BUCKETS))
+                    .register(meterRegistry);
+        }
+        applied = loads("applied");
+        rejected = loads("rejected");
+    }
+
+    /**
+     * Scorer for the startup warm-up: the running model, meters in the given registry, never reloads
+     */
+    public RiskScorer forWarmup(MeterRegistry warmupRegistry) {
+        RiskScorer copy = new RiskScorer(objectMapper, warmupRegistry);
+        copy.alertThreshold = alertThreshold;
+        copy.zone = zone;
+        copy.featureExtractor = featureExtractor;
+        copy.model = model;
+        copy.registerMeters();
+        return copy;
+    }
+
+    private Counter loads(String result) {
+        return Counter.builder("fraud.score.model.loads")
+                .description("risk model files loaded or refused")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load the model file again when it changed, keep the running model if it is not valid
+     */
+    @Scheduled(fixedDelayString = "${fraud.score.reload.interval.ms:30000}",
+            initialDelayString = "${fraud.score.reload.interval.ms:30000}")
+    public void reloadIfChanged() {
+        if (modelFile == null || modelFile.isBlank()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (IOException | IllegalArgumentException e) {
+            rejected.increment();
+            logger.error("risk model {} refused, keep version {}: {}", modelFile,
+                    model != null ? model.getVersion() : null, e.toString());
+        }
+    }
+
+    /**
+     * @return false when the file is missing
+     */
+    private synchronized boolean reload() throws IOException {
+        Path path = Paths.get(modelFile);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String stamp = attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+        if (stamp.equals(modelStamp)) {
+            return true;
+        }
+        // the file is read once per change, a broken one again only after it changed
+        modelStamp = stamp;
+        ScoringModel candidate = ModelLoader.load(path, objectMapper);
+        double probe = candidate.score(new double[FeatureExtractor.WIDTH]);
+        if (!(probe >= 0 && probe <= 1)) {
+            throw new IllegalArgumentException("model scores outside [0, 1]: " + probe);
+        }
+        model = candidate;
+        applied.increment();
+        logger.info("risk model loaded: version={}, type={}, file={}", candidate.getVersion(),
+                candidate.getClass().getSimpleName(), modelFile);
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return model != null;
+    }
+
+    /**
+     * @return score in [0, 1], NaN when no model is loaded
+     */
+    public double score(Transaction transaction) {
+        ScoringModel running = model;
+        if (running == null) {
+            return Double.NaN;
+        }
+        double[] vector = features.get();
+        featureExtractor.extract(transaction, vector, System.currentTimeMillis());
+        double score = running.score(vector);
+        buckets[Math.min(BUCKETS - 1, (int) (score * BUCKETS))].increment();
+        return score;
+    }
+
+    /**
+     * @return true when the score alone flags the transaction
+     */
+    public boolean isAlert(double score) {
+        return alertThreshold > 0 && score >= alertThreshold;
+    }
+
+    public double getAlertThreshold() {
+        return alertThreshold;
+    }
+
+    public String getModelVersion() {
+        ScoringModel running = model;
+        return running != null ? running.getVersion() : null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.fraud.score;
+
+/**
+ * Risk model over the {@link FeatureExtractor} vector, immutable and thread safe
+ */
+public interface ScoringModel {
+
+    /**
+     * @return fraud probability in [0, 1]
+     */
+    double score(double[] features);
+
+    /**
+     * version from the model file, shown in logs and metrics
+     */
+    String getVersion();
+
+    static double sigmoid(double margin) {
+        return 1.0 / (1.0 + Math.exp(-margin));
+    }
+}
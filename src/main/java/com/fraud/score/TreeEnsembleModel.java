@@ -0,0 +1,108 @@
+package com.fraud.score;
+
+/**
+ * Gradient boosted trees: sigmoid(base + sum of the leaf values), as trained with a logistic loss.
+ *
+ * All trees are flattened into parallel primitive arrays, a node is a leaf when feature[node] &lt; 0.
+ * A split goes left when features[feature[node]] &lt; threshold[node]. The nodes are renumbered
+ * breadth first so the right child always follows the left one: a step is child[node] + 0 or 1,
+ * without a branch to mispredict, and the top levels of every tree share cache lines.
+ */
+public final class TreeEnsembleModel implements ScoringModel {
+
+    private final String version;
+    private final double base;
+    private final int[] roots;
+    private final int[] feature;
+    private final double[] threshold;
+    // left child, the right one is child + 1
+    private final int[] child;
+    private final double[] value;
+
+    /**
+     * @param roots first node of every tree
+     * @param left  left child of a split node, after the node
+     * @param right right child of a split node, after the node
+     */
+    public TreeEnsembleModel(String version, double base, int[] roots, int[] feature, double[] threshold,
+                             int[] left, int[] right, double[] value) {
+        int nodes = feature.length;
+        if (threshold.length != nodes || left.length != nodes || right.length != nodes || value.length != nodes) {
+            throw new IllegalArgumentException("tree node arrays differ in size");
+        }
+        for (int node = 0; node < nodes; node++) {
+            if (feature[node] < 0) {
+                continue;
+            }
+            if (feature[node] >= FeatureExtractor.WIDTH) {
+                throw new IllegalArgumentException("node " + node + " splits on unknown feature " + feature[node]);
+            }
+            // children after their parent: no cycles
+            if (left[node] <= node || left[node] >= nodes || right[node] <= node || right[node] >= nodes) {
+                throw new IllegalArgumentException("node " + node + " has children out of order");
+            }
+        }
+        this.version = version;
+        this.base = base;
+        this.roots = new int[roots.length];
+        this.feature = new int[nodes];
+        this.threshold = new double[nodes];
+        this.child = new int[nodes];
+        this.value = new double[nodes];
+
+        // breadth first renumbering, per tree
+        int[] order = new int[nodes];
+        boolean[] seen = new boolean[nodes];
+        int next = 0;
+        for (int t = 0; t < roots.length; t++) {
+            int root = roots[t];
+            if (root < 0 || root >= nodes || seen[root]) {
+                throw new IllegalArgumentException("tree root out of range or shared: " + root);
+            }
+            seen[root] = true;
+            this.roots[t] = next;
+            order[next++] = root;
+            for (int i = this.roots[t]; i < next; i++) {
+                int node = order[i];
+                this.feature[i] = feature[node];
+                this.threshold[i] = threshold[node];
+                this.value[i] = value[node];
+                if (feature[node] < 0) {
+                    this.child[i] = -1;
+                    continue;
+                }
+                if (seen[left[node]] || seen[right[node]] || left[node] == right[node]) {
+                    throw new IllegalArgumentException("node " + node + " shares a child");
+                }
+                seen[left[node]] = true;
+                seen[right[node]] = true;
+                this.child[i] = next;
+                order[next++] = left[node];
+                order[next++] = right[node];
+            }
+        }
+    }
+
+    @Override
+    public double score(double[] features) {
+        double margin = base;
+        for (int root : roots) {
+            int node = root;
+            int split;
+            while ((split = feature[node]) >= 0) {
+                node = child[node] + (features[split] < threshold[node] ? 0 : 1);
+            }
+            margin += value[node];
+        }
+        return ScoringModel.sigmoid(margin);
+    }
+
+    public int getTreeCount() {
+        return roots.length;
+    }
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+}
@@ -1,123 +1,157 @@
 package com.fraud.service;
 
+import com.fraud.logging.LogSampler;
 import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
 import com.fraud.model.Transaction;
+import com.fraud.rule.RuleEngine;
+import com.fraud.rule.RulePlan;
+import com.fraud.score.RiskScorer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+
 import javax.annotation.PostConstruct;
-import java.sql.Date;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+
+import static net.logstash.logback.argument.StructuredArguments.kv;
 
 /**
  * Fraud Detection Service
+ * Rules are plugged in as {@link com.fraud.rule.FraudRule} beans and evaluated by {@link RuleEngine}
+ *
+ * Without a risk model a clean transaction allocates nothing here: the plan returns a bitmask and the
+ * shared {@link FraudResult#CLEAN} is returned. Reason text of fraud results is rendered lazily.
+ * With a risk model loaded every result carries its {@link RiskScorer} score, a score over the alert
+ * threshold flags the transaction on its own. The score is per transaction, so a clean transaction then
+ * costs one FraudResult (48 bytes), the feature vector and the model allocate nothing (fraud.score.zone
+ * with daylight saving adds an Instant per transaction).
+ *
+ * Every detection can be logged to the "fraud.detection" logger as key/value fields, a share of each
+ * outcome is kept by fraud.log.sample.clean / fraud.log.sample.fraud (by transaction ID hash).
  */
 @Service
 @RequiredArgsConstructor
 
 public class FraudDetectionService {
-    private static final Logger logger = LoggerFactory.getLogger(FraudDetectionService.class);
+    // structured detection events, routed to the async appender in logback-spring.xml
+    private static final Logger detectionLogger = LoggerFactory.getLogger("fraud.detection");
 
     @Autowired
-    private final SnsNotificationService snsNotificationService;
-
-    // fraud max amount
-    @Value("${fraud.rule.amount.threshold}")
-    private double amountThreshold;
-    // fraud suspicious accounts
-    @Value("${fraud.rule.suspicious.accounts}")
-    private String suspiciousAccountsStr;
-
-    @Value("${fraud.rule.risk.locations}")
-    private String highRiskLocationsStr;
-
-    @Value("${fraud.rule.unusual.location.enable}")
-    private boolean enableUnusualLocationCheck;
+    private final RuleEngine ruleEngine;
+    @Autowired
+    private final RiskScorer riskScorer;
+    @Autowired
+    private final MeterRegistry meterRegistry;
 
+    // registered once, recording allocates nothing
+    private Timer detectTimer;
+    private Counter cleanCounter;
+    private Counter fraudCounter;
 
-    private List<String> suspiciousAccounts;
+    @Value("${fraud.log.sample.clean:0.01}")
+    private double cleanSampleRate;
 
-    private List<String> highRiskLocations;
+    @Value("${fraud.log.sample.fraud:1.0}")
+    private double fraudSampleRate;
 
+    private LogSampler cleanSampler;
+    private LogSampler fraudSampler;
 
     @PostConstruct
     public void init() {
-        this.suspiciousAccounts = Arrays.stream(suspiciousAccountsStr.split(","))
-                .map(String::trim)
-                .collect(Collectors.toList());
-        this.highRiskLocations = Arrays.stream(highRiskLocationsStr.split(","))
-                .map(String::trim)
-                .collect(Collectors.toList());
-        logger.info("init fraud rule: amount-threshold={}, number of suspicious accounts\n={}, high risk location detection enabled={}",
-                amountThreshold, suspiciousAccounts.size(), enableUnusualLocationCheck);
+        detectTimer = Timer.builder("fraud.detect")
+                .description("rule evaluation time per transaction")
+                .register(meterRegistry);
+        cleanCounter = Counter.builder("fraud.detect.results").tag("result", "clean").register(meterRegistry);
+        fraudCounter = Counter.builder("fraud.detect.results").tag("result", "fraud").register(meterRegistry);
+        cleanSampler = new LogSampler("clean", cleanSampleRate, meterRegistry);
+        fraudSampler = new LogSampler("fraud", fraudSampleRate, meterRegistry);
+    }
+
+    /**
+     * Service for the startup warm-up: warm-up copies of the rules and the scorer, meters in a registry
+     * of its own and no detection log, nothing of this service is touched
+     */
+    public FraudDetectionService forWarmup() {
+        SimpleMeterRegistry warmupRegistry = new SimpleMeterRegistry();
+        FraudDetectionService copy = new FraudDetectionService(ruleEngine.forWarmup(),
+                riskScorer.forWarmup(warmupRegistry), warmupRegistry);
+        copy.cleanSampleRate = 0;
+        copy.fraudSampleRate = 0;
+        copy.init();
+        return copy;
     }
 
     /**
      * @param transaction
-     * @return check Result
+     * @return check Result, {@link FraudResult#CLEAN} for normal transaction
      */
     public FraudResult detectFraud(Transaction transaction) {
-        List<String> fraudReasons = new ArrayList<>();
-        boolean isFraudulent = false;
-
-        // Rule1:  exceed max amount
-        if (transaction.getAmount() > amountThreshold) {
-            String reason = String.format("The transaction amount of %.2f exceeds the threshold of %.2f.",
-                    transaction.getAmount(), amountThreshold);
-            fraudReasons.add(reason);
-            isFraudulent = true;
-        }
-
-        // Rule2: account in suspicious list
-        if (suspiciousAccounts.contains(transaction.getAccountId())) {
-            String reason = String.format("Account %s belongs to a known suspicious account.", transaction.getAccountId());
-            fraudReasons.add(reason);
-            isFraudulent = true;
-        }
-
-        // rule3: high risk region
-        if (enableUnusualLocationCheck && isHighRiskLocation(transaction.getLocation())) {
-            String reason = String.format("The transaction location %s belongs to a high risk area.", transaction.getLocation());
-            fraudReasons.add(reason);
-            isFraudulent = true;
+        long start = System.nanoTime();
+        RulePlan plan = ruleEngine.getPlan();
+        long matched = ruleEngine.match(plan, transaction);
+        double score = riskScorer.score(transaction);
+        boolean scoreAlert = riskScorer.isAlert(score);
+        detectTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (matched == 0 && !scoreAlert) {
+            cleanCounter.increment();
+            if (detectionLogger.isInfoEnabled() && cleanSampler.sample(transaction.getTransactionId())) {
+                detectionLogger.info("detection {} {} {} {}", kv("outcome", "clean"),
+                        kv("transactionId", transaction.getTransactionId()),
+                        kv("accountId", transaction.getAccountId()),
+                        kv("amount", transaction.getAmount()));
+            }
+            if (Double.isNaN(score)) {
+                return FraudResult.CLEAN;
+            }
+            // the only allocation of a scored clean transaction
+            return new FraudResult(transaction.getTransactionId(), 0L, System.currentTimeMillis(),
+                    Collections::emptyList, score);
         }
 
-
+        fraudCounter.increment();
+        long reasonCodes = plan.reasonCodes(matched) | (scoreAlert ? ReasonCode.RISK_SCORE.bit() : 0L);
+        // the text is rendered later, maybe on another thread, from the state the rules matched on
+        Object[] captured = plan.capture(matched, transaction);
         FraudResult result = new FraudResult(
                 transaction.getTransactionId(),
-                isFraudulent,
-                fraudReasons,
-                Date.valueOf(LocalDate.now())
+                reasonCodes,
+                System.currentTimeMillis(),
+                () -> describe(plan, matched, transaction, captured, scoreAlert ? score : Double.NaN),
+                score
         );
-
-
-        if (isFraudulent) {
-            logger.warn("Detect Fraud Transaction, ID: {}, reason: {}",
-                    transaction.getTransactionId(), fraudReasons);
-        } else {
-            logger.info("Transaction is normal - ID: {}, amount: {}",
-                    transaction.getTransactionId(), transaction.getAmount());
+        if (detectionLogger.isWarnEnabled() && fraudSampler.sample(transaction.getTransactionId())) {
+            detectionLogger.warn("detection {} {} {} {} {} {}", kv("outcome", "fraud"),
+                    kv("transactionId", transaction.getTransactionId()),
+                    kv("accountId", transaction.getAccountId()),
+                    kv("amount", transaction.getAmount()),
+                    kv("reasonCodes", result.getReasonCodes()),
+                    kv("reasons", result.getReasons()));
         }
         return result;
     }
 
-    /**
-     * is high risk region
-     */
-    private boolean isHighRiskLocation(String location) {
-        if (location == null || location.isBlank()) {
-            return false;
+    private List<String> describe(RulePlan plan, long matched, Transaction transaction, Object[] captured, double alertScore) {
+        List<String> reasons = plan.describe(matched, transaction, captured);
+        if (Double.isNaN(alertScore)) {
+            return reasons;
         }
-        return highRiskLocations.stream()
-                .anyMatch(location::contains);
+        List<String> all = new ArrayList<>(reasons.size() + 1);
+        all.addAll(reasons);
+        all.add(String.format("The risk score %.3f of model %s reaches the alert threshold %.3f.",
+                alertScore, riskScorer.getModelVersion(), riskScorer.getAlertThreshold()));
+        return all;
     }
 }
@@ -1,54 +1,356 @@
 package com.fraud.service;
 
 import com.fraud.model.FraudResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+
+/**
+ * SNS alert publisher with a bounded outbox.
+ *
+ * The consumer thread only puts the alert into the outbox, a flusher thread sends them with
+ * PublishBatch on the async client when a batch is full or the flush interval passed. Failed
+ * entries are retried with jittered exponential backoff, alerts are dropped (and counted) when
+ * the outbox is full so slow SNS never blocks detection.
+ *
+ * On stop the alerts waiting for their backoff are put back into the outbox without waiting and the
+ * flusher drains it; alerts still not sent when it gives up are counted as dropped and logged.
+ */
 @Service
 @RequiredArgsConstructor
-public class SnsNotificationService {
+public class SnsNotificationService implements SmartLifecycle {
     private static final Logger logger = LoggerFactory.getLogger(SnsNotificationService.class);
 
+    // SNS limit of entries per PublishBatch
+    static final int MAX_BATCH_SIZE = 10;
+
+    @Autowired
+    private final SnsAsyncClient snsAsyncClient;
     @Autowired
-    private final SnsClient snsClient;
+    private final MeterRegistry meterRegistry;
 
     @Value("${aws.sns.topic.arn}")
     private String snsTopicArn;
 
+    @Value("${aws.sns.outbox.capacity:10000}")
+    private int outboxCapacity;
+
+    @Value("${aws.sns.outbox.batch.size:10}")
+    private int batchSize;
+
+    @Value("${aws.sns.outbox.flush.interval.ms:200}")
+    private long flushIntervalMs;
+
+    // PublishBatch calls waiting for response at the same time
+    @Value("${aws.sns.outbox.max.inflight.batches:4}")
+    private int maxInFlightBatches;
+
+    @Value("${aws.sns.outbox.max.attempts:5}")
+    private int maxAttempts;
+
+    @Value("${aws.sns.outbox.retry.base.ms:100}")
+    private long retryBaseMs;
+
+    @Value("${aws.sns.outbox.retry.max.ms:10000}")
+    private long retryMaxMs;
+
+    private BlockingQueue<Alert> outbox;
+    private Semaphore inFlightBatches;
+    private ScheduledExecutorService retryScheduler;
+    // alerts waiting for their retry backoff, the tasks of a stopped scheduler can not be run
+    private final Set<Alert> backingOff = ConcurrentHashMap.newKeySet();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter publishedCounter;
+    private Counter droppedCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Timer publishTimer;
+
+    @PostConstruct
+    public void init() {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalStateException("aws.sns.outbox.batch.size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        outbox = new ArrayBlockingQueue<>(outboxCapacity);
+        inFlightBatches = new Semaphore(maxInFlightBatches);
+        Gauge.builder("fraud.sns.outbox.depth", outbox, BlockingQueue::size)
+                .description("alerts waiting in the SNS outbox")
+                .register(meterRegistry);
+        publishedCounter = Counter.builder("fraud.sns.outbox.published").register(meterRegistry);
+        droppedCounter = Counter.builder("fraud.sns.outbox.dropped")
+                .description("alerts dropped because the outbox was full or retries were exhausted")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("fraud.sns.outbox.retried").register(meterRegistry);
+        failedCounter = Counter.builder("fraud.sns.outbox.failed").register(meterRegistry);
+        publishTimer = Timer.builder("fraud.sns.publish")
+                .description("PublishBatch call latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     /**
-     * Send Fraud Alarm to SNS
+     * Send Fraud Alarm to SNS, non blocking. Results not flagged as fraud are ignored.
      */
     public void sendFraudAlert(FraudResult result) {
+        if (!result.isFraudulent()) {
+            return;
+        }
+        if (!outbox.offer(new Alert(result))) {
+            droppedCounter.increment();
+            logger.error("SNS outbox is full, drop alarm, Transaction ID: {}", result.getTransactionId());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sns-outbox-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher = new Thread(this::flushLoop, "sns-outbox-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("SNS outbox started: capacity={}, batch-size={}, flush-interval={}ms",
+                outboxCapacity, batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // retries still in their backoff: one last attempt with the drain instead of being thrown away,
+        // later retries go straight to the outbox (see retry). Requeued before the flusher is told to stop,
+        // it leaves once the outbox is empty.
+        retryScheduler.shutdownNow();
+        int waiting = 0;
+        for (Alert alert : backingOff) {
+            if (backingOff.remove(alert)) {
+                requeue(alert);
+                waiting++;
+            }
+        }
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+            // wait for the last batches to be answered
+            if (inFlightBatches.tryAcquire(maxInFlightBatches, 10, TimeUnit.SECONDS)) {
+                inFlightBatches.release(maxInFlightBatches);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Alert> unsent = new ArrayList<>();
+        outbox.drainTo(unsent);
+        for (Alert alert : unsent) {
+            droppedCounter.increment();
+            logger.error("SNS outbox stopped, drop alarm, Transaction ID: {}", alert.result.getTransactionId());
+        }
+        logger.info("SNS outbox stopped, {} retries requeued, {} alarms not sent", waiting, unsent.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop after the ingestion engine, alerts of the last processed msg are still sent
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 1;
+    }
+
+    private void flushLoop() {
+        while (running || !outbox.isEmpty()) {
+            try {
+                Alert first = outbox.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Alert> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Alert next = remaining > 0 ? outbox.poll(remaining, TimeUnit.NANOSECONDS) : outbox.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                inFlightBatches.acquire();
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Flush SNS outbox error", e);
+            }
+        }
+    }
+
+    /**
+     * Send one PublishBatch, entry id is the index in the batch. Caller holds an in-flight permit.
+     */
+    void publishBatch(List<Alert> batch) {
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Alert alert = batch.get(i);
+            entries.add(PublishBatchRequestEntry.builder()
+                    .id(Integer.toString(i))
+                    .subject(alert.subject())
+                    .message(alert.message())
+                    .build());
+        }
+        PublishBatchRequest request = PublishBatchRequest.builder()
+                .topicArn(snsTopicArn)
+                .publishBatchRequestEntries(entries)
+                .build();
+        long start = System.nanoTime();
+        try {
+            snsAsyncClient.publishBatch(request).whenComplete((response, error) -> {
+                publishTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                try {
+                    onBatchComplete(batch, response, error);
+                } finally {
+                    inFlightBatches.release();
+                }
+            });
+        } catch (Exception e) {
+            inFlightBatches.release();
+            onBatchComplete(batch, null, e);
+        }
+    }
+
+    private void onBatchComplete(List<Alert> batch, PublishBatchResponse response, Throwable error) {
+        if (error != null) {
+            logger.warn("Publish batch of {} alarms to SNS failed", batch.size(), error);
+            batch.forEach(this::retry);
+            return;
+        }
+        publishedCounter.increment(response.successful().size());
+        for (BatchResultErrorEntry failed : response.failed()) {
+            Alert alert = batch.get(Integer.parseInt(failed.id()));
+            if (Boolean.TRUE.equals(failed.senderFault())) {
+                failedCounter.increment();
+                logger.error("send alarm to SNS rejected, Transaction ID: {}, code: {}",
+                        alert.result.getTransactionId(), failed.code());
+            } else {
+                retry(alert);
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("send {} alarms to SNS success", response.successful().size());
+        }
+    }
+
+    /**
+     * Put the alert back into the outbox after a full-jitter exponential backoff
+     */
+    private void retry(Alert alert) {
+        if (++alert.attempts >= maxAttempts) {
+            failedCounter.increment();
+            logger.error("send alarm to SNS failed after {} attempts, Transaction ID: {}",
+                    alert.attempts, alert.result.getTransactionId());
+            return;
+        }
+        retriedCounter.increment();
+        long cap = Math.min(retryMaxMs, retryBaseMs << Math.min(alert.attempts, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        backingOff.add(alert);
         try {
+            retryScheduler.schedule(() -> {
+                if (backingOff.remove(alert)) {
+                    requeue(alert);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopping, no backoff: the flusher is draining the outbox
+            if (backingOff.remove(alert)) {
+                requeue(alert);
+            }
+        }
+    }
+
+    private void requeue(Alert alert) {
+        if (!outbox.offer(alert)) {
+            droppedCounter.increment();
+            logger.error("SNS outbox is full, drop retried alarm, Transaction ID: {}",
+                    alert.result.getTransactionId());
+        }
+    }
+
+    public int getOutboxDepth() {
+        return outbox.size();
+    }
+
+    /**
+     * One alert in the outbox, text is built on the flusher thread
+     */
+    static final class Alert {
+        final FraudResult result;
+        int attempts;
+
+        Alert(FraudResult result) {
+            this.result = result;
+        }
+
+        String subject() {
+            return "Fraud Alarm Transaction-ID: " + result.getTransactionId();
+        }
+
+        String message() {
             // build msg Content
-            String subject = "Fraud Alarm Transaction-ID: " + result.getTransactionId();
             StringBuilder message = new StringBuilder();
             message.append("Detect Fraud Transaction:\n");
             message.append("Transaction-ID: ").append(result.getTransactionId()).append("\n");
             message.append("Detection time: ").append(result.getDetectTime()).append("\n");
+            if (result.hasScore()) {
+                message.append("Risk score: ").append(String.format("%.3f", result.getScore())).append("\n");
+            }
             message.append(":\n");
-            
+
             for (String reason : result.getReasons()) {
                 message.append("- ").append(reason).append("\n");
             }
-
-            PublishRequest request = PublishRequest.builder()
-                    .topicArn(snsTopicArn)
-                    .subject(subject)
-                    .message(message.toString())
-                    .build();
-            
-            snsClient.publish(request);
-            logger.info("send alarm to SNS success, Transaction ID: {}", result.getTransactionId());
-        } catch (Exception e) {
-            logger.error("send alarm to SNS failed, Transaction ID: {}", result.getTransactionId(), e);
+            return message.toString();
         }
     }
 }
@@ -1,37 +1,70 @@
 package com.fraud.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.dedup.ClaimResult;
+import com.fraud.dedup.TransactionDeduplicator;
+import com.fraud.ingest.ExecutionMode;
+import com.fraud.ingest.SqsAcknowledger;
+import com.fraud.journal.ResultJournal;
 import com.fraud.model.Transaction;
 import com.fraud.model.FraudResult;
+import com.fraud.persist.ResultWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
 import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * SQS Service, consume transaction msg
+ * Polling threads and worker pool live in {@link com.fraud.ingest.SqsIngestionEngine}
  */
 @Service
 @RequiredArgsConstructor
 public class SqsConsumerService {
     private static final Logger logger = LoggerFactory.getLogger(SqsConsumerService.class);
 
+    // FIFO queue system attribute, need to be requested explicitly
+    public static final String MESSAGE_GROUP_ID = "MessageGroupId";
+    // epoch millis the msg was sent, for queue age
+    public static final String SENT_TIMESTAMP = "SentTimestamp";
 
     @Autowired
     private final software.amazon.awssdk.services.sqs.SqsClient sqsClient;
     @Autowired
+    private final software.amazon.awssdk.services.sqs.SqsAsyncClient sqsAsyncClient;
+    @Autowired
     private final FraudDetectionService fraudDetectionService;
     @Autowired
     private final SnsNotificationService snsNotificationService;
     @Autowired
-    private final ObjectMapper objectMapper;
+    private final TransactionDecoder transactionDecoder;
+    @Autowired
+    private final SqsAcknowledger sqsAcknowledger;
+    @Autowired
+    private final ResultWriter resultWriter;
+    @Autowired
+    private final ResultJournal resultJournal;
+    @Autowired
+    private final TransactionDeduplicator transactionDeduplicator;
+    @Autowired
+    private final MeterRegistry meterRegistry;
 
 
     @Value("${aws.sqs.queue.url}")
@@ -40,58 +73,253 @@ public class SqsConsumerService {
     @Value("${aws.sqs.max.messages}")
     private int maxMessages;
 
+    @Value("${aws.sqs.wait.time.seconds:20}")
+    private int waitTimeSeconds;
+
+    @Value("${aws.sqs.visibility.timeout.seconds:30}")
+    private int visibilityTimeoutSeconds;
+
+    @Value("${aws.sqs.execution.mode:PLATFORM}")
+    private ExecutionMode executionMode;
+
+    // registered once, recording allocates nothing
+    private DistributionSummary receiveBatchSize;
+    private Counter receiveErrorCounter;
+    private Timer queueAgeTimer;
+    private Timer parseTimer;
+    private Timer processTimer;
+    private Timer endToEndTimer;
+    private Counter parseFailedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        receiveBatchSize = DistributionSummary.builder("fraud.sqs.receive.batch.size")
+                .description("msg returned by one ReceiveMessage")
+                .register(meterRegistry);
+        receiveErrorCounter = Counter.builder("fraud.sqs.receive.errors").register(meterRegistry);
+        queueAgeTimer = Timer.builder("fraud.message.queue.age")
+                .description("time from SentTimestamp until a worker picks the msg up")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meterRegistry);
+        parseTimer = Timer.builder("fraud.message.parse").register(meterRegistry);
+        processTimer = Timer.builder("fraud.message.process")
+                .description("parse, detect, journal, persist, ack and alert of one msg")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+        endToEndTimer = Timer.builder("fraud.message.end.to.end")
+                .description("time from SentTimestamp until the msg is processed")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meterRegistry);
+        parseFailedCounter = Counter.builder("fraud.message.failed").tag("stage", "parse").register(meterRegistry);
+        failedCounter = Counter.builder("fraud.message.failed").tag("stage", "process").register(meterRegistry);
+    }
+
     /**
-     *  Schedule to Receive msg from SQS
+     * Long poll one batch of msg from SQS
+     * @param limit max msg to receive, capped by aws.sqs.max.messages
      */
-    @Scheduled(fixedRateString = "${aws.sqs.polling.rate}")
-    public void consumeTransactions() {
+    public List<Message> receiveTransactions(int limit) {
+        List<Message> messages;
         try {
+            messages = sqsClient.receiveMessage(receiveRequest(limit)).messages();
+        } catch (RuntimeException e) {
+            receiveErrorCounter.increment();
+            throw e;
+        }
+        return received(messages);
+    }
 
-            ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
-                    .queueUrl(sqsQueueUrl)
-                    .maxNumberOfMessages(maxMessages)
-                    .waitTimeSeconds(20)  // 长轮询减少空请求
-                    .build();
-
-            List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
-            
-            if (messages.isEmpty()) {
-                logger.trace("SQS is empty now");
-                return;
+    /**
+     * Long poll one batch without holding a thread, completes on the HTTP client event loop
+     * @param limit max msg to receive, capped by aws.sqs.max.messages
+     */
+    public CompletableFuture<List<Message>> receiveTransactionsAsync(int limit) {
+        CompletableFuture<List<Message>> received;
+        try {
+            received = sqsAsyncClient.receiveMessage(receiveRequest(limit))
+                    .thenApply(response -> received(response.messages()));
+        } catch (RuntimeException e) {
+            received = CompletableFuture.failedFuture(e);
+        }
+        return received.whenComplete((messages, error) -> {
+            if (error != null) {
+                receiveErrorCounter.increment();
             }
-            logger.info("receive  {}  msg form SQS", messages.size());
+        });
+    }
+
+    private ReceiveMessageRequest receiveRequest(int limit) {
+        return ReceiveMessageRequest.builder()
+                .queueUrl(sqsQueueUrl)
+                .maxNumberOfMessages(Math.min(limit, maxMessages))
+                .waitTimeSeconds(waitTimeSeconds)  // 长轮询减少空请求
+                .visibilityTimeout(visibilityTimeoutSeconds)
+                .attributeNamesWithStrings(MESSAGE_GROUP_ID, SENT_TIMESTAMP)
+                .build();
+    }
 
-            for (Message message : messages) {
-                try {
-                    Transaction transaction = objectMapper.readValue(message.body(), Transaction.class);
-                    logger.debug("Deal Msg - ID: {}, Account: {}, Amount: {}",
-                            transaction.getTransactionId(), 
-                            transaction.getAccountId(), 
-                            transaction.getAmount());
+    private List<Message> received(List<Message> messages) {
+        receiveBatchSize.record(messages.size());
 
+        if (messages.isEmpty()) {
+            logger.trace("SQS is empty now");
+        } else {
+            logger.debug("receive  {}  msg form SQS", messages.size());
+        }
+        return messages;
+    }
+
+    /**
+     * Deal one transaction msg: parse -> dedup -> detect -> journal -> persist -> ack -> alert
+     * With fraud.persistence.ack.after.durable the ack and the fraud alert happen once the result is written,
+     * and the msg is released for redelivery if the write is given up. The next msg of its FIFO group does
+     * not wait for that: a released msg comes back after later msg of the group, the flag gives up group order.
+     * A transaction already processed is only acknowledged, one still in progress elsewhere is left in SQS.
+     * A full write-behind buffer blocks the caller, in ASYNC mode the msg is left in SQS instead.
+     * @return true if msg is done (acknowledged or waiting for its result to be durable), false if it is left in SQS to retry
+     */
+    public boolean processMessage(Message message) {
+        long start = System.nanoTime();
+        long sentTimestamp = sentTimestamp(message);
+        if (sentTimestamp > 0) {
+            queueAgeTimer.record(Math.max(0, System.currentTimeMillis() - sentTimestamp), TimeUnit.MILLISECONDS);
+        }
+        String claimed = null;
+        try {
+            Transaction transaction = transactionDecoder.decode(message.body());
+            parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Deal Msg - ID: {}, Account: {}, Amount: {}",
+                        transaction.getTransactionId(),
+                        transaction.getAccountId(),
+                        transaction.getAmount());
+            }
 
-                    FraudResult result = fraudDetectionService.detectFraud(transaction);
+            String transactionId = transaction.getTransactionId();
+            ClaimResult claim = transactionDeduplicator.tryClaim(transactionId);
+            if (claim == ClaimResult.DUPLICATE) {
+                logger.debug("Duplicate Msg - ID: {}, acknowledged without detection", transactionId);
+                sqsAcknowledger.acknowledge(message.receiptHandle());
+                return true;
+            }
+            if (claim == ClaimResult.IN_PROGRESS) {
+                // redelivered while the first copy is processed, back after the visibility timeout
+                sqsAcknowledger.release(message.receiptHandle());
+                return false;
+            }
+            claimed = transactionId;
 
-                    //TODO persist result to db or obs
+            FraudResult result = fraudDetectionService.detectFraud(transaction);
 
-                    DeleteMessageRequest deleteRequest = DeleteMessageRequest.builder()
-                            .queueUrl(sqsQueueUrl)
-                            .receiptHandle(message.receiptHandle())
-                            .build();
-                    sqsClient.deleteMessage(deleteRequest);
+            // local audit copy, a memory copy only
+            resultJournal.append(transaction, result);
 
+            String receiptHandle = message.receiptHandle();
+            if (resultWriter.isAckAfterDurable()) {
+                boolean queued = persist(transaction, result, durable -> {
+                    if (durable) {
+                        transactionDeduplicator.complete(transactionId);
+                        sqsAcknowledger.acknowledge(receiptHandle);
+                        if (result.isFraudulent()) {
+                            snsNotificationService.sendFraudAlert(result);
+                        }
+                    } else {
+                        // redelivered and detected again, alerted then
+                        transactionDeduplicator.release(transactionId);
+                        sqsAcknowledger.release(receiptHandle);
+                    }
+                });
+                if (!queued) {
+                    return rejected(message, claimed);
+                }
+                // completed or released by the write callback
+                claimed = null;
+            } else {
+                if (!persist(transaction, result, null)) {
+                    return rejected(message, claimed);
+                }
+                // deleted with the next DeleteMessageBatch
+                sqsAcknowledger.acknowledge(receiptHandle);
+                if (result.isFraudulent()) {
+                    // queued in the SNS outbox, never blocks here
                     snsNotificationService.sendFraudAlert(result);
-                    logger.debug("Transaction Msg - ID: {}", transaction.getTransactionId());
-
-                } catch (Exception e) {
-                    // retry
-                    logger.error("Deal Msg Failed ID: {})，will retry later",
-                            message.messageId(), e);
                 }
             }
+            if (claimed != null) {
+                transactionDeduplicator.complete(claimed);
+                claimed = null;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Transaction Msg - ID: {}", transaction.getTransactionId());
+            }
+            processTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (sentTimestamp > 0) {
+                endToEndTimer.record(Math.max(0, System.currentTimeMillis() - sentTimestamp), TimeUnit.MILLISECONDS);
+            }
+            return true;
 
         } catch (Exception e) {
-            logger.error("Deal SQS message error for:", e);
+            (e instanceof IOException ? parseFailedCounter : failedCounter).increment();
+            if (claimed != null) {
+                transactionDeduplicator.release(claimed);
+            }
+            // retry
+            sqsAcknowledger.release(message.receiptHandle());
+            logger.error("Deal Msg Failed ID: {})，will retry later",
+                    message.messageId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Hand the result to the write-behind buffer. Waits while the buffer is full, except in ASYNC mode: the
+     * few stage threads run every msg group, one waiting thread would stall unrelated groups.
+     * @return false if the buffer is full in ASYNC mode, the result is not queued
+     */
+    private boolean persist(Transaction transaction, FraudResult result, Consumer<Boolean> onComplete) throws InterruptedException {
+        if (executionMode == ExecutionMode.ASYNC) {
+            return resultWriter.trySubmit(transaction, result, onComplete);
         }
+        resultWriter.submit(transaction, result, onComplete);
+        return true;
+    }
+
+    /**
+     * result not accepted by the full buffer, the msg is left in SQS and comes back after the visibility timeout
+     */
+    private boolean rejected(Message message, String claimed) {
+        if (claimed != null) {
+            transactionDeduplicator.release(claimed);
+        }
+        sqsAcknowledger.release(message.receiptHandle());
+        logger.debug("Result buffer full, Msg ID: {} left in SQS", message.messageId());
+        return false;
+    }
+
+    private static long sentTimestamp(Message message) {
+        String sent = message.attributes().get(MessageSystemAttributeName.SENT_TIMESTAMP);
+        if (sent == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(sent);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public int getVisibilityTimeoutSeconds() {
+        return visibilityTimeoutSeconds;
     }
 }
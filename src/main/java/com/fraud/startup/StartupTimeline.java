@@ -0,0 +1,80 @@
+package com.fraud.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Time from JVM start until this pod is useful, to see what a pod added by the HPA brings during a burst:
+ * fraud.startup.seconds{phase=warmup} when the warm-up is done and {phase=first.message} when the first
+ * msg is processed, NaN until reached. Spring Boot's application.ready.time is the time until readiness.
+ */
+@Component
+@RequiredArgsConstructor
+public class StartupTimeline {
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimeline.class);
+
+    @Autowired
+    private final MeterRegistry meterRegistry;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // millis since JVM start, -1 until reached
+    private volatile long warmupMillis = -1;
+    private volatile long firstMessageMillis = -1;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("fraud.startup.seconds", this, timeline -> seconds(timeline.warmupMillis))
+                .description("time from JVM start until the startup phase was reached")
+                .tag("phase", "warmup")
+                .register(meterRegistry);
+        Gauge.builder("fraud.startup.seconds", this, timeline -> seconds(timeline.firstMessageMillis))
+                .description("time from JVM start until the startup phase was reached")
+                .tag("phase", "first.message")
+                .register(meterRegistry);
+    }
+
+    private static double seconds(long millis) {
+        return millis < 0 ? Double.NaN : millis / 1000.0;
+    }
+
+    public void warmupDone() {
+        warmupMillis = sinceJvmStart();
+    }
+
+    /**
+     * Called for every msg processed, only the first one is recorded
+     */
+    public void messageProcessed() {
+        if (firstMessageMillis < 0) {
+            firstMessage();
+        }
+    }
+
+    private synchronized void firstMessage() {
+        if (firstMessageMillis < 0) {
+            firstMessageMillis = sinceJvmStart();
+            logger.info("first msg processed {} ms after JVM start", firstMessageMillis);
+        }
+    }
+
+    private long sinceJvmStart() {
+        return Math.max(0, System.currentTimeMillis() - jvmStartMillis);
+    }
+
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    public long getFirstMessageMillis() {
+        return firstMessageMillis;
+    }
+}
@@ -0,0 +1,133 @@
+package com.fraud.startup;
+
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.model.FraudResult;
+import com.fraud.model.Transaction;
+import com.fraud.service.FraudDetectionService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * Warm-up of the msg path before the pod takes msg: synthetic transaction msg are decoded by the
+ * {@link TransactionDecoder} and checked by {@link FraudDetectionService#detectFraud} of
+ * {@link FraudDetectionService#forWarmup()}, so their classes are loaded and the JIT has compiled them
+ * when the first real msg comes.
+ *
+ * Runs in the lifecycle phase before the ingestion engine and the web server, the pollers start and
+ * the readiness probe turns UP only after it. fraud.warmup.iterations msg (0: no warm-up), stopped after
+ * fraud.warmup.max.ms at the latest.
+ *
+ * The msg use fraud.warmup.accounts accounts "warmup-N", small amounts, one usual location per account and
+ * transaction times spread over the last hour, with the default rules they stay clean. The warm-up service is
+ * isolated: stateful rules run on throwaway stores, the profile rules are left out (no profile store lookup),
+ * meters go to a registry of its own and no detection log is written. The live velocity and travel state,
+ * the profile cache, the detection and rule meters see nothing of it. Nothing is persisted, journaled,
+ * acknowledged or alerted.
+ */
+@Component
+@RequiredArgsConstructor
+public class StartupWarmup implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final String[] LOCATIONS = {"Singapore", "Tokyo", "London", "Paris", "Sydney", "New York"};
+    private static final int MERCHANTS = 16;
+    private static final long SPREAD_MILLIS = 3_500_000L;
+
+    @Autowired
+    private final TransactionDecoder transactionDecoder;
+    @Autowired
+    private final FraudDetectionService fraudDetectionService;
+    @Autowired
+    private final StartupTimeline startupTimeline;
+
+    @Value("${fraud.warmup.iterations:10000}")
+    private int iterations;
+
+    @Value("${fraud.warmup.accounts:256}")
+    private int accounts;
+
+    @Value("${fraud.warmup.max.ms:20000}")
+    private long maxMillis;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+        if (iterations <= 0) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        FraudDetectionService warmupService = fraudDetectionService.forWarmup();
+        long deadline = started + maxMillis;
+        int accountCount = Math.max(1, accounts);
+        int perAccount = Math.max(1, (iterations + accountCount - 1) / accountCount);
+        // the visits of an account move forward in time, from an hour ago to now
+        long step = SPREAD_MILLIS / perAccount;
+        int done = 0;
+        int flagged = 0;
+        int failed = 0;
+        for (; done < iterations; done++) {
+            if ((done & 255) == 0 && System.currentTimeMillis() > deadline) {
+                break;
+            }
+            long time = started - SPREAD_MILLIS + (long) (done / accountCount) * step;
+            String body = message(done, done % accountCount, time);
+            try {
+                Transaction transaction = transactionDecoder.decode(body);
+                FraudResult result = warmupService.detectFraud(transaction);
+                if (result.isFraudulent()) {
+                    flagged++;
+                }
+            } catch (IOException | RuntimeException e) {
+                failed++;
+            }
+        }
+        startupTimeline.warmupDone();
+        logger.info("warm-up done: msg={}, flagged={}, failed={}, took={} ms", done, flagged, failed,
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Body in the shape of the queue msg, half with ISO times and half with epoch millis, as both come in
+     */
+    static String message(int index, int account, long time) {
+        StringBuilder body = new StringBuilder(192)
+                .append("{\"transactionId\":\"warmup-tx-").append(index)
+                .append("\",\"accountId\":\"warmup-").append(account)
+                .append("\",\"amount\":").append(5 + (index * 37) % 19500 / 100.0)
+                .append(",\"location\":\"").append(LOCATIONS[account % LOCATIONS.length])
+                .append("\",\"merchantId\":\"warmup-m").append(index % MERCHANTS)
+                .append("\",\"transactionTime\":");
+        if ((index & 1) == 0) {
+            body.append(time);
+        } else {
+            body.append('"').append(Instant.ofEpochMilli(time)).append('"');
+        }
+        return body.append('}').toString();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // before the SQS acknowledger and the ingestion engine
+        return SmartLifecycle.DEFAULT_PHASE - 3;
+    }
+}
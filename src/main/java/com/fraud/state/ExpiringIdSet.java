@@ -0,0 +1,202 @@
+package com.fraud.state;
+
+/**
+ * Memory bounded set of recently seen IDs, for deduplication.
+ *
+ * IDs are kept as 64-bit hashes in two generations. New IDs go into the current generation, lookups
+ * check both. The current generation becomes the previous one (and the previous one is dropped) when
+ * it is older than windowMillis or one of its stripes is full, so an ID is remembered for at least one
+ * window unless the traffic fills a generation earlier. Each generation is a set of lock stripes, every
+ * stripe a primitive open-addressing table filled to half at most: 16 to 32 bytes per ID and generation,
+ * no allocation per ID.
+ *
+ * Two different IDs collide with a probability of about n^2 / 2^65 (1e-7 for 2M IDs), a collision
+ * makes a new ID look already seen.
+ */
+public class ExpiringIdSet {
+
+    private static final int ADDED = 0;
+    private static final int PRESENT = 1;
+    private static final int FULL = 2;
+
+    private final long windowMillis;
+    private final int maxIdsPerGeneration;
+    private final int stripeCount;
+    private final int slotsPerStripe;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param windowMillis        min time an ID is remembered, unless generations fill up earlier
+     * @param maxIdsPerGeneration IDs per generation, spread over the stripes
+     * @param stripeCount         lock stripes, rounded up to a power of 2
+     * @param nowMillis           current time
+     */
+    public ExpiringIdSet(long windowMillis, int maxIdsPerGeneration, int stripeCount, long nowMillis) {
+        if (windowMillis <= 0 || maxIdsPerGeneration < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("invalid expiring ID set config");
+        }
+        this.windowMillis = windowMillis;
+        this.maxIdsPerGeneration = maxIdsPerGeneration;
+        this.stripeCount = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        int perStripe = Math.max(1, (maxIdsPerGeneration + this.stripeCount - 1) / this.stripeCount);
+        // power of 2, at most half full
+        this.slotsPerStripe = Integer.highestOneBit(perStripe * 2 - 1) << 1;
+        this.current = new Generation(this.stripeCount, slotsPerStripe, perStripe, nowMillis);
+        this.previous = new Generation(1, 2, 0, nowMillis);
+    }
+
+    /**
+     * @return true when the ID was seen within the window
+     */
+    public boolean contains(String id) {
+        long hash = hash(id);
+        return current.contains(hash) || previous.contains(hash);
+    }
+
+    /**
+     * Remember the ID
+     *
+     * @return false when it was already there
+     */
+    public boolean add(String id, long nowMillis) {
+        long hash = hash(id);
+        Generation generation = current;
+        if (nowMillis - generation.createdMillis >= windowMillis) {
+            generation = rotate(generation, nowMillis);
+        }
+        if (previous.contains(hash)) {
+            return false;
+        }
+        int added = generation.add(hash);
+        if (added == FULL) {
+            added = rotate(generation, nowMillis).add(hash);
+        }
+        return added == ADDED;
+    }
+
+    private synchronized Generation rotate(Generation full, long nowMillis) {
+        if (current != full) {
+            // rotated by another thread
+            return current;
+        }
+        int perStripe = Math.max(1, (maxIdsPerGeneration + stripeCount - 1) / stripeCount);
+        Generation next = new Generation(stripeCount, slotsPerStripe, perStripe, nowMillis);
+        previous = full;
+        current = next;
+        return next;
+    }
+
+    /**
+     * IDs in both generations
+     */
+    public long size() {
+        return current.size() + previous.size();
+    }
+
+    public long memoryBytes() {
+        return 2L * stripeCount * slotsPerStripe * Long.BYTES;
+    }
+
+    /**
+     * 64-bit FNV-1a of the chars, finished with the murmur3 mixer. 0 is the empty slot marker and mapped to 1.
+     */
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static final class Generation {
+        final long createdMillis;
+        final Stripe[] stripes;
+        final int stripeMask;
+
+        Generation(int stripeCount, int slotsPerStripe, int maxPerStripe, long createdMillis) {
+            this.createdMillis = createdMillis;
+            this.stripes = new Stripe[stripeCount];
+            this.stripeMask = stripeCount - 1;
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Stripe(slotsPerStripe, maxPerStripe);
+            }
+        }
+
+        boolean contains(long hash) {
+            Stripe stripe = stripes[(int) hash & stripeMask];
+            synchronized (stripe) {
+                return stripe.find(hash) >= 0;
+            }
+        }
+
+        /**
+         * @return ADDED, PRESENT, or FULL when the stripe of the hash is full (IDs spread evenly, so is
+         * the generation about)
+         */
+        int add(long hash) {
+            Stripe stripe = stripes[(int) hash & stripeMask];
+            synchronized (stripe) {
+                return stripe.add(hash);
+            }
+        }
+
+        long size() {
+            long size = 0;
+            for (Stripe stripe : stripes) {
+                size += stripe.count;
+            }
+            return size;
+        }
+    }
+
+    private static final class Stripe {
+        final long[] slots;
+        final int mask;
+        final int max;
+        // written under the stripe lock, read unlocked for size and fill checks
+        volatile int count;
+
+        Stripe(int slots, int max) {
+            this.slots = new long[slots];
+            this.mask = slots - 1;
+            this.max = max;
+        }
+
+        int find(long hash) {
+            // low bits pick the stripe, probe with the high ones
+            for (int i = (int) (hash >>> 32) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == hash) {
+                    return i;
+                }
+                if (slots[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        int add(long hash) {
+            for (int i = (int) (hash >>> 32) & mask; ; i = (i + 1) & mask) {
+                if (slots[i] == hash) {
+                    return PRESENT;
+                }
+                if (slots[i] == 0) {
+                    // keep the table at most half full
+                    if (count >= max) {
+                        return FULL;
+                    }
+                    slots[i] = hash;
+                    count++;
+                    return ADDED;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.fraud.state;
+
+/**
+ * In-memory last two sightings (geohash cell and time) per account, for the impossible travel rule.
+ *
+ * A sighting is packed into one long: cell in the high 32 bits, epoch seconds (unsigned) in the low 32.
+ * Accounts are keyed by a 64-bit hash of the account ID, no String is kept: two accounts sharing a hash
+ * would share their sightings (chance of any such pair among 10^6 accounts about 3 x 10^-8).
+ * Accounts are spread over lock stripes, every stripe is a primitive open-addressing table with fixed
+ * entry storage, about 36 bytes per account, so memory is bounded by maxAccounts. When a stripe is full,
+ * the least recently seen of {@link #EVICTION_SAMPLES} entries is evicted (sampled LRU, no scan of the
+ * stripe). Nothing here allocates.
+ */
+public class LastSeenStore {
+
+    /**
+     * no sighting
+     */
+    public static final long NONE = 0L;
+
+    static final int EVICTION_SAMPLES = 8;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * @param maxAccounts max accounts kept in memory
+     * @param stripeCount lock stripes, rounded up to a power of 2
+     */
+    public LastSeenStore(int maxAccounts, int stripeCount) {
+        if (maxAccounts < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("invalid last seen store config");
+        }
+        int stripesPow2 = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[stripesPow2];
+        this.stripeMask = stripesPow2 - 1;
+        int perStripe = Math.max(1, (maxAccounts + stripesPow2 - 1) / stripesPow2);
+        for (int i = 0; i < stripesPow2; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public static long sighting(long cell, long timeMillis) {
+        return cell << 32 | (Math.max(0, timeMillis / 1000) & 0xffffffffL);
+    }
+
+    public static long cell(long sighting) {
+        return sighting >>> 32;
+    }
+
+    public static long timeMillis(long sighting) {
+        return (sighting & 0xffffffffL) * 1000;
+    }
+
+    /**
+     * Make the sighting the last one of the account, the last one so far becomes the previous one
+     *
+     * @return the previous sighting, {@link #NONE} for a new account
+     */
+    public long record(String accountId, long sighting) {
+        long key = key(accountId);
+        Stripe stripe = stripes[(int) (key >>> 48) & stripeMask];
+        synchronized (stripe) {
+            int entry = stripe.findOrInsert(key);
+            long previous = stripe.last[entry];
+            stripe.previous[entry] = previous;
+            stripe.last[entry] = sighting;
+            return previous;
+        }
+    }
+
+    /**
+     * @return sighting before the given one when it is the last one of the account, otherwise the last one,
+     * {@link #NONE} for an unknown account
+     */
+    public long previous(String accountId, long sighting) {
+        long key = key(accountId);
+        Stripe stripe = stripes[(int) (key >>> 48) & stripeMask];
+        synchronized (stripe) {
+            int entry = stripe.find(key);
+            if (entry < 0) {
+                return NONE;
+            }
+            long last = stripe.last[entry];
+            return last == sighting ? stripe.previous[entry] : last;
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public long getEvictedCount() {
+        long evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evicted += stripe.evictions;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * approximate heap preallocated by the store
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * FNV-1a over the chars, murmur3 fmix64 on top
+     */
+    static long key(String accountId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountId.length(); i++) {
+            hash ^= accountId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * One lock stripe: open-addressing index (linear probing, backward shift delete) over a fixed
+     * number of entries.
+     */
+    private static final class Stripe {
+        private final int capacity;
+        private final int[] slots;        // entry + 1, 0 = empty
+        private final int slotMask;
+        private final long[] keys;
+        private final int[] entrySlot;    // slot holding the entry, for deletion
+        final long[] last;
+        final long[] previous;
+        private int next;                 // next free entry while filling up, then the eviction cursor
+        int size;
+        long evictions;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            this.slots = new int[tableSize];
+            this.slotMask = tableSize - 1;
+            this.keys = new long[capacity];
+            this.entrySlot = new int[capacity];
+            this.last = new long[capacity];
+            this.previous = new long[capacity];
+        }
+
+        int find(long key) {
+            int slot = (int) key & slotMask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                if (keys[entry - 1] == key) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & slotMask;
+            }
+            return -1;
+        }
+
+        int findOrInsert(long key) {
+            int entry = find(key);
+            if (entry >= 0) {
+                return entry;
+            }
+            if (size < capacity) {
+                entry = next++;
+                if (next == capacity) {
+                    next = 0;
+                }
+            } else {
+                entry = evictSampled();
+            }
+            int slot = (int) key & slotMask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            slots[slot] = entry + 1;
+            keys[entry] = key;
+            entrySlot[entry] = slot;
+            last[entry] = NONE;
+            previous[entry] = NONE;
+            size++;
+            return entry;
+        }
+
+        /**
+         * Evict the least recently seen of the next entries after the cursor, the stripe is full
+         */
+        private int evictSampled() {
+            int oldest = next;
+            int samples = Math.min(EVICTION_SAMPLES, capacity);
+            for (int i = 0; i < samples; i++) {
+                int entry = next;
+                if ((last[entry] & 0xffffffffL) < (last[oldest] & 0xffffffffL)) {
+                    oldest = entry;
+                }
+                next = next + 1 == capacity ? 0 : next + 1;
+            }
+            remove(oldest);
+            evictions++;
+            return oldest;
+        }
+
+        private void remove(int entry) {
+            int slot = entrySlot[entry];
+            slots[slot] = 0;
+            // backward shift: pull later entries of the probe run into the hole
+            int nextSlot = (slot + 1) & slotMask;
+            while (slots[nextSlot] != 0) {
+                int ideal = (int) keys[slots[nextSlot] - 1] & slotMask;
+                if (((nextSlot - ideal) & slotMask) >= ((nextSlot - slot) & slotMask)) {
+                    slots[slot] = slots[nextSlot];
+                    entrySlot[slots[slot] - 1] = slot;
+                    slots[nextSlot] = 0;
+                    slot = nextSlot;
+                }
+                nextSlot = (nextSlot + 1) & slotMask;
+            }
+            size--;
+        }
+
+        long memoryBytes() {
+            return 4L * slots.length + 28L * capacity;
+        }
+    }
+}
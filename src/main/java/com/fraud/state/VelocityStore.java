@@ -0,0 +1,318 @@
+package com.fraud.state;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * In-memory per-account rolling counts and sums for velocity checks.
+ *
+ * Time is split into buckets of bucketMillis, each account keeps a ring of count/sum buckets covering
+ * the longest window. Accounts are spread over lock stripes, every stripe is a primitive open-addressing
+ * table with fixed entry storage, so memory is bounded by maxAccounts whatever the traffic: about
+ * 12 x (longest window / bucket + 2) bytes per account, 61 buckets and 73 MB for 100k accounts at the
+ * defaults. Accounts idle longer than the longest window expire on {@link #evictExpired}, when a stripe
+ * is full the least recently seen of {@link #EVICTION_SAMPLES} entries is evicted (sampled LRU, no scan
+ * of the stripe under its lock).
+ * Window sums use the sliding-window estimate: full buckets plus the overlapping share of the oldest one.
+ */
+public class VelocityStore {
+    private static final Logger logger = LoggerFactory.getLogger(VelocityStore.class);
+
+    static final int EVICTION_SAMPLES = 8;
+
+    private final long bucketMillis;
+    private final int ringSize;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * @param bucketMillis    bucket width
+     * @param maxWindowMillis longest window that can be queried
+     * @param maxAccounts     max accounts kept in memory
+     * @param stripeCount     lock stripes, rounded up to a power of 2
+     */
+    public VelocityStore(long bucketMillis, long maxWindowMillis, int maxAccounts, int stripeCount) {
+        if (bucketMillis <= 0 || maxWindowMillis < bucketMillis || maxAccounts < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("invalid velocity store config");
+        }
+        this.bucketMillis = bucketMillis;
+        // one extra bucket for the partially overlapped oldest one
+        this.ringSize = (int) ((maxWindowMillis + bucketMillis - 1) / bucketMillis) + 1;
+        int stripesPow2 = stripeCount == 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[stripesPow2];
+        this.stripeMask = stripesPow2 - 1;
+        int perStripe = Math.max(1, (maxAccounts + stripesPow2 - 1) / stripesPow2);
+        for (int i = 0; i < stripesPow2; i++) {
+            stripes[i] = new Stripe(perStripe, ringSize);
+        }
+    }
+
+    /**
+     * add one transaction of the account at timeMillis
+     */
+    public void record(String accountId, double amount, long timeMillis) {
+        int hash = spread(accountId.hashCode());
+        Stripe stripe = stripes[hash & stripeMask];
+        long bucket = Math.floorDiv(timeMillis, bucketMillis);
+        synchronized (stripe) {
+            int entry = stripe.findOrInsert(accountId, hash >>> 8, bucket);
+            stripe.add(entry, bucket, amount);
+        }
+    }
+
+    /**
+     * Fill count and sum of the windows ending at timeMillis, no allocation.
+     *
+     * @param windowMillis window lengths, each at most the max window
+     * @param counts       out: estimated transaction count per window
+     * @param sums         out: estimated amount sum per window
+     */
+    public void query(String accountId, long timeMillis, long[] windowMillis, double[] counts, double[] sums) {
+        Arrays.fill(counts, 0, windowMillis.length, 0);
+        Arrays.fill(sums, 0, windowMillis.length, 0);
+        int hash = spread(accountId.hashCode());
+        Stripe stripe = stripes[hash & stripeMask];
+        long bucket = Math.floorDiv(timeMillis, bucketMillis);
+        // share of the current bucket already elapsed, the oldest bucket overlaps by the rest
+        double elapsed = (double) Math.floorMod(timeMillis, bucketMillis) / bucketMillis;
+        synchronized (stripe) {
+            int entry = stripe.find(accountId, hash >>> 8);
+            if (entry < 0) {
+                return;
+            }
+            for (int w = 0; w < windowMillis.length; w++) {
+                long fullBuckets = Math.min(ringSize - 1, Math.max(1, windowMillis[w] / bucketMillis));
+                stripe.sum(entry, bucket, fullBuckets, 1.0 - elapsed, w, counts, sums);
+            }
+        }
+    }
+
+    /**
+     * Free accounts idle longer than the longest window
+     */
+    public int evictExpired(long nowMillis) {
+        long oldestLiveBucket = Math.floorDiv(nowMillis, bucketMillis) - ringSize;
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evicted += stripe.evictOlderThan(oldestLiveBucket);
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("velocity store evicted {} idle accounts", evicted);
+        }
+        return evicted;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    public long getEvictedCount() {
+        long evicted = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                evicted += stripe.capacityEvictions;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * approximate heap preallocated by the store
+     */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * One lock stripe: open-addressing index (linear probing, backward shift delete) over a fixed
+     * number of entries with their bucket rings.
+     */
+    private static final class Stripe {
+        private final int capacity;
+        private final int ringSize;
+        private final int[] slots;        // entry + 1, 0 = empty
+        private final int[] slotHashes;
+        private final int slotMask;
+        private final String[] keys;
+        private final int[] entrySlot;    // slot holding the entry, for deletion
+        private final long[] headBucket;  // newest bucket written, also last seen time
+        private final int[] counts;       // entry * ringSize + bucket % ringSize
+        private final double[] sums;
+        private final int[] freeEntries;
+        private int freeCount;
+        private int cursor;               // next entry sampled for eviction
+        int size;
+        long capacityEvictions;
+
+        Stripe(int capacity, int ringSize) {
+            this.capacity = capacity;
+            this.ringSize = ringSize;
+            int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            this.slots = new int[tableSize];
+            this.slotHashes = new int[tableSize];
+            this.slotMask = tableSize - 1;
+            this.keys = new String[capacity];
+            this.entrySlot = new int[capacity];
+            this.headBucket = new long[capacity];
+            this.counts = new int[capacity * ringSize];
+            this.sums = new double[capacity * ringSize];
+            this.freeEntries = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                freeEntries[i] = capacity - 1 - i;
+            }
+            this.freeCount = capacity;
+        }
+
+        int find(String key, int hash) {
+            int slot = hash & slotMask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                if (slotHashes[slot] == hash && key.equals(keys[entry - 1])) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & slotMask;
+            }
+            return -1;
+        }
+
+        int findOrInsert(String key, int hash, long bucket) {
+            int entry = find(key, hash);
+            if (entry >= 0) {
+                return entry;
+            }
+            if (freeCount == 0) {
+                evictSampled(bucket - ringSize);
+            }
+            entry = freeEntries[--freeCount];
+            int slot = hash & slotMask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            slots[slot] = entry + 1;
+            slotHashes[slot] = hash;
+            keys[entry] = key;
+            entrySlot[entry] = slot;
+            headBucket[entry] = bucket;
+            Arrays.fill(counts, entry * ringSize, (entry + 1) * ringSize, 0);
+            Arrays.fill(sums, entry * ringSize, (entry + 1) * ringSize, 0);
+            size++;
+            return entry;
+        }
+
+        void add(int entry, long bucket, double amount) {
+            long head = headBucket[entry];
+            if (bucket > head) {
+                // clear buckets skipped since the last write
+                long clear = Math.min(bucket - head, ringSize);
+                for (long b = bucket - clear + 1; b <= bucket; b++) {
+                    int index = entry * ringSize + (int) Math.floorMod(b, ringSize);
+                    counts[index] = 0;
+                    sums[index] = 0;
+                }
+                headBucket[entry] = bucket;
+            } else if (bucket <= head - ringSize) {
+                // late event older than the ring, nothing to add to
+                return;
+            }
+            int index = entry * ringSize + (int) Math.floorMod(bucket, ringSize);
+            counts[index]++;
+            sums[index] += amount;
+        }
+
+        void sum(int entry, long bucket, long fullBuckets, double oldestShare, int w, double[] countsOut, double[] sumsOut) {
+            long head = headBucket[entry];
+            double count = 0;
+            double sum = 0;
+            // buckets (bucket - fullBuckets, bucket] fully, bucket - fullBuckets partially
+            for (long b = bucket - fullBuckets; b <= bucket; b++) {
+                if (b > head || b <= head - ringSize) {
+                    continue;
+                }
+                int index = entry * ringSize + (int) Math.floorMod(b, ringSize);
+                double share = b == bucket - fullBuckets ? oldestShare : 1.0;
+                count += counts[index] * share;
+                sum += sums[index] * share;
+            }
+            countsOut[w] = count;
+            sumsOut[w] = sum;
+        }
+
+        int evictOlderThan(long oldestLiveBucket) {
+            int evicted = 0;
+            for (int entry = 0; entry < capacity; entry++) {
+                if (keys[entry] != null && headBucket[entry] < oldestLiveBucket) {
+                    remove(entry);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        /**
+         * Evict the least recently seen of the next entries after the cursor, the stripe is full so every
+         * entry is in use. An expired account picked here is not counted as a capacity eviction.
+         */
+        private void evictSampled(long oldestLiveBucket) {
+            int oldest = cursor;
+            int samples = Math.min(EVICTION_SAMPLES, capacity);
+            for (int i = 0; i < samples; i++) {
+                if (headBucket[cursor] < headBucket[oldest]) {
+                    oldest = cursor;
+                }
+                cursor = cursor + 1 == capacity ? 0 : cursor + 1;
+            }
+            if (headBucket[oldest] >= oldestLiveBucket) {
+                capacityEvictions++;
+            }
+            remove(oldest);
+        }
+
+        private void remove(int entry) {
+            int slot = entrySlot[entry];
+            slots[slot] = 0;
+            // backward shift: pull later entries of the probe run into the hole
+            int next = (slot + 1) & slotMask;
+            while (slots[next] != 0) {
+                int ideal = slotHashes[next] & slotMask;
+                if (((next - ideal) & slotMask) >= ((next - slot) & slotMask)) {
+                    slots[slot] = slots[next];
+                    slotHashes[slot] = slotHashes[next];
+                    entrySlot[slots[slot] - 1] = slot;
+                    slots[next] = 0;
+                    slot = next;
+                }
+                next = (next + 1) & slotMask;
+            }
+            keys[entry] = null;
+            freeEntries[freeCount++] = entry;
+            size--;
+        }
+
+        long memoryBytes() {
+            return 8L * slots.length + 8L * capacity * 3 + 12L * counts.length;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.fraud.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.model.ReasonCode;
+import com.fraud.rule.AmountThresholdRule;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.FraudRule;
+import com.fraud.rule.RuleEngine;
+import com.fraud.rule.SuspiciousAccountRule;
+import com.fraud.rule.VelocityRule;
+import com.fraud.score.RiskScorer;
+import com.fraud.service.FraudDetectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchReplayerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * case1: gzip and plain files are scored by several workers, every transaction once, hits counted per reason
+     */
+    @Test
+    void replay_ScoresAllFiles_CountsHitsPerReason() throws IOException, InterruptedException {
+        Path gzipped = tempDir.resolve("day-1.ndjson.gz");
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(gzipped)), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 1000; i++) {
+                // every 10th over the threshold, ACCT-123 is on the watchlist
+                String account = i % 100 == 0 ? "ACCT-123" : "ACCT-" + (i % 37);
+                writer.write(line("TX-" + i, account, i % 10 == 0 ? 20000 : 100));
+            }
+        }
+        Path plain = tempDir.resolve("day-2.ndjson");
+        Files.write(plain, List.of(line("TX-1000", "ACCT-1", 50).trim(), "", "not json"));
+        Path output = tempDir.resolve("results.ndjson.gz");
+
+        BatchSummary summary = replayer(3, 16, false).replay(List.of(gzipped, plain), output);
+
+        assertEquals(1003, summary.getLines());
+        assertEquals(1001, summary.getTransactions());
+        assertEquals(1, summary.getParseErrors());
+        assertEquals(100, summary.getHits(ReasonCode.AMOUNT_THRESHOLD));
+        assertEquals(10, summary.getHits(ReasonCode.SUSPICIOUS_ACCOUNT));
+        assertEquals(100, summary.getFraudulent());
+        assertEquals(0.1, summary.hitRate(ReasonCode.AMOUNT_THRESHOLD), 1e-3);
+
+        Set<String> ids = new HashSet<>();
+        long fraudulent = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(output)), StandardCharsets.UTF_8))) {
+            String result;
+            while ((result = reader.readLine()) != null) {
+                JsonNode node = objectMapper.readTree(result);
+                ids.add(node.get("transactionId").asText());
+                if (node.get("fraudulent").asBoolean()) {
+                    fraudulent++;
+                    assertTrue(node.get("reasons").size() > 0);
+                }
+            }
+        }
+        assertEquals(1001, ids.size());
+        assertEquals(100, fraudulent);
+    }
+
+    /**
+     * case2: fraud only output keeps the fraudulent results
+     */
+    @Test
+    void replay_FraudOnly_WritesFraudulentResults() throws IOException, InterruptedException {
+        Path input = tempDir.resolve("in.ndjson");
+        Files.write(input, List.of(line("TX-1", "ACCT-1", 100).trim(), line("TX-2", "ACCT-1", 20000).trim()));
+        Path output = tempDir.resolve("out.ndjson");
+
+        BatchSummary summary = replayer(1, 1000, true).replay(List.of(input), output);
+
+        assertEquals(2, summary.getTransactions());
+        List<String> results = Files.readAllLines(output);
+        assertEquals(1, results.size());
+        assertEquals("TX-2", objectMapper.readTree(results.get(0)).get("transactionId").asText());
+    }
+
+    /**
+     * case3: a day old file keeps its own times, spread out transactions stay under the velocity limits, a burst does not
+     */
+    @Test
+    void replay_DayOldFile_VelocityByTransactionTime() throws IOException, InterruptedException {
+        long dayAgo = System.currentTimeMillis() - 86_400_000L;
+        StringBuilder lines = new StringBuilder();
+        // one every 10 minutes for 5 hours: 1 per minute window, 2 per 10 minutes, 6 per hour
+        for (int i = 0; i < 30; i++) {
+            lines.append(line("TX-" + i, "ACCT-1", 100, dayAgo + i * 600_000L));
+        }
+        // 8 within a minute
+        for (int i = 0; i < 8; i++) {
+            lines.append(line("TX-B" + i, "ACCT-2", 100, dayAgo + i * 5_000L));
+        }
+        Path input = tempDir.resolve("yesterday.ndjson");
+        Files.write(input, lines.toString().getBytes(StandardCharsets.UTF_8));
+
+        BatchReplayer replayer = replayer(2, 16, false, velocityRule());
+        BatchSummary summary = replayer.replay(List.of(input), null);
+
+        assertEquals(38, summary.getTransactions());
+        // the 6th, 7th and 8th transaction of the burst
+        assertEquals(3, summary.getHits(ReasonCode.VELOCITY));
+        assertEquals(3, summary.getFraudulent());
+    }
+
+    private static VelocityRule velocityRule() {
+        VelocityRule velocityRule = new VelocityRule();
+        ReflectionTestUtils.setField(velocityRule, "enabled", true);
+        ReflectionTestUtils.setField(velocityRule, "windowSeconds", new long[]{60, 600, 3600});
+        ReflectionTestUtils.setField(velocityRule, "maxCounts", new long[]{5, 20, 60});
+        ReflectionTestUtils.setField(velocityRule, "maxAmounts", new double[]{20000, 50000, 100000});
+        ReflectionTestUtils.setField(velocityRule, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(velocityRule, "maxAccounts", 1000);
+        ReflectionTestUtils.setField(velocityRule, "stripes", 4);
+        ReflectionTestUtils.setField(velocityRule, "eventTimeMode", true);
+        velocityRule.init();
+        return velocityRule;
+    }
+
+    private BatchReplayer replayer(int threads, int chunkSize, boolean fraudOnly, FraudRule... extraRules) {
+        AmountThresholdRule amountRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountRule, "amountThreshold", 10000.0);
+        SuspiciousAccountRule accountRule = new SuspiciousAccountRule();
+        ReflectionTestUtils.setField(accountRule, "suspiciousAccountsStr", "ACCT-123");
+        accountRule.init();
+        List<FraudRule> rules = new ArrayList<>(List.of(amountRule, accountRule));
+        rules.addAll(List.of(extraRules));
+        RuleEngine ruleEngine = new RuleEngine(rules);
+        ReflectionTestUtils.setField(ruleEngine, "mode", EvaluationMode.ALL_REASONS);
+        ruleEngine.compile();
+        FraudDetectionService fraudDetectionService = new FraudDetectionService(ruleEngine,
+                new RiskScorer(new ObjectMapper(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        fraudDetectionService.init();
+
+        BatchReplayer replayer = new BatchReplayer(fraudDetectionService, new TransactionDecoder(objectMapper), objectMapper);
+        ReflectionTestUtils.setField(replayer, "threads", threads);
+        ReflectionTestUtils.setField(replayer, "chunkSize", chunkSize);
+        ReflectionTestUtils.setField(replayer, "queueChunks", 2);
+        ReflectionTestUtils.setField(replayer, "fraudOnly", fraudOnly);
+        ReflectionTestUtils.setField(replayer, "writeReasons", true);
+        return replayer;
+    }
+
+    private static String line(String transactionId, String accountId, double amount) {
+        return line(transactionId, accountId, amount, 1700000000000L);
+    }
+
+    private static String line(String transactionId, String accountId, double amount, long time) {
+        return "{\"transactionId\":\"" + transactionId + "\",\"accountId\":\"" + accountId + "\",\"amount\":" + amount
+                + ",\"location\":\"Paris\",\"merchantId\":\"MCH-1\",\"transactionTime\":" + time + "}\n";
+    }
+}
@@ -0,0 +1,123 @@
+package com.fraud.codec;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.config.MapperConfig;
+import com.fraud.model.Transaction;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class TransactionDecoderTest {
+
+    private final ObjectMapper objectMapper = new MapperConfig().objectMapper();
+    private final TransactionDecoder decoder = new TransactionDecoder(objectMapper);
+
+    /**
+     * case1: usual msg bodies are read by the streaming path
+     */
+    @Test
+    void decode_UsualBody_FastPath() throws Exception {
+        String body = "{\"transactionId\":\"TX-1\",\"accountId\":\"ACCT-1\",\"amount\":15000.5,"
+                + "\"location\":\"Paris\",\"merchantId\":\"MCH-1\",\"transactionTime\":\"2023-06-01T12:00:00Z\","
+                + "\"extra\":{\"nested\":[1,2,3]}}";
+
+        Transaction transaction = decoder.decodeFast(body);
+
+        assertNotNull(transaction);
+        assertEquals(new Transaction("TX-1", "ACCT-1", 15000.5, "Paris", "MCH-1", 1685620800000L), transaction);
+        assertNull(decoder.decodeFast("{\"amount\":\"15000\"}"));
+    }
+
+    /**
+     * case2: same result (or failure) as the previous Date based model through the ObjectMapper
+     */
+    @Test
+    void decode_SameAsObjectMapper() {
+        List<String> bodies = new ArrayList<>(List.of(
+                "{}",
+                "{\"transactionId\":null,\"amount\":null,\"transactionTime\":null}",
+                "{\"transactionId\":123,\"accountId\":true,\"amount\":7}",
+                "{\"amount\":\"15000.25\",\"transactionTime\":\"1685620800000\"}",
+                "{\"amount\":\"\",\"transactionTime\":\"\"}",
+                "{\"transactionTime\":\"2023-06-01\"}",
+                "{\"transactionTime\":\"2023-06-01T12:00:00.123+08:00\"}",
+                "{\"transactionTime\":\"Thu, 01 Jun 2023 12:00:00 GMT\"}",
+                "{\"transactionTime\":\"null\"}",
+                "{\"transactionTime\":\"yesterday\"}",
+                "{\"transactionTime\":1.5}",
+                "{\"amount\":[1]}",
+                "{\"accountId\":{\"id\":1}}",
+                "{\"transactionId\":\"TX-1\",\"transactionId\":\"TX-2\"}",
+                "{\"transactionId\":\"TX-1\"} trailing",
+                "[]",
+                "",
+                "{\"transactionId\":\"TX-1\"",
+                "{\"transactionId\":\"TX-1\",}"));
+        Random random = new Random(42);
+        String[] locations = {"Paris", "HighRiskCountry1", "Unknown", "新加坡"};
+        for (int i = 0; i < 500; i++) {
+            String time = random.nextBoolean()
+                    ? Long.toString(1_600_000_000_000L + random.nextInt(Integer.MAX_VALUE))
+                    : "\"2023-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "T0" + random.nextInt(10) + ":15:30Z\"";
+            bodies.add(String.format("{\"merchantId\":\"MCH-%d\",\"amount\":%s,\"accountId\":\"ACCT-%d\","
+                            + "\"location\":\"%s\",\"transactionTime\":%s,\"transactionId\":\"TX-%d\",\"channel\":\"app\"}",
+                    random.nextInt(100), random.nextBoolean() ? Integer.toString(random.nextInt(50000)) : Double.toString(random.nextDouble() * 50000),
+                    random.nextInt(1000), locations[random.nextInt(locations.length)], time, i));
+        }
+
+        for (String body : bodies) {
+            LegacyTransaction expected;
+            try {
+                expected = objectMapper.readValue(body, LegacyTransaction.class);
+            } catch (Exception e) {
+                assertDecodeFails(body);
+                continue;
+            }
+            Transaction actual;
+            try {
+                actual = decoder.decode(body);
+            } catch (Exception e) {
+                throw new AssertionError("decoder failed on " + body, e);
+            }
+            assertEquals(expected.toTransaction(), actual, body);
+        }
+    }
+
+    private void assertDecodeFails(String body) {
+        try {
+            decoder.decode(body);
+        } catch (Exception e) {
+            return;
+        }
+        fail("decoder accepted " + body);
+    }
+
+    /**
+     * Transaction model before the time became epoch millis
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class LegacyTransaction {
+        private String transactionId;
+        private String accountId;
+        private double amount;
+        private String location;
+        private String merchantId;
+        private Date transactionTime;
+
+        Transaction toTransaction() {
+            return new Transaction(transactionId, accountId, amount, location, merchantId,
+                    transactionTime == null ? 0L : transactionTime.getTime());
+        }
+    }
+}
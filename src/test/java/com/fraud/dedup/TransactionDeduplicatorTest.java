@@ -0,0 +1,75 @@
+package com.fraud.dedup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionDeduplicatorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * case1: completed transaction is a duplicate, one in progress is refused until released
+     */
+    @Test
+    void tryClaim_CompletedIsDuplicate_ReleasedCanBeClaimedAgain() {
+        TransactionDeduplicator deduplicator = deduplicator(null);
+
+        assertEquals(ClaimResult.CLAIMED, deduplicator.tryClaim("TX-1"));
+        assertEquals(ClaimResult.IN_PROGRESS, deduplicator.tryClaim("TX-1"));
+        deduplicator.release("TX-1");
+        assertEquals(ClaimResult.CLAIMED, deduplicator.tryClaim("TX-1"));
+        deduplicator.complete("TX-1");
+
+        assertEquals(ClaimResult.DUPLICATE, deduplicator.tryClaim("TX-1"));
+        assertEquals(ClaimResult.DUPLICATE, deduplicator.tryClaim("TX-1"));
+        assertEquals(ClaimResult.CLAIMED, deduplicator.tryClaim(null));
+
+        assertEquals(2.0, meterRegistry.get("fraud.dedup.checks").tag("result", "new").counter().count());
+        assertEquals(2.0, meterRegistry.get("fraud.dedup.checks").tag("result", "duplicate").counter().count());
+        assertEquals(1.0, meterRegistry.get("fraud.dedup.checks").tag("result", "in_progress").counter().count());
+        assertEquals(1.0, meterRegistry.get("fraud.dedup.ids").gauge().value());
+    }
+
+    /**
+     * case2: a transaction processed on another pod is a duplicate, shared store errors fail open
+     */
+    @Test
+    void tryClaim_SharedStoreDuplicate_ErrorsProcessAsNew() {
+        SharedDedupStore shared = mock(SharedDedupStore.class);
+        when(shared.claim("TX-1")).thenReturn(ClaimResult.DUPLICATE);
+        when(shared.claim("TX-2")).thenThrow(new IllegalStateException("throttled"));
+        TransactionDeduplicator deduplicator = deduplicator(shared);
+
+        assertEquals(ClaimResult.DUPLICATE, deduplicator.tryClaim("TX-1"));
+        // remembered locally, the store is not asked again
+        assertEquals(ClaimResult.DUPLICATE, deduplicator.tryClaim("TX-1"));
+        verify(shared).claim("TX-1");
+
+        assertEquals(ClaimResult.CLAIMED, deduplicator.tryClaim("TX-2"));
+        deduplicator.complete("TX-2");
+        verify(shared).complete("TX-2");
+        assertEquals(1.0, meterRegistry.get("fraud.dedup.shared.errors").counter().count());
+    }
+
+    private TransactionDeduplicator deduplicator(SharedDedupStore shared) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        if (shared != null) {
+            beans.addBean("sharedDedupStore", shared);
+        }
+        TransactionDeduplicator deduplicator = new TransactionDeduplicator(beans.getBeanProvider(SharedDedupStore.class), meterRegistry);
+        ReflectionTestUtils.setField(deduplicator, "enabled", true);
+        ReflectionTestUtils.setField(deduplicator, "windowSeconds", 900L);
+        ReflectionTestUtils.setField(deduplicator, "maxIds", 1000);
+        ReflectionTestUtils.setField(deduplicator, "stripes", 4);
+        deduplicator.init();
+        return deduplicator;
+    }
+}
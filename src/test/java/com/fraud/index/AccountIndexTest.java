@@ -0,0 +1,69 @@
+package com.fraud.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountIndexTest {
+
+    @Test
+    void contains_ExactMatchOnly() {
+        AccountIndex index = new AccountIndex.Builder(4)
+                .add("ACCT-123").add("ACCT-456").add("").add(null)
+                .build();
+
+        assertTrue(index.contains("ACCT-123"));
+        assertTrue(index.contains("ACCT-456"));
+        assertFalse(index.contains("ACCT-12"));
+        assertFalse(index.contains("ACCT-1234"));
+        assertFalse(index.contains("acct-123"));
+        assertFalse(index.contains(""));
+        assertFalse(index.contains(null));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void build_RemovesDuplicates_KeepsNonLatinIds() {
+        AccountIndex index = new AccountIndex.Builder(2)
+                .add("ACCT-1").add("ACCT-1").add("账户-1").add("ACCT-2")
+                .build();
+
+        assertEquals(3, index.size());
+        assertTrue(index.contains("账户-1"));
+        assertFalse(index.contains("账户-2"));
+    }
+
+    @Test
+    void contains_LargeIndexMatchesHashSet() {
+        Random random = new Random(42);
+        Set<String> expected = new HashSet<>();
+        // small expected size forces the builder to grow
+        AccountIndex.Builder builder = new AccountIndex.Builder(16);
+        for (int i = 0; i < 200_000; i++) {
+            String id = "ACCT-" + random.nextInt(1_000_000);
+            expected.add(id);
+            builder.add(id);
+        }
+        AccountIndex index = builder.build();
+
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < 1_000_000; i += 7) {
+            String id = "ACCT-" + i;
+            assertEquals(expected.contains(id), index.contains(id), id);
+        }
+        // compact layout: far below a HashSet<String> (~100 bytes per entry)
+        assertTrue(index.memoryBytes() < 40L * index.size(), "memory " + index.memoryBytes());
+    }
+
+    @Test
+    void emptyIndex_ContainsNothing() {
+        assertFalse(AccountIndex.EMPTY.contains("ACCT-123"));
+        assertEquals(0, AccountIndex.EMPTY.size());
+    }
+}
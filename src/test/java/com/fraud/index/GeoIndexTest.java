@@ -0,0 +1,40 @@
+package com.fraud.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GeoIndexTest {
+
+    /**
+     * case1: names found ignoring case and spaces, cells decode near the coordinates, haversine distance
+     */
+    @Test
+    void cellOf_ResolvesNames_DistanceMatchesHaversine() throws IOException {
+        GeoIndex index = GeoIndex.load(new BufferedReader(new StringReader(
+                "# comment\nLondon,51.5074,-0.1278\nParis,48.8566,2.3522\nPortland, OR,45.5152,-122.6784\n"
+                        + "Sydney,-33.8688,151.2093\nParis,48.8566,2.3522\n")));
+
+        assertEquals(4, index.size());
+        long london = index.cellOf("  london ");
+        long paris = index.cellOf("PARIS");
+        assertEquals(51.5074, GeoIndex.latitude(london), 0.003);
+        assertEquals(-0.1278, GeoIndex.longitude(london), 0.006);
+        assertEquals(45.5152, GeoIndex.latitude(index.cellOf("Portland, OR")), 0.003);
+        assertEquals(GeoIndex.UNKNOWN, index.cellOf("HighRiskCountry1"));
+        assertEquals(GeoIndex.UNKNOWN, index.cellOf(""));
+        assertEquals(GeoIndex.UNKNOWN, index.cellOf(null));
+
+        assertEquals(344, GeoIndex.distanceKm(london, paris), 2);
+        assertEquals(16990, GeoIndex.distanceKm(london, index.cellOf("Sydney")), 20);
+        assertEquals(0, GeoIndex.distanceKm(paris, paris), 1e-9);
+
+        assertThrows(IOException.class, () -> GeoIndex.load(new BufferedReader(new StringReader("Nowhere,91,0\n"))));
+        assertThrows(IOException.class, () -> GeoIndex.load(new BufferedReader(new StringReader("Nowhere\n"))));
+    }
+}
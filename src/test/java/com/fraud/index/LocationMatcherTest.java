@@ -0,0 +1,72 @@
+package com.fraud.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationMatcherTest {
+
+    private final LocationMatcher matcher = LocationMatcher.compile(
+            Arrays.asList("HighRiskCountry1", "HighRiskCountry2", "SuspiciousRegion", "Unknown", "", "Unknown"));
+
+    @Test
+    void firstMatch_ReportsRegion() {
+        assertEquals("HighRiskCountry1", matcher.pattern(matcher.firstMatch("City of HighRiskCountry1")));
+        assertEquals("Unknown", matcher.pattern(matcher.firstMatch("Unknown")));
+        assertEquals(-1, matcher.firstMatch("Paris"));
+        assertEquals(-1, matcher.firstMatch(""));
+        assertEquals(-1, matcher.firstMatch(null));
+        // case sensitive like String.contains
+        assertFalse(matcher.matches("unknown"));
+        // blank and duplicate regions are dropped
+        assertEquals(4, matcher.size());
+    }
+
+    @Test
+    void allMatches_FindsOverlappingRegions() {
+        LocationMatcher overlapping = LocationMatcher.compile(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(List.of("she", "he", "hers"), overlapping.allMatches("ushers"));
+        assertEquals(List.of("his"), overlapping.allMatches("this"));
+        assertEquals(List.of("HighRiskCountry2", "Unknown"), matcher.allMatches("HighRiskCountry2/Unknown"));
+    }
+
+    @Test
+    void matches_SameAsContainsForManyPatterns() {
+        Random random = new Random(7);
+        List<String> regions = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            regions.add(randomWord(random, 3 + random.nextInt(6)));
+        }
+        LocationMatcher large = LocationMatcher.compile(regions);
+
+        for (int i = 0; i < 2000; i++) {
+            String location = randomWord(random, 5 + random.nextInt(20));
+            boolean expected = regions.stream().anyMatch(location::contains);
+            assertEquals(expected, large.matches(location), location);
+            if (expected) {
+                assertTrue(location.contains(large.pattern(large.firstMatch(location))));
+            }
+        }
+    }
+
+    @Test
+    void emptyMatcher_NeverMatches() {
+        assertFalse(LocationMatcher.EMPTY.matches("HighRiskCountry1"));
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(6)));
+        }
+        return word.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package com.fraud.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AdaptivePollingControllerTest {
+
+    @Mock
+    private SqsIngestionEngine ingestionEngine;
+
+    @Mock
+    private SqsClient sqsClient;
+
+    @Mock
+    private SqsAsyncClient sqsAsyncClient;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private AdaptivePollingController controller;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(controller, "sqsQueueUrl", "https://sqs.test-region.amazonaws.com/123456/test-queue.fifo");
+        ReflectionTestUtils.setField(controller, "enabled", true);
+        ReflectionTestUtils.setField(controller, "minPollers", 1);
+        ReflectionTestUtils.setField(controller, "backlogPerPoller", 100L);
+        ReflectionTestUtils.setField(controller, "scaleUpFillRatio", 0.8);
+        ReflectionTestUtils.setField(controller, "scaleDownFillRatio", 0.2);
+        ReflectionTestUtils.setField(controller, "maxInFlightRatio", 0.9);
+        controller.init();
+        when(ingestionEngine.isRunning()).thenReturn(true);
+        when(ingestionEngine.getMaxPollers()).thenReturn(8);
+        when(ingestionEngine.getMaxInFlight()).thenReturn(100);
+        when(ingestionEngine.getMaxReceiveBatchSize()).thenReturn(10);
+        when(ingestionEngine.getReceiveBatchSize()).thenReturn(10);
+        when(ingestionEngine.getVisibilityTimeoutSeconds()).thenReturn(30);
+    }
+
+    /**
+     * case1: a backlog jumps to depth / backlog-per-poller pollers, capped at aws.sqs.pollers
+     */
+    @Test
+    void backlog_ScalesPollersUp() {
+        when(ingestionEngine.getActivePollers()).thenReturn(1);
+        stubDepth(450);
+        stubReceived(10, 100, 100);
+
+        controller.adjust();
+
+        verify(ingestionEngine).setActivePollers(5);
+        assertEquals(450.0, meterRegistry.get("fraud.sqs.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("fraud.sqs.receive.fill.ratio").gauge().value());
+    }
+
+    /**
+     * case2: empty queue and empty receives drop one poller at a time
+     */
+    @Test
+    void idleQueue_ScalesPollersDown() {
+        when(ingestionEngine.getActivePollers()).thenReturn(3);
+        stubDepth(0);
+        stubReceived(4, 40, 0);
+
+        controller.adjust();
+
+        verify(ingestionEngine).setActivePollers(2);
+    }
+
+    /**
+     * case3: no pollers are added while the workers are the limit
+     */
+    @Test
+    void inFlightSaturated_DoesNotAddPollers() {
+        when(ingestionEngine.getActivePollers()).thenReturn(2);
+        when(ingestionEngine.getInFlightCount()).thenReturn(95);
+        stubDepth(5000);
+        stubReceived(10, 100, 100);
+
+        controller.adjust();
+
+        verify(ingestionEngine, never()).setActivePollers(anyInt());
+    }
+
+    /**
+     * case4: slow processing shrinks the batch to a quarter of the visibility timeout
+     */
+    @Test
+    void slowProcessing_ShrinksBatch() {
+        when(ingestionEngine.getActivePollers()).thenReturn(1);
+        stubDepth(10);
+        stubReceived(1, 10, 5);
+        // 2.5 s per msg, 7.5 s budget
+        when(ingestionEngine.getProcessedMessages()).thenReturn(4L);
+        when(ingestionEngine.getProcessNanos()).thenReturn(10_000_000_000L);
+
+        controller.adjust();
+
+        verify(ingestionEngine).setReceiveBatchSize(3);
+    }
+
+    /**
+     * case5: ASYNC mode reads the queue depth with the async client, the sync one is never called
+     */
+    @Test
+    void asyncMode_ReadsDepthWithAsyncClient() {
+        ReflectionTestUtils.setField(controller, "executionMode", ExecutionMode.ASYNC);
+        when(ingestionEngine.getActivePollers()).thenReturn(1);
+        when(sqsAsyncClient.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(GetQueueAttributesResponse.builder()
+                        .attributes(Map.of(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, "250"))
+                        .build()));
+        stubReceived(10, 100, 100);
+
+        controller.adjust();
+
+        verify(ingestionEngine).setActivePollers(3);
+        assertEquals(250.0, meterRegistry.get("fraud.sqs.queue.depth").gauge().value());
+        verifyNoInteractions(sqsClient);
+    }
+
+    private void stubDepth(long depth) {
+        when(sqsClient.getQueueAttributes(any(GetQueueAttributesRequest.class))).thenReturn(GetQueueAttributesResponse.builder()
+                .attributes(Map.of(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, Long.toString(depth)))
+                .build());
+    }
+
+    private void stubReceived(long calls, long requested, long received) {
+        when(ingestionEngine.getReceiveCalls()).thenReturn(calls);
+        when(ingestionEngine.getRequestedMessages()).thenReturn(requested);
+        when(ingestionEngine.getReceivedMessages()).thenReturn(received);
+    }
+}
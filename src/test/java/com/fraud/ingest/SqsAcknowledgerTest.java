@@ -0,0 +1,205 @@
+package com.fraud.ingest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SqsAcknowledgerTest {
+
+    private static final String QUEUE_URL = "https://sqs.test-region.amazonaws.com/123456/test-queue.fifo";
+
+    @Mock
+    private SqsClient sqsClient;
+
+    @Mock
+    private SqsAsyncClient sqsAsyncClient;
+
+    @InjectMocks
+    private SqsAcknowledger acknowledger;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(acknowledger, "sqsQueueUrl", QUEUE_URL);
+        ReflectionTestUtils.setField(acknowledger, "maxWaitMs", 20L);
+        ReflectionTestUtils.setField(acknowledger, "maxAttempts", 3);
+        ReflectionTestUtils.setField(acknowledger, "visibilityTimeoutSeconds", 30);
+        ReflectionTestUtils.setField(acknowledger, "maxHoldSeconds", 300);
+    }
+
+    /**
+     * case1: 12 acks are sent as one full batch of 10 and one batch of 2
+     */
+    @Test
+    void acknowledge_FlushesInBatchesOfTen() {
+        List<DeleteMessageBatchRequest> requests = new ArrayList<>();
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(inv -> {
+            DeleteMessageBatchRequest request = inv.getArgument(0);
+            requests.add(request);
+            return success(request);
+        });
+
+        acknowledger.start();
+        for (int i = 0; i < 12; i++) {
+            acknowledger.acknowledge("RECEIPT-" + i);
+        }
+        acknowledger.stop();
+
+        assertEquals(2, requests.size());
+        assertEquals(10, requests.get(0).entries().size());
+        assertEquals(2, requests.get(1).entries().size());
+        assertEquals(QUEUE_URL, requests.get(0).queueUrl());
+        assertEquals(12, acknowledger.getDeletedCount());
+    }
+
+    /**
+     * case2: only the failed entry of a batch is sent again
+     */
+    @Test
+    void partialFailure_RetriesOnlyFailedHandle() {
+        List<List<String>> sent = new ArrayList<>();
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(inv -> {
+            DeleteMessageBatchRequest request = inv.getArgument(0);
+            sent.add(request.entries().stream().map(DeleteMessageBatchRequestEntry::receiptHandle).collect(Collectors.toList()));
+            if (sent.size() > 1) {
+                return success(request);
+            }
+            return DeleteMessageBatchResponse.builder()
+                    .successful(DeleteMessageBatchResultEntry.builder().id("0").build())
+                    .failed(BatchResultErrorEntry.builder().id("1").senderFault(false).code("InternalError").build())
+                    .build();
+        });
+
+        acknowledger.deleteBatch(List.of(new SqsAcknowledger.PendingDelete("RECEIPT-A"), new SqsAcknowledger.PendingDelete("RECEIPT-B")));
+        acknowledger.start();
+        acknowledger.stop();
+
+        assertEquals(List.of(List.of("RECEIPT-A", "RECEIPT-B"), List.of("RECEIPT-B")), sent);
+        assertEquals(0, acknowledger.getDeleteFailedCount());
+    }
+
+    /**
+     * case3: sender fault (invalid handle) is not retried
+     */
+    @Test
+    void senderFault_IsNotRetried() {
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenReturn(DeleteMessageBatchResponse.builder()
+                .failed(BatchResultErrorEntry.builder().id("0").senderFault(true).code("ReceiptHandleIsInvalid").build())
+                .build());
+
+        acknowledger.deleteBatch(List.of(new SqsAcknowledger.PendingDelete("RECEIPT-A")));
+
+        verify(sqsClient, times(1)).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+        assertEquals(0, acknowledger.getPendingDeleteCount());
+        assertEquals(1, acknowledger.getDeleteFailedCount());
+    }
+
+    /**
+     * case4: ASYNC mode sends deletes with the async client, a failed call is retried
+     */
+    @Test
+    void asyncMode_DeletesWithAsyncClient() {
+        ReflectionTestUtils.setField(acknowledger, "executionMode", ExecutionMode.ASYNC);
+        ReflectionTestUtils.setField(acknowledger, "maxInFlightBatches", 2);
+        List<DeleteMessageBatchRequest> requests = new ArrayList<>();
+        when(sqsAsyncClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(inv -> {
+            DeleteMessageBatchRequest request = inv.getArgument(0);
+            requests.add(request);
+            return requests.size() == 1
+                    ? CompletableFuture.failedFuture(SqsException.builder().message("throttled").build())
+                    : CompletableFuture.completedFuture(success(request));
+        });
+
+        acknowledger.start();
+        acknowledger.acknowledge("RECEIPT-A");
+        acknowledger.stop();
+
+        assertEquals(2, requests.size());
+        assertEquals(1, acknowledger.getDeletedCount());
+        assertEquals(2, acknowledger.getDeleteCalls());
+        verify(sqsClient, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    /**
+     * case5: msg in progress get visibility extended, released msg do not
+     */
+    @Test
+    void extendVisibility_OnlyForTrackedMessages() {
+        ArgumentCaptor<ChangeMessageVisibilityBatchRequest> captor = ArgumentCaptor.forClass(ChangeMessageVisibilityBatchRequest.class);
+        when(sqsClient.changeMessageVisibilityBatch(captor.capture())).thenReturn(ChangeMessageVisibilityBatchResponse.builder().build());
+
+        acknowledger.track(Message.builder().receiptHandle("RECEIPT-A").build());
+        acknowledger.track(Message.builder().receiptHandle("RECEIPT-B").build());
+        acknowledger.release("RECEIPT-B");
+        // extension is due when less than half of the timeout is left
+        ReflectionTestUtils.setField(acknowledger, "visibilityTimeoutSeconds", 100);
+        acknowledger.extendVisibility();
+
+        assertEquals(1, captor.getValue().entries().size());
+        assertEquals("RECEIPT-A", captor.getValue().entries().get(0).receiptHandle());
+        verify(sqsClient, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    /**
+     * case6: ASYNC mode extends visibility with the async client, the sync one is never called
+     */
+    @Test
+    void asyncMode_ExtendsVisibilityWithAsyncClient() {
+        ReflectionTestUtils.setField(acknowledger, "executionMode", ExecutionMode.ASYNC);
+        when(sqsAsyncClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(ChangeMessageVisibilityBatchResponse.builder().build()));
+
+        acknowledger.track(Message.builder().receiptHandle("RECEIPT-A").build());
+        ReflectionTestUtils.setField(acknowledger, "visibilityTimeoutSeconds", 100);
+        acknowledger.extendVisibility();
+
+        verify(sqsAsyncClient).changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class));
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void visibilityLost_WhenNotTrackedAndTimeoutPassed() {
+        long now = System.currentTimeMillis();
+        assertFalse(acknowledger.isVisibilityLost("RECEIPT-A", now));
+        assertTrue(acknowledger.isVisibilityLost("RECEIPT-A", now - 31_000));
+    }
+
+    private static DeleteMessageBatchResponse success(DeleteMessageBatchRequest request) {
+        return DeleteMessageBatchResponse.builder()
+                .successful(request.entries().stream()
+                        .map(e -> DeleteMessageBatchResultEntry.builder().id(e.id()).build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+}
@@ -0,0 +1,248 @@
+package com.fraud.ingest;
+
+import com.fraud.service.SqsConsumerService;
+import com.fraud.startup.StartupTimeline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SqsIngestionEngineTest {
+
+    @Mock
+    private SqsConsumerService sqsConsumerService;
+
+    @Mock
+    private SqsAcknowledger sqsAcknowledger;
+
+    @Mock
+    private StartupTimeline startupTimeline;
+
+    @InjectMocks
+    private SqsIngestionEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(engine, "pollers", 2);
+        ReflectionTestUtils.setField(engine, "workers", 4);
+        ReflectionTestUtils.setField(engine, "maxInFlight", 10);
+        ReflectionTestUtils.setField(engine, "errorBackoffMs", 10L);
+        ReflectionTestUtils.setField(engine, "executionMode", ExecutionMode.PLATFORM);
+        ReflectionTestUtils.setField(engine, "virtualMaxConcurrency", 2);
+        when(sqsConsumerService.getMaxMessages()).thenReturn(10);
+        when(sqsConsumerService.getVisibilityTimeoutSeconds()).thenReturn(30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.stop();
+    }
+
+    /**
+     * case1: msg of one group are processed in receive order
+     */
+    @Test
+    void messagesOfSameGroup_AreProcessedInOrder() throws InterruptedException {
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(message("MSG-" + i, "group-1"));
+        }
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        stubReceive(batch);
+        when(sqsConsumerService.processMessage(any(Message.class))).thenAnswer(inv -> {
+            Message message = inv.getArgument(0);
+            Thread.sleep(5);
+            processed.add(message.messageId());
+            done.countDown();
+            return true;
+        });
+
+        engine.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("MSG-0", "MSG-1", "MSG-2", "MSG-3", "MSG-4"), processed);
+    }
+
+    /**
+     * case2: a failed msg stops the rest of its group, other groups go on
+     */
+    @Test
+    void failedMessage_LeavesRestOfGroupForRedelivery() throws InterruptedException {
+        Message first = message("MSG-1", "group-1");
+        Message second = message("MSG-2", "group-1");
+        Message other = message("MSG-3", "group-2");
+        CountDownLatch done = new CountDownLatch(2);
+        stubReceive(List.of(first, second, other));
+        when(sqsConsumerService.processMessage(first)).thenAnswer(inv -> {
+            done.countDown();
+            return false;
+        });
+        when(sqsConsumerService.processMessage(other)).thenAnswer(inv -> {
+            done.countDown();
+            return true;
+        });
+
+        engine.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        verify(sqsConsumerService, never()).processMessage(second);
+        verify(sqsAcknowledger).release(second.receiptHandle());
+        assertEquals(0, engine.getInFlightCount());
+    }
+
+    /**
+     * case3: VIRTUAL mode runs msg on virtual threads and never more than the concurrency limit at a time
+     */
+    @Test
+    void virtualMode_LimitsConcurrentMessages() throws InterruptedException {
+        assumeTrue(VirtualThreads.isSupported(), "needs Java 21");
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            batch.add(message("MSG-" + i, "group-" + i));
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> threadNames = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(8);
+        stubReceive(batch);
+        when(sqsConsumerService.processMessage(any(Message.class))).thenAnswer(inv -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            threadNames.add(Thread.currentThread().getName());
+            Thread.sleep(20);
+            running.decrementAndGet();
+            done.countDown();
+            return true;
+        });
+        ReflectionTestUtils.setField(engine, "executionMode", ExecutionMode.VIRTUAL);
+
+        engine.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("sqs-vworker-")));
+    }
+
+    /**
+     * case4: VIRTUAL mode on a JVM without virtual threads fails at start instead of falling back
+     */
+    @Test
+    void virtualMode_WithoutJava21_FailsAtStart() {
+        assumeFalse(VirtualThreads.isSupported(), "virtual threads available");
+        ReflectionTestUtils.setField(engine, "executionMode", ExecutionMode.VIRTUAL);
+
+        assertThrows(IllegalStateException.class, engine::start);
+        assertFalse(engine.isRunning());
+    }
+
+    /**
+     * case5: ASYNC mode keeps group order without poller threads, permits come back when msg finish
+     */
+    @Test
+    void asyncMode_ProcessesGroupInOrderAndReleasesPermits() throws InterruptedException {
+        List<Message> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(message("MSG-" + i, "group-1"));
+        }
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        when(sqsConsumerService.receiveTransactionsAsync(anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(batch))
+                .thenAnswer(inv -> CompletableFuture.supplyAsync(Collections::<Message>emptyList,
+                        CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS)));
+        when(sqsConsumerService.processMessage(any(Message.class))).thenAnswer(inv -> {
+            Message message = inv.getArgument(0);
+            processed.add(message.messageId());
+            done.countDown();
+            return true;
+        });
+        ReflectionTestUtils.setField(engine, "executionMode", ExecutionMode.ASYNC);
+        ReflectionTestUtils.setField(engine, "asyncStageThreads", 2);
+
+        engine.start();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(List.of("MSG-0", "MSG-1", "MSG-2", "MSG-3", "MSG-4"), processed);
+        assertEquals(0, engine.getInFlightCount());
+        verify(sqsConsumerService, never()).receiveTransactions(anyInt());
+    }
+
+    /**
+     * case6: pollers above the active count stand by and make no receive calls
+     */
+    @Test
+    void standbyPollers_DoNotReceive() throws InterruptedException {
+        ReflectionTestUtils.setField(engine, "pollers", 3);
+        Set<String> pollingThreads = ConcurrentHashMap.newKeySet();
+        Set<Integer> limits = ConcurrentHashMap.newKeySet();
+        when(sqsConsumerService.receiveTransactions(anyInt())).thenAnswer(inv -> {
+            pollingThreads.add(Thread.currentThread().getName());
+            limits.add(inv.getArgument(0));
+            Thread.sleep(10);
+            return Collections.emptyList();
+        });
+
+        engine.start();
+        engine.setActivePollers(1);
+        engine.setReceiveBatchSize(4);
+        Thread.sleep(50);
+        pollingThreads.clear();
+        limits.clear();
+        Thread.sleep(100);
+
+        assertEquals(Set.of("sqs-poller-0"), pollingThreads);
+        assertEquals(Set.of(4), limits);
+        assertEquals(1, engine.getActivePollers());
+    }
+
+    private void stubReceive(List<Message> batch) {
+        when(sqsConsumerService.receiveTransactions(anyInt())).thenReturn(batch).thenAnswer(inv -> {
+            Thread.sleep(20);
+            return Collections.emptyList();
+        });
+    }
+
+    private static Message message(String id, String groupId) {
+        return Message.builder()
+                .messageId(id)
+                .receiptHandle("RECEIPT-" + id)
+                .body("{}")
+                .attributes(Map.of(MessageSystemAttributeName.MESSAGE_GROUP_ID, groupId))
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package com.fraud.journal;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultJournalTest {
+
+    private static final int SEGMENT_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private ResultJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        journal.stop();
+    }
+
+    /**
+     * case1: records roll over several segments and read back in order with every field
+     */
+    @Test
+    void append_RollsSegments_ReadBackInOrder() throws IOException {
+        journal = start();
+        int total = 2000;
+        for (int i = 0; i < total; i++) {
+            assertTrue(journal.append(tx(i), i % 10 == 0 ? fraud(i) : FraudResult.CLEAN));
+        }
+        journal.flush();
+
+        assertEquals(total, journal.getFlushedSequence());
+        assertTrue(JournalReader.segments(dir).size() > 1);
+        List<JournalRecord> records = readAll(0);
+        assertEquals(total, records.size());
+        for (int i = 0; i < total; i++) {
+            JournalRecord record = records.get(i);
+            assertEquals(i, record.getSequence());
+            assertEquals(tx(i), record.getTransaction());
+            assertEquals(i % 10 == 0, record.isFraudulent());
+        }
+        assertEquals(EnumSet.of(ReasonCode.VELOCITY), records.get(10).getReasonCodes());
+        assertEquals(1000L + 10, records.get(10).getDetectTime());
+        assertNull(records.get(1).getTransaction().getMerchantId());
+        assertEquals("Zürich", records.get(1).getTransaction().getLocation());
+        assertEquals(total - 1500, new JournalReader(dir).read(1500, r -> { }));
+    }
+
+    /**
+     * case2: a torn record ends the segment, a restart continues after the last valid record
+     */
+    @Test
+    void restart_AfterTornRecord_ContinuesSequence() throws IOException {
+        journal = start();
+        for (int i = 0; i < 3; i++) {
+            journal.append(tx(i), FraudResult.CLEAN);
+        }
+        journal.stop();
+        // corrupt one byte of the last record
+        Path segment = JournalReader.segments(dir).get(0);
+        List<JournalRecord> before = readAll(0);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long offset = 0;
+            for (int i = 0; i < 2; i++) {
+                file.seek(offset);
+                offset += RecordCodec.HEADER_BYTES + file.readInt();
+            }
+            file.seek(offset + RecordCodec.HEADER_BYTES + 20);
+            file.write(0x7f);
+        }
+        assertEquals(3, before.size());
+
+        journal = start();
+        assertTrue(journal.append(tx(9), FraudResult.CLEAN));
+        journal.flush();
+
+        List<JournalRecord> records = readAll(0);
+        assertEquals(List.of(0L, 1L, 2L), sequences(records));
+        assertEquals(tx(9), records.get(2).getTransaction());
+    }
+
+    /**
+     * case3: old sealed segments keep fraud records only, segments above the limit are removed
+     */
+    @Test
+    void maintain_CompactsAndRemovesOldSegments() throws IOException {
+        journal = start();
+        ReflectionTestUtils.setField(journal, "compactAfterMinutes", 1L);
+        ReflectionTestUtils.setField(journal, "maxSegments", 3);
+        int total = 3000;
+        for (int i = 0; i < total; i++) {
+            journal.append(tx(i), i % 10 == 0 ? fraud(i) : FraudResult.CLEAN);
+        }
+        journal.flush();
+        List<Path> segments = JournalReader.segments(dir);
+        assertTrue(segments.size() > 3);
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(5));
+        for (Path segment : segments) {
+            Files.setLastModifiedTime(segment, old);
+        }
+
+        journal.maintain();
+
+        List<Path> left = JournalReader.segments(dir);
+        assertEquals(3, left.size());
+        assertTrue(left.get(0).toString().endsWith(JournalReader.COMPACTED_SUFFIX));
+        assertEquals(segments.get(segments.size() - 1), left.get(2));
+        List<JournalRecord> records = readAll(0);
+        long firstActive = JournalReader.baseSequence(left.get(2));
+        for (JournalRecord record : records) {
+            assertTrue(record.isFraudulent() || record.getSequence() >= firstActive);
+        }
+        assertEquals(records.get(records.size() - 1).getSequence(), total - 1);
+        assertFalse(records.isEmpty());
+    }
+
+    private ResultJournal start() {
+        ResultJournal resultJournal = new ResultJournal(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(resultJournal, "enabled", true);
+        ReflectionTestUtils.setField(resultJournal, "directory", dir.toString());
+        ReflectionTestUtils.setField(resultJournal, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(resultJournal, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(resultJournal, "retentionHours", 24L);
+        ReflectionTestUtils.setField(resultJournal, "maxSegments", 64);
+        ReflectionTestUtils.setField(resultJournal, "maintenanceIntervalMs", 3_600_000L);
+        resultJournal.init();
+        resultJournal.start();
+        return resultJournal;
+    }
+
+    private List<JournalRecord> readAll(long from) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        new JournalReader(dir).read(from, records::add);
+        return records;
+    }
+
+    private static List<Long> sequences(List<JournalRecord> records) {
+        List<Long> sequences = new ArrayList<>();
+        for (JournalRecord record : records) {
+            sequences.add(record.getSequence());
+        }
+        return sequences;
+    }
+
+    private static Transaction tx(int i) {
+        return new Transaction("TX-" + i, "ACCT-" + (i % 7), 100.0 + i, i % 2 == 1 ? "Zürich" : "Paris",
+                i % 2 == 1 ? null : "MCH-" + i, 1_700_000_000_000L + i);
+    }
+
+    private static FraudResult fraud(int i) {
+        return new FraudResult("TX-" + i, ReasonCode.VELOCITY.bit(), 1000L + i, Collections.singletonList("too fast"));
+    }
+}
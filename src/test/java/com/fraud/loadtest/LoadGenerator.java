@@ -0,0 +1,118 @@
+package com.fraud.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Transaction msg for the load test, in the shape of the queue msg.
+ *
+ * Accounts and merchants follow a Zipf distribution (skew 0: uniform, 1: the top account alone gets
+ * 1/ln(n) of the msg), every account transacts in one city. Amounts are log-normal around 80, below
+ * the amount threshold.
+ * A share fraudRatio of the msg is made to hit a rule: a large amount, a high risk location or a
+ * watchlist account. Hot accounts going over the velocity limits are flagged on top of that share:
+ * with 1M accounts at 2000 msg/s about 1% of the msg for skew 0.5, most of them for skew 1.
+ *
+ * Not thread safe, one generator per producer thread.
+ */
+public class LoadGenerator {
+
+    private static final String[] LOCATIONS = {"Singapore", "Tokyo", "London", "Paris", "Sydney", "New York",
+            "Hong Kong", "Berlin", "Toronto", "Seoul"};
+    private static final String[] RISK_LOCATIONS = {"HighRiskCountry1", "HighRiskCountry2", "SuspiciousRegion"};
+    private static final String[] WATCHLIST = {"ACCT-123", "ACCT-456", "ACCT-789"};
+
+    private final SplittableRandom random;
+    private final double[] accountCdf;
+    private final double[] merchantCdf;
+    private final double fraudRatio;
+    private final String runId;
+    private long sequence;
+
+    public LoadGenerator(long seed, int accounts, double skew, int merchants, double fraudRatio) {
+        this.random = new SplittableRandom(seed);
+        this.accountCdf = zipf(accounts, skew);
+        this.merchantCdf = zipf(merchants, skew);
+        this.fraudRatio = fraudRatio;
+        this.runId = Long.toString(seed, 36);
+    }
+
+    /**
+     * Cumulative distribution of rank k getting 1 / k^skew
+     */
+    static double[] zipf(int size, double skew) {
+        double[] cdf = new double[Math.max(1, size)];
+        double sum = 0;
+        for (int i = 0; i < cdf.length; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < cdf.length; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    static int sample(double[] cdf, double u) {
+        int index = Arrays.binarySearch(cdf, u);
+        return Math.min(cdf.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    public Event next(long nowMillis) {
+        long seq = ++sequence;
+        int account = sample(accountCdf, random.nextDouble());
+        String accountId = "LT-" + account;
+        String merchantId = "MCH-" + sample(merchantCdf, random.nextDouble());
+        // an account stays in its city, travelling accounts would be flagged by the impossible travel rule
+        String location = LOCATIONS[account % LOCATIONS.length];
+        // log-normal, median 80, capped below the amount threshold
+        double amount = Math.min(9000, Math.exp(Math.log(80) + random.nextGaussian() * 1.2));
+        boolean fraud = random.nextDouble() < fraudRatio;
+        if (fraud) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    amount = 12000 + random.nextDouble() * 28000;
+                    break;
+                case 1:
+                    location = RISK_LOCATIONS[random.nextInt(RISK_LOCATIONS.length)];
+                    break;
+                default:
+                    accountId = WATCHLIST[random.nextInt(WATCHLIST.length)];
+            }
+        }
+        String body = "{\"transactionId\":\"LT-" + runId + "-" + seq
+                + "\",\"accountId\":\"" + accountId
+                + "\",\"amount\":" + Math.round(amount * 100) / 100.0
+                + ",\"location\":\"" + location
+                + "\",\"merchantId\":\"" + merchantId
+                + "\",\"transactionTime\":" + nowMillis + "}";
+        return new Event(body, accountId, fraud);
+    }
+
+    public static final class Event {
+        private final String body;
+        private final String accountId;
+        private final boolean fraud;
+
+        Event(String body, String accountId, boolean fraud) {
+            this.body = body;
+            this.accountId = accountId;
+            this.fraud = fraud;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        /**
+         * true when made to hit a rule
+         */
+        public boolean isFraud() {
+            return fraud;
+        }
+    }
+}
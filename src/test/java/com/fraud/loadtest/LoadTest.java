@@ -0,0 +1,286 @@
+package com.fraud.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.FraudDetectionApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sustained load test of the whole app, offline: the Spring context runs with {@link LocalSqsClient},
+ * {@link LocalSqsAsyncClient} and {@link LocalSnsClient} in place of the AWS clients, in-memory result and
+ * profile stores, and a producer thread fills the queue with {@link LoadGenerator} msg.
+ *
+ * Only run on demand:
+ * mvn test -Dtest=LoadTest -Dfraud.loadtest=true [-Dfraud.loadtest.rate=5000] [-Daws.sqs.execution.mode=ASYNC]
+ *
+ * fraud.loadtest.* settings (system properties):
+ * - rate: msg per second sent, 0: as fast as consumed, the queue kept at backlog msg
+ * - backlog: visible msg kept in the queue with rate 0
+ * - warmup.seconds / duration.seconds: load before measuring / measured
+ * - accounts, merchants, skew, fraud.ratio, seed: see {@link LoadGenerator}
+ * - group.by: account (FIFO group per account, as the producers do) or none (standard queue)
+ * - aws.latency.ms: added to every SQS call
+ * - report: JSON report file
+ * Other system properties are app properties, e.g. aws.sqs.pollers or aws.sqs.execution.mode.
+ *
+ * Reported for the measured part: msg deleted per second, send to delete latency p50/p90/p99/max,
+ * redelivered msg, alerts, heap used (max and average of 200 ms samples) and GC count and time.
+ * After the load the queue must drain with every msg deleted, none lost.
+ */
+@EnabledIfSystemProperty(named = "fraud.loadtest", matches = "true")
+class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String QUEUE_URL = "https://sqs.local/000000000000/transactions-loadtest.fifo";
+
+    private final int rate = Integer.getInteger("fraud.loadtest.rate", 2000);
+    private final int backlog = Integer.getInteger("fraud.loadtest.backlog", 2000);
+    private final int warmupSeconds = Integer.getInteger("fraud.loadtest.warmup.seconds", 10);
+    private final int durationSeconds = Integer.getInteger("fraud.loadtest.duration.seconds", 30);
+    private final int accounts = Integer.getInteger("fraud.loadtest.accounts", 1000000);
+    private final int merchants = Integer.getInteger("fraud.loadtest.merchants", 5000);
+    private final double skew = Double.parseDouble(System.getProperty("fraud.loadtest.skew", "0.5"));
+    private final double fraudRatio = Double.parseDouble(System.getProperty("fraud.loadtest.fraud.ratio", "0.02"));
+    private final long seed = Long.getLong("fraud.loadtest.seed", 42L);
+    private final boolean groupByAccount = !"none".equals(System.getProperty("fraud.loadtest.group.by", "account"));
+    private final long awsLatencyMillis = Long.getLong("fraud.loadtest.aws.latency.ms", 5L);
+    private final String reportFile = System.getProperty("fraud.loadtest.report", "target/loadtest-report.json");
+
+    private volatile boolean producing = true;
+    private final AtomicLong intendedFraud = new AtomicLong();
+
+    @Test
+    void sustainedLoad() throws Exception {
+        LocalSqs queue = new LocalSqs();
+        LocalSqsClient sqsClient = new LocalSqsClient(queue, awsLatencyMillis);
+        LocalSqsAsyncClient sqsAsyncClient = new LocalSqsAsyncClient(sqsClient);
+        LocalSnsClient snsClient = new LocalSnsClient();
+
+        Path journalDir = Files.createTempDirectory("loadtest-journal");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FraudDetectionApplication.class)
+                // read before the initializers, nothing else sets them
+                .properties("logging.config=classpath:logback-loadtest.xml",
+                        "spring.main.web-application-type=none")
+                .initializers(ctx -> {
+                    // above application.properties, below the -D system properties
+                    ctx.getEnvironment().getPropertySources().addAfter(
+                            StandardEnvironment.SYSTEM_PROPERTIES_PROPERTY_SOURCE_NAME,
+                            new MapPropertySource("loadtest", appProperties(journalDir)));
+                    GenericApplicationContext registry = (GenericApplicationContext) ctx;
+                    registry.registerBean("localSqsClient", SqsClient.class, () -> sqsClient,
+                            bd -> bd.setPrimary(true));
+                    registry.registerBean("localSqsAsyncClient", SqsAsyncClient.class, () -> sqsAsyncClient,
+                            bd -> bd.setPrimary(true));
+                    registry.registerBean("localSnsClient", SnsAsyncClient.class, () -> snsClient,
+                            bd -> bd.setPrimary(true));
+                })
+                .run();
+
+        Thread producer = new Thread(() -> produce(queue), "loadtest-producer");
+        HeapSampler heap = new HeapSampler();
+        Map<String, Object> report;
+        try {
+            producer.start();
+            logger.info("load test warm-up {} s", warmupSeconds);
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            queue.getLatency().reset();
+            long sent = queue.getSentCount();
+            long deleted = queue.getDeletedCount();
+            long redelivered = queue.getRedeliveredCount();
+            long alerts = snsClient.getPublishedCount();
+            double flagged = flaggedCount(meterRegistry);
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            long start = System.nanoTime();
+            heap.start();
+            logger.info("load test measuring {} s", durationSeconds);
+            TimeUnit.SECONDS.sleep(durationSeconds);
+            heap.stop();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LatencyHistogram latency = queue.getLatency();
+
+            report = new LinkedHashMap<>();
+            report.put("executionMode", context.getEnvironment().getProperty("aws.sqs.execution.mode"));
+            report.put("pollers", context.getEnvironment().getProperty("aws.sqs.pollers"));
+            report.put("targetRate", rate);
+            report.put("seconds", round(seconds));
+            report.put("sentPerSecond", round((queue.getSentCount() - sent) / seconds));
+            report.put("msgsPerSecond", round((queue.getDeletedCount() - deleted) / seconds));
+            report.put("latencyP50Ms", millis(latency.percentile(0.50)));
+            report.put("latencyP90Ms", millis(latency.percentile(0.90)));
+            report.put("latencyP99Ms", millis(latency.percentile(0.99)));
+            report.put("latencyMaxMs", millis(latency.max()));
+            report.put("redelivered", queue.getRedeliveredCount() - redelivered);
+            report.put("flagged", (long) (flaggedCount(meterRegistry) - flagged));
+            report.put("alerts", snsClient.getPublishedCount() - alerts);
+            report.put("queueVisibleAtEnd", queue.getVisibleCount());
+            report.put("heapUsedMaxMb", heap.maxMb());
+            report.put("heapUsedAvgMb", heap.avgMb());
+            report.put("heapMaxMb", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax() >> 20);
+            report.put("gcCount", gcCount() - gcCount);
+            report.put("gcMillis", gcMillis() - gcMillis);
+        } finally {
+            producing = false;
+            producer.join(10_000);
+            heap.stop();
+        }
+
+        // what was sent is all deleted, redelivered msg included
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (queue.getDeletedCount() < queue.getSentCount() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        report.put("totalSent", queue.getSentCount());
+        report.put("totalDeleted", queue.getDeletedCount());
+        report.put("intendedFraud", intendedFraud.get());
+        context.close();
+
+        String json = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        logger.info("load test report:\n{}", json);
+        File file = new File(reportFile);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        Files.writeString(file.toPath(), json);
+
+        assertEquals(queue.getSentCount(), queue.getDeletedCount(), "msg left in the queue after the load");
+        assertEquals(0, queue.getVisibleCount() + queue.getInFlightCount());
+        assertTrue(queue.getSentCount() > 0);
+    }
+
+    private Map<String, Object> appProperties(Path journalDir) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("aws.sqs.queue.url", QUEUE_URL);
+        properties.put("aws.sqs.ingestion.enabled", "true");
+        properties.put("fraud.persistence.store", "memory");
+        properties.put("fraud.profile.store", "memory");
+        properties.put("fraud.dedup.shared.enabled", "false");
+        properties.put("fraud.journal.dir", journalDir.toString());
+        properties.put("fraud.rule.config.location", "");
+        properties.put("fraud.score.model.file", "");
+        return properties;
+    }
+
+    /**
+     * Either paced at rate msg per second, or topping the queue up to backlog visible msg
+     */
+    private void produce(LocalSqs queue) {
+        LoadGenerator generator = new LoadGenerator(seed, accounts, skew, merchants, fraudRatio);
+        long start = System.nanoTime();
+        long produced = 0;
+        while (producing) {
+            long due;
+            if (rate > 0) {
+                due = (System.nanoTime() - start) * rate / 1_000_000_000L - produced;
+            } else {
+                due = backlog - queue.getVisibleCount();
+            }
+            long now = System.currentTimeMillis();
+            for (long i = 0; i < due; i++) {
+                LoadGenerator.Event event = generator.next(now);
+                if (event.isFraud()) {
+                    intendedFraud.incrementAndGet();
+                }
+                queue.send(event.getBody(), groupByAccount ? event.getAccountId() : null, now);
+            }
+            produced += Math.max(0, due);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static double flaggedCount(MeterRegistry meterRegistry) {
+        return meterRegistry.get("fraud.detect.results").tag("result", "fraud").counter().count();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Heap used every 200 ms
+     */
+    private static final class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "loadtest-heap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private long max;
+        private long sum;
+        private long samples;
+
+        void start() {
+            timer.scheduleAtFixedRate(this::sample, 0, 200, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void sample() {
+            long used = memory.getHeapMemoryUsage().getUsed();
+            max = Math.max(max, used);
+            sum += used;
+            samples++;
+        }
+
+        void stop() {
+            timer.shutdownNow();
+        }
+
+        synchronized long maxMb() {
+            return max >> 20;
+        }
+
+        synchronized long avgMb() {
+            return samples == 0 ? 0 : (sum / samples) >> 20;
+        }
+    }
+}
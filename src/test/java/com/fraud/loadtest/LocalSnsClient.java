@@ -0,0 +1,47 @@
+package com.fraud.loadtest;
+
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * SNS topic for the load test: accepts every PublishBatch at once and counts the alerts
+ */
+public class LocalSnsClient implements SnsAsyncClient {
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    @Override
+    public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest request) {
+        batches.incrementAndGet();
+        published.addAndGet(request.publishBatchRequestEntries().size());
+        return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                .successful(request.publishBatchRequestEntries().stream()
+                        .map(e -> PublishBatchResultEntry.builder().id(e.id()).messageId("n-" + e.id()).build())
+                        .collect(Collectors.toList()))
+                .build());
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
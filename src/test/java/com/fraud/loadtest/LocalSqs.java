@@ -0,0 +1,341 @@
+package com.fraud.loadtest;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory SQS queue for load tests, shared by {@link LocalSqsClient} and {@link LocalSqsAsyncClient}.
+ *
+ * Models what the consumer relies on:
+ * - long polling: a receive waits up to its wait time until a msg can be delivered
+ * - visibility timeout: a delivered msg is hidden until its visibility ends (changed by ChangeMessageVisibility,
+ *   0 returns it at once), a msg not deleted by then is delivered again with a new receipt handle, the old
+ *   handle is no longer valid
+ * - FIFO groups: msg of one MessageGroupId are delivered in send order, none while another msg of the group
+ *   is in flight; msg without a group are independent
+ *
+ * Sent, deleted and redelivered msg are counted, the time from send to delete goes into {@link #getLatency()}.
+ * One lock for the whole queue, fine for the tens of thousands msg per second a single pod handles.
+ */
+public class LocalSqs {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition deliverable = lock.newCondition();
+
+    // groups with msg waiting and none in flight, served round robin
+    private final ArrayDeque<Group> ready = new ArrayDeque<>();
+    private final Map<String, Group> groups = new HashMap<>();
+    private final Map<String, Entry> inFlight = new HashMap<>();
+    // visibility ends by time, stale ones (msg deleted or visibility changed) are skipped
+    private final PriorityQueue<Lease> leases = new PriorityQueue<>((a, b) -> Long.compare(a.visibleAt, b.visibleAt));
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private long sequence;
+    private long visible;
+    private long sent;
+    private long deleted;
+    private long redelivered;
+
+    /**
+     * Put a msg at the end of its group
+     *
+     * @param groupId MessageGroupId, null for a standard queue msg
+     */
+    public void send(String body, String groupId, long nowMillis) {
+        lock.lock();
+        try {
+            long seq = ++sequence;
+            Entry entry = new Entry(seq, "m-" + seq, body, groupId, nowMillis);
+            String key = entry.groupKey();
+            Group group = groups.get(key);
+            if (group == null) {
+                group = new Group(key);
+                groups.put(key, group);
+            }
+            group.pending.add(entry);
+            visible++;
+            sent++;
+            if (group.inFlight == 0 && !group.queued) {
+                group.queued = true;
+                ready.add(group);
+                deliverable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Long poll: deliver up to max msg, wait at most waitMillis for the first one
+     */
+    public List<Message> receive(int max, long waitMillis, long visibilityMillis) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            while (true) {
+                long now = System.currentTimeMillis();
+                expire(now);
+                if (!ready.isEmpty()) {
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return Collections.emptyList();
+                }
+                Lease next = leases.peek();
+                if (next != null) {
+                    remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(Math.max(1, next.visibleAt - now)));
+                }
+                deliverable.awaitNanos(remaining);
+            }
+            long now = System.currentTimeMillis();
+            List<Message> batch = new ArrayList<>(max);
+            while (batch.size() < max && !ready.isEmpty()) {
+                Group group = ready.poll();
+                group.queued = false;
+                // FIFO: the head msg of the group, in order, the group is blocked until they are done
+                while (batch.size() < max && !group.pending.isEmpty()) {
+                    batch.add(deliver(group, group.pending.poll(), now + visibilityMillis));
+                }
+                if (!group.pending.isEmpty() && group.groupId == null) {
+                    group.queued = true;
+                    ready.add(group);
+                }
+            }
+            if (!ready.isEmpty()) {
+                deliverable.signal();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Message deliver(Group group, Entry entry, long visibleAt) {
+        entry.receiveCount++;
+        entry.receiptHandle = entry.id + "#" + entry.receiveCount;
+        entry.visibleAt = visibleAt;
+        inFlight.put(entry.receiptHandle, entry);
+        leases.add(new Lease(entry.receiptHandle, visibleAt));
+        group.inFlight++;
+        visible--;
+        Map<MessageSystemAttributeName, String> attributes = new EnumMap<>(MessageSystemAttributeName.class);
+        attributes.put(MessageSystemAttributeName.SENT_TIMESTAMP, Long.toString(entry.sentMillis));
+        attributes.put(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, Integer.toString(entry.receiveCount));
+        if (entry.groupId != null) {
+            attributes.put(MessageSystemAttributeName.MESSAGE_GROUP_ID, entry.groupId);
+        }
+        return Message.builder()
+                .messageId(entry.id)
+                .receiptHandle(entry.receiptHandle)
+                .body(entry.body)
+                .attributes(attributes)
+                .build();
+    }
+
+    /**
+     * @return false when the handle is not valid (msg deleted, or visible again and its handle replaced)
+     */
+    public boolean delete(String receiptHandle) {
+        lock.lock();
+        try {
+            Entry entry = inFlight.remove(receiptHandle);
+            if (entry == null) {
+                return false;
+            }
+            entry.receiptHandle = null;
+            deleted++;
+            latency.record(TimeUnit.MILLISECONDS.toMicros(Math.max(0, System.currentTimeMillis() - entry.sentMillis)));
+            done(groups.get(entry.groupKey()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return false when the handle is not valid
+     */
+    public boolean changeVisibility(String receiptHandle, long visibilityMillis) {
+        lock.lock();
+        try {
+            Entry entry = inFlight.get(receiptHandle);
+            if (entry == null) {
+                return false;
+            }
+            if (visibilityMillis <= 0) {
+                makeVisible(entry);
+            } else {
+                entry.visibleAt = System.currentTimeMillis() + visibilityMillis;
+                leases.add(new Lease(receiptHandle, entry.visibleAt));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire(long now) {
+        Lease lease;
+        while ((lease = leases.peek()) != null && lease.visibleAt <= now) {
+            leases.poll();
+            Entry entry = inFlight.get(lease.receiptHandle);
+            if (entry != null && entry.visibleAt == lease.visibleAt) {
+                makeVisible(entry);
+            }
+        }
+    }
+
+    /**
+     * Back into its group, before the later msg of the group
+     */
+    private void makeVisible(Entry entry) {
+        inFlight.remove(entry.receiptHandle);
+        entry.receiptHandle = null;
+        redelivered++;
+        visible++;
+        Group group = groups.get(entry.groupKey());
+        if (group.pending.isEmpty() || entry.sequence < group.pending.peekFirst().sequence) {
+            group.pending.addFirst(entry);
+        } else {
+            List<Entry> merged = new ArrayList<>(group.pending);
+            merged.add(entry);
+            merged.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+            group.pending.clear();
+            group.pending.addAll(merged);
+        }
+        done(group);
+    }
+
+    private void done(Group group) {
+        group.inFlight--;
+        if (group.inFlight > 0 || group.queued) {
+            return;
+        }
+        if (group.pending.isEmpty()) {
+            groups.remove(group.key);
+        } else {
+            group.queued = true;
+            ready.add(group);
+            deliverable.signal();
+        }
+    }
+
+    /**
+     * ApproximateNumberOfMessages: msg waiting, including those of blocked groups
+     */
+    public long getVisibleCount() {
+        lock.lock();
+        try {
+            expire(System.currentTimeMillis());
+            return visible;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * ApproximateNumberOfMessagesNotVisible
+     */
+    public long getInFlightCount() {
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSentCount() {
+        lock.lock();
+        try {
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDeletedCount() {
+        lock.lock();
+        try {
+            return deleted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRedeliveredCount() {
+        lock.lock();
+        try {
+            return redelivered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send to delete time of the deleted msg, in micros
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final String id;
+        final String body;
+        final String groupId;
+        final long sentMillis;
+        int receiveCount;
+        String receiptHandle;
+        long visibleAt;
+
+        Entry(long sequence, String id, String body, String groupId, long sentMillis) {
+            this.sequence = sequence;
+            this.id = id;
+            this.body = body;
+            this.groupId = groupId;
+            this.sentMillis = sentMillis;
+        }
+
+        String groupKey() {
+            // a msg without group is a group of its own
+            return groupId != null ? groupId : "\0" + id;
+        }
+    }
+
+    private static final class Group {
+        final String key;
+        final String groupId;
+        final ArrayDeque<Entry> pending = new ArrayDeque<>();
+        int inFlight;
+        boolean queued;
+
+        Group(String key) {
+            this.key = key;
+            this.groupId = key.charAt(0) == '\0' ? null : key;
+        }
+    }
+
+    private static final class Lease {
+        final String receiptHandle;
+        final long visibleAt;
+
+        Lease(String receiptHandle, long visibleAt) {
+            this.receiptHandle = receiptHandle;
+            this.visibleAt = visibleAt;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fraud.loadtest;
+
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Async view of {@link LocalSqsClient} for ASYNC mode: calls run on daemon io threads and complete
+ * there, like on the Netty event loop of the SDK. Long polls do hold an io thread, unlike Netty.
+ */
+public class LocalSqsAsyncClient implements SqsAsyncClient {
+
+    private final LocalSqsClient delegate;
+    private final ExecutorService io = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "local-sqs-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LocalSqsAsyncClient(LocalSqsClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<ReceiveMessageResponse> receiveMessage(ReceiveMessageRequest request) {
+        return CompletableFuture.supplyAsync(() -> delegate.receiveMessage(request), io);
+    }
+
+    @Override
+    public CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        return CompletableFuture.supplyAsync(() -> delegate.deleteMessageBatch(request), io);
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+        io.shutdownNow();
+    }
+}
@@ -0,0 +1,127 @@
+package com.fraud.loadtest;
+
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link SqsClient} on a {@link LocalSqs}, for the calls the consumer makes: ReceiveMessage,
+ * DeleteMessageBatch, ChangeMessageVisibilityBatch and GetQueueAttributes. Every call takes
+ * callLatencyMillis more, as a round trip to SQS would; a receive waits for msg on top of it.
+ *
+ * A stale receipt handle is reported like SQS does, as failed entry ReceiptHandleIsInvalid with sender fault.
+ * A thread interrupted during a long poll gets an AbortedException, as with the SDK's HTTP client.
+ */
+public class LocalSqsClient implements SqsClient {
+
+    private static final int DEFAULT_VISIBILITY_SECONDS = 30;
+
+    private final LocalSqs queue;
+    private final long callLatencyMillis;
+
+    public LocalSqsClient(LocalSqs queue, long callLatencyMillis) {
+        this.queue = queue;
+        this.callLatencyMillis = callLatencyMillis;
+    }
+
+    @Override
+    public ReceiveMessageResponse receiveMessage(ReceiveMessageRequest request) {
+        roundTrip();
+        int max = request.maxNumberOfMessages() != null ? request.maxNumberOfMessages() : 1;
+        int waitSeconds = request.waitTimeSeconds() != null ? request.waitTimeSeconds() : 0;
+        int visibilitySeconds = request.visibilityTimeout() != null ? request.visibilityTimeout() : DEFAULT_VISIBILITY_SECONDS;
+        List<Message> messages;
+        try {
+            messages = queue.receive(max, TimeUnit.SECONDS.toMillis(waitSeconds), TimeUnit.SECONDS.toMillis(visibilitySeconds));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw AbortedException.builder().message("receive interrupted").build();
+        }
+        return ReceiveMessageResponse.builder().messages(messages).build();
+    }
+
+    @Override
+    public DeleteMessageBatchResponse deleteMessageBatch(DeleteMessageBatchRequest request) {
+        roundTrip();
+        List<DeleteMessageBatchResultEntry> successful = new ArrayList<>(request.entries().size());
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (DeleteMessageBatchRequestEntry entry : request.entries()) {
+            if (queue.delete(entry.receiptHandle())) {
+                successful.add(DeleteMessageBatchResultEntry.builder().id(entry.id()).build());
+            } else {
+                failed.add(invalidHandle(entry.id()));
+            }
+        }
+        return DeleteMessageBatchResponse.builder().successful(successful).failed(failed).build();
+    }
+
+    @Override
+    public ChangeMessageVisibilityBatchResponse changeMessageVisibilityBatch(ChangeMessageVisibilityBatchRequest request) {
+        roundTrip();
+        List<ChangeMessageVisibilityBatchResultEntry> successful = new ArrayList<>(request.entries().size());
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (ChangeMessageVisibilityBatchRequestEntry entry : request.entries()) {
+            int seconds = entry.visibilityTimeout() != null ? entry.visibilityTimeout() : 0;
+            if (queue.changeVisibility(entry.receiptHandle(), TimeUnit.SECONDS.toMillis(seconds))) {
+                successful.add(ChangeMessageVisibilityBatchResultEntry.builder().id(entry.id()).build());
+            } else {
+                failed.add(invalidHandle(entry.id()));
+            }
+        }
+        return ChangeMessageVisibilityBatchResponse.builder().successful(successful).failed(failed).build();
+    }
+
+    @Override
+    public GetQueueAttributesResponse getQueueAttributes(GetQueueAttributesRequest request) {
+        roundTrip();
+        Map<QueueAttributeName, String> attributes = new EnumMap<>(QueueAttributeName.class);
+        attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES, Long.toString(queue.getVisibleCount()));
+        attributes.put(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE, Long.toString(queue.getInFlightCount()));
+        return GetQueueAttributesResponse.builder().attributes(attributes).build();
+    }
+
+    private static BatchResultErrorEntry invalidHandle(String id) {
+        return BatchResultErrorEntry.builder()
+                .id(id)
+                .code("ReceiptHandleIsInvalid")
+                .message("The receipt handle is not valid anymore")
+                .senderFault(true)
+                .build();
+    }
+
+    private void roundTrip() {
+        if (callLatencyMillis > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(callLatencyMillis));
+        }
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,76 @@
+package com.fraud.loadtest;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalSqsTest {
+
+    /**
+     * case1: msg of a group come in order, the group is blocked while one is in flight, other groups are not
+     */
+    @Test
+    void receive_FifoGroup_InOrderAndBlockedWhileInFlight() throws InterruptedException {
+        LocalSqs queue = new LocalSqs();
+        queue.send("a1", "A", 1);
+        queue.send("a2", "A", 2);
+        queue.send("b1", "B", 3);
+
+        List<Message> first = queue.receive(1, 0, 30_000);
+        assertEquals("a1", first.get(0).body());
+        assertEquals("A", first.get(0).attributes().get(MessageSystemAttributeName.MESSAGE_GROUP_ID));
+        assertEquals("1", first.get(0).attributes().get(MessageSystemAttributeName.SENT_TIMESTAMP));
+
+        // a2 waits for a1
+        List<Message> second = queue.receive(10, 0, 30_000);
+        assertEquals(1, second.size());
+        assertEquals("b1", second.get(0).body());
+        assertTrue(queue.receive(10, 50, 30_000).isEmpty());
+        assertEquals(1, queue.getVisibleCount());
+
+        assertTrue(queue.delete(first.get(0).receiptHandle()));
+        assertEquals("a2", queue.receive(10, 0, 30_000).get(0).body());
+        assertEquals(2, queue.getInFlightCount());
+    }
+
+    /**
+     * case2: msg not deleted within the visibility timeout comes again with a new handle, the old one is rejected
+     */
+    @Test
+    void visibilityTimeout_Redelivers_StaleHandleRejected() throws InterruptedException {
+        LocalSqs queue = new LocalSqs();
+        LocalSqsClient client = new LocalSqsClient(queue, 0);
+        queue.send("x", null, System.currentTimeMillis());
+
+        Message first = queue.receive(1, 0, 100).get(0);
+        assertTrue(queue.receive(1, 0, 100).isEmpty());
+        // long poll returns when the msg is visible again
+        Message again = queue.receive(1, 2000, 30_000).get(0);
+        assertEquals(first.messageId(), again.messageId());
+        assertEquals("2", again.attributes().get(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT));
+        assertEquals(1, queue.getRedeliveredCount());
+
+        DeleteMessageBatchResponse response = client.deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                .entries(DeleteMessageBatchRequestEntry.builder().id("0").receiptHandle(first.receiptHandle()).build(),
+                        DeleteMessageBatchRequestEntry.builder().id("1").receiptHandle(again.receiptHandle()).build())
+                .build());
+        assertEquals("ReceiptHandleIsInvalid", response.failed().get(0).code());
+        assertEquals("0", response.failed().get(0).id());
+        assertEquals("1", response.successful().get(0).id());
+
+        // released at once with visibility 0
+        queue.send("y", null, System.currentTimeMillis());
+        Message y = queue.receive(1, 0, 30_000).get(0);
+        assertTrue(queue.changeVisibility(y.receiptHandle(), 0));
+        assertEquals("y", queue.receive(1, 0, 30_000).get(0).body());
+        assertEquals(1, queue.getDeletedCount());
+    }
+}
@@ -0,0 +1,62 @@
+package com.fraud.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DroppingAsyncAppenderTest {
+
+    /**
+     * case1: a stuck downstream appender fills the queue, further events are dropped and counted
+     */
+    @Test
+    void append_QueueFull_DropsWithoutBlocking() throws InterruptedException {
+        LoggerContext context = new LoggerContext();
+        CountDownLatch release = new CountDownLatch(1);
+        AppenderBase<ILoggingEvent> stuck = new AppenderBase<>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        stuck.setContext(context);
+        stuck.start();
+        DroppingAsyncAppender async = new DroppingAsyncAppender();
+        async.setContext(context);
+        async.setQueueSize(4);
+        async.setDiscardingThreshold(0);
+        async.addAppender(stuck);
+        async.start();
+        Logger logger = context.getLogger("test");
+        logger.setLevel(Level.INFO);
+        logger.addAppender(async);
+
+        long droppedBefore = DroppingAsyncAppender.getDroppedCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            logger.warn("event {}", i);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long dropped = DroppingAsyncAppender.getDroppedCount() - droppedBefore;
+        release.countDown();
+        async.stop();
+
+        // 4 in the queue, at most 1 taken by the worker
+        assertTrue(dropped >= 95 && dropped <= 96, "dropped " + dropped);
+        assertTrue(elapsedMillis < 1000, "logging blocked for " + elapsedMillis + " ms");
+        assertEquals(0, async.getNumberOfElementsInQueue());
+    }
+}
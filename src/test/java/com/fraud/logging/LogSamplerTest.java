@@ -0,0 +1,46 @@
+package com.fraud.logging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSamplerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * case1: about the configured share is kept, the same ID always gets the same decision
+     */
+    @Test
+    void sample_KeepsConfiguredShare_StablePerId() {
+        LogSampler sampler = new LogSampler("clean", 0.01, meterRegistry);
+        int kept = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampler.sample("TX-" + i)) {
+                kept++;
+                assertTrue(sampler.sample("TX-" + i));
+            }
+        }
+
+        assertTrue(kept > 800 && kept < 1200, "kept " + kept);
+        assertEquals(kept * 2.0, meterRegistry.get("fraud.log.sampled").tag("outcome", "clean").counter().count());
+        assertEquals(100_000.0 - kept, meterRegistry.get("fraud.log.suppressed").tag("outcome", "clean").counter().count());
+    }
+
+    /**
+     * case2: rate 1 keeps everything, rate 0 nothing
+     */
+    @Test
+    void sample_Bounds() {
+        LogSampler all = new LogSampler("fraud", 1.0, meterRegistry);
+        LogSampler none = new LogSampler("clean", 0.0, meterRegistry);
+
+        assertTrue(all.sample("TX-1"));
+        assertTrue(all.sample(null));
+        assertFalse(none.sample("TX-1"));
+        assertFalse(none.sample(null));
+    }
+}
@@ -0,0 +1,97 @@
+package com.fraud.persist;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDbResultStoreTest {
+
+    private static final String TABLE = "fraud-results";
+
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+
+    private DynamoDbResultStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new DynamoDbResultStore(dynamoDbClient);
+        ReflectionTestUtils.setField(store, "tableName", TABLE);
+    }
+
+    /**
+     * case1: one put per transaction ID, fraud items carry codes and reasons
+     */
+    @Test
+    void write_DuplicateIds_OnePutEach() {
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(BatchWriteItemResponse.builder().build());
+        PendingResult first = pending("TX-1", FraudResult.CLEAN);
+        PendingResult redelivered = pending("TX-1", new FraudResult("TX-1", ReasonCode.VELOCITY.bit(), 1000L,
+                Collections.singletonList("too fast")));
+        PendingResult other = pending("TX-2", FraudResult.CLEAN);
+
+        assertTrue(store.write(List.of(first, redelivered, other)).isEmpty());
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDbClient).batchWriteItem(captor.capture());
+        List<WriteRequest> writes = captor.getValue().requestItems().get(TABLE);
+        assertEquals(2, writes.size());
+        Map<String, AttributeValue> item = writes.get(0).putRequest().item();
+        assertEquals("TX-1", item.get("transactionId").s());
+        assertEquals(true, item.get("fraudulent").bool());
+        assertEquals(List.of("VELOCITY"), item.get("reasonCodes").ss());
+        assertEquals("too fast", item.get("reasons").l().get(0).s());
+        assertEquals("1000", item.get("detectTime").n());
+        assertEquals(false, writes.get(1).putRequest().item().get("fraudulent").bool());
+    }
+
+    /**
+     * case2: unprocessed items map back to every pending result of the key
+     */
+    @Test
+    void write_Unprocessed_ReturnedForRetry() {
+        PendingResult first = pending("TX-1", FraudResult.CLEAN);
+        PendingResult second = pending("TX-2", FraudResult.CLEAN);
+        WriteRequest unprocessed = WriteRequest.builder()
+                .putRequest(PutRequest.builder().item(DynamoDbResultStore.toItem(second)).build())
+                .build();
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(BatchWriteItemResponse.builder()
+                .unprocessedItems(Map.of(TABLE, List.of(unprocessed)))
+                .build());
+
+        List<PendingResult> retry = store.write(List.of(first, second));
+
+        assertEquals(1, retry.size());
+        assertSame(second, retry.get(0));
+    }
+
+    private static PendingResult pending(String id, FraudResult result) {
+        return new PendingResult(new Transaction(id, "ACCT-1", 10.0, "Paris", "MCH-1", 0L), result, null);
+    }
+}
@@ -0,0 +1,142 @@
+package com.fraud.persist;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class ResultWriterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResultWriter resultWriter;
+
+    @AfterEach
+    void tearDown() {
+        resultWriter.stop();
+    }
+
+    /**
+     * case1: results are written in batches of the store size, callbacks report durable
+     */
+    @Test
+    void submit_WrittenInBatchesOf25() throws InterruptedException {
+        RecordingStore store = new RecordingStore();
+        resultWriter = writer(store, 100);
+        Map<String, Boolean> completed = new ConcurrentHashMap<>();
+        for (int i = 0; i < 60; i++) {
+            String id = "TX-" + i;
+            resultWriter.submit(tx(id), FraudResult.CLEAN, durable -> completed.put(id, durable));
+        }
+        resultWriter.start();
+        resultWriter.stop();
+
+        assertEquals(List.of(25, 25, 10), store.batchSizes);
+        assertEquals(60, completed.size());
+        assertTrue(completed.values().stream().allMatch(Boolean::booleanValue));
+        assertEquals(60.0, meterRegistry.counter("fraud.persistence.written").count());
+    }
+
+    /**
+     * case2: unprocessed items are retried, given up after the max attempts
+     */
+    @Test
+    void write_Unprocessed_RetriedThenGivenUp() throws InterruptedException {
+        RecordingStore store = new RecordingStore();
+        store.unprocessedIds.put("TX-SLOW", 1);
+        store.unprocessedIds.put("TX-BAD", Integer.MAX_VALUE);
+        resultWriter = writer(store, 100);
+        Map<String, Boolean> completed = new ConcurrentHashMap<>();
+        for (String id : List.of("TX-OK", "TX-SLOW", "TX-BAD")) {
+            resultWriter.submit(tx(id), fraud(id), durable -> completed.put(id, durable));
+        }
+        resultWriter.start();
+        resultWriter.stop();
+
+        assertEquals(Map.of("TX-OK", true, "TX-SLOW", true, "TX-BAD", false), completed);
+        assertEquals(3, store.batchSizes.size());
+        assertEquals(1.0, meterRegistry.counter("fraud.persistence.failed").count());
+    }
+
+    /**
+     * case3: a full buffer blocks the worker, then rejects; trySubmit rejects without waiting
+     */
+    @Test
+    void submit_BufferFull_Rejected() throws InterruptedException {
+        resultWriter = writer(new RecordingStore(), 2);
+        resultWriter.submit(tx("TX-1"), FraudResult.CLEAN, null);
+        assertTrue(resultWriter.trySubmit(tx("TX-2"), FraudResult.CLEAN, null));
+
+        assertThrows(IllegalStateException.class, () -> resultWriter.submit(tx("TX-3"), FraudResult.CLEAN, null));
+        assertFalse(resultWriter.trySubmit(tx("TX-4"), FraudResult.CLEAN, durable -> fail("not queued")));
+        assertEquals(2, resultWriter.getBufferDepth());
+        assertEquals(2.0, meterRegistry.counter("fraud.persistence.rejected").count());
+    }
+
+    private ResultWriter writer(ResultStore store, int capacity) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("resultStore", store);
+        ResultWriter writer = new ResultWriter(beanFactory.getBeanProvider(ResultStore.class), meterRegistry);
+        ReflectionTestUtils.setField(writer, "bufferCapacity", capacity);
+        ReflectionTestUtils.setField(writer, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(writer, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(writer, "writerCount", 1);
+        ReflectionTestUtils.setField(writer, "maxAttempts", 3);
+        ReflectionTestUtils.setField(writer, "retryBaseMs", 1L);
+        ReflectionTestUtils.setField(writer, "retryMaxMs", 5L);
+        ReflectionTestUtils.setField(writer, "ackAfterDurable", true);
+        writer.init();
+        return writer;
+    }
+
+    private static Transaction tx(String id) {
+        return new Transaction(id, "ACCT-1", 10.0, "Paris", "MCH-1", 0L);
+    }
+
+    private static FraudResult fraud(String id) {
+        return new FraudResult(id, ReasonCode.AMOUNT_THRESHOLD.bit(), System.currentTimeMillis(),
+                Collections.singletonList("Amount exceeds threshold"));
+    }
+
+    /**
+     * In-memory store that leaves chosen IDs unprocessed a number of times
+     */
+    private static final class RecordingStore implements ResultStore {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final Map<String, Integer> unprocessedIds = new ConcurrentHashMap<>();
+
+        @Override
+        public int maxBatchSize() {
+            return 25;
+        }
+
+        @Override
+        public List<PendingResult> write(List<PendingResult> batch) {
+            batchSizes.add(batch.size());
+            List<PendingResult> unprocessed = new ArrayList<>();
+            for (PendingResult pending : batch) {
+                Integer left = unprocessedIds.computeIfPresent(pending.getTransactionId(), (k, v) -> v - 1);
+                if (left != null && left >= 0) {
+                    unprocessed.add(pending);
+                }
+            }
+            return unprocessed;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.fraud.profile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RiskProfileCacheTest {
+
+    private final CountingStore store = new CountingStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RiskProfileCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    /**
+     * case1: a miss does not wait, the profile is there once loaded and following lookups are hits
+     */
+    @Test
+    void miss_LoadsInBackground_ThenHits() throws InterruptedException {
+        store.put(new AccountProfile("ACCT-1", 120.0, 40, "Paris"));
+        cache = cache(store, 0);
+
+        awaitKnown("ACCT-1");
+        AccountProfile profile = cache.account("ACCT-1");
+
+        assertEquals(120.0, profile.getAverageAmount());
+        assertEquals("Paris", profile.getHomeLocation());
+        assertEquals(1, store.accountLoads.get());
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", "account-profiles").tag("result", "hit")
+                .functionCounter().count() >= 1);
+        assertEquals(1, meterRegistry.get("fraud.profile.load").tag("type", "account").timer().count());
+    }
+
+    /**
+     * case2: accounts missing in the store are cached as UNKNOWN, failed loads are tried again
+     */
+    @Test
+    void unknownCached_FailureRetried() throws InterruptedException {
+        cache = cache(store, 1000);
+
+        assertSame(AccountProfile.UNKNOWN, cache.account("ACCT-NONE"));
+        assertSame(AccountProfile.UNKNOWN, cache.account("ACCT-NONE"));
+        assertEquals(1, store.accountLoads.get());
+
+        store.failing = true;
+        assertSame(MerchantProfile.UNKNOWN, cache.merchant("MCH-1"));
+        store.failing = false;
+        store.put(new MerchantProfile("MCH-1", RiskTier.HIGH, 80.0));
+        // the failed load leaves the cache once its future completed, the next lookup loads again
+        MerchantProfile merchant = MerchantProfile.UNKNOWN;
+        for (int i = 0; i < 200 && !merchant.isKnown(); i++) {
+            Thread.sleep(10);
+            merchant = cache.merchant("MCH-1");
+        }
+        assertEquals(RiskTier.HIGH, merchant.getRiskTier());
+        assertTrue(store.merchantLoads.get() >= 2);
+    }
+
+    /**
+     * case3: without a store every lookup is UNKNOWN
+     */
+    @Test
+    void noStore_Disabled() {
+        cache = cache(null, 0);
+
+        assertFalse(cache.isEnabled());
+        assertSame(AccountProfile.UNKNOWN, cache.account("ACCT-1"));
+        assertSame(MerchantProfile.UNKNOWN, cache.merchant("MCH-1"));
+    }
+
+    private AccountProfile awaitKnown(String accountId) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            AccountProfile profile = cache.account(accountId);
+            if (profile.isKnown()) {
+                return profile;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("profile of " + accountId + " not loaded");
+    }
+
+    @SuppressWarnings("unchecked")
+    private RiskProfileCache cache(ProfileStore profileStore, long loadWaitMs) {
+        ObjectProvider<ProfileStore> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(profileStore);
+        RiskProfileCache cache = new RiskProfileCache(provider, meterRegistry);
+        ReflectionTestUtils.setField(cache, "maxAccounts", 100L);
+        ReflectionTestUtils.setField(cache, "maxMerchants", 100L);
+        ReflectionTestUtils.setField(cache, "refreshAfterSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "expireAfterSeconds", 1800L);
+        ReflectionTestUtils.setField(cache, "loaderThreads", 2);
+        ReflectionTestUtils.setField(cache, "loaderQueue", 100);
+        ReflectionTestUtils.setField(cache, "loadWaitMs", loadWaitMs);
+        cache.init();
+        return cache;
+    }
+
+    private static class CountingStore extends InMemoryProfileStore {
+        final AtomicInteger accountLoads = new AtomicInteger();
+        final AtomicInteger merchantLoads = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public AccountProfile loadAccount(String accountId) {
+            accountLoads.incrementAndGet();
+            return super.loadAccount(accountId);
+        }
+
+        @Override
+        public MerchantProfile loadMerchant(String merchantId) {
+            merchantLoads.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("store down");
+            }
+            return super.loadMerchant(merchantId);
+        }
+    }
+}
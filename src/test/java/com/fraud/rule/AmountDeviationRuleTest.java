@@ -0,0 +1,73 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import com.fraud.profile.AccountProfile;
+import com.fraud.profile.MerchantProfile;
+import com.fraud.profile.RiskProfileCache;
+import com.fraud.profile.RiskTier;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AmountDeviationRuleTest {
+
+    private final RiskProfileCache cache = mock(RiskProfileCache.class);
+
+    /**
+     * case1: amount above factor x average hits, short history or no profile does not
+     */
+    @Test
+    void amountAboveFactorTimesAverage_Hits() {
+        when(cache.account("ACCT-1")).thenReturn(new AccountProfile("ACCT-1", 100.0, 50, "Paris"));
+        when(cache.account("ACCT-NEW")).thenReturn(new AccountProfile("ACCT-NEW", 100.0, 3, "Paris"));
+        when(cache.account("ACCT-X")).thenReturn(AccountProfile.UNKNOWN);
+        AmountDeviationRule rule = new AmountDeviationRule(cache);
+        ReflectionTestUtils.setField(rule, "factor", 5.0);
+        ReflectionTestUtils.setField(rule, "minTransactions", 10L);
+
+        assertTrue(rule.matches(tx("ACCT-1", 501.0)));
+        assertFalse(rule.matches(tx("ACCT-1", 500.0)));
+        assertFalse(rule.matches(tx("ACCT-NEW", 5000.0)));
+        assertFalse(rule.matches(tx("ACCT-X", 5000.0)));
+        assertEquals("The transaction amount of 800.00 is 8.0 times the account average of 100.00.",
+                rule.describe(tx("ACCT-1", 800.0)));
+
+        // profile evicted or refreshed to no average before the reason is rendered
+        when(cache.account("ACCT-1")).thenReturn(AccountProfile.UNKNOWN);
+        assertEquals("The transaction amount of 800.00 is more than 5.0 times the account average.",
+                rule.describe(tx("ACCT-1", 800.0)));
+        when(cache.account("ACCT-1")).thenReturn(new AccountProfile("ACCT-1", 0.0, 50, "Paris"));
+        assertEquals("The transaction amount of 800.00 is more than 5.0 times the account average.",
+                rule.describe(tx("ACCT-1", 800.0)));
+    }
+
+    /**
+     * case2: HIGH tier merchants hit from the min amount on
+     */
+    @Test
+    void highRiskMerchant_Hits() {
+        when(cache.merchant("MCH-1")).thenReturn(new MerchantProfile("MCH-1", RiskTier.HIGH, 50.0));
+        when(cache.merchant("MCH-2")).thenReturn(new MerchantProfile("MCH-2", RiskTier.MEDIUM, 50.0));
+        when(cache.merchant("MCH-3")).thenReturn(MerchantProfile.UNKNOWN);
+        MerchantRiskRule rule = new MerchantRiskRule(cache);
+        ReflectionTestUtils.setField(rule, "minAmount", 500.0);
+
+        assertTrue(rule.matches(tx("ACCT-1", 500.0, "MCH-1")));
+        assertFalse(rule.matches(tx("ACCT-1", 499.0, "MCH-1")));
+        assertFalse(rule.matches(tx("ACCT-1", 900.0, "MCH-2")));
+        assertFalse(rule.matches(tx("ACCT-1", 900.0, "MCH-3")));
+    }
+
+    private static Transaction tx(String accountId, double amount) {
+        return tx(accountId, amount, "MCH-1");
+    }
+
+    private static Transaction tx(String accountId, double amount, String merchantId) {
+        return new Transaction("TX-1", accountId, amount, "Paris", merchantId, 0L);
+    }
+}
@@ -0,0 +1,119 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImpossibleTravelRuleTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long MINUTE = 60_000;
+
+    private ImpossibleTravelRule travelRule;
+
+    @BeforeEach
+    void setUp() {
+        travelRule = new ImpossibleTravelRule();
+        ReflectionTestUtils.setField(travelRule, "enabled", true);
+        ReflectionTestUtils.setField(travelRule, "locationsFile", "");
+        ReflectionTestUtils.setField(travelRule, "maxSpeedKmh", 900.0);
+        ReflectionTestUtils.setField(travelRule, "minDistanceKm", 100.0);
+        ReflectionTestUtils.setField(travelRule, "maxGapHours", 24L);
+        ReflectionTestUtils.setField(travelRule, "maxAccounts", 1000);
+        ReflectionTestUtils.setField(travelRule, "stripes", 4);
+        travelRule.clock = () -> NOW;
+        travelRule.init();
+    }
+
+    /**
+     * case1: London then Paris 5 minutes later hits, 2 hours later does not, unknown locations are skipped
+     */
+    @Test
+    void farAwayShortlyAfter_Hits() {
+        RuleEngine engine = engine();
+        assertEquals(List.of(), engine.evaluate(tx("TX-1", "ACCT-1", "London", NOW - 130 * MINUTE)));
+        assertEquals(List.of(), engine.evaluate(tx("TX-2", "ACCT-1", "Paris", NOW - 10 * MINUTE)));
+        // not in the index, the last known sighting stays Paris
+        assertEquals(List.of(), engine.evaluate(tx("TX-3", "ACCT-1", "HighRiskCountry1", NOW - 8 * MINUTE)));
+
+        List<String> reasons = engine.evaluate(tx("TX-4", "ACCT-1", "london", NOW - 5 * MINUTE));
+
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).startsWith("Account ACCT-1 was 344 km from london 5 minutes before"), reasons.get(0));
+        assertTrue(reasons.get(0).endsWith("km/h."), reasons.get(0));
+        // other accounts and the same city are fine
+        assertEquals(List.of(), engine.evaluate(tx("TX-5", "ACCT-2", "Tokyo", NOW - 4 * MINUTE)));
+        assertEquals(List.of(), engine.evaluate(tx("TX-6", "ACCT-1", "London", NOW)));
+        assertEquals(2, travelRule.getTrackedAccountCount());
+    }
+
+    /**
+     * case2: sightings further apart than the max gap, or without transaction time, are compared by arrival time
+     */
+    @Test
+    void gapAndArrivalTime() {
+        assertFalse(observeAndMatch(tx("TX-1", "ACCT-1", "Sydney", NOW - 25 * 60 * MINUTE)));
+        assertFalse(observeAndMatch(tx("TX-2", "ACCT-1", "New York", NOW - 60 * MINUTE)));
+        // no time: now, New York to Los Angeles (3940 km) in an hour
+        assertTrue(observeAndMatch(tx("TX-3", "ACCT-1", "Los Angeles", 0L)));
+        assertEquals(NOW, travelRule.eventTime(tx("TX-4", "ACCT-1", "Paris", NOW + MINUTE)));
+        assertEquals(NOW - 86_400_000L * 30, travelRule.eventTime(tx("TX-5", "ACCT-1", "Paris", NOW - 86_400_000L * 30)));
+    }
+
+    /**
+     * case3: transactions without account are not recorded and never hit, also when matched on another thread
+     */
+    @Test
+    void noAccount_NotRecorded() {
+        assertFalse(observeAndMatch(tx("TX-1", null, "London", NOW - 10 * MINUTE)));
+        assertFalse(observeAndMatch(tx("TX-2", null, "Paris", NOW - 5 * MINUTE)));
+        assertFalse(travelRule.matches(tx("TX-3", null, "Tokyo", NOW)));
+
+        assertEquals(0, travelRule.getTrackedAccountCount());
+    }
+
+    /**
+     * case4: reason rendered later on another thread shows the hop of the hit, the account moved on since
+     */
+    @Test
+    void describeLater_CapturedHop() throws Exception {
+        RuleEngine engine = engine();
+        engine.evaluate(tx("TX-1", "ACCT-1", "London", NOW - 10 * MINUTE));
+        Transaction hit = tx("TX-2", "ACCT-1", "Paris", NOW - 5 * MINUTE);
+        RulePlan plan = engine.getPlan();
+        long matched = engine.match(plan, hit);
+        Object[] captured = plan.capture(matched, hit);
+        engine.evaluate(tx("TX-3", "ACCT-1", "Paris", NOW - 4 * MINUTE));
+        engine.evaluate(tx("TX-4", "ACCT-1", "Paris", NOW));
+
+        List<String> reasons = CompletableFuture.supplyAsync(() -> plan.describe(matched, hit, captured)).get();
+
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).startsWith("Account ACCT-1 was 344 km from Paris 5 minutes before"), reasons.get(0));
+    }
+
+    private boolean observeAndMatch(Transaction transaction) {
+        travelRule.observe(transaction);
+        return travelRule.matches(transaction);
+    }
+
+    private RuleEngine engine() {
+        RuleEngine engine = new RuleEngine(List.of(travelRule));
+        ReflectionTestUtils.setField(engine, "mode", EvaluationMode.ALL_REASONS);
+        ReflectionTestUtils.setField(engine, "timingEnabled", false);
+        engine.compile();
+        return engine;
+    }
+
+    private static Transaction tx(String id, String accountId, String location, long time) {
+        return new Transaction(id, accountId, 50.0, location, "MCH-001", time);
+    }
+}
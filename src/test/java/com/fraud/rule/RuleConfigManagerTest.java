@@ -0,0 +1,156 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleConfigManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Transaction large = new Transaction("TX-1", "ACCT-9", 15000.0, "Paris", "MCH-1", 0L);
+
+    private RuleEngine ruleEngine;
+
+    /**
+     * case1: a changed override file is published as a new version, a plan taken before keeps the old values
+     */
+    @Test
+    void overrideFile_PublishesNewVersion() throws IOException {
+        Path overrides = tempDir.resolve("rules.properties");
+        Files.write(overrides, List.of("fraud.rule.amount.threshold=20000"));
+        RuleConfigManager manager = manager(overrides.toString(), null);
+
+        assertEquals(2, manager.getCurrent().getVersion());
+        assertEquals(2, ruleEngine.getPlan().getVersion());
+        assertTrue(ruleEngine.evaluate(large).isEmpty());
+
+        RulePlan before = ruleEngine.getPlan();
+        write(overrides, "fraud.rule.amount.threshold=1000", "fraud.rule.suspicious.accounts=ACCT-9");
+        manager.reloadIfChanged();
+
+        assertEquals(3, manager.getCurrent().getVersion());
+        assertEquals(List.of("amount-threshold", "suspicious-account", "high-risk-location"), ruleEngine.getPlan().getRuleNames());
+        assertEquals(2, ruleEngine.evaluate(large).size());
+        assertEquals(0, ruleEngine.match(before, large));
+        // unchanged file, no new version
+        manager.reloadIfChanged();
+        assertEquals(3, manager.getCurrent().getVersion());
+    }
+
+    /**
+     * case2: an invalid candidate is refused and the running version stays, rollback goes back one version
+     */
+    @Test
+    void invalidOverride_KeepsRunningVersion_RollbackRestoresPrevious() throws IOException {
+        Path overrides = tempDir.resolve("rules.properties");
+        Files.write(overrides, List.of("fraud.rule.amount.threshold=5000"));
+        RuleConfigManager manager = manager(overrides.toString(), null);
+        assertEquals(5000.0, manager.getCurrent().getAmountThreshold());
+
+        write(overrides, "fraud.rule.amount.threshold=-1");
+        manager.reloadIfChanged();
+        assertEquals(2, manager.getCurrent().getVersion());
+        write(overrides, "fraud.rule.risk.locations= , ");
+        manager.reloadIfChanged();
+        assertEquals(2, manager.getCurrent().getVersion());
+        write(overrides, "fraud.rule.evaluation.mode=SOMETIMES");
+        manager.reloadIfChanged();
+        assertEquals(2, manager.getCurrent().getVersion());
+
+        write(overrides, "fraud.rule.amount.threshold=50000");
+        manager.reloadIfChanged();
+        assertEquals(3, manager.getCurrent().getVersion());
+
+        RuleConfig restored = manager.rollback();
+        assertEquals(4, restored.getVersion());
+        assertEquals(5000.0, restored.getAmountThreshold());
+        assertEquals(4, ruleEngine.getPlan().getVersion());
+        assertEquals(List.of("The transaction amount of 15000.00 exceeds the threshold of 5000.00."), ruleEngine.evaluate(large));
+
+        manager.rollback();
+        assertEquals(10000.0, manager.getCurrent().getAmountThreshold());
+        assertThrows(IllegalStateException.class, manager::rollback);
+    }
+
+    /**
+     * case3: watchlist file reloaded on change, a broken or truncated file keeps the previous accounts
+     */
+    @Test
+    void watchlistFile_ReloadedOnChange_BrokenFileKeepsPrevious() throws IOException {
+        Path watchlist = tempDir.resolve("suspicious-accounts.txt");
+        Files.write(watchlist, List.of("ACCT-1", "ACCT-2"));
+        RuleConfigManager manager = manager(null, watchlist.toString());
+        assertEquals(1, manager.getCurrent().getVersion());
+
+        write(watchlist, "ACCT-3");
+        manager.reloadIfChanged();
+        assertEquals(2, manager.getCurrent().getVersion());
+        assertTrue(ruleEngine.evaluate(tx("ACCT-1")).isEmpty());
+        assertEquals(1, ruleEngine.evaluate(tx("ACCT-3")).size());
+
+        write(watchlist, "ACCT-3", "ACCT-4", "ACCT-5", "ACCT-6");
+        manager.reloadIfChanged();
+        assertEquals(3, manager.getCurrent().getVersion());
+        // more than half of the accounts gone
+        write(watchlist, "ACCT-3");
+        manager.reloadIfChanged();
+        assertEquals(3, manager.getCurrent().getVersion());
+        assertEquals(4, manager.getCurrent().getSuspiciousAccounts().size());
+
+        Files.delete(watchlist);
+        manager.reloadIfChanged();
+        assertEquals(3, manager.getCurrent().getVersion());
+        assertEquals(1, ruleEngine.evaluate(tx("ACCT-6")).size());
+    }
+
+    private RuleConfigManager manager(String location, String watchlist) {
+        AmountThresholdRule amountRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountRule, "amountThreshold", 10000.0);
+        SuspiciousAccountRule accountRule = new SuspiciousAccountRule();
+        ReflectionTestUtils.setField(accountRule, "suspiciousAccountsStr", "ACCT-123");
+        ReflectionTestUtils.setField(accountRule, "suspiciousAccountsFile", watchlist);
+        accountRule.init();
+        HighRiskLocationRule locationRule = new HighRiskLocationRule();
+        ReflectionTestUtils.setField(locationRule, "enableUnusualLocationCheck", true);
+        ReflectionTestUtils.setField(locationRule, "highRiskLocationsStr", "HighRiskCountry1,Unknown");
+        locationRule.init();
+
+        ruleEngine = new RuleEngine(List.of(amountRule, accountRule, locationRule));
+        ReflectionTestUtils.setField(ruleEngine, "mode", EvaluationMode.ALL_REASONS);
+        ReflectionTestUtils.setField(ruleEngine, "timingEnabled", true);
+        ruleEngine.compile();
+
+        RuleConfigManager manager = new RuleConfigManager(ruleEngine, amountRule, accountRule, locationRule, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "location", location);
+        ReflectionTestUtils.setField(manager, "historySize", 5);
+        ReflectionTestUtils.setField(manager, "maxWatchlistShrinkRatio", 0.5);
+        ReflectionTestUtils.setField(manager, "httpTimeoutMs", 1000L);
+        manager.init();
+        return manager;
+    }
+
+    // new content with a new modified time, so the change is seen within the same millisecond
+    private static void write(Path file, String... lines) throws IOException {
+        FileTime before = Files.getLastModifiedTime(file);
+        Files.write(file, List.of(lines));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(before.toMillis() + 1000));
+    }
+
+    private static Transaction tx(String accountId) {
+        return new Transaction("TX-2", accountId, 10.0, "Paris", "MCH-1", 0L);
+    }
+}
@@ -0,0 +1,144 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleEngineTest {
+
+    private final Transaction tx = new Transaction("TX-001", "ACCT-123", 15000.0, "HighRiskCountry1", "MCH-001", System.currentTimeMillis());
+
+    /**
+     * case1: FIRST_HIT orders by cost / selectivity and stops at the first match
+     */
+    @Test
+    void firstHit_OrdersByExpectedCostAndShortCircuits() {
+        TestRule expensive = new TestRule("expensive", 10, 0.5, true);
+        TestRule cheapRare = new TestRule("cheap-rare", 1, 0.001, true);
+        TestRule cheapLikely = new TestRule("cheap-likely", 1, 0.5, true);
+
+        RuleEngine engine = engine(EvaluationMode.FIRST_HIT, expensive, cheapRare, cheapLikely);
+
+        assertEquals(List.of("cheap-likely", "expensive", "cheap-rare"), engine.getPlan().getRuleNames());
+        List<String> reasons = engine.evaluate(tx);
+        assertEquals(List.of("cheap-likely hit"), reasons);
+        assertEquals(1, cheapLikely.calls.get());
+        assertEquals(0, expensive.calls.get());
+        assertEquals(0, cheapRare.calls.get());
+    }
+
+    /**
+     * case2: ALL_REASONS runs every rule by cost and reports all reasons
+     */
+    @Test
+    void allReasons_EvaluatesEveryRule() {
+        TestRule second = new TestRule("second", 2, 0.5, true);
+        TestRule first = new TestRule("first", 1, 0.001, false);
+        TestRule third = new TestRule("third", 3, 0.1, true);
+
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS, second, first, third);
+
+        assertEquals(List.of("first", "second", "third"), engine.getPlan().getRuleNames());
+        assertEquals(List.of("second hit", "third hit"), engine.evaluate(tx));
+    }
+
+    /**
+     * case3: disabled rules are not compiled, stats count evaluations and hits
+     */
+    @Test
+    void disabledRule_LeftOutOfPlan_StatsRecorded() {
+        TestRule enabled = new TestRule("enabled", 1, 0.5, true);
+        TestRule disabled = new TestRule("disabled", 1, 0.5, true);
+        disabled.enabled = false;
+
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS, enabled, disabled);
+        engine.evaluate(tx);
+        engine.evaluate(tx);
+
+        assertEquals(List.of("enabled"), engine.getPlan().getRuleNames());
+        RuleStats stats = engine.getStats().get(0);
+        assertEquals(2, stats.getEvaluations());
+        assertEquals(2, stats.getHits());
+        assertEquals(1.0, stats.getHitRate());
+        assertTrue(stats.getTotalNanos() >= 0);
+        assertEquals(0, disabled.calls.get());
+    }
+
+    /**
+     * case4: rule meters read evaluations, hits and time of the plan
+     */
+    @Test
+    void ruleMetrics_ReadPlanCounters() {
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS, new TestRule("hit", 1, 0.5, true), new TestRule("miss", 2, 0.5, false));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new RuleMetrics(engine, registry).init();
+        engine.evaluate(tx);
+        engine.evaluate(tx);
+
+        assertEquals(2, registry.get("fraud.rule.evaluation").tag("rule", "miss").functionTimer().count());
+        assertEquals(2.0, registry.get("fraud.rule.hits").tag("rule", "hit").functionCounter().count());
+        assertEquals(0.0, registry.get("fraud.rule.hits").tag("rule", "miss").functionCounter().count());
+    }
+
+    private static RuleEngine engine(EvaluationMode mode, FraudRule... rules) {
+        RuleEngine engine = new RuleEngine(List.of(rules));
+        ReflectionTestUtils.setField(engine, "mode", mode);
+        ReflectionTestUtils.setField(engine, "timingEnabled", true);
+        engine.compile();
+        return engine;
+    }
+
+    private static final class TestRule implements FraudRule {
+        private final String name;
+        private final int cost;
+        private final double selectivity;
+        private final boolean hit;
+        private final AtomicInteger calls = new AtomicInteger();
+        private boolean enabled = true;
+
+        TestRule(String name, int cost, double selectivity, boolean hit) {
+            this.name = name;
+            this.cost = cost;
+            this.selectivity = selectivity;
+            this.hit = hit;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public int cost() {
+            return cost;
+        }
+
+        @Override
+        public double selectivity() {
+            return selectivity;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        @Override
+        public boolean matches(Transaction transaction) {
+            calls.incrementAndGet();
+            return hit;
+        }
+
+        @Override
+        public String describe(Transaction transaction) {
+            return name + " hit";
+        }
+    }
+}
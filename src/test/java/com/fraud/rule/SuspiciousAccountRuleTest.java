@@ -0,0 +1,49 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuspiciousAccountRuleTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void watchlistFile_ReplacesInlineList() throws IOException {
+        Path file = tempDir.resolve("suspicious-accounts.txt");
+        Files.write(file, List.of("# watchlist", "ACCT-1", "", "ACCT-2"));
+
+        SuspiciousAccountRule rule = new SuspiciousAccountRule();
+        ReflectionTestUtils.setField(rule, "suspiciousAccountsStr", "ACCT-INLINE");
+        ReflectionTestUtils.setField(rule, "suspiciousAccountsFile", file.toString());
+        rule.init();
+
+        assertEquals(2, rule.getSuspiciousAccountCount());
+        assertTrue(rule.matches(tx("ACCT-1")));
+        assertFalse(rule.matches(tx("ACCT-INLINE")));
+    }
+
+    @Test
+    void missingWatchlistFile_FailsAtStart() {
+        SuspiciousAccountRule rule = new SuspiciousAccountRule();
+        ReflectionTestUtils.setField(rule, "suspiciousAccountsFile", tempDir.resolve("missing.txt").toString());
+
+        assertThrows(IllegalStateException.class, rule::init);
+    }
+
+    private static Transaction tx(String accountId) {
+        return new Transaction("TX-1", accountId, 10.0, "Paris", "MCH-1", 0L);
+    }
+}
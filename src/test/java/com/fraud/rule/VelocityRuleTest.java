@@ -0,0 +1,132 @@
+package com.fraud.rule;
+
+import com.fraud.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VelocityRuleTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private VelocityRule velocityRule;
+    private AmountThresholdRule amountThresholdRule;
+
+    @BeforeEach
+    void setUp() {
+        velocityRule = new VelocityRule();
+        ReflectionTestUtils.setField(velocityRule, "enabled", true);
+        ReflectionTestUtils.setField(velocityRule, "windowSeconds", new long[]{60, 3600});
+        ReflectionTestUtils.setField(velocityRule, "maxCounts", new long[]{3, 0});
+        ReflectionTestUtils.setField(velocityRule, "maxAmounts", new double[]{0, 1000});
+        ReflectionTestUtils.setField(velocityRule, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(velocityRule, "maxAccounts", 1000);
+        ReflectionTestUtils.setField(velocityRule, "stripes", 4);
+        velocityRule.clock = () -> NOW;
+        velocityRule.init();
+
+        amountThresholdRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountThresholdRule, "amountThreshold", 10000.0);
+    }
+
+    /**
+     * case1: the 4th transaction within a minute breaks the count limit
+     */
+    @Test
+    void manySmallTransactions_CountLimitHit() {
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of(), engine.evaluate(tx("TX-" + i, 10.0)));
+        }
+
+        List<String> reasons = engine.evaluate(tx("TX-3", 10.0));
+
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).contains("4 transactions"));
+    }
+
+    /**
+     * case2: transactions are recorded also when FIRST_HIT stopped at an earlier rule
+     */
+    @Test
+    void firstHit_StatefulRuleStillRecords() {
+        RuleEngine engine = engine(EvaluationMode.FIRST_HIT);
+        engine.evaluate(tx("TX-1", 20000.0));
+
+        assertEquals(1, velocityRule.getTrackedAccountCount());
+        // the amount of the large transaction counts in the 1h window
+        List<String> reasons = engine.evaluate(tx("TX-2", 1.0));
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0).contains("3600 seconds"));
+    }
+
+    /**
+     * case3: implausible transaction time falls back to the arrival time
+     */
+    @Test
+    void eventTime_OldTimestampUsesArrivalTime() {
+        Transaction stale = tx("TX-1", 10.0);
+        stale.setTransactionTime(NOW - 86_400_000L);
+        Transaction recent = tx("TX-2", 10.0);
+        recent.setTransactionTime(NOW - 1000);
+
+        assertEquals(NOW, velocityRule.eventTime(stale));
+        assertEquals(NOW - 1000, velocityRule.eventTime(recent));
+    }
+
+    /**
+     * case4: transactions without account are not recorded and never hit
+     */
+    @Test
+    void noAccount_NotRecorded() {
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS);
+        for (int i = 0; i < 5; i++) {
+            Transaction transaction = tx("TX-" + i, 10.0);
+            transaction.setAccountId(i % 2 == 0 ? null : " ");
+            assertEquals(List.of(), engine.evaluate(transaction));
+        }
+
+        assertEquals(0, velocityRule.getTrackedAccountCount());
+    }
+
+    /**
+     * case5: reason rendered later on another thread shows the numbers of the hit, not the live store
+     */
+    @Test
+    void describeLater_CapturedNumbers() throws Exception {
+        RuleEngine engine = engine(EvaluationMode.ALL_REASONS);
+        for (int i = 0; i < 3; i++) {
+            engine.evaluate(tx("TX-" + i, 10.0));
+        }
+        Transaction hit = tx("TX-3", 10.0);
+        RulePlan plan = engine.getPlan();
+        long matched = engine.match(plan, hit);
+        Object[] captured = plan.capture(matched, hit);
+        for (int i = 4; i < 8; i++) {
+            engine.evaluate(tx("TX-" + i, 10.0));
+        }
+
+        CompletableFuture<List<String>> reasons = CompletableFuture.supplyAsync(() -> plan.describe(matched, hit, captured));
+
+        assertEquals(List.of("Account ACCT-900 made 4 transactions totalling 40.00 in the last 60 seconds, over the velocity limit."),
+                reasons.get());
+    }
+
+    private RuleEngine engine(EvaluationMode mode) {
+        RuleEngine engine = new RuleEngine(List.of(amountThresholdRule, velocityRule));
+        ReflectionTestUtils.setField(engine, "mode", mode);
+        ReflectionTestUtils.setField(engine, "timingEnabled", false);
+        engine.compile();
+        return engine;
+    }
+
+    private static Transaction tx(String id, double amount) {
+        return new Transaction(id, "ACCT-900", amount, "Singapore", "MCH-001", 0L);
+    }
+}
@@ -0,0 +1,130 @@
+package com.fraud.score;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import com.fraud.model.Transaction;
+import com.fraud.rule.AmountThresholdRule;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.RuleEngine;
+import com.fraud.service.FraudDetectionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RiskScorerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // 2024-05-01T03:00Z
+    private static final long NIGHT = 1714532400000L;
+
+    /**
+     * case1: linear model scores large amounts high, a score over the threshold flags the transaction on its own
+     */
+    @Test
+    void linearModel_ScoreOverThreshold_FlagsTransaction() throws IOException {
+        double[] weights = new double[FeatureExtractor.WIDTH];
+        // amount bucket >= 5000
+        weights[FeatureExtractor.AMOUNT_BUCKET + 5] = 8;
+        Path model = tempDir.resolve("model.json");
+        Files.writeString(model, "{\"type\":\"linear\",\"version\":\"lin-1\",\"layout\":\"v1\",\"intercept\":-4,\"weights\":"
+                + Arrays.toString(weights) + "}");
+        RiskScorer scorer = scorer(model, 0.9);
+
+        assertTrue(scorer.score(tx("TX-1", 20.0)) < 0.05);
+        assertTrue(scorer.score(tx("TX-2", 6000.0)) > 0.95);
+
+        FraudDetectionService service = detectionService(scorer);
+        FraudResult clean = service.detectFraud(tx("TX-1", 20.0));
+        assertFalse(clean.isFraudulent());
+        assertTrue(clean.hasScore());
+        FraudResult flagged = service.detectFraud(tx("TX-2", 6000.0));
+        assertEquals(List.of(ReasonCode.RISK_SCORE), List.copyOf(flagged.getReasonCodes()));
+        assertTrue(flagged.getReasons().get(0).contains("lin-1"));
+        assertEquals(2.0, meterRegistry.get("fraud.score.buckets").tag("range", "0.95-1.00").functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("fraud.score.buckets").tag("range", "0.00-0.05").functionCounter().count());
+    }
+
+    /**
+     * case2: tree model file swapped on change, a broken file keeps the running model
+     */
+    @Test
+    void treeModel_ReloadedOnChange_BrokenFileKeepsRunning() throws IOException {
+        Path model = tempDir.resolve("model.json");
+        // one split on the night hour 03:00
+        Files.writeString(model, tree("gbt-1", FeatureExtractor.HOUR + 3, 2.0));
+        RiskScorer scorer = scorer(model, 0);
+        double night = scorer.score(tx("TX-1", 20.0));
+        assertTrue(night > 0.5);
+        assertEquals("gbt-1", scorer.getModelVersion());
+
+        write(model, tree("gbt-2", FeatureExtractor.HOUR + 3, -2.0));
+        scorer.reloadIfChanged();
+        assertEquals("gbt-2", scorer.getModelVersion());
+        assertTrue(scorer.score(tx("TX-1", 20.0)) < 0.5);
+
+        write(model, "{\"type\":\"gbt\",\"version\":\"gbt-3\",\"base\":0,\"trees\":[{\"feature\":[5],\"threshold\":[1],"
+                + "\"left\":[0],\"right\":[0],\"value\":[0]}]}");
+        scorer.reloadIfChanged();
+        assertEquals("gbt-2", scorer.getModelVersion());
+        assertEquals(1.0, meterRegistry.get("fraud.score.model.loads").tag("result", "rejected").counter().count());
+        assertEquals(2.0, meterRegistry.get("fraud.score.model.loads").tag("result", "applied").counter().count());
+
+        assertThrows(IllegalStateException.class, () -> scorer(tempDir.resolve("missing.json"), 0));
+    }
+
+    private RiskScorer scorer(Path model, double threshold) {
+        RiskScorer scorer = new RiskScorer(new ObjectMapper(), meterRegistry);
+        ReflectionTestUtils.setField(scorer, "modelFile", model.toString());
+        ReflectionTestUtils.setField(scorer, "alertThreshold", threshold);
+        ReflectionTestUtils.setField(scorer, "zone", "UTC");
+        scorer.init();
+        return scorer;
+    }
+
+    private FraudDetectionService detectionService(RiskScorer scorer) {
+        AmountThresholdRule amountRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountRule, "amountThreshold", 10000.0);
+        RuleEngine ruleEngine = new RuleEngine(List.of(amountRule));
+        ReflectionTestUtils.setField(ruleEngine, "mode", EvaluationMode.ALL_REASONS);
+        ruleEngine.compile();
+        FraudDetectionService service = new FraudDetectionService(ruleEngine, scorer, meterRegistry);
+        service.init();
+        return service;
+    }
+
+    private static String tree(String version, int feature, double hit) {
+        return "{\"type\":\"gbt\",\"version\":\"" + version + "\",\"layout\":\"v1\",\"base\":0,\"trees\":[{"
+                + "\"feature\":[" + feature + ",-1,-1],\"threshold\":[0.5,0,0],\"left\":[1,-1,-1],\"right\":[2,-1,-1],"
+                + "\"value\":[0,-1," + hit + "]}]}";
+    }
+
+    // new content with a new modified time, so the change is seen within the same millisecond
+    private static void write(Path file, String content) throws IOException {
+        FileTime before = Files.getLastModifiedTime(file);
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(before.toMillis() + 1000));
+    }
+
+    private static Transaction tx(String id, double amount) {
+        return new Transaction(id, "ACCT-1", amount, "Paris", "MCH-1", NIGHT);
+    }
+}
@@ -1,9 +1,18 @@
 package com.fraud.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.dedup.ClaimResult;
+import com.fraud.dedup.TransactionDeduplicator;
+import com.fraud.ingest.ExecutionMode;
+import com.fraud.ingest.SqsAcknowledger;
+import com.fraud.journal.ResultJournal;
 import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
 import com.fraud.model.Transaction;
+import com.fraud.persist.ResultWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,19 +20,28 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.*;
 
-import java.sql.Date;
-import java.time.LocalDate;
+import java.io.IOException;
 import java.util.Collections;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +50,9 @@ class ConsumerServiceTest {
     @Mock
     private SqsClient sqsClient;
 
+    @Mock
+    private SqsAsyncClient sqsAsyncClient;
+
     @Mock
     private FraudDetectionService fraudDetectionService;
 
@@ -39,7 +60,22 @@ class ConsumerServiceTest {
     private SnsNotificationService snsNotificationService;
 
     @Mock
-    private ObjectMapper objectMapper;
+    private TransactionDecoder transactionDecoder;
+
+    @Mock
+    private SqsAcknowledger sqsAcknowledger;
+
+    @Mock
+    private ResultWriter resultWriter;
+
+    @Mock
+    private ResultJournal resultJournal;
+
+    @Mock
+    private TransactionDeduplicator transactionDeduplicator;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private SqsConsumerService sqsConsumerService;
@@ -47,21 +83,20 @@ class ConsumerServiceTest {
     @Captor
     private ArgumentCaptor<ReceiveMessageRequest> receiveMessageRequestCaptor;
 
-    @Captor
-    private ArgumentCaptor<DeleteMessageRequest> deleteMessageRequestCaptor;
-
 
     private final String testQueueUrl = "https://sqs.test-region.amazonaws.com/123456/test-queue.fifo";
     private final int testMaxMessages = 10;
-    private final Transaction testTransaction = new Transaction("TEST-12345", "ACCT-123", 15000.0, "HighRiskCountry1", "MCH-TEST", Date.valueOf(LocalDate.now()));
-    private final FraudResult testFraudResult = new FraudResult("TEST-12345", true,
-            Collections.singletonList("Amount exceeds threshold"), new java.sql.Date(System.currentTimeMillis()));
+    private final Transaction testTransaction = new Transaction("TEST-12345", "ACCT-123", 15000.0, "HighRiskCountry1", "MCH-TEST", System.currentTimeMillis());
+    private final FraudResult testFraudResult = new FraudResult("TEST-12345", ReasonCode.AMOUNT_THRESHOLD.bit(),
+            System.currentTimeMillis(), Collections.singletonList("Amount exceeds threshold"));
 
     @BeforeEach
     void setUp() {
 
         ReflectionTestUtils.setField(sqsConsumerService, "sqsQueueUrl", testQueueUrl);
         ReflectionTestUtils.setField(sqsConsumerService, "maxMessages", testMaxMessages);
+        sqsConsumerService.init();
+        lenient().when(transactionDeduplicator.tryClaim(anyString())).thenReturn(ClaimResult.CLAIMED);
 
     }
 
@@ -75,16 +110,20 @@ class ConsumerServiceTest {
         when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(emptyResponse);
 
 
-        sqsConsumerService.consumeTransactions();
+        List<Message> messages = sqsConsumerService.receiveTransactions(testMaxMessages);
 
 
+        assertTrue(messages.isEmpty());
         verify(sqsClient).receiveMessage(receiveMessageRequestCaptor.capture());
         ReceiveMessageRequest capturedRequest = receiveMessageRequestCaptor.getValue();
         assertEquals(testQueueUrl, capturedRequest.queueUrl());
         assertEquals(testMaxMessages, capturedRequest.maxNumberOfMessages());
+        assertTrue(capturedRequest.attributeNamesAsStrings().contains("MessageGroupId"));
+        assertTrue(capturedRequest.attributeNamesAsStrings().contains("SentTimestamp"));
+        assertEquals(1, meterRegistry.get("fraud.sqs.receive.batch.size").summary().count());
   
         verify(fraudDetectionService, never()).detectFraud(any(Transaction.class));
-        verify(sqsClient, never()).deleteMessage(any(DeleteMessageRequest.class));
+        verify(sqsAcknowledger, never()).acknowledge(anyString());
         verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
     }
 
@@ -92,42 +131,122 @@ class ConsumerServiceTest {
      * case2：SQS get msg
      */
     @Test
-    void consumeTransactions_WhenMessagesExistInSQS_ProcessesSuccessfully() throws JsonProcessingException {
+    void consumeTransactions_WhenMessagesExistInSQS_ProcessesSuccessfully() throws IOException, InterruptedException {
         // 1. 准备测试消息
         String testMessageBody = "{\"transactionId\":\"TXN123\",\"accountId\":\"ACC456\",\"amount\":1500.0,\"location\":\"HighRiskArea\"}";
         Message testMessage = Message.builder()
                 .messageId("MSG789")
                 .body(testMessageBody)
                 .receiptHandle("RECEIPT123")
+                .attributesWithStrings(Map.of("SentTimestamp", Long.toString(System.currentTimeMillis() - 1500)))
                 .build();
         ReceiveMessageResponse response = ReceiveMessageResponse.builder().messages(List.of(testMessage)).build();
 
         // 2. simulate
         when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(response);
-        when(objectMapper.readValue(testMessageBody, Transaction.class)).thenReturn(testTransaction);
+        when(transactionDecoder.decode(testMessageBody)).thenReturn(testTransaction);
         when(fraudDetectionService.detectFraud(testTransaction)).thenReturn(testFraudResult);
 
 
-        sqsConsumerService.consumeTransactions();
+        for (Message message : sqsConsumerService.receiveTransactions(testMaxMessages)) {
+            assertTrue(sqsConsumerService.processMessage(message));
+        }
 
 
-        verify(objectMapper).readValue(testMessageBody, Transaction.class);
+        verify(transactionDecoder).decode(testMessageBody);
 
         verify(fraudDetectionService).detectFraud(testTransaction);
 
-        verify(sqsClient).deleteMessage(deleteMessageRequestCaptor.capture());
-        DeleteMessageRequest deleteRequest = deleteMessageRequestCaptor.getValue();
-        assertEquals(testQueueUrl, deleteRequest.queueUrl());
-        assertEquals("RECEIPT123", deleteRequest.receiptHandle());
+        verify(resultJournal).append(testTransaction, testFraudResult);
+        verify(resultWriter).submit(testTransaction, testFraudResult, null);
+        verify(sqsAcknowledger).acknowledge("RECEIPT123");
+        verify(sqsClient, never()).deleteMessage(any(DeleteMessageRequest.class));
+
+        verify(snsNotificationService).sendFraudAlert(testFraudResult);
+        verify(transactionDeduplicator).complete("TEST-12345");
+
+        assertEquals(1, meterRegistry.get("fraud.message.process").timer().count());
+        assertTrue(meterRegistry.get("fraud.message.queue.age").timer().totalTime(TimeUnit.MILLISECONDS) >= 1500);
+        assertEquals(1, meterRegistry.get("fraud.message.end.to.end").timer().count());
+    }
+
+    /**
+     * case : redelivered transaction already processed is acknowledged without detection or alert,
+     * one still in progress is left in SQS
+     */
+    @Test
+    void processMessage_DuplicateTransaction_AcknowledgedWithoutAlert() throws IOException, InterruptedException {
+        Message duplicate = Message.builder().messageId("MSG1").body("dup").receiptHandle("RECEIPT1").build();
+        Message inProgress = Message.builder().messageId("MSG2").body("busy").receiptHandle("RECEIPT2").build();
+        when(transactionDecoder.decode(anyString())).thenReturn(testTransaction);
+        when(transactionDeduplicator.tryClaim("TEST-12345")).thenReturn(ClaimResult.DUPLICATE, ClaimResult.IN_PROGRESS);
+
+        assertTrue(sqsConsumerService.processMessage(duplicate));
+        assertFalse(sqsConsumerService.processMessage(inProgress));
+
+        verify(sqsAcknowledger).acknowledge("RECEIPT1");
+        verify(sqsAcknowledger).release("RECEIPT2");
+        verify(fraudDetectionService, never()).detectFraud(any(Transaction.class));
+        verify(resultWriter, never()).submit(any(), any(), any());
+        verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
+        verify(transactionDeduplicator, never()).release(anyString());
+        assertEquals(0, meterRegistry.get("fraud.message.failed").tag("stage", "process").counter().count());
+    }
+
+    /**
+     * case : with ack after durable the alert is sent once the result is written, a given up write
+     * releases the msg without alert, the redelivery alerts
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void processMessage_AckAfterDurable_AlertOnlyWhenDurable() throws IOException, InterruptedException {
+        Message message = Message.builder().messageId("MSG1").body("fraud").receiptHandle("RECEIPT1").build();
+        when(transactionDecoder.decode("fraud")).thenReturn(testTransaction);
+        when(fraudDetectionService.detectFraud(testTransaction)).thenReturn(testFraudResult);
+        when(resultWriter.isAckAfterDurable()).thenReturn(true);
+        ArgumentCaptor<Consumer<Boolean>> callback = ArgumentCaptor.forClass(Consumer.class);
 
+        assertTrue(sqsConsumerService.processMessage(message));
+        verify(resultWriter).submit(eq(testTransaction), eq(testFraudResult), callback.capture());
+        verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
+
+        callback.getValue().accept(false);
+        verify(sqsAcknowledger).release("RECEIPT1");
+        verify(transactionDeduplicator).release("TEST-12345");
+        verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
+
+        callback.getValue().accept(true);
+        verify(sqsAcknowledger).acknowledge("RECEIPT1");
+        verify(transactionDeduplicator).complete("TEST-12345");
         verify(snsNotificationService).sendFraudAlert(testFraudResult);
     }
 
+    /**
+     * case : in ASYNC mode a full result buffer does not block the stage thread, the msg is left in SQS
+     */
+    @Test
+    void processMessage_AsyncBufferFull_LeftInSqs() throws IOException, InterruptedException {
+        ReflectionTestUtils.setField(sqsConsumerService, "executionMode", ExecutionMode.ASYNC);
+        Message message = Message.builder().messageId("MSG1").body("fraud").receiptHandle("RECEIPT1").build();
+        when(transactionDecoder.decode("fraud")).thenReturn(testTransaction);
+        when(fraudDetectionService.detectFraud(testTransaction)).thenReturn(testFraudResult);
+        when(resultWriter.trySubmit(testTransaction, testFraudResult, null)).thenReturn(false);
+
+        assertFalse(sqsConsumerService.processMessage(message));
+
+        verify(resultWriter, never()).submit(any(), any(), any());
+        verify(sqsAcknowledger).release("RECEIPT1");
+        verify(sqsAcknowledger, never()).acknowledge(anyString());
+        verify(transactionDeduplicator).release("TEST-12345");
+        verify(transactionDeduplicator, never()).complete(anyString());
+        verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
+    }
+
     /**
      *  case 3 parse failed
      */
     @Test
-    void consumeTransactions_WhenMessageParsingFails_DoesNotDeleteOrNotify() throws JsonProcessingException {
+    void consumeTransactions_WhenMessageParsingFails_DoesNotDeleteOrNotify() throws IOException {
         // 1. 准备测试消息
         Message testMessage = Message.builder()
                 .messageId("MSG789")
@@ -138,19 +257,44 @@ class ConsumerServiceTest {
 
 
         when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenReturn(response);
-        when(objectMapper.readValue("invalid-json", Transaction.class)).thenThrow(JsonProcessingException.class);
+        when(transactionDecoder.decode("invalid-json")).thenThrow(JsonProcessingException.class);
 
 
-        sqsConsumerService.consumeTransactions();
+        for (Message message : sqsConsumerService.receiveTransactions(testMaxMessages)) {
+            assertFalse(sqsConsumerService.processMessage(message));
+        }
 
 
         verify(fraudDetectionService, never()).detectFraud(any(Transaction.class));
-        verify(sqsClient, never()).deleteMessage(any(DeleteMessageRequest.class));
+        verify(sqsAcknowledger, never()).acknowledge(anyString());
+        verify(sqsAcknowledger).release("RECEIPT123");
         verify(snsNotificationService, never()).sendFraudAlert(any(FraudResult.class));
+        assertEquals(1.0, meterRegistry.get("fraud.message.failed").tag("stage", "parse").counter().count());
+        assertEquals(0, meterRegistry.get("fraud.message.queue.age").timer().count());
+    }
+
+    /**
+     * case : async receive completes with the batch, a failed call counts as receive error
+     */
+    @Test
+    void receiveTransactionsAsync_CompletesWithBatch() {
+        Message testMessage = Message.builder().messageId("MSG789").body("{}").receiptHandle("RECEIPT123").build();
+        when(sqsAsyncClient.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(ReceiveMessageResponse.builder().messages(testMessage).build()))
+                .thenReturn(CompletableFuture.failedFuture(SqsException.builder().message("throttled").build()));
+
+        assertEquals(List.of(testMessage), sqsConsumerService.receiveTransactionsAsync(testMaxMessages).join());
+        assertTrue(sqsConsumerService.receiveTransactionsAsync(testMaxMessages).isCompletedExceptionally());
+
+        verify(sqsAsyncClient, times(2)).receiveMessage(receiveMessageRequestCaptor.capture());
+        assertEquals(testQueueUrl, receiveMessageRequestCaptor.getValue().queueUrl());
+        assertEquals(1, meterRegistry.get("fraud.sqs.receive.batch.size").summary().count());
+        assertEquals(1.0, meterRegistry.get("fraud.sqs.receive.errors").counter().count());
+        verify(sqsClient, never()).receiveMessage(any(ReceiveMessageRequest.class));
     }
 
     /**
-     * case : throw exception when receive msg
+     * case : throw exception when receive msg, poller backs off and retries
      */
     @Test
     void consumeTransactions_WhenSqsClientThrowsException_HandlesGracefully() {
@@ -158,7 +302,8 @@ class ConsumerServiceTest {
         when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenThrow(SqsException.class);
 
 
-        sqsConsumerService.consumeTransactions();
+        assertThrows(SqsException.class, () -> sqsConsumerService.receiveTransactions(testMaxMessages));
+        assertEquals(1.0, meterRegistry.get("fraud.sqs.receive.errors").counter().count());
 
 
         verify(fraudDetectionService, never()).detectFraud(any(Transaction.class));
@@ -1,27 +1,46 @@
 package com.fraud.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
 import com.fraud.model.Transaction;
+import com.fraud.rule.AmountThresholdRule;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.FraudRule;
+import com.fraud.rule.HighRiskLocationRule;
+import com.fraud.rule.RuleEngine;
+import com.fraud.rule.SuspiciousAccountRule;
+import com.fraud.rule.VelocityRule;
+import com.fraud.score.FeatureExtractor;
+import com.fraud.score.RiskScorer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.sql.Date;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Mockito.doNothing;
 
 @ExtendWith(MockitoExtension.class)
 public class FraudDetectionServiceTest {
 
-    @InjectMocks
     private FraudDetectionService fraudDetectionService;
 
     private Transaction highAmountTx;    // high  amount
@@ -32,19 +51,30 @@ public class FraudDetectionServiceTest {
     @BeforeEach
     void setUp() {
 
-        ReflectionTestUtils.setField(fraudDetectionService, "amountThreshold", 10000.0);
-        ReflectionTestUtils.setField(fraudDetectionService, "suspiciousAccountsStr", "ACCT-123,ACCT-456");
-        ReflectionTestUtils.setField(fraudDetectionService, "enableUnusualLocationCheck", true);
-        ReflectionTestUtils.setField(fraudDetectionService, "highRiskLocationsStr", "HighRiskCountry1, HighRiskCountry2, SuspiciousRegion, Unknown");
+        AmountThresholdRule amountRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountRule, "amountThreshold", 10000.0);
+        SuspiciousAccountRule accountRule = new SuspiciousAccountRule();
+        ReflectionTestUtils.setField(accountRule, "suspiciousAccountsStr", "ACCT-123,ACCT-456");
+        accountRule.init();
+        HighRiskLocationRule locationRule = new HighRiskLocationRule();
+        ReflectionTestUtils.setField(locationRule, "enableUnusualLocationCheck", true);
+        ReflectionTestUtils.setField(locationRule, "highRiskLocationsStr", "HighRiskCountry1, HighRiskCountry2, SuspiciousRegion, Unknown");
+        locationRule.init();
 
+        RuleEngine ruleEngine = new RuleEngine(List.of(amountRule, accountRule, locationRule));
+        ReflectionTestUtils.setField(ruleEngine, "mode", EvaluationMode.ALL_REASONS);
+        ReflectionTestUtils.setField(ruleEngine, "timingEnabled", true);
+        ruleEngine.compile();
+        fraudDetectionService = new FraudDetectionService(ruleEngine,
+                new RiskScorer(new ObjectMapper(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
         fraudDetectionService.init();
 
         // create test data
         Instant now = Instant.now();
-        highAmountTx = new Transaction("TX-001", "ACCT-789", 15000.0, "New York",  "MCH-001", Date.valueOf(LocalDate.now()));
-        suspiciousAcctTx = new Transaction("TX-002", "ACCT-123", 5000.0, "London",  "MCH-002", Date.valueOf(LocalDate.now()));
-        normalTx = new Transaction("TX-003", "ACCT-789", 8000.0, "Paris",  "MCH-003", Date.valueOf(LocalDate.now()));
-        highRiskLocationTx = new Transaction("TX-004", "ACCT-789", 8000.0, "HighRiskCountry1",  "MCH-004", Date.valueOf(LocalDate.now()));
+        highAmountTx = new Transaction("TX-001", "ACCT-789", 15000.0, "New York",  "MCH-001", System.currentTimeMillis());
+        suspiciousAcctTx = new Transaction("TX-002", "ACCT-123", 5000.0, "London",  "MCH-002", System.currentTimeMillis());
+        normalTx = new Transaction("TX-003", "ACCT-789", 8000.0, "Paris",  "MCH-003", System.currentTimeMillis());
+        highRiskLocationTx = new Transaction("TX-004", "ACCT-789", 8000.0, "HighRiskCountry1",  "MCH-004", System.currentTimeMillis());
     }
 
     @Test
@@ -80,9 +110,99 @@ public class FraudDetectionServiceTest {
 
     @Test
     void testMultipleRulesTriggered_ShouldBeFraud() {
-        Transaction tx = new Transaction("TX-005", "ACCT-123", 15000.0, "HighRiskCountry1",  "MCH-005",  Date.valueOf(LocalDate.now()));
+        Transaction tx = new Transaction("TX-005", "ACCT-123", 15000.0, "HighRiskCountry1",  "MCH-005",  System.currentTimeMillis());
         FraudResult result = fraudDetectionService.detectFraud(tx);
         assertTrue(result.isFraudulent());
         assertEquals(3, result.getReasons().size());
+        assertEquals(EnumSet.of(ReasonCode.AMOUNT_THRESHOLD, ReasonCode.SUSPICIOUS_ACCOUNT, ReasonCode.HIGH_RISK_LOCATION),
+                result.getReasonCodes());
+    }
+
+    @Test
+    void testNormalTransaction_SharedCleanResult() {
+        assertSame(FraudResult.CLEAN, fraudDetectionService.detectFraud(normalTx));
+    }
+
+    /**
+     * clean transaction must not allocate on the detect path, velocity rule included
+     */
+    @Test
+    void testNormalTransaction_NoAllocation() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        VelocityRule velocityRule = new VelocityRule();
+        ReflectionTestUtils.setField(velocityRule, "enabled", true);
+        ReflectionTestUtils.setField(velocityRule, "windowSeconds", new long[]{60, 600, 3600});
+        ReflectionTestUtils.setField(velocityRule, "maxCounts", new long[]{0, 0, 0});
+        ReflectionTestUtils.setField(velocityRule, "maxAmounts", new double[]{0, 0, 0});
+        ReflectionTestUtils.setField(velocityRule, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(velocityRule, "maxAccounts", 1000);
+        ReflectionTestUtils.setField(velocityRule, "stripes", 4);
+        velocityRule.init();
+        RuleEngine ruleEngine = (RuleEngine) ReflectionTestUtils.getField(fraudDetectionService, "ruleEngine");
+        List<FraudRule> rules = new ArrayList<>((List<FraudRule>) ReflectionTestUtils.getField(ruleEngine, "rules"));
+        rules.add(velocityRule);
+        RuleEngine engine = new RuleEngine(rules);
+        ReflectionTestUtils.setField(engine, "mode", EvaluationMode.ALL_REASONS);
+        ReflectionTestUtils.setField(engine, "timingEnabled", true);
+        engine.compile();
+        FraudDetectionService service = new FraudDetectionService(engine,
+                new RiskScorer(new ObjectMapper(), new SimpleMeterRegistry()), new SimpleMeterRegistry());
+        service.init();
+
+        // warm up: JIT, thread locals, counter cells
+        for (int i = 0; i < 20_000; i++) {
+            service.detectFraud(normalTx);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            service.detectFraud(normalTx);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // a single allocation per call would be >= 160 KB
+        assertTrue(allocated < 1024, "clean detect path allocated " + allocated + " bytes in 10000 calls");
+    }
+
+    /**
+     * with a risk model loaded a clean transaction gets its own result carrying the score, one small object
+     * per call and nothing else
+     */
+    @Test
+    void testNormalTransaction_ScoredAllocationBounded(@TempDir Path tempDir) throws IOException {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        Path model = tempDir.resolve("model.json");
+        Files.writeString(model, "{\"type\":\"linear\",\"version\":\"lin-1\",\"layout\":\"v1\",\"intercept\":-4,\"weights\":"
+                + Arrays.toString(new double[FeatureExtractor.WIDTH]) + "}");
+        RiskScorer scorer = new RiskScorer(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scorer, "modelFile", model.toString());
+        ReflectionTestUtils.setField(scorer, "alertThreshold", 0.9);
+        ReflectionTestUtils.setField(scorer, "zone", "UTC");
+        scorer.init();
+        RuleEngine ruleEngine = (RuleEngine) ReflectionTestUtils.getField(fraudDetectionService, "ruleEngine");
+        FraudDetectionService service = new FraudDetectionService(ruleEngine, scorer, new SimpleMeterRegistry());
+        service.init();
+
+        FraudResult result = service.detectFraud(normalTx);
+        assertFalse(result.isFraudulent());
+        assertTrue(result.hasScore());
+        for (int i = 0; i < 20_000; i++) {
+            service.detectFraud(normalTx);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; i++) {
+            service.detectFraud(normalTx);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // one FraudResult is 48 bytes with compressed oops, 56 without
+        assertTrue(allocated <= 10_000 * 56 + 1024, "scored clean detect path allocated " + allocated + " bytes in 10000 calls");
     }
 }
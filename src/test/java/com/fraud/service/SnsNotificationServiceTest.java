@@ -0,0 +1,191 @@
+package com.fraud.service;
+
+import com.fraud.model.FraudResult;
+import com.fraud.model.ReasonCode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SnsNotificationServiceTest {
+
+    private static final String TOPIC_ARN = "arn:aws:sns:test-region:123456:fraud-alerts";
+
+    @Mock
+    private SnsAsyncClient snsAsyncClient;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SnsNotificationService snsNotificationService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        snsNotificationService = new SnsNotificationService(snsAsyncClient, meterRegistry);
+        ReflectionTestUtils.setField(snsNotificationService, "snsTopicArn", TOPIC_ARN);
+        ReflectionTestUtils.setField(snsNotificationService, "outboxCapacity", 3);
+        ReflectionTestUtils.setField(snsNotificationService, "batchSize", 10);
+        ReflectionTestUtils.setField(snsNotificationService, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(snsNotificationService, "maxInFlightBatches", 2);
+        ReflectionTestUtils.setField(snsNotificationService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(snsNotificationService, "retryBaseMs", 1L);
+        ReflectionTestUtils.setField(snsNotificationService, "retryMaxMs", 5L);
+        snsNotificationService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        snsNotificationService.stop();
+    }
+
+    /**
+     * case1: clean result is never queued
+     */
+    @Test
+    void sendFraudAlert_NotFraud_NothingPublished() {
+        snsNotificationService.sendFraudAlert(result("TX-001", false));
+
+        assertEquals(0, snsNotificationService.getOutboxDepth());
+        verify(snsAsyncClient, never()).publishBatch(any(PublishBatchRequest.class));
+    }
+
+    /**
+     * case2: alerts are published together in one PublishBatch
+     */
+    @Test
+    void sendFraudAlert_PublishedInOneBatch() throws InterruptedException {
+        List<PublishBatchRequest> requests = Collections.synchronizedList(new ArrayList<>());
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(inv -> {
+            PublishBatchRequest request = inv.getArgument(0);
+            requests.add(request);
+            return CompletableFuture.completedFuture(success(request.publishBatchRequestEntries()));
+        });
+
+        snsNotificationService.sendFraudAlert(result("TX-001", true));
+        snsNotificationService.sendFraudAlert(result("TX-002", true));
+        snsNotificationService.start();
+        snsNotificationService.stop();
+
+        assertEquals(1, requests.size());
+        assertEquals(TOPIC_ARN, requests.get(0).topicArn());
+        assertEquals(2, requests.get(0).publishBatchRequestEntries().size());
+        assertTrue(requests.get(0).publishBatchRequestEntries().get(0).message().contains("TX-001"));
+        assertEquals(2.0, meterRegistry.counter("fraud.sns.outbox.published").count());
+    }
+
+    /**
+     * case3: failed entry is retried alone
+     */
+    @Test
+    void publishBatch_PartialFailure_RetriesFailedEntry() throws InterruptedException {
+        List<List<String>> sent = Collections.synchronizedList(new ArrayList<>());
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(inv -> {
+            PublishBatchRequest request = inv.getArgument(0);
+            List<PublishBatchRequestEntry> entries = request.publishBatchRequestEntries();
+            sent.add(entries.stream().map(PublishBatchRequestEntry::subject).collect(Collectors.toList()));
+            if (sent.size() > 1) {
+                return CompletableFuture.completedFuture(success(entries));
+            }
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                    .successful(PublishBatchResultEntry.builder().id("0").build())
+                    .failed(BatchResultErrorEntry.builder().id("1").senderFault(false).code("Throttled").build())
+                    .build());
+        });
+
+        snsNotificationService.sendFraudAlert(result("TX-001", true));
+        snsNotificationService.sendFraudAlert(result("TX-002", true));
+        snsNotificationService.start();
+        for (int i = 0; i < 100 && sent.size() < 2; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(2, sent.size());
+        assertEquals(List.of("Fraud Alarm Transaction-ID: TX-002"), sent.get(1));
+        assertEquals(1.0, meterRegistry.counter("fraud.sns.outbox.retried").count());
+    }
+
+    /**
+     * case4: on stop an alert waiting for its retry backoff is sent with the drain, not thrown away
+     */
+    @Test
+    void stop_RetryInBackoff_SentWithDrain() throws InterruptedException {
+        ReflectionTestUtils.setField(snsNotificationService, "retryBaseMs", 60_000L);
+        ReflectionTestUtils.setField(snsNotificationService, "retryMaxMs", 60_000L);
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        when(snsAsyncClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(inv -> {
+            PublishBatchRequest request = inv.getArgument(0);
+            List<PublishBatchRequestEntry> entries = request.publishBatchRequestEntries();
+            entries.forEach(e -> sent.add(e.subject()));
+            if (sent.size() > 1) {
+                return CompletableFuture.completedFuture(success(entries));
+            }
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                    .failed(BatchResultErrorEntry.builder().id("0").senderFault(false).code("Throttled").build())
+                    .build());
+        });
+
+        snsNotificationService.sendFraudAlert(result("TX-001", true));
+        snsNotificationService.start();
+        for (int i = 0; i < 100 && meterRegistry.counter("fraud.sns.outbox.retried").count() < 1; i++) {
+            Thread.sleep(20);
+        }
+        snsNotificationService.stop();
+
+        assertEquals(2, sent.size());
+        assertEquals(1.0, meterRegistry.counter("fraud.sns.outbox.published").count());
+        assertEquals(0.0, meterRegistry.counter("fraud.sns.outbox.dropped").count());
+    }
+
+    /**
+     * case5: alerts beyond the outbox capacity are dropped and counted
+     */
+    @Test
+    void sendFraudAlert_OutboxFull_DropsAndCounts() {
+        for (int i = 0; i < 5; i++) {
+            snsNotificationService.sendFraudAlert(result("TX-00" + i, true));
+        }
+
+        assertEquals(3, snsNotificationService.getOutboxDepth());
+        assertEquals(2.0, meterRegistry.counter("fraud.sns.outbox.dropped").count());
+        assertEquals(3.0, meterRegistry.get("fraud.sns.outbox.depth").gauge().value());
+    }
+
+    private static PublishBatchResponse success(List<PublishBatchRequestEntry> entries) {
+        return PublishBatchResponse.builder()
+                .successful(entries.stream()
+                        .map(e -> PublishBatchResultEntry.builder().id(e.id()).build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private static FraudResult result(String transactionId, boolean fraudulent) {
+        if (!fraudulent) {
+            return FraudResult.CLEAN;
+        }
+        return new FraudResult(transactionId, ReasonCode.AMOUNT_THRESHOLD.bit(), System.currentTimeMillis(),
+                Collections.singletonList("Amount exceeds threshold"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.fraud.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fraud.codec.TransactionDecoder;
+import com.fraud.model.Transaction;
+import com.fraud.rule.AmountThresholdRule;
+import com.fraud.rule.EvaluationMode;
+import com.fraud.rule.HighRiskLocationRule;
+import com.fraud.rule.RuleEngine;
+import com.fraud.rule.VelocityRule;
+import com.fraud.score.RiskScorer;
+import com.fraud.service.FraudDetectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupWarmupTest {
+
+    /**
+     * case1: warm-up msg decode like queue msg, with the default rules none is flagged, the live meters and
+     * velocity state see nothing of it, the timeline records it
+     */
+    @Test
+    void warmup_DefaultRules_StaysClean() throws IOException {
+        TransactionDecoder decoder = new TransactionDecoder(new ObjectMapper());
+        long now = System.currentTimeMillis();
+        Transaction epoch = decoder.decode(StartupWarmup.message(2, 7, now));
+        Transaction iso = decoder.decode(StartupWarmup.message(3, 7, now));
+        assertEquals("warmup-7", epoch.getAccountId());
+        assertEquals(now, epoch.getTransactionTime());
+        assertEquals(now, iso.getTransactionTime());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VelocityRule velocityRule = velocityRule();
+        RuleEngine ruleEngine = ruleEngine(velocityRule);
+        FraudDetectionService detectionService = new FraudDetectionService(ruleEngine,
+                new RiskScorer(new ObjectMapper(), meterRegistry), meterRegistry);
+        detectionService.init();
+        StartupTimeline timeline = new StartupTimeline(meterRegistry);
+        timeline.init();
+        StartupWarmup warmup = new StartupWarmup(decoder, detectionService, timeline);
+        ReflectionTestUtils.setField(warmup, "iterations", 5000);
+        ReflectionTestUtils.setField(warmup, "accounts", 256);
+        ReflectionTestUtils.setField(warmup, "maxMillis", 60000L);
+        warmup.start();
+
+        assertEquals(0.0, meterRegistry.get("fraud.detect.results").tag("result", "clean").counter().count());
+        assertEquals(0L, meterRegistry.get("fraud.detect").timer().count());
+        assertEquals(0, velocityRule.getTrackedAccountCount());
+        ruleEngine.getStats().forEach(stats -> assertEquals(0L, stats.getEvaluations()));
+        assertTrue(timeline.getWarmupMillis() >= 0);
+        assertTrue(Double.isNaN(meterRegistry.get("fraud.startup.seconds").tag("phase", "first.message").gauge().value()));
+        timeline.messageProcessed();
+        assertTrue(timeline.getFirstMessageMillis() >= timeline.getWarmupMillis());
+    }
+
+    private static RuleEngine ruleEngine(VelocityRule velocityRule) {
+        AmountThresholdRule amountRule = new AmountThresholdRule();
+        ReflectionTestUtils.setField(amountRule, "amountThreshold", 10000.0);
+        HighRiskLocationRule locationRule = new HighRiskLocationRule();
+        ReflectionTestUtils.setField(locationRule, "enableUnusualLocationCheck", true);
+        ReflectionTestUtils.setField(locationRule, "highRiskLocationsStr", "HighRiskCountry1,HighRiskCountry2,SuspiciousRegion,Unknown");
+        locationRule.init();
+        RuleEngine engine = new RuleEngine(List.of(amountRule, locationRule, velocityRule));
+        ReflectionTestUtils.setField(engine, "mode", EvaluationMode.ALL_REASONS);
+        ReflectionTestUtils.setField(engine, "timingEnabled", false);
+        engine.compile();
+        return engine;
+    }
+
+    private static VelocityRule velocityRule() {
+        // default limits
+        VelocityRule velocityRule = new VelocityRule();
+        ReflectionTestUtils.setField(velocityRule, "enabled", true);
+        ReflectionTestUtils.setField(velocityRule, "windowSeconds", new long[]{60, 600, 3600});
+        ReflectionTestUtils.setField(velocityRule, "maxCounts", new long[]{5, 20, 60});
+        ReflectionTestUtils.setField(velocityRule, "maxAmounts", new double[]{20000, 50000, 100000});
+        ReflectionTestUtils.setField(velocityRule, "bucketSeconds", 60L);
+        ReflectionTestUtils.setField(velocityRule, "maxAccounts", 1000);
+        ReflectionTestUtils.setField(velocityRule, "stripes", 4);
+        velocityRule.init();
+        return velocityRule;
+    }
+}
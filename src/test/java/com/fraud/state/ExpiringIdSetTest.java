@@ -0,0 +1,53 @@
+package com.fraud.state;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringIdSetTest {
+
+    private static final long MINUTE = 60_000;
+
+    /**
+     * case1: an ID is remembered for one window at least and forgotten after two
+     */
+    @Test
+    void add_RememberedForWindow_ExpiresAfterTwo() {
+        ExpiringIdSet ids = new ExpiringIdSet(10 * MINUTE, 1000, 4, 0);
+
+        assertTrue(ids.add("TX-1", 0));
+        assertFalse(ids.add("TX-1", MINUTE));
+        assertTrue(ids.contains("TX-1"));
+        assertFalse(ids.contains("TX-2"));
+
+        // rotated once, TX-1 is in the previous generation now
+        assertTrue(ids.add("TX-2", 10 * MINUTE));
+        assertTrue(ids.contains("TX-1"));
+        assertFalse(ids.add("TX-1", 11 * MINUTE));
+
+        ids.add("TX-3", 20 * MINUTE);
+        assertFalse(ids.contains("TX-1"));
+        assertTrue(ids.contains("TX-2"));
+        assertEquals(2, ids.size());
+    }
+
+    /**
+     * case2: a full generation rotates before its window ends, memory stays bounded
+     */
+    @Test
+    void add_FullGenerationRotates_MemoryBounded() {
+        ExpiringIdSet ids = new ExpiringIdSet(10 * MINUTE, 100, 4, 0);
+        long memory = ids.memoryBytes();
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(ids.add("TX-" + i, 0));
+        }
+
+        assertTrue(ids.size() <= 200);
+        assertEquals(memory, ids.memoryBytes());
+        assertTrue(ids.contains("TX-9999"));
+        assertFalse(ids.contains("TX-0"));
+    }
+}
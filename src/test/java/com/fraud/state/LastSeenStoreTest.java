@@ -0,0 +1,57 @@
+package com.fraud.state;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LastSeenStoreTest {
+
+    /**
+     * case1: the sighting before the last one is returned for the last one, the last one for any other
+     */
+    @Test
+    void record_KeepsLastTwoSightings() {
+        LastSeenStore store = new LastSeenStore(100, 4);
+        long first = LastSeenStore.sighting(7, 1_700_000_000_000L);
+        long second = LastSeenStore.sighting(0xfffffffeL, 1_700_000_060_000L);
+
+        assertEquals(LastSeenStore.NONE, store.record("ACCT-1", first));
+        assertEquals(first, store.record("ACCT-1", second));
+        assertEquals(first, store.previous("ACCT-1", second));
+        assertEquals(second, store.previous("ACCT-1", LastSeenStore.sighting(3, 1_700_000_120_000L)));
+        assertEquals(LastSeenStore.NONE, store.previous("ACCT-2", first));
+        assertEquals(0xfffffffeL, LastSeenStore.cell(second));
+        assertEquals(1_700_000_060_000L, LastSeenStore.timeMillis(second));
+    }
+
+    /**
+     * case2: accounts beyond the capacity evict least recently seen ones, the size stays bounded
+     */
+    @Test
+    void record_OverCapacity_EvictsOldAccounts() {
+        LastSeenStore store = new LastSeenStore(64, 1);
+        long t0 = 1_700_000_000_000L;
+        for (int i = 0; i < 1000; i++) {
+            store.record("ACCT-" + i, LastSeenStore.sighting(1, t0 + i * 1000L));
+        }
+        assertEquals(64, store.size());
+        assertEquals(936, store.getEvictedCount());
+        // the newest accounts are mostly kept
+        int kept = 0;
+        for (int i = 990; i < 1000; i++) {
+            if (store.previous("ACCT-" + i, LastSeenStore.NONE) != LastSeenStore.NONE) {
+                kept++;
+            }
+        }
+        assertTrue(kept >= 8, "kept " + kept);
+        // entries moved by the backward shift deletes are still found
+        for (int i = 990; i < 1000; i++) {
+            long last = LastSeenStore.sighting(1, t0 + i * 1000L);
+            if (store.previous("ACCT-" + i, LastSeenStore.NONE) == last) {
+                assertEquals(last, store.record("ACCT-" + i, LastSeenStore.sighting(2, t0 + 2_000_000)));
+            }
+        }
+        assertEquals(64, store.size());
+    }
+}
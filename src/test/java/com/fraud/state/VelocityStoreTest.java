@@ -0,0 +1,118 @@
+package com.fraud.state;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VelocityStoreTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long[] WINDOWS = {MINUTE, 10 * MINUTE, 60 * MINUTE};
+
+    private final double[] counts = new double[3];
+    private final double[] sums = new double[3];
+
+    /**
+     * case1: counts and sums are kept per window and per account
+     */
+    @Test
+    void record_CountsAndSumsPerWindow() {
+        VelocityStore store = new VelocityStore(MINUTE, 60 * MINUTE, 100, 4);
+        long t0 = 100 * 60 * MINUTE;
+        store.record("ACCT-1", 100, t0);
+        store.record("ACCT-1", 200, t0 + 5 * MINUTE);
+        store.record("ACCT-1", 300, t0 + 30 * MINUTE);
+        store.record("ACCT-2", 999, t0 + 30 * MINUTE);
+
+        store.query("ACCT-1", t0 + 30 * MINUTE, WINDOWS, counts, sums);
+
+        assertEquals(1.0, counts[0]);
+        assertEquals(300.0, sums[0]);
+        assertEquals(1.0, counts[1]);
+        assertEquals(3.0, counts[2]);
+        assertEquals(600.0, sums[2]);
+    }
+
+    /**
+     * case2: the oldest bucket is weighted by its overlap with the window
+     */
+    @Test
+    void query_OldestBucketWeightedByOverlap() {
+        VelocityStore store = new VelocityStore(MINUTE, 10 * MINUTE, 100, 1);
+        long t0 = 1000 * MINUTE;
+        for (int i = 0; i < 4; i++) {
+            store.record("ACCT-1", 10, t0);
+        }
+
+        // a quarter of the next minute passed, 3/4 of the previous minute is still in the window
+        store.query("ACCT-1", t0 + MINUTE + MINUTE / 4, new long[]{MINUTE}, counts, sums);
+
+        assertEquals(3.0, counts[0], 1e-9);
+        assertEquals(30.0, sums[0], 1e-9);
+    }
+
+    /**
+     * case3: idle accounts expire, old buckets are cleared when the ring wraps
+     */
+    @Test
+    void evictExpired_IdleAccountsRemoved() {
+        VelocityStore store = new VelocityStore(MINUTE, 10 * MINUTE, 100, 2);
+        long t0 = 1000 * MINUTE;
+        store.record("ACCT-1", 10, t0);
+        store.record("ACCT-2", 10, t0 + 20 * MINUTE);
+        store.record("ACCT-2", 10, t0 + 40 * MINUTE);
+
+        assertEquals(1, store.evictExpired(t0 + 40 * MINUTE));
+        assertEquals(1, store.size());
+        store.query("ACCT-2", t0 + 40 * MINUTE, new long[]{10 * MINUTE}, counts, sums);
+        assertEquals(1.0, counts[0]);
+        store.query("ACCT-1", t0 + 40 * MINUTE, new long[]{10 * MINUTE}, counts, sums);
+        assertEquals(0.0, counts[0]);
+    }
+
+    /**
+     * case4: a full store evicts the least recently seen of the sampled accounts, other accounts stay reachable
+     */
+    @Test
+    void record_Full_EvictsLeastRecent() {
+        VelocityStore store = new VelocityStore(MINUTE, 10 * MINUTE, 50, 1);
+        long t0 = 1000 * MINUTE;
+        for (int i = 0; i < 50; i++) {
+            store.record("ACCT-" + i, 1, t0 + (i == 0 ? 0 : MINUTE));
+        }
+        store.record("ACCT-NEW", 1, t0 + 2 * MINUTE);
+
+        assertEquals(50, store.size());
+        assertEquals(1, store.getEvictedCount());
+        store.query("ACCT-0", t0 + 2 * MINUTE, new long[]{10 * MINUTE}, counts, sums);
+        assertEquals(0.0, counts[0]);
+        for (int i = 1; i < 50; i++) {
+            store.query("ACCT-" + i, t0 + 2 * MINUTE, new long[]{10 * MINUTE}, counts, sums);
+            assertEquals(1.0, counts[0], "ACCT-" + i);
+        }
+    }
+
+    /**
+     * case5: far over capacity the sampled eviction keeps the store full and mostly the newest accounts
+     */
+    @Test
+    void record_OverCapacity_KeepsNewestAccounts() {
+        VelocityStore store = new VelocityStore(MINUTE, 10 * MINUTE, 64, 1);
+        long t0 = 1000 * MINUTE;
+        for (int i = 0; i < 1000; i++) {
+            store.record("ACCT-" + i, 1, t0 + i / 100 * MINUTE);
+        }
+
+        assertEquals(64, store.size());
+        assertEquals(936, store.getEvictedCount());
+        int kept = 0;
+        for (int i = 990; i < 1000; i++) {
+            store.query("ACCT-" + i, t0 + 9 * MINUTE, new long[]{10 * MINUTE}, counts, sums);
+            if (counts[0] > 0) {
+                kept++;
+            }
+        }
+        assertTrue(kept >= 8, "kept " + kept);
+    }
+}